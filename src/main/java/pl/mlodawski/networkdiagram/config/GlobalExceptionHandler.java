@@ -10,6 +10,9 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderRejectedException;
+import pl.mlodawski.networkdiagram.diagrammodule.session.UnknownSessionException;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.DiagramValidationException;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -40,6 +43,65 @@ public class GlobalExceptionHandler  extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, headers, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles the exception thrown for an invalid diagram, the response lists every error found with its location.
+     *
+     * @param ex      The DiagramValidationException that was thrown.
+     * @param request The current WebRequest.
+     * @return A ResponseEntity containing the error response.
+     */
+    @ExceptionHandler(DiagramValidationException.class)
+    public ResponseEntity<Map<String, Object>> handleDiagramValidationException(DiagramValidationException ex, WebRequest request) {
+        ResponseEntity<Map<String, Object>> response = handleInvalidLinkException(ex, request);
+        response.getBody().put("errors", ex.getErrors());
+        return response;
+    }
+
+    /**
+     * Handles the exception thrown for a diagram session that does not exist.
+     *
+     * @param ex      The UnknownSessionException that was thrown.
+     * @param request The current WebRequest.
+     * @return A ResponseEntity containing the error response.
+     */
+    @ExceptionHandler(UnknownSessionException.class)
+    public ResponseEntity<Map<String, Object>> handleUnknownSessionException(UnknownSessionException ex, WebRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.NOT_FOUND.value());
+        response.put("error", HttpStatus.NOT_FOUND.getReasonPhrase());
+        response.put("message", ex.getMessage());
+        response.put("path", request.getDescription(false).substring(4));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+
+        return new ResponseEntity<>(response, headers, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Handles the exception thrown when a diagram waited too long to be drawn.
+     *
+     * @param ex      The RenderRejectedException that was thrown.
+     * @param request The current WebRequest.
+     * @return A ResponseEntity containing the error response.
+     */
+    @ExceptionHandler(RenderRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleRenderRejectedException(RenderRejectedException ex, WebRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.put("error", HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+        response.put("message", ex.getMessage());
+        response.put("path", request.getDescription(false).substring(4));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_TYPE, "application/json");
+        headers.add(HttpHeaders.RETRY_AFTER, "1");
+
+        return new ResponseEntity<>(response, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     /**
      * Handles the exception thrown when the HTTP message cannot be read.
      *
@@ -0,0 +1,219 @@
+package pl.mlodawski.networkdiagram.diagrammodule.autolayout;
+
+import java.util.Arrays;
+
+/**
+ * Quadtree of the bodies with the mass and the center of mass of every cell, kept in primitive arrays.
+ * Built once per iteration, then only read, so the forces of different bodies can be computed in parallel.
+ * Every internal cell has its four children in consecutive slots, leaves keep a range of the body order.
+ */
+final class BarnesHutTree {
+
+    private static final int MAX_DEPTH = 24;
+    private static final float MIN_DISTANCE_SQUARED = 0.01f;
+
+    private final float[] x;
+    private final float[] y;
+    private final float[] mass;
+    private final int[] order;
+    private float[] centerX;
+    private float[] centerY;
+    private float[] cellMass;
+    private float[] cellSize;
+    private int[] firstChild;
+    private int[] leafStart;
+    private int[] leafEnd;
+    private int cellCount;
+
+    private BarnesHutTree(float[] x, float[] y, float[] mass, int bodyCount) {
+        this.x = x;
+        this.y = y;
+        this.mass = mass;
+        this.order = new int[bodyCount];
+        int capacity = Math.max(16, bodyCount * 2);
+        this.centerX = new float[capacity];
+        this.centerY = new float[capacity];
+        this.cellMass = new float[capacity];
+        this.cellSize = new float[capacity];
+        this.firstChild = new int[capacity];
+        this.leafStart = new int[capacity];
+        this.leafEnd = new int[capacity];
+    }
+
+    /**
+     * @param x         x of the bodies
+     * @param y         y of the bodies
+     * @param mass      mass of the bodies
+     * @param bodyCount number of bodies
+     * @return tree of the bodies at their current positions
+     */
+    static BarnesHutTree build(float[] x, float[] y, float[] mass, int bodyCount) {
+        BarnesHutTree tree = new BarnesHutTree(x, y, mass, bodyCount);
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int body = 0; body < bodyCount; body++) {
+            tree.order[body] = body;
+            minX = Math.min(minX, x[body]);
+            minY = Math.min(minY, y[body]);
+            maxX = Math.max(maxX, x[body]);
+            maxY = Math.max(maxY, y[body]);
+        }
+        float size = Math.max(Math.max(maxX - minX, maxY - minY), 1) * 1.0001f;
+        tree.cellCount = 1;
+        tree.fill(0, 0, bodyCount, minX, minY, size, 0);
+        return tree;
+    }
+
+    /**
+     * Adds the repulsion of every other body to the force of the body, far cells act as one body in their center of mass
+     *
+     * @param body      body
+     * @param strength  repulsion of two unit masses at the unit distance, the force falls with the distance
+     * @param theta     cells smaller than theta times their distance are not opened
+     * @param forceX    x of the forces
+     * @param forceY    y of the forces
+     */
+    void addRepulsion(int body, float strength, float theta, float[] forceX, float[] forceY) {
+        float bodyX = x[body];
+        float bodyY = y[body];
+        float bodyStrength = strength * mass[body];
+        float thetaSquared = theta * theta;
+        float sumX = 0;
+        float sumY = 0;
+        int[] stack = new int[MAX_DEPTH * 4 + 4];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            int cell = stack[--stackSize];
+            if (cellMass[cell] == 0) {
+                continue;
+            }
+            if (firstChild[cell] < 0) {
+                for (int i = leafStart[cell]; i < leafEnd[cell]; i++) {
+                    int other = order[i];
+                    if (other != body) {
+                        float dx = bodyX - x[other];
+                        float dy = bodyY - y[other];
+                        float distanceSquared = dx * dx + dy * dy;
+                        if (distanceSquared < MIN_DISTANCE_SQUARED) {
+                            double angle = (body - other) * 2.399963;
+                            dx = (float) Math.cos(angle);
+                            dy = (float) Math.sin(angle);
+                            distanceSquared = 1;
+                        }
+                        float factor = bodyStrength * mass[other] / distanceSquared;
+                        sumX += dx * factor;
+                        sumY += dy * factor;
+                    }
+                }
+                continue;
+            }
+            float dx = bodyX - centerX[cell];
+            float dy = bodyY - centerY[cell];
+            float distanceSquared = dx * dx + dy * dy;
+            if (cellSize[cell] * cellSize[cell] < thetaSquared * distanceSquared) {
+                float factor = bodyStrength * cellMass[cell] / distanceSquared;
+                sumX += dx * factor;
+                sumY += dy * factor;
+            } else {
+                int child = firstChild[cell];
+                stack[stackSize++] = child;
+                stack[stackSize++] = child + 1;
+                stack[stackSize++] = child + 2;
+                stack[stackSize++] = child + 3;
+            }
+        }
+        forceX[body] += sumX;
+        forceY[body] += sumY;
+    }
+
+    /**
+     * Fills the cell with the bodies of the order range, splitting it into quadrants until every leaf has one body
+     */
+    private void fill(int cell, int from, int to, float minX, float minY, float size, int depth) {
+        cellSize[cell] = size;
+        if (to - from <= 1 || depth == MAX_DEPTH) {
+            firstChild[cell] = -1;
+            leafStart[cell] = from;
+            leafEnd[cell] = to;
+            float sumMass = 0;
+            float sumX = 0;
+            float sumY = 0;
+            for (int i = from; i < to; i++) {
+                int body = order[i];
+                sumMass += mass[body];
+                sumX += x[body] * mass[body];
+                sumY += y[body] * mass[body];
+            }
+            setCenter(cell, sumMass, sumX, sumY);
+            return;
+        }
+        float half = size / 2;
+        float midX = minX + half;
+        float midY = minY + half;
+        int splitX = partition(from, to, midX, true);
+        int splitLeftY = partition(from, splitX, midY, false);
+        int splitRightY = partition(splitX, to, midY, false);
+        int child = allocateChildren();
+        firstChild[cell] = child;
+        fill(child, from, splitLeftY, minX, minY, half, depth + 1);
+        fill(child + 1, splitLeftY, splitX, minX, midY, half, depth + 1);
+        fill(child + 2, splitX, splitRightY, midX, minY, half, depth + 1);
+        fill(child + 3, splitRightY, to, midX, midY, half, depth + 1);
+        float sumMass = 0;
+        float sumX = 0;
+        float sumY = 0;
+        for (int i = child; i < child + 4; i++) {
+            sumMass += cellMass[i];
+            sumX += centerX[i] * cellMass[i];
+            sumY += centerY[i] * cellMass[i];
+        }
+        setCenter(cell, sumMass, sumX, sumY);
+    }
+
+    private void setCenter(int cell, float sumMass, float sumX, float sumY) {
+        cellMass[cell] = sumMass;
+        centerX[cell] = sumMass > 0 ? sumX / sumMass : 0;
+        centerY[cell] = sumMass > 0 ? sumY / sumMass : 0;
+    }
+
+    /**
+     * Moves the bodies below the split to the start of the range
+     *
+     * @return start of the bodies at or above the split
+     */
+    private int partition(int from, int to, float split, boolean byX) {
+        float[] coordinates = byX ? x : y;
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            if (coordinates[order[low]] < split) {
+                low++;
+            } else {
+                int swap = order[low];
+                order[low] = order[high];
+                order[high] = swap;
+                high--;
+            }
+        }
+        return low;
+    }
+
+    private int allocateChildren() {
+        if (cellCount + 4 > cellMass.length) {
+            int capacity = cellMass.length * 2;
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            cellMass = Arrays.copyOf(cellMass, capacity);
+            cellSize = Arrays.copyOf(cellSize, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            leafStart = Arrays.copyOf(leafStart, capacity);
+            leafEnd = Arrays.copyOf(leafEnd, capacity);
+        }
+        int child = cellCount;
+        cellCount += 4;
+        return child;
+    }
+}
@@ -0,0 +1,407 @@
+package pl.mlodawski.networkdiagram.diagrammodule.autolayout;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderRejectedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places nodes and super nodes without positions with a force-directed layout: links pull their ends together, all bodies
+ * push each other apart with the Barnes-Hut approximation, so an iteration takes O(n log n). A super node moves as one body
+ * with its nodes, the nodes are placed around it by the super node layout. Placed elements stay where they are
+ * and only act on the others. The result depends only on the diagram, the same diagram is always laid out the same way:
+ * the layout stops after the configured iterations or once no body moves more than the convergence distance, never on time.
+ */
+@Service
+@Slf4j
+public class ForceDirectedLayout {
+
+    private static final float MARGIN_X = 20;
+    private static final float MARGIN_Y = 60;
+    private static final float GRAVITY = 0.01f;
+    private static final double GOLDEN_ANGLE = 2.399963229728653;
+    private static final int CHUNK_SIZE = 1024;
+
+    private final boolean enabled;
+    private final int iterations;
+    private final float edgeLength;
+    private final float theta;
+    private final float convergence;
+    private final ForkJoinPool layoutPool;
+    private final RenderBulkhead renderBulkhead;
+
+    public ForceDirectedLayout(RenderPool renderPool, RenderBulkhead renderBulkhead,
+                               @Value("${diagram.layout.enabled:true}") boolean enabled,
+                               @Value("${diagram.layout.iterations:300}") int iterations,
+                               @Value("${diagram.layout.edge-length:200}") float edgeLength,
+                               @Value("${diagram.layout.theta:0.8}") float theta,
+                               @Value("${diagram.layout.convergence:0.5}") float convergence) {
+        if (iterations < 0 || edgeLength <= 0 || theta < 0 || convergence < 0) {
+            throw new IllegalArgumentException("Layout iterations, edge length, theta and convergence cannot be negative");
+        }
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.edgeLength = edgeLength;
+        this.theta = theta;
+        this.convergence = convergence;
+        this.layoutPool = renderPool.getPool();
+        this.renderBulkhead = renderBulkhead;
+    }
+
+    /**
+     * Places the free nodes and super nodes, nodes of super nodes are placed later by the super node layout.
+     * The layout is CPU-bound like drawing, so it runs only once the render bulkhead lets it in.
+     *
+     * @param networkNodes   nodes
+     * @param superNodes     super nodes
+     * @param networkLinks   links
+     * @param freeNodes      nodes without positions
+     * @param freeSuperNodes super nodes without positions
+     * @throws IllegalArgumentException when the layout is disabled
+     * @throws RenderRejectedException  when the render bulkhead does not let the layout in within its queue timeout
+     */
+    public void layout(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                       Set<NetworkNode> freeNodes, Set<SuperNode> freeSuperNodes) {
+        if (freeNodes.isEmpty() && freeSuperNodes.isEmpty()) {
+            return;
+        }
+        if (!enabled) {
+            String element = freeNodes.isEmpty() ? "SuperNode " + freeSuperNodes.iterator().next().getId() : "Node " + freeNodes.iterator().next().getId();
+            throw new IllegalArgumentException(element + " has no position and the automatic layout is disabled");
+        }
+        renderBulkhead.run(() -> layoutFreeBodies(networkNodes, superNodes, networkLinks, freeNodes, freeSuperNodes));
+    }
+
+    private void layoutFreeBodies(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                                  Set<NetworkNode> freeNodes, Set<SuperNode> freeSuperNodes) {
+        long startTime = System.nanoTime();
+        Bodies bodies = Bodies.of(networkNodes, superNodes, networkLinks, freeNodes, freeSuperNodes);
+        placeInitially(bodies);
+        int iteration = 0;
+        float largestMove = Float.POSITIVE_INFINITY;
+        while (iteration < iterations && largestMove > convergence) {
+            float temperature = edgeLength * Math.max(1, (float) Math.sqrt(bodies.count) / 10) * (1 - (float) iteration / iterations) + edgeLength / 100;
+            largestMove = step(bodies, temperature);
+            iteration++;
+        }
+        bodies.moveIntoDocument();
+        bodies.apply();
+        log.debug("Laid out {} free of {} bodies in {} iterations, {} ms", bodies.freeCount(), bodies.count, iteration,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Starts the free bodies next to their placed neighbours, the others on a spiral around the placed bodies
+     */
+    private void placeInitially(Bodies bodies) {
+        float centerX = 0;
+        float centerY = 0;
+        int fixedCount = bodies.count - bodies.freeCount();
+        for (int body = 0; body < bodies.count; body++) {
+            if (!bodies.free[body]) {
+                centerX += bodies.x[body] / fixedCount;
+                centerY += bodies.y[body] / fixedCount;
+            }
+        }
+        bodies.centerX = centerX;
+        bodies.centerY = centerY;
+        float[] neighbourX = new float[bodies.count];
+        float[] neighbourY = new float[bodies.count];
+        int[] neighbours = new int[bodies.count];
+        for (int edge = 0; edge < bodies.edgeCount; edge++) {
+            int a = bodies.edgeA[edge];
+            int b = bodies.edgeB[edge];
+            if (bodies.free[a] && !bodies.free[b]) {
+                neighbourX[a] += bodies.x[b];
+                neighbourY[a] += bodies.y[b];
+                neighbours[a]++;
+            } else if (bodies.free[b] && !bodies.free[a]) {
+                neighbourX[b] += bodies.x[a];
+                neighbourY[b] += bodies.y[a];
+                neighbours[b]++;
+            }
+        }
+        int placed = 0;
+        for (int body = 0; body < bodies.count; body++) {
+            if (!bodies.free[body]) {
+                continue;
+            }
+            placed++;
+            double angle = placed * GOLDEN_ANGLE;
+            if (neighbours[body] > 0) {
+                bodies.x[body] = neighbourX[body] / neighbours[body] + (float) Math.cos(angle) * edgeLength / 2;
+                bodies.y[body] = neighbourY[body] / neighbours[body] + (float) Math.sin(angle) * edgeLength / 2;
+            } else {
+                float radius = edgeLength * (float) Math.sqrt(placed);
+                bodies.x[body] = centerX + (float) Math.cos(angle) * radius;
+                bodies.y[body] = centerY + (float) Math.sin(angle) * radius;
+            }
+        }
+    }
+
+    /**
+     * Moves every free body along its force by at most the temperature
+     *
+     * @return largest move of a body
+     */
+    private float step(Bodies bodies, float temperature) {
+        int count = bodies.count;
+        float[] forceX = new float[count];
+        float[] forceY = new float[count];
+        BarnesHutTree tree = BarnesHutTree.build(bodies.x, bodies.y, bodies.mass, count);
+        float strength = edgeLength * edgeLength;
+        if (count <= CHUNK_SIZE) {
+            addRepulsion(bodies, tree, strength, 0, count, forceX, forceY);
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(count / CHUNK_SIZE + 1);
+            for (int from = 0; from < count; from += CHUNK_SIZE) {
+                int chunkStart = from;
+                int chunkEnd = Math.min(from + CHUNK_SIZE, count);
+                tasks.add(layoutPool.submit(() -> addRepulsion(bodies, tree, strength, chunkStart, chunkEnd, forceX, forceY)));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        }
+        for (int edge = 0; edge < bodies.edgeCount; edge++) {
+            int a = bodies.edgeA[edge];
+            int b = bodies.edgeB[edge];
+            float dx = bodies.x[b] - bodies.x[a];
+            float dy = bodies.y[b] - bodies.y[a];
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            float factor = distance / edgeLength;
+            forceX[a] += dx * factor;
+            forceY[a] += dy * factor;
+            forceX[b] -= dx * factor;
+            forceY[b] -= dy * factor;
+        }
+        float largestMove = 0;
+        for (int body = 0; body < count; body++) {
+            if (!bodies.free[body]) {
+                continue;
+            }
+            float fx = forceX[body] / bodies.mass[body] - GRAVITY * (bodies.x[body] - bodies.centerX);
+            float fy = forceY[body] / bodies.mass[body] - GRAVITY * (bodies.y[body] - bodies.centerY);
+            float length = (float) Math.sqrt(fx * fx + fy * fy);
+            if (length > 0) {
+                float move = Math.min(length, temperature) / length;
+                bodies.x[body] += fx * move;
+                bodies.y[body] += fy * move;
+                largestMove = Math.max(largestMove, Math.min(length, temperature));
+            }
+        }
+        return largestMove;
+    }
+
+    private void addRepulsion(Bodies bodies, BarnesHutTree tree, float strength, int from, int to, float[] forceX, float[] forceY) {
+        for (int body = from; body < to; body++) {
+            if (bodies.free[body]) {
+                tree.addRepulsion(body, strength, theta, forceX, forceY);
+            }
+        }
+    }
+
+    /**
+     * Standalone nodes and super nodes as bodies with their centers, half sizes and masses, links as edges between bodies.
+     * Links inside a super node do not move anything and are left out.
+     */
+    private static final class Bodies {
+
+        private final List<NetworkNode> nodes;
+        private final List<SuperNode> superNodes;
+        private final int count;
+        private final float[] x;
+        private final float[] y;
+        private final float[] halfWidth;
+        private final float[] halfHeight;
+        private final float[] mass;
+        private final boolean[] free;
+        private int[] edgeA;
+        private int[] edgeB;
+        private int edgeCount;
+        private float centerX;
+        private float centerY;
+
+        private Bodies(List<NetworkNode> nodes, List<SuperNode> superNodes) {
+            this.nodes = nodes;
+            this.superNodes = superNodes;
+            this.count = nodes.size() + superNodes.size();
+            this.x = new float[count];
+            this.y = new float[count];
+            this.halfWidth = new float[count];
+            this.halfHeight = new float[count];
+            this.mass = new float[count];
+            this.free = new boolean[count];
+        }
+
+        static Bodies of(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                         Set<NetworkNode> freeNodes, Set<SuperNode> freeSuperNodes) {
+            Map<String, Integer> bodyOfNode = HashMap.newHashMap(networkNodes.size());
+            for (int i = 0; i < superNodes.size(); i++) {
+                for (NetworkNode member : members(superNodes.get(i))) {
+                    bodyOfNode.put(member.getId(), i);
+                }
+            }
+            List<NetworkNode> standaloneNodes = new ArrayList<>(networkNodes.size());
+            for (NetworkNode node : networkNodes) {
+                if (!bodyOfNode.containsKey(node.getId())) {
+                    bodyOfNode.put(node.getId(), superNodes.size() + standaloneNodes.size());
+                    standaloneNodes.add(node);
+                }
+            }
+            Bodies bodies = new Bodies(standaloneNodes, superNodes);
+            for (int i = 0; i < superNodes.size(); i++) {
+                SuperNode superNode = superNodes.get(i);
+                bodies.sizeSuperNode(i, superNode);
+                bodies.free[i] = freeSuperNodes.contains(superNode);
+            }
+            for (int i = 0; i < standaloneNodes.size(); i++) {
+                NetworkNode node = standaloneNodes.get(i);
+                int body = superNodes.size() + i;
+                bodies.halfWidth[body] = node.getWidth() / 2;
+                bodies.halfHeight[body] = node.getHeight() / 2;
+                bodies.x[body] = node.getX() + bodies.halfWidth[body];
+                bodies.y[body] = node.getY() + bodies.halfHeight[body];
+                bodies.mass[body] = 1;
+                bodies.free[body] = freeNodes.contains(node);
+            }
+            bodies.edgeA = new int[networkLinks.size()];
+            bodies.edgeB = new int[networkLinks.size()];
+            for (NetworkLink link : networkLinks) {
+                Integer a = bodyOfNode.get(link.getSourceNodeId());
+                Integer b = bodyOfNode.get(link.getTargetNodeId());
+                if (a != null && b != null && !a.equals(b)) {
+                    bodies.edgeA[bodies.edgeCount] = a;
+                    bodies.edgeB[bodies.edgeCount] = b;
+                    bodies.edgeCount++;
+                }
+            }
+            return bodies;
+        }
+
+        /**
+         * Estimates the size of the super node with its nodes the way the super node layout places them, without the title
+         */
+        private void sizeSuperNode(int body, SuperNode superNode) {
+            float boxWidth = Math.max(rowWidth(superNode.getTopNodes()), rowWidth(superNode.getBottomNodes())) + 40;
+            float boxHeight = Math.max(columnHeight(superNode.getLeftNodes()), columnHeight(superNode.getRightNodes())) + 40;
+            halfWidth[body] = boxWidth / 2 + Math.max(maxWidth(superNode.getLeftNodes()), maxWidth(superNode.getRightNodes())) + 5;
+            halfHeight[body] = boxHeight / 2 + Math.max(maxHeight(superNode.getTopNodes()), maxHeight(superNode.getBottomNodes())) + 5;
+            x[body] = superNode.getX() + boxWidth / 2;
+            y[body] = superNode.getY() + boxHeight / 2;
+            mass[body] = 1 + members(superNode).size();
+        }
+
+        int freeCount() {
+            int freeCount = 0;
+            for (boolean isFree : free) {
+                freeCount += isFree ? 1 : 0;
+            }
+            return freeCount;
+        }
+
+        /**
+         * Shifts the free bodies together, so none of them is above or left of the document margin
+         */
+        void moveIntoDocument() {
+            float minX = Float.POSITIVE_INFINITY;
+            float minY = Float.POSITIVE_INFINITY;
+            for (int body = 0; body < count; body++) {
+                if (free[body]) {
+                    minX = Math.min(minX, x[body] - halfWidth[body]);
+                    minY = Math.min(minY, y[body] - halfHeight[body]);
+                }
+            }
+            float shiftX = Math.max(0, MARGIN_X - minX);
+            float shiftY = Math.max(0, MARGIN_Y - minY);
+            if (freeCount() == count) {
+                shiftX = MARGIN_X - minX;
+                shiftY = MARGIN_Y - minY;
+            }
+            for (int body = 0; body < count; body++) {
+                if (free[body]) {
+                    x[body] += shiftX;
+                    y[body] += shiftY;
+                }
+            }
+        }
+
+        /**
+         * Writes the positions of the free bodies to the model, nodes of moved super nodes start at the super node
+         */
+        void apply() {
+            for (int i = 0; i < superNodes.size(); i++) {
+                if (free[i]) {
+                    SuperNode superNode = superNodes.get(i);
+                    float boxWidth = Math.max(rowWidth(superNode.getTopNodes()), rowWidth(superNode.getBottomNodes())) + 40;
+                    float boxHeight = Math.max(columnHeight(superNode.getLeftNodes()), columnHeight(superNode.getRightNodes())) + 40;
+                    superNode.setX(Math.round(x[i] - boxWidth / 2));
+                    superNode.setY(Math.round(y[i] - boxHeight / 2));
+                    for (NetworkNode member : members(superNode)) {
+                        member.setX(superNode.getX());
+                        member.setY(superNode.getY());
+                    }
+                }
+            }
+            for (int i = 0; i < nodes.size(); i++) {
+                int body = superNodes.size() + i;
+                if (free[body]) {
+                    nodes.get(i).setX(Math.round(x[body] - halfWidth[body]));
+                    nodes.get(i).setY(Math.round(y[body] - halfHeight[body]));
+                }
+            }
+        }
+
+        private static List<NetworkNode> members(SuperNode superNode) {
+            List<NetworkNode> members = new ArrayList<>(superNode.getTopNodes());
+            members.addAll(superNode.getBottomNodes());
+            members.addAll(superNode.getLeftNodes());
+            members.addAll(superNode.getRightNodes());
+            return members;
+        }
+
+        private static float rowWidth(List<NetworkNode> row) {
+            float width = Math.max(0, row.size() - 1) * 5;
+            for (NetworkNode node : row) {
+                width += node.getWidth();
+            }
+            return width;
+        }
+
+        private static float columnHeight(List<NetworkNode> column) {
+            float height = Math.max(0, column.size() - 1) * 5;
+            for (NetworkNode node : column) {
+                height += node.getHeight();
+            }
+            return height;
+        }
+
+        private static float maxWidth(List<NetworkNode> nodes) {
+            float width = 0;
+            for (NetworkNode node : nodes) {
+                width = Math.max(width, node.getWidth());
+            }
+            return width;
+        }
+
+        private static float maxHeight(List<NetworkNode> nodes) {
+            float height = 0;
+            for (NetworkNode node : nodes) {
+                height = Math.max(height, node.getHeight());
+            }
+            return height;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package pl.mlodawski.networkdiagram.diagrammodule.batchrender;
+
+/**
+ * Outcome of a single diagram of a batch
+ *
+ * @param index       position of the diagram in the request
+ * @param id          id given by the client, may be null
+ * @param status      HTTP status the diagram would get from the single diagram endpoints
+ * @param renderKey   render key of the document, null for errors
+ * @param contentType content type of the body
+ * @param body        SVG document or JSON error
+ */
+public record BatchRenderResult(int index, String id, int status, String renderKey, String contentType, byte[] body) {
+}
@@ -0,0 +1,265 @@
+package pl.mlodawski.networkdiagram.diagrammodule.batchrender;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.JsonInterpreter;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.BatchDiagramItem;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramConfig;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderRejectedException;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderCache;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderKeyFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.languagevalidators.ScriptInterpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Renders batches of diagrams, every diagram on its own virtual thread and drawn behind the {@link RenderBulkhead},
+ * so batches and single diagram requests share the same bound on the concurrent drawings.
+ * Themes are resolved once per batch, diagrams sharing a config or a theme name share the compiled theme.
+ * Every batch keeps at most as many diagrams in flight as the bulkhead draws at once, so a slow client holds only that many documents.
+ * A diagram that cannot be rendered gets an error part, the other diagrams of the batch are not affected.
+ */
+@Service
+@Slf4j
+public class BatchRenderService {
+
+    private static final Pattern ITEM_ID = Pattern.compile("[A-Za-z0-9._:-]{1,128}");
+
+    private final ScriptInterpreter scriptInterpreter;
+    private final JsonInterpreter jsonInterpreter;
+    private final NetworkDrawingService networkDrawingService;
+    private final ThemeRegistry themeRegistry;
+    private final RenderCache renderCache;
+    private final RenderKeyFactory renderKeyFactory;
+    private final ObjectMapper objectMapper;
+    private final RenderBulkhead renderBulkhead;
+    private final ExecutorService renderPool;
+    private final int parallelism;
+    private final int maxItems;
+    private final Timer batchTimer;
+    private final Timer itemTimer;
+    private final Counter failedItems;
+
+    public BatchRenderService(ScriptInterpreter scriptInterpreter, JsonInterpreter jsonInterpreter, NetworkDrawingService networkDrawingService,
+                              ThemeRegistry themeRegistry, RenderCache renderCache, RenderKeyFactory renderKeyFactory,
+                              ObjectMapper objectMapper, RenderBulkhead renderBulkhead, MeterRegistry meterRegistry,
+                              @Value("${diagram.batch.max-items:1000}") int maxItems) {
+        if (maxItems <= 0) {
+            throw new IllegalArgumentException("Batch size limit must be positive");
+        }
+        this.scriptInterpreter = scriptInterpreter;
+        this.jsonInterpreter = jsonInterpreter;
+        this.networkDrawingService = networkDrawingService;
+        this.themeRegistry = themeRegistry;
+        this.renderCache = renderCache;
+        this.renderKeyFactory = renderKeyFactory;
+        this.objectMapper = objectMapper;
+        this.renderBulkhead = renderBulkhead;
+        this.parallelism = renderBulkhead.getMaxConcurrent();
+        this.maxItems = maxItems;
+        this.renderPool = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("diagram-batch-", 0).factory());
+        this.batchTimer = meterRegistry.timer("diagram.batch.render");
+        this.itemTimer = meterRegistry.timer("diagram.batch.item");
+        this.failedItems = meterRegistry.counter("diagram.batch.failures");
+        log.info("Batch rendering of {} diagrams at once, up to {} diagrams per batch", this.parallelism, maxItems);
+    }
+
+    /**
+     * Checks the batch and resolves the themes of its diagrams, call before the response is committed
+     *
+     * @param items diagrams of the batch
+     * @return batch ready to render
+     */
+    public PreparedBatch prepare(List<BatchDiagramItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Batch cannot be empty");
+        }
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("Batch cannot have more than " + maxItems + " diagrams");
+        }
+        BatchThemes themes = new BatchThemes();
+        List<PreparedItem> preparedItems = new ArrayList<>(items.size());
+        for (int index = 0; index < items.size(); index++) {
+            BatchDiagramItem item = items.get(index);
+            if (item == null) {
+                throw new IllegalArgumentException("Batch diagram " + index + " is empty");
+            }
+            if (item.getId() != null && !ITEM_ID.matcher(item.getId()).matches()) {
+                throw new IllegalArgumentException("Invalid id of batch diagram " + index + ": " + item.getId());
+            }
+            try {
+                preparedItems.add(new PreparedItem(index, item, themes.resolve(item), null));
+            } catch (IllegalArgumentException e) {
+                preparedItems.add(new PreparedItem(index, item, null, e));
+            }
+        }
+        return new PreparedBatch(preparedItems);
+    }
+
+    /**
+     * Renders the diagrams of the batch and writes every diagram as soon as it is rendered, in the completion order
+     *
+     * @param batch  prepared batch
+     * @param writer writer of the response body
+     * @throws IOException when the client is gone
+     */
+    public void render(PreparedBatch batch, MultipartBatchWriter writer) throws IOException {
+        long startTime = System.nanoTime();
+        CompletionService<BatchRenderResult> completionService = new ExecutorCompletionService<>(renderPool);
+        List<Future<BatchRenderResult>> inFlight = new ArrayList<>(parallelism);
+        int next = 0;
+        int written = 0;
+        try {
+            while (written < batch.items().size()) {
+                while (next < batch.items().size() && next - written < parallelism) {
+                    PreparedItem item = batch.items().get(next++);
+                    inFlight.add(completionService.submit(() -> renderItem(item)));
+                }
+                Future<BatchRenderResult> done = completionService.take();
+                inFlight.remove(done);
+                writer.write(done.get());
+                written++;
+            }
+            writer.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch rendering interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch diagram failed outside of rendering", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+            batchTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+        log.info("Batch of {} diagrams rendered", batch.items().size());
+    }
+
+    private BatchRenderResult renderItem(PreparedItem item) {
+        if (item.themeError() != null) {
+            return failure(item, HttpStatus.BAD_REQUEST, item.themeError().getMessage());
+        }
+        return itemTimer.record(() -> {
+            try {
+                return renderDocument(item);
+            } catch (IllegalArgumentException e) {
+                return failure(item, HttpStatus.BAD_REQUEST, e.getMessage());
+            } catch (RenderRejectedException e) {
+                return failure(item, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("Batch diagram {} failed", item.index(), e);
+                return failure(item, HttpStatus.INTERNAL_SERVER_ERROR, "Diagram could not be rendered");
+            }
+        });
+    }
+
+    private BatchRenderResult renderDocument(PreparedItem item) {
+        BatchDiagramItem diagram = item.diagram();
+        if ((diagram.getCommand() == null) == (diagram.getScript() == null)) {
+            throw new IllegalArgumentException("Batch diagram needs either a command or a script");
+        }
+        String renderKey = diagram.getCommand() != null
+                ? renderKeyFactory.forCommand(diagram.getCommand(), item.theme())
+                : renderKeyFactory.forScript(diagram.getScript(), item.theme());
+        byte[] document = renderCache.get(renderKey);
+        if (document == null) {
+            List<NetworkNode> networkNodes = new ArrayList<>();
+            List<SuperNode> superNodes = new ArrayList<>();
+            List<NetworkLink> networkLinks = new ArrayList<>();
+            if (diagram.getCommand() != null) {
+                jsonInterpreter.interpretJson(diagram.getCommand(), networkNodes, superNodes, networkLinks);
+            } else {
+                scriptInterpreter.interpretScript(diagram.getScript(), networkNodes, superNodes, networkLinks);
+            }
+            ByteArrayOutputStream svg = new ByteArrayOutputStream(16384);
+            renderBulkhead.run(() -> networkDrawingService.drawDocument(networkNodes, superNodes, networkLinks, item.theme(), new SvgDocumentWriter(svg)));
+            document = svg.toByteArray();
+            renderCache.put(renderKey, document);
+        }
+        return new BatchRenderResult(item.index(), diagram.getId(), HttpStatus.OK.value(), renderKey, MultipartBatchWriter.SVG_CONTENT_TYPE, document);
+    }
+
+    private BatchRenderResult failure(PreparedItem item, HttpStatus status, String message) {
+        failedItems.increment();
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("status", status.value());
+        error.put("error", status.getReasonPhrase());
+        error.put("message", message);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(error);
+        } catch (JsonProcessingException e) {
+            body = ("{\"status\":" + status.value() + "}").getBytes(StandardCharsets.UTF_8);
+        }
+        return new BatchRenderResult(item.index(), item.diagram().getId(), status.value(), null, MultipartBatchWriter.ERROR_CONTENT_TYPE, body);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renderPool.shutdownNow();
+    }
+
+    /**
+     * Diagrams of a batch with their resolved themes
+     */
+    public record PreparedBatch(List<PreparedItem> items) {
+    }
+
+    /**
+     * @param index      position of the diagram in the request
+     * @param diagram    diagram of the request
+     * @param theme      resolved theme, null when it could not be resolved
+     * @param themeError why the theme could not be resolved
+     */
+    record PreparedItem(int index, BatchDiagramItem diagram, RenderTheme theme, IllegalArgumentException themeError) {
+    }
+
+    /**
+     * Themes of a single batch, every theme name and config is resolved or compiled once, a missing config is a null key
+     */
+    private final class BatchThemes {
+
+        private final Map<String, RenderTheme> byReference = new HashMap<>();
+        private final Map<DiagramConfig, RenderTheme> byConfig = new HashMap<>();
+
+        RenderTheme resolve(BatchDiagramItem item) {
+            String reference = item.getCommand() != null ? item.getCommand().getTheme() : item.getTheme();
+            if (reference != null) {
+                return byReference.computeIfAbsent(reference, themeRegistry::resolve);
+            }
+            if (item.getCommand() != null) {
+                return byConfig.computeIfAbsent(item.getCommand().getDiagramConfig(), themeRegistry::compile);
+            }
+            return themeRegistry.defaultTheme();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package pl.mlodawski.networkdiagram.diagrammodule.batchrender;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Writes the rendered diagrams of a batch as the parts of a multipart/mixed body.
+ * Every part carries its length, so clients can read the parts without scanning for the boundary.
+ */
+public class MultipartBatchWriter {
+
+    static final String SVG_CONTENT_TYPE = "image/svg+xml";
+    static final String ERROR_CONTENT_TYPE = "application/json";
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final OutputStream outputStream;
+    private final String boundary;
+
+    public MultipartBatchWriter(OutputStream outputStream, String boundary) {
+        this.outputStream = outputStream;
+        this.boundary = boundary;
+    }
+
+    /**
+     * @return random boundary, it cannot appear in the SVG or JSON parts
+     */
+    public static String newBoundary() {
+        return "diagram-batch-" + UUID.randomUUID();
+    }
+
+    /**
+     * @param boundary boundary of the parts
+     * @return content type of the response body
+     */
+    public static String contentType(String boundary) {
+        return "multipart/mixed;boundary=" + boundary;
+    }
+
+    /**
+     * Writes the part and flushes it to the client
+     *
+     * @param result rendered diagram or error
+     * @throws IOException when the client is gone
+     */
+    public void write(BatchRenderResult result) throws IOException {
+        StringBuilder headers = new StringBuilder(256)
+                .append("--").append(boundary).append("\r\n")
+                .append("Content-Type: ").append(result.contentType()).append("\r\n")
+                .append("X-Diagram-Index: ").append(result.index()).append("\r\n");
+        if (result.id() != null) {
+            headers.append("X-Diagram-Id: ").append(result.id()).append("\r\n");
+        }
+        headers.append("X-Diagram-Status: ").append(result.status()).append("\r\n");
+        if (result.renderKey() != null) {
+            headers.append("ETag: \"").append(result.renderKey()).append("\"\r\n");
+        }
+        headers.append("Content-Length: ").append(result.body().length).append("\r\n\r\n");
+        outputStream.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+        outputStream.write(result.body());
+        outputStream.write(CRLF);
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the closing boundary
+     *
+     * @throws IOException when the client is gone
+     */
+    public void close() throws IOException {
+        outputStream.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush();
+    }
+}
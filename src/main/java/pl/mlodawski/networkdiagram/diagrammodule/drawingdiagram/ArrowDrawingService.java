@@ -1,8 +1,8 @@
 package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
 
 
-import org.jfree.svg.SVGGraphics2D;
 import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
 
 import java.awt.*;
 import java.awt.geom.Path2D;
@@ -12,12 +12,16 @@ import java.awt.geom.Point2D;
 @Service
  class ArrowDrawingService {
 
+    static final float ARROW_LENGTH = 12.0f;
+    static final float ARROW_WIDTH = 8.0f;
+    static final float TRUNK_WIDTH = 4.0f;
+
     private  final BasicStroke STROKE = new BasicStroke(1);
 
 
     /**
      * Draws an arrow between two points
-     * @param svgGraphics2D - SVGGraphics2D object
+     * @param svgCanvas - canvas to draw on
      * @param x1 - x coordinate of the first point
      * @param y1 - y coordinate of the first point
      * @param x2 - x coordinate of the second point
@@ -25,34 +29,57 @@ import java.awt.geom.Point2D;
      * @param lineColor - color of the arrow
      * @param borderColor - color of the border
      */
-    public void drawArrow(SVGGraphics2D svgGraphics2D, float x1, float y1, float x2, float y2, Color lineColor, Color borderColor) {
-        validateArguments(svgGraphics2D, x1, y1, x2, y2, lineColor);
+    public void drawArrow(SvgCanvas svgCanvas, float x1, float y1, float x2, float y2, Color lineColor, Color borderColor) {
+        validateArguments(svgCanvas, x1, y1, x2, y2, lineColor);
         float angle = calculateAngle(x1, y1, x2, y2);
-        if (svgGraphics2D == null || lineColor == null || borderColor == null) {
+        if (svgCanvas == null || lineColor == null || borderColor == null) {
             throw new IllegalArgumentException("Invalid argument provided");
         }
         if (x1 < 0 || y1 < 0 || x2 < 0 || y2 < 0) {
             throw new IllegalArgumentException("Coordinates cannot be negative");
         }
+        if (drawInstancedArrow(svgCanvas, x1, y1, x2, y2, angle, lineColor)) {
+            return;
+        }
         Point2D.Float arrowTip = calculateArrowTip(x2, y2, angle);
         Point2D.Float[] basePoints = calculateBasePoints(arrowTip.x, arrowTip.y, angle);
         Point2D.Float[] trunkPoints = calculateTrunkPoints(x1, y1, angle, arrowTip.x, arrowTip.y);
 
         Path2D.Float arrowPath = buildArrowPath(trunkPoints, basePoints, x2, y2);
-        drawArrow(svgGraphics2D, arrowPath, lineColor,borderColor);
+        drawArrow(svgCanvas, arrowPath, lineColor,borderColor);
+    }
+
+    /**
+     * Draws the arrow as instances of the trunk and head shapes from the document defs
+     * @param svgCanvas - canvas to draw on
+     * @param x1 - x coordinate of the first point
+     * @param y1 - y coordinate of the first point
+     * @param x2 - x coordinate of the second point
+     * @param y2 - y coordinate of the second point
+     * @param angle - angle between two points
+     * @param lineColor - color of the arrow
+     * @return false if the canvas does not support instancing
+     */
+    private boolean drawInstancedArrow(SvgCanvas svgCanvas, float x1, float y1, float x2, float y2, float angle, Color lineColor) {
+        float rotation = (float) Math.toDegrees(angle);
+        float trunkLength = (float) Math.hypot(x2 - x1, y2 - y1) - ARROW_LENGTH;
+        if (trunkLength > 0 && !svgCanvas.useShape(InstancedShapes.ARROW_TRUNK, x1, y1, rotation, trunkLength, 1.0f, lineColor)) {
+            return false;
+        }
+        return svgCanvas.useShape(InstancedShapes.ARROW_HEAD, x2, y2, rotation, 1.0f, 1.0f, lineColor);
     }
 
     /**
      * Validates arguments
-     * @param svgGraphics2D - SVGGraphics2D object
+     * @param svgCanvas - canvas to draw on
      * @param x1 - x coordinate of the first point
      * @param y1 - y coordinate of the first point
      * @param x2 - x coordinate of the second point
      * @param y2 - y coordinate of the second point
      * @param lineColor - color of the arrow
      */
-    private void validateArguments(SVGGraphics2D svgGraphics2D, float x1, float y1, float x2, float y2, Color lineColor) {
-        if (svgGraphics2D == null || lineColor == null) {
+    private void validateArguments(SvgCanvas svgCanvas, float x1, float y1, float x2, float y2, Color lineColor) {
+        if (svgCanvas == null || lineColor == null) {
             if(x1 < 0 || y1 < 0 || x2 < 0 || y2 < 0)
                 throw new IllegalArgumentException("Coordinates cannot be negative");
             throw new IllegalArgumentException("Arguments cannot be null");
@@ -81,7 +108,6 @@ import java.awt.geom.Point2D;
      * @return arrow tip
      */
     private Point2D.Float calculateArrowTip(float x2, float y2, float angle) {
-        float ARROW_LENGTH = 12.0f;
         return new Point.Float(
                 x2 - ARROW_LENGTH * (float) Math.cos(angle),
                 y2 - ARROW_LENGTH * (float) Math.sin(angle)
@@ -96,7 +122,6 @@ import java.awt.geom.Point2D;
      * @return base points
      */
     Point2D.Float[] calculateBasePoints(float ax, float ay, float angle) {
-        float ARROW_WIDTH = 8.0f;
         return new Point2D.Float[]{
                 new Point.Float(ax - ARROW_WIDTH * (float) Math.sin(angle), ay + ARROW_WIDTH * (float) Math.cos(angle)),
                 new Point.Float(ax + ARROW_WIDTH * (float) Math.sin(angle), ay - ARROW_WIDTH * (float) Math.cos(angle))
@@ -113,7 +138,6 @@ import java.awt.geom.Point2D;
      * @return trunk points
      */
     Point2D.Float[] calculateTrunkPoints(float x1, float y1, float angle, float ax, float ay) {
-        float TRUNK_WIDTH = 4.0f;
         return new Point2D.Float[]{
                 new Point.Float(x1 - TRUNK_WIDTH * (float) Math.sin(angle), y1 + TRUNK_WIDTH * (float) Math.cos(angle)),
                 new Point.Float(x1 + TRUNK_WIDTH * (float) Math.sin(angle), y1 - TRUNK_WIDTH * (float) Math.cos(angle)),
@@ -145,16 +169,16 @@ import java.awt.geom.Point2D;
 
     /**
      * Draws arrow
-     * @param svgGraphics2D - SVGGraphics2D object
+     * @param svgCanvas - canvas to draw on
      * @param arrowPath - arrow path
      * @param lineColor - color of the arrow
      * @param borderColor - color of the border
      */
-    private void drawArrow(SVGGraphics2D svgGraphics2D, Path2D.Float arrowPath, Color lineColor, Color borderColor) {
-        svgGraphics2D.setPaint(lineColor);
-        svgGraphics2D.fill(arrowPath);
-        svgGraphics2D.setStroke(STROKE);
-        svgGraphics2D.setPaint(borderColor);
-        svgGraphics2D.draw(arrowPath);
+    private void drawArrow(SvgCanvas svgCanvas, Path2D.Float arrowPath, Color lineColor, Color borderColor) {
+        svgCanvas.setPaint(lineColor);
+        svgCanvas.fill(arrowPath);
+        svgCanvas.setStroke(STROKE);
+        svgCanvas.setPaint(borderColor);
+        svgCanvas.draw(arrowPath);
     }
 }
\ No newline at end of file
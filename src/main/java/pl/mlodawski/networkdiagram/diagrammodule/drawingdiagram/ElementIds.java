@@ -0,0 +1,142 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DiagramModel;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Ids of the drawn elements, derived from the model so the same diagram always gets the same ids.
+ * Model ids are encoded to letters and digits, any other byte of the UTF-8 form is written as _xx,
+ * so the ids are unique, valid XML names and usable in CSS selectors without escaping.
+ * Links are identified by their ends, repeated links between the same nodes get the occurrence number appended.
+ */
+public final class ElementIds {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ElementIds() {
+    }
+
+    /**
+     * @param nodeId id of the node
+     * @return id of the node group, null if the node has no id
+     */
+    public static String node(String nodeId) {
+        return nodeId == null ? null : encoded("n-", nodeId).toString();
+    }
+
+    /**
+     * @param superNodeId id of the super node
+     * @return id of the super node group, null if the super node has no id
+     */
+    public static String superNode(String superNodeId) {
+        return superNodeId == null ? null : encoded("s-", superNodeId).toString();
+    }
+
+    /**
+     * @param sourceNodeId id of the source node
+     * @param targetNodeId id of the target node
+     * @param occurrence   number of the link between the same nodes, starting with 1
+     * @return id of the link group
+     */
+    public static String link(String sourceNodeId, String targetNodeId, int occurrence) {
+        StringBuilder id = encoded("l-", String.valueOf(sourceNodeId));
+        id.append('-');
+        appendEncoded(id, String.valueOf(targetNodeId));
+        if (occurrence > 1) {
+            id.append('-').append(occurrence);
+        }
+        return id.toString();
+    }
+
+    /**
+     * @param links links in the drawing order
+     * @return ids of the links in the order of the links
+     */
+    public static String[] links(List<NetworkLink> links) {
+        return links(links.size(), i -> links.get(i).getSourceNodeId(), i -> links.get(i).getTargetNodeId());
+    }
+
+    /**
+     * @param model diagram with the links in the drawing order
+     * @return ids of the links in the order of the links
+     */
+    public static String[] links(DiagramModel model) {
+        return links(model.linkCount(), model::linkSourceId, model::linkTargetId);
+    }
+
+    private static String[] links(int count, IntFunction<String> sourceNodeIds, IntFunction<String> targetNodeIds) {
+        String[] ids = new String[count];
+        Map<String, Integer> occurrences = HashMap.newHashMap(count);
+        for (int i = 0; i < count; i++) {
+            String id = link(sourceNodeIds.apply(i), targetNodeIds.apply(i), 1);
+            int occurrence = occurrences.merge(id, 1, Integer::sum);
+            ids[i] = occurrence == 1 ? id : id + '-' + occurrence;
+        }
+        return ids;
+    }
+
+    /**
+     * @param linkId id of the link
+     * @return id of the arrow from the source node, filled with the color of the outgoing traffic
+     */
+    public static String outgoingArrow(String linkId) {
+        return linkId == null ? null : linkId + "-out";
+    }
+
+    /**
+     * @param linkId id of the link
+     * @return id of the arrow from the target node, filled with the color of the incoming traffic
+     */
+    public static String incomingArrow(String linkId) {
+        return linkId == null ? null : linkId + "-in";
+    }
+
+    /**
+     * @param linkId id of the link
+     * @return id of the text of the outgoing traffic label
+     */
+    public static String outgoingLabel(String linkId) {
+        return linkId == null ? null : linkId + "-out-label";
+    }
+
+    /**
+     * @param linkId id of the link
+     * @return id of the text of the incoming traffic label
+     */
+    public static String incomingLabel(String linkId) {
+        return linkId == null ? null : linkId + "-in-label";
+    }
+
+    private static StringBuilder encoded(String prefix, String modelId) {
+        StringBuilder id = new StringBuilder(prefix.length() + modelId.length() + 8);
+        id.append(prefix);
+        appendEncoded(id, modelId);
+        return id;
+    }
+
+    private static void appendEncoded(StringBuilder out, String modelId) {
+        for (int i = 0; i < modelId.length(); i++) {
+            char c = modelId.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendByte(out, c);
+            } else {
+                for (byte b : modelId.substring(i, i + Character.charCount(modelId.codePointAt(i))).getBytes(StandardCharsets.UTF_8)) {
+                    appendByte(out, b);
+                }
+                i += Character.charCount(modelId.codePointAt(i)) - 1;
+            }
+        }
+    }
+
+    private static void appendByte(StringBuilder out, int b) {
+        out.append('_').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+}
@@ -0,0 +1,64 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+/**
+ * Shapes written once in the document defs when instancing is enabled, elements reference them with use.
+ * Boxes are unit squares scaled to the element size, the strokes do not scale with them.
+ */
+final class InstancedShapes {
+
+    static final String NODE_BOX = "_node";
+    static final String SUPER_NODE_BOX = "_super";
+    static final String LABEL_BOX = "_label";
+    static final String ARROW_HEAD = "_head";
+    static final String ARROW_TRUNK = "_trunk";
+    static final String SUPER_NODE_SYMBOL_PREFIX = "_sn";
+
+    private InstancedShapes() {
+    }
+
+    /**
+     * Appends the defs with the shared shapes
+     *
+     * @param out   output buffer
+     * @param theme compiled document style
+     */
+    static void appendDefs(StringBuilder out, RenderTheme theme) {
+        out.append("<defs>");
+        appendBox(out, NODE_BOX, theme, 1);
+        appendBox(out, SUPER_NODE_BOX, theme, 2);
+        appendBox(out, LABEL_BOX, theme, 1);
+        int head = (int) ArrowDrawingService.ARROW_LENGTH;
+        int headWidth = (int) ArrowDrawingService.ARROW_WIDTH;
+        int trunkWidth = (int) ArrowDrawingService.TRUNK_WIDTH;
+        out.append("<path id=\"").append(ARROW_HEAD).append("\" d=\"M-").append(head).append(" -").append(trunkWidth)
+                .append("L-").append(head).append(" -").append(headWidth)
+                .append("L0 0L-").append(head).append(' ').append(headWidth)
+                .append("L-").append(head).append(' ').append(trunkWidth).append('"');
+        appendStroke(out, theme, 1);
+        out.append("<path id=\"").append(ARROW_TRUNK).append("\" d=\"M1 -").append(trunkWidth)
+                .append("L0 -").append(trunkWidth).append("L0 ").append(trunkWidth).append("L1 ").append(trunkWidth).append('"');
+        appendStroke(out, theme, 1);
+        out.append("</defs>\n");
+    }
+
+    /**
+     * @param index index of the distinct super node structure
+     * @return id of the super node symbol
+     */
+    static String superNodeSymbol(int index) {
+        return SUPER_NODE_SYMBOL_PREFIX + index;
+    }
+
+    private static void appendBox(StringBuilder out, String id, RenderTheme theme, int strokeWidth) {
+        out.append("<path id=\"").append(id).append("\" d=\"M0 0H1V1H0Z\" fill=\"").append(theme.getNodeHex()).append('"');
+        appendStroke(out, theme, strokeWidth);
+    }
+
+    private static void appendStroke(StringBuilder out, RenderTheme theme, int strokeWidth) {
+        out.append(" stroke=\"").append(theme.getBorderHex())
+                .append("\" stroke-width=\"").append(strokeWidth)
+                .append("\" vector-effect=\"non-scaling-stroke\"/>");
+    }
+}
@@ -0,0 +1,20 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Colors and labels of a drawn link, enough for a client to update the link in place.
+ * The arrows and label texts are found by the ids derived from the link id with {@link ElementIds}.
+ *
+ * @param id             id of the link
+ * @param outgoingFill   fill of the arrow from the source node
+ * @param incomingFill   fill of the arrow from the target node
+ * @param outgoingLabel  text of the outgoing traffic label
+ * @param incomingLabel  text of the incoming traffic label
+ */
+public record LinkDelta(@JsonProperty("id") String id,
+                        @JsonProperty("out") String outgoingFill,
+                        @JsonProperty("in") String incomingFill,
+                        @JsonProperty("outLabel") String outgoingLabel,
+                        @JsonProperty("inLabel") String incomingLabel) {
+}
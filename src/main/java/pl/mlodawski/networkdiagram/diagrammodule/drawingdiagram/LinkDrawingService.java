@@ -1,16 +1,15 @@
 package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
 
 import lombok.AllArgsConstructor;
-import org.jfree.svg.SVGGraphics2D;
 import org.springframework.stereotype.Service;
-import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.LinkColorizes;
-import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.PaletteTable;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
-import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
-import java.util.List;
 
 @Service
 @AllArgsConstructor
@@ -18,130 +17,161 @@ class LinkDrawingService {
 
     private final int PADDING = 2;
 
-    private final NetworkNodeUtilsService networkNodeUtilsService;
     private final ArrowDrawingService arrowDrawingService;
 
 
     /**
-     * Draws a link between two nodes.
+     * Draws a link with resolved ends from its traffic, the arrows and the label texts get ids derived from the link id.
      *
-     * @param svgGraphics2D SVG graphics object
-     * @param link          link to be drawn
-     * @param nodes         list of all nodes
-     * @param sourcePoint   source point
-     * @param targetPoint   target point
-     * @param documentStyle document style
+     * @param svgCanvas       canvas to draw on
+     * @param outgoingTraffic traffic from the source node
+     * @param incomingTraffic traffic from the target node
+     * @param linkId          id of the link from {@link ElementIds}, null to draw without ids
+     * @param sourcePoint     source point
+     * @param targetPoint     target point
+     * @param theme           compiled document style
      */
-    public void drawLink(SVGGraphics2D svgGraphics2D, NetworkLink link, List<NetworkNode> nodes, Point2D.Float sourcePoint, Point2D.Float targetPoint, DocumentStyle documentStyle) {
+    public void drawLink(SvgCanvas svgCanvas, float outgoingTraffic, float incomingTraffic, String linkId, Point2D.Float sourcePoint, Point2D.Float targetPoint, RenderTheme theme) {
+        PaletteTable paletteTable = theme.getLinkPalette();
 
-        LinkColorizes linkColorizes = new LinkColorizes(documentStyle.linkPalette());
+        int outgoingTrafficPercentage = (int) outgoingTraffic;
+        int incomingTrafficPercentage = (int) incomingTraffic;
 
-        NetworkNode sourceNode = networkNodeUtilsService.findNodeById(nodes, link.getSourceNodeId());
-        NetworkNode targetNode = networkNodeUtilsService.findNodeById(nodes, link.getTargetNodeId());
+        Color outgoingLinkColor = paletteTable.getColor(outgoingTraffic);
+        Color incomingLinkColor = paletteTable.getColor(incomingTraffic);
 
-        if (sourceNode == null || targetNode == null) {
-            return;
-        }
-
-        int outgoingTrafficPercentage = (int) link.getOutgoingTraffic();
-        int incomingTrafficPercentage = (int) link.getIncomingTraffic();
-
-        Color outgoingLinkColor = linkColorizes.getLinkColor(outgoingTrafficPercentage);
-        Color incomingLinkColor = linkColorizes.getLinkColor(incomingTrafficPercentage);
-
-        int STROKE_WIDTH = 3;
-        svgGraphics2D.setStroke(new BasicStroke(STROKE_WIDTH));
+        svgCanvas.setStroke(theme.getLinkStroke());
 
         Point2D.Float midPoint = calculateMidPointOffset(sourcePoint, targetPoint);
 
-        drawArrow(svgGraphics2D, sourcePoint, midPoint, outgoingLinkColor, Color.decode(documentStyle.borderColor()));
-        drawArrow(svgGraphics2D, targetPoint, midPoint, incomingLinkColor, Color.decode(documentStyle.borderColor()));
+        drawArrow(svgCanvas, ElementIds.outgoingArrow(linkId), sourcePoint, midPoint, outgoingLinkColor, theme.getBorderColor());
+        drawArrow(svgCanvas, ElementIds.incomingArrow(linkId), targetPoint, midPoint, incomingLinkColor, theme.getBorderColor());
 
-        drawTrafficLabels(svgGraphics2D, sourcePoint, midPoint, outgoingTrafficPercentage, documentStyle);
-        drawTrafficLabels(svgGraphics2D, targetPoint, midPoint, incomingTrafficPercentage, documentStyle);
+        drawTrafficLabels(svgCanvas, ElementIds.outgoingLabel(linkId), sourcePoint, midPoint, outgoingTrafficPercentage, theme);
+        drawTrafficLabels(svgCanvas, ElementIds.incomingLabel(linkId), targetPoint, midPoint, incomingTrafficPercentage, theme);
+    }
+
+    /**
+     * Describes how the link would be drawn, with the same colors and labels as {@link #drawLink}, without drawing it.
+     *
+     * @param link          link
+     * @param linkId        id of the link from {@link ElementIds}
+     * @param theme         compiled document style
+     * @return fills of the arrows and texts of the labels
+     */
+    public LinkDelta describeLink(NetworkLink link, String linkId, RenderTheme theme) {
+        PaletteTable paletteTable = theme.getLinkPalette();
+        return new LinkDelta(linkId,
+                paletteTable.getHexColor(link.getOutgoingTraffic()),
+                paletteTable.getHexColor(link.getIncomingTraffic()),
+                TextMetricsCache.percentLabel((int) link.getOutgoingTraffic()),
+                TextMetricsCache.percentLabel((int) link.getIncomingTraffic()));
     }
 
     /**
      * Draws an arrow between two points.
      *
-     * @param svgGraphics2D SVG graphics object
+     * The id goes on the group of the instanced shapes, or on the filled path when the arrow is drawn directly,
+     * either way the element carrying the fill.
+     *
+     * @param svgCanvas     canvas to draw on
+     * @param id            id of the arrow, may be null
      * @param start         start point
      * @param end           end point
      * @param color         arrow color
      * @param borderColor   arrow border color
      */
-    private void drawArrow(SVGGraphics2D svgGraphics2D, Point2D.Float start, Point2D.Float end, Color color, Color borderColor) {
-        svgGraphics2D.setPaint(color);
-        arrowDrawingService.drawArrow(svgGraphics2D, start.x, start.y, end.x, end.y, color, borderColor);
+    private void drawArrow(SvgCanvas svgCanvas, String id, Point2D.Float start, Point2D.Float end, Color color, Color borderColor) {
+        boolean grouped = id != null && svgCanvas.openShapeGroup(id, color);
+        if (!grouped) {
+            svgCanvas.setElementId(id);
+        }
+        svgCanvas.setPaint(color);
+        arrowDrawingService.drawArrow(svgCanvas, start.x, start.y, end.x, end.y, color, borderColor);
+        if (grouped) {
+            svgCanvas.closeGroup();
+        }
     }
 
     /**
      * Draws a label with traffic percentage.
      *
-     * @param svgGraphics2D SVG graphics object
+     * @param svgCanvas     canvas to draw on
      * @param start         start point
      * @param end           end point
      * @param percentage    traffic percentage
-     * @param documentStyle document style
+     * @param theme         compiled document style
      */
-    public void drawTrafficLabels(SVGGraphics2D svgGraphics2D, Point2D.Float start, Point2D.Float end, int percentage, DocumentStyle documentStyle) {
-        int fontStyle = documentStyle.fontStyle().getValue();
-        if ((fontStyle & ~(Font.PLAIN | Font.BOLD | Font.ITALIC)) != 0) {
-            fontStyle = Font.PLAIN;
-        }
+    public void drawTrafficLabels(SvgCanvas svgCanvas, Point2D.Float start, Point2D.Float end, int percentage, RenderTheme theme) {
+        drawTrafficLabels(svgCanvas, null, start, end, percentage, theme);
+    }
 
-        Font font = new Font(documentStyle.font(), fontStyle, documentStyle.fontSize());
-        svgGraphics2D.setFont(font);
-        FontMetrics fm = svgGraphics2D.getFontMetrics();
-        int textWidth = fm.stringWidth(percentage + "%");
-        int textHeight = fm.getAscent() - fm.getDescent();
+    /**
+     * Draws a label with traffic percentage, the text gets the id.
+     *
+     * @param svgCanvas     canvas to draw on
+     * @param textId        id of the label text, may be null
+     * @param start         start point
+     * @param end           end point
+     * @param percentage    traffic percentage
+     * @param theme         compiled document style
+     */
+    public void drawTrafficLabels(SvgCanvas svgCanvas, String textId, Point2D.Float start, Point2D.Float end, int percentage, RenderTheme theme) {
+        TextMetricsCache.FontTextMetrics metrics = theme.getTextFont();
+        svgCanvas.setFont(metrics.getFont());
+        int textWidth = metrics.percentLabelWidth(percentage);
+        int textHeight = metrics.getTextHeight();
         Point2D.Float labelPoint = new Point2D.Float((start.x + end.x - textWidth) / 2, (start.y + end.y + textHeight) / 2);
 
-        drawLabelBackground(svgGraphics2D, labelPoint, textWidth, textHeight, Color.decode(documentStyle.nodeColor()));
-        drawLabelBorder(svgGraphics2D, labelPoint, textWidth, textHeight, Color.decode(documentStyle.borderColor()));
-        drawLabelText(svgGraphics2D, labelPoint, percentage + "%", Color.decode(documentStyle.fontColor()));
+        if (!svgCanvas.useShape(InstancedShapes.LABEL_BOX, (int) labelPoint.x - PADDING, (int) labelPoint.y - textHeight - PADDING, 0.0f,
+                textWidth + 2 * PADDING, textHeight + 2 * PADDING, null)) {
+            drawLabelBackground(svgCanvas, labelPoint, textWidth, textHeight, theme.getNodeColor());
+            drawLabelBorder(svgCanvas, labelPoint, textWidth, textHeight, theme.getBorderColor());
+        }
+        svgCanvas.setElementId(textId);
+        drawLabelText(svgCanvas, labelPoint, TextMetricsCache.percentLabel(percentage), theme.getFontColor());
     }
 
 
     /**
      * Draws a label border.
      *
-     * @param svgGraphics2D SVG graphics object
+     * @param svgCanvas     canvas to draw on
      * @param point         point
      * @param textWidth     text width
      * @param textHeight    text height
      * @param color         border color
      */
-    private void drawLabelBorder(SVGGraphics2D svgGraphics2D, Point2D.Float point, int textWidth, int textHeight, Color color) {
-        svgGraphics2D.setPaint(color);
-        svgGraphics2D.drawRect((int) point.x - PADDING, (int) point.y - textHeight - PADDING, textWidth + 2 * PADDING, textHeight + 2 * PADDING);
+    private void drawLabelBorder(SvgCanvas svgCanvas, Point2D.Float point, int textWidth, int textHeight, Color color) {
+        svgCanvas.setPaint(color);
+        svgCanvas.drawRect((int) point.x - PADDING, (int) point.y - textHeight - PADDING, textWidth + 2 * PADDING, textHeight + 2 * PADDING);
     }
 
     /**
      * Draws a label background.
      *
-     * @param svgGraphics2D SVG graphics object
+     * @param svgCanvas     canvas to draw on
      * @param point         point
      * @param textWidth     text width
      * @param textHeight    text height
      * @param color         background color
      */
-    private void drawLabelBackground(SVGGraphics2D svgGraphics2D, Point2D.Float point, int textWidth, int textHeight, Color color) {
-        svgGraphics2D.setPaint(color);
-        svgGraphics2D.fillRect((int) point.x - PADDING, (int) point.y - textHeight - PADDING, textWidth + 2 * PADDING, textHeight + 2 * PADDING);
+    private void drawLabelBackground(SvgCanvas svgCanvas, Point2D.Float point, int textWidth, int textHeight, Color color) {
+        svgCanvas.setPaint(color);
+        svgCanvas.fillRect((int) point.x - PADDING, (int) point.y - textHeight - PADDING, textWidth + 2 * PADDING, textHeight + 2 * PADDING);
     }
 
     /**
      * Draws a label text.
      *
-     * @param svgGraphics2D SVG graphics object
+     * @param svgCanvas     canvas to draw on
      * @param point         point
      * @param text          text
      * @param color         text color
      */
-    private void drawLabelText(SVGGraphics2D svgGraphics2D, Point2D.Float point, String text, Color color) {
-        svgGraphics2D.setPaint(color);
-        svgGraphics2D.drawString(text, point.x, point.y);
+    private void drawLabelText(SvgCanvas svgCanvas, Point2D.Float point, String text, Color color) {
+        svgCanvas.setPaint(color);
+        svgCanvas.drawString(text, point.x, point.y);
     }
 
 
@@ -2,161 +2,473 @@ package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jfree.svg.SVGGraphics2D;
 import org.springframework.stereotype.Service;
 
 
-import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.LinkColorStrategy;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.PaletteTable;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.*;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineStage;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.StreamingSvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
 
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @AllArgsConstructor
 @Slf4j
 public class NetworkDrawingService {
     private static final float OFFSET = 5.0f;
-    private final NetworkNodeUtilsService networkNodeUtilsService;
     private final NodeDrawingService nodeDrawer;
 
     private final SuperNodeDrawingService superNodeDrawingService;
 
     private final LinkDrawingService linkDrawingService;
 
+    private final SvgCanvasFactory svgCanvasFactory;
+
+    private final ParallelFragmentRenderer fragmentRenderer;
+
+    private final PipelineMetrics pipelineMetrics;
 
 
     /**
      * Draws network.
      *
-     * @param networkNodes  - nodes
-     * @param superNodes    - super nodes
-     * @param networkLinks  - links
-     * @param documentStyle - document style
-     * @return SVG content
+     * @param networkNodes   - nodes
+     * @param superNodes     - super nodes
+     * @param networkLinks   - links
+     * @param theme          - compiled document style
+     * @param documentWriter - writer the SVG content is streamed to
      */
-    public StringBuilder drawDocument(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, DocumentStyle documentStyle) {
-        List<String> superNodeContents = calculateAndDrawSuperNodes(superNodes, documentStyle);
-        DocumentDimensions dimensions = calculateDocumentDimensions(networkNodes, superNodes);
-        StringBuilder linksSvgContent = drawNetworkLinks(networkLinks, networkNodes, documentStyle);
-        StringBuilder nodesSvgContent = drawNetworkNodes(networkNodes, documentStyle);
-        StringBuilder legendSvgContent = drawLegend(documentStyle, dimensions);
-        StringBuilder titleSvgContent = drawTitle(documentStyle, dimensions);
-        return parseDocument(dimensions, linksSvgContent, nodesSvgContent, new StringBuilder(String.join("", superNodeContents)), legendSvgContent, titleSvgContent, documentStyle.bgColor());
+    public void drawDocument(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme, SvgDocumentWriter documentWriter) {
+        drawDocument(prepareModel(networkNodes, superNodes, networkLinks, theme), superNodes, theme, documentWriter);
     }
 
+    /**
+     * Draws network from its columnar model, super nodes have to be laid out before the model is created, see {@link #prepareModel}.
+     * Links and nodes are read by index, so drawing them allocates no model objects.
+     *
+     * @param model          - nodes and links
+     * @param superNodes     - laid out super nodes
+     * @param theme          - compiled document style
+     * @param documentWriter - writer the SVG content is streamed to
+     */
+    public void drawDocument(DiagramModel model, List<SuperNode> superNodes, RenderTheme theme, SvgDocumentWriter documentWriter) {
+        String[] linkIds = ElementIds.links(model);
+        boolean membersInSymbols = svgCanvasFactory.getRenderMode().isInstancing();
+        drawDocument(calculateDocumentDimensions(model, superNodes), superNodes, theme, documentWriter,
+                svgCanvas -> fragmentRenderer.render(model.linkCount(), LinkPoints::new,
+                        (canvas, points, link) -> drawNetworkLink(canvas, model, link, linkIds[link], points, theme), svgCanvas, documentWriter),
+                svgCanvas -> fragmentRenderer.render(model.nodeCount(), () -> null, (canvas, cursor, node) -> {
+                    if (!membersInSymbols || !model.isSuperNodeMember(node)) {
+                        drawNetworkNode(canvas, model.nodeId(node), model.nodeX(node), model.nodeY(node), model.nodeWidth(node), model.nodeHeight(node),
+                                model.nodeLabel(node), theme);
+                    }
+                }, svgCanvas, documentWriter));
+    }
 
     /**
-     * Draws network.
+     * Lays out nodes of the super nodes and freezes the nodes and links into a columnar model,
+     * after that the lists are not needed for drawing the document.
      *
-     * @param dimensions        - document dimensions
-     * @param linksSvgContent   - links SVG content
-     * @param nodesSvgContent   - nodes SVG content
-     * @param superNodeContents - super node contents
-     * @param backgroundColor   - background color
-     * @return SVG content
+     * @param networkNodes - nodes
+     * @param superNodes   - super nodes
+     * @param networkLinks - links
+     * @param theme        - compiled document style
+     * @return model of the laid out nodes and the links
      */
-    private StringBuilder parseDocument(DocumentDimensions dimensions, StringBuilder linksSvgContent, StringBuilder nodesSvgContent, StringBuilder superNodeContents, StringBuilder legendSvgContent, StringBuilder titleSvgContent, String backgroundColor){
-        StringBuilder mainSvgContent = new StringBuilder();
-        mainSvgContent.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"")
-                .append(dimensions.getWidth())
-                .append("\" height=\"")
-                .append(dimensions.getHeight())
-                .append("\">\n");
+    public DiagramModel prepareModel(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme) {
+        long startNanos = System.nanoTime();
+        layoutSuperNodes(superNodes, theme);
+        DiagramModel model = DiagramModel.of(networkNodes, superNodes, networkLinks);
+        pipelineMetrics.record(PipelineStage.SUPER_NODE_LAYOUT, startNanos);
+        return model;
+    }
 
-        mainSvgContent.append("<rect width=\"100%\" height=\"100%\" fill=\"")
-                .append(backgroundColor)
-                .append("\" />\n");
+    /**
+     * Draws network from fragments drawn before, super nodes have to be laid out with {@link #layoutSuperNodes(List, RenderTheme)}.
+     *
+     * @param networkNodes   - nodes
+     * @param superNodes     - laid out super nodes
+     * @param linkFragments  - fragments of the links
+     * @param nodeFragments  - fragments of the standalone nodes
+     * @param theme          - compiled document style
+     * @param documentWriter - writer the SVG content is streamed to
+     */
+    public void drawDocument(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<String> linkFragments, List<String> nodeFragments,
+                             RenderTheme theme, SvgDocumentWriter documentWriter) {
+        drawDocument(calculateDocumentDimensions(networkNodes, superNodes), superNodes, theme, documentWriter,
+                svgCanvas -> appendFragments(linkFragments, documentWriter),
+                svgCanvas -> appendFragments(nodeFragments, documentWriter));
+    }
 
-        mainSvgContent.append(titleSvgContent);
-        mainSvgContent.append(linksSvgContent);
-        mainSvgContent.append(nodesSvgContent);
-        mainSvgContent.append(superNodeContents);
-        mainSvgContent.append(legendSvgContent);
+    /**
+     * Draws network onto a canvas that does not write an SVG document, like a raster canvas.
+     * Elements are drawn in the document order without instancing, the background is left to the owner of the canvas.
+     *
+     * @param networkNodes - nodes
+     * @param superNodes   - super nodes
+     * @param networkLinks - links
+     * @param theme        - compiled document style
+     * @param svgCanvas    - canvas
+     * @return document dimensions
+     */
+    public DocumentDimensions drawDocument(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme, SvgCanvas svgCanvas) {
+        layoutSuperNodes(superNodes, theme);
+        NetworkNodeRegistry nodeRegistry = NetworkNodeRegistry.of(networkNodes);
+        DocumentDimensions dimensions = calculateDocumentDimensions(networkNodes, superNodes);
+        drawTitle(svgCanvas, theme, dimensions);
+        drawElements(svgCanvas, networkLinks, Arrays.asList(ElementIds.links(networkLinks)), nodeRegistry, networkNodes, superNodes, theme);
+        drawLegend(svgCanvas, theme, dimensions);
+        return dimensions;
+    }
+
+    /**
+     * Draws part of the network into a document of the given size showing the view box, without the title and the legend.
+     * The elements are drawn by the caller without instancing, so the document does not need the shape definitions.
+     *
+     * @param viewBox        - document area shown
+     * @param width          - width of the document
+     * @param height         - height of the document
+     * @param theme          - compiled document style
+     * @param documentWriter - writer the SVG content is streamed to
+     * @param elementsDrawer - draws the elements, see {@link #drawElements}
+     */
+    public void drawViewport(Rectangle2D viewBox, int width, int height, RenderTheme theme, SvgDocumentWriter documentWriter, Consumer<SvgCanvas> elementsDrawer) {
+        StringBuilder mainSvgContent = documentWriter.buffer();
+        mainSvgContent.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+                .append("\" height=\"").append(height)
+                .append("\" viewBox=\"").append(viewBox.getX()).append(' ').append(viewBox.getY()).append(' ')
+                .append(viewBox.getWidth()).append(' ').append(viewBox.getHeight()).append("\">\n");
+        mainSvgContent.append("<rect x=\"").append(viewBox.getX()).append("\" y=\"").append(viewBox.getY())
+                .append("\" width=\"100%\" height=\"100%\" fill=\"").append(theme.getBackgroundHex()).append("\" />\n");
+        elementsDrawer.accept(new StreamingSvgCanvas(mainSvgContent));
         mainSvgContent.append("</svg>");
+        documentWriter.flush();
+    }
+
+    /**
+     * Draws the elements in the document order: links, nodes and then super nodes, super nodes have to be laid out.
+     *
+     * @param svgCanvas    - canvas
+     * @param links        - links
+     * @param linkIds      - ids of the links, in the order of the links
+     * @param nodeRegistry - registry with the nodes at both ends of the links, drawn or not
+     * @param nodes        - nodes
+     * @param superNodes   - super nodes
+     * @param theme        - compiled document style
+     */
+    public void drawElements(SvgCanvas svgCanvas, List<NetworkLink> links, List<String> linkIds, NetworkNodeRegistry nodeRegistry,
+                             List<NetworkNode> nodes, List<SuperNode> superNodes, RenderTheme theme) {
+        for (IdentifiedLink link : identifiedLinks(links, linkIds)) {
+            drawNetworkLink(svgCanvas, link.link(), link.id(), nodeRegistry, theme);
+        }
+        for (NetworkNode node : nodes) {
+            drawNetworkNode(svgCanvas, node, theme);
+        }
+        for (SuperNode superNode : superNodes) {
+            superNodeDrawingService.drawSuperNode(svgCanvas, superNode, theme);
+        }
+    }
 
-        return removeNamespace(mainSvgContent);
+    /**
+     * Draws links into separate fragments.
+     *
+     * @param links        - links
+     * @param linkIds      - ids of the links from {@link ElementIds#links(List)}, in the order of the links
+     * @param nodeRegistry - node registry
+     * @param theme        - compiled document style
+     * @return fragments in the order of the links
+     */
+    public String[] drawLinkFragments(List<NetworkLink> links, List<String> linkIds, NetworkNodeRegistry nodeRegistry, RenderTheme theme) {
+        return fragmentRenderer.renderEach(identifiedLinks(links, linkIds),
+                (canvas, link) -> drawNetworkLink(canvas, link.link(), link.id(), nodeRegistry, theme));
     }
 
-    private StringBuilder removeNamespace(StringBuilder content) {
-        return new StringBuilder(content.toString().replaceAll("xmlns:jfreesvg='http://www.jfree.org/jfreesvg/svg'", ""));
+    /**
+     * Draws a single link into a separate fragment.
+     *
+     * @param link         - link
+     * @param linkId       - id of the link
+     * @param nodeRegistry - node registry
+     * @param theme        - compiled document style
+     * @return fragment of the link
+     */
+    public String drawLinkFragment(NetworkLink link, String linkId, NetworkNodeRegistry nodeRegistry, RenderTheme theme) {
+        return fragmentRenderer.renderFragment(link, (canvas, element) -> drawNetworkLink(canvas, element, linkId, nodeRegistry, theme));
     }
 
     /**
-     * Draws network.
+     * Computes the colors and labels the links would be drawn with, without drawing them.
      *
-     * @param links         - links
-     * @param nodes         - nodes
-     * @param documentStyle - document style
-     * @return SVG content
+     * @param links - links
+     * @param theme - compiled document style
+     * @return colors and labels in the order of the links, with the ids the links get in a document drawn from the same list
      */
-    private StringBuilder drawNetworkLinks(List<NetworkLink> links, List<NetworkNode> nodes, DocumentStyle documentStyle) {
-        StringBuilder linksSvgContent = new StringBuilder();
-        for (NetworkLink link : links) {
-            NetworkNode sourceNode = networkNodeUtilsService.findNodeById(nodes, link.getSourceNodeId());
-            NetworkNode targetNode = networkNodeUtilsService.findNodeById(nodes, link.getTargetNodeId());
-            if (sourceNode == null || targetNode == null) continue;
+    public List<LinkDelta> describeLinks(List<NetworkLink> links, RenderTheme theme) {
+        String[] linkIds = ElementIds.links(links);
+        List<LinkDelta> deltas = new ArrayList<>(links.size());
+        for (int i = 0; i < links.size(); i++) {
+            deltas.add(linkDrawingService.describeLink(links.get(i), linkIds[i], theme));
+        }
+        return deltas;
+    }
 
-            Point2D.Float sourcePoint = calculateStartingPoint(sourceNode, targetNode);
-            Point2D.Float targetPoint = calculateStartingPoint(targetNode, sourceNode);
+    /**
+     * Computes the colors and labels a single link would be drawn with, without drawing it.
+     *
+     * @param link   - link
+     * @param linkId - id of the link
+     * @param theme  - compiled document style
+     * @return colors and labels of the link
+     */
+    public LinkDelta describeLink(NetworkLink link, String linkId, RenderTheme theme) {
+        return linkDrawingService.describeLink(link, linkId, theme);
+    }
 
-            int minX = (int) Math.min(sourcePoint.x, targetPoint.x) - 50;
-            int minY = (int) Math.min(sourcePoint.y, targetPoint.y) - 50;
-            int maxX = (int) Math.max(sourcePoint.x, targetPoint.x) + 50;
-            int maxY = (int) Math.max(sourcePoint.y, targetPoint.y) + 50;
+    /**
+     * Draws nodes into separate fragments.
+     *
+     * @param nodes - nodes
+     * @param theme - compiled document style
+     * @return fragments in the order of the nodes
+     */
+    public String[] drawNodeFragments(List<NetworkNode> nodes, RenderTheme theme) {
+        return fragmentRenderer.renderEach(nodes, (canvas, node) -> drawNetworkNode(canvas, node, theme));
+    }
 
-            SVGGraphics2D svgLinkGraphics = new SVGGraphics2D((maxX - minX), (maxY - minY));
+    /**
+     * Draws a single node into a separate fragment.
+     *
+     * @param node  - node
+     * @param theme - compiled document style
+     * @return fragment of the node
+     */
+    public String drawNodeFragment(NetworkNode node, RenderTheme theme) {
+        return fragmentRenderer.renderFragment(node, (canvas, element) -> drawNetworkNode(canvas, element, theme));
+    }
 
+    /**
+     * Lays out nodes of the super nodes.
+     *
+     * @param superNodes - super nodes
+     * @param theme      - compiled document style
+     */
+    public void layoutSuperNodes(List<SuperNode> superNodes, RenderTheme theme) {
+        for (SuperNode superNode : superNodes) {
+            superNodeDrawingService.layoutSuperNode(superNode, theme);
+        }
+    }
 
-            sourcePoint.x -= minX;
-            sourcePoint.y -= minY;
-            targetPoint.x -= minX;
-            targetPoint.y -= minY;
+    /**
+     * Finds the nodes drawn on their own, in the instanced mode nodes of the super nodes are drawn with the super node instances.
+     *
+     * @param nodes      - nodes
+     * @param superNodes - super nodes
+     * @return nodes drawn on their own, in the list order
+     */
+    public List<NetworkNode> standaloneNodes(List<NetworkNode> nodes, List<SuperNode> superNodes) {
+        if (!svgCanvasFactory.getRenderMode().isInstancing() || superNodes.isEmpty()) {
+            return nodes;
+        }
+        Set<NetworkNode> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (SuperNode superNode : superNodes) {
+            members.addAll(superNode.getTopNodes());
+            members.addAll(superNode.getBottomNodes());
+            members.addAll(superNode.getLeftNodes());
+            members.addAll(superNode.getRightNodes());
+        }
+        List<NetworkNode> standaloneNodes = new ArrayList<>(nodes.size());
+        for (NetworkNode node : nodes) {
+            if (!members.contains(node)) {
+                standaloneNodes.add(node);
+            }
+        }
+        return standaloneNodes;
+    }
 
-            linkDrawingService.drawLink(svgLinkGraphics, link, nodes, sourcePoint, targetPoint, documentStyle);
+    /**
+     * Draws the document around the links and the nodes, every stage is timed
+     */
+    private void drawDocument(DocumentDimensions dimensions, List<SuperNode> superNodes, RenderTheme theme, SvgDocumentWriter documentWriter,
+                              Consumer<SvgCanvas> linksDrawer, Consumer<SvgCanvas> nodesDrawer) {
+        long stageNanos = System.nanoTime();
+        boolean instancing = svgCanvasFactory.getRenderMode().isInstancing();
+        StringBuilder mainSvgContent = documentWriter.buffer();
+        SvgCanvas svgCanvas = svgCanvasFactory.create(mainSvgContent);
+        drawHeader(mainSvgContent, dimensions, theme.getBackgroundHex());
+        if (instancing) {
+            InstancedShapes.appendDefs(mainSvgContent, theme);
+        }
+        drawTitle(svgCanvas, theme, dimensions);
+        documentWriter.flushIfFull();
+        stageNanos = pipelineMetrics.record(PipelineStage.DOCUMENT, stageNanos);
+        linksDrawer.accept(svgCanvas);
+        stageNanos = pipelineMetrics.record(PipelineStage.LINKS, stageNanos);
+        nodesDrawer.accept(svgCanvas);
+        stageNanos = pipelineMetrics.record(PipelineStage.NODES, stageNanos);
+        if (instancing) {
+            drawSuperNodeInstances(svgCanvas, superNodes, theme, documentWriter);
+        } else {
+            drawSuperNodes(svgCanvas, superNodes, theme, documentWriter);
+        }
+        stageNanos = pipelineMetrics.record(PipelineStage.SUPER_NODES, stageNanos);
+        drawLegend(svgCanvas, theme, dimensions);
+        mainSvgContent.append("</svg>");
+        stageNanos = pipelineMetrics.record(PipelineStage.LEGEND, stageNanos);
+        documentWriter.flush();
+        pipelineMetrics.record(PipelineStage.SERIALIZE, stageNanos);
+    }
 
-            linksSvgContent.append("<g transform=\"translate(").append(minX).append(",").append(minY).append(")\">").append(svgLinkGraphics.getSVGElement()).append("</g>\n");
+    private void appendFragments(List<String> fragments, SvgDocumentWriter documentWriter) {
+        for (String fragment : fragments) {
+            documentWriter.buffer().append(fragment);
+            documentWriter.flushIfFull();
         }
-        return linksSvgContent;
     }
 
+
     /**
-     * Draws network.
+     * Draws document header.
      *
-     * @param nodes         - nodes
-     * @param documentStyle - document style
-     * @return SVG content
+     * @param mainSvgContent  - SVG content
+     * @param dimensions      - document dimensions
+     * @param backgroundColor - background color
      */
-    private StringBuilder drawNetworkNodes(List<NetworkNode> nodes, DocumentStyle documentStyle) {
-        StringBuilder nodesSvgContent = new StringBuilder();
-        for (NetworkNode node : nodes) {
-            int minX = (int) node.getX() - 50;
-            int minY = (int) node.getY() - 50;
-            int maxX = (int) (node.getX() + node.getWidth()) + 50;
-            int maxY = (int) (node.getY() + node.getHeight()) + 50;
-            SVGGraphics2D svgNodeGraphics = new SVGGraphics2D((maxX - minX), (maxY - minY));
-            node.setX(node.getX() - minX);
-            node.setY(node.getY() - minY);
-            nodesSvgContent.append("<g id=\"").append(node.getName()).append("\"").append(" transform=\"translate(").append(minX).append(",").append(minY).append(")\">");
-            nodesSvgContent.append(nodeDrawer.drawNode(svgNodeGraphics, node, documentStyle));
+    private void drawHeader(StringBuilder mainSvgContent, DocumentDimensions dimensions, String backgroundColor) {
+        mainSvgContent.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"")
+                .append(dimensions.getWidth())
+                .append("\" height=\"")
+                .append(dimensions.getHeight())
+                .append("\">\n");
+
+        mainSvgContent.append("<rect width=\"100%\" height=\"100%\" fill=\"")
+                .append(backgroundColor)
+                .append("\" />\n");
+    }
+
+    private List<IdentifiedLink> identifiedLinks(List<NetworkLink> links, List<String> linkIds) {
+        if (links.size() != linkIds.size()) {
+            throw new IllegalArgumentException("Every link needs an id");
         }
-        return nodesSvgContent;
+        List<IdentifiedLink> identifiedLinks = new ArrayList<>(links.size());
+        for (int i = 0; i < links.size(); i++) {
+            identifiedLinks.add(new IdentifiedLink(linkIds.get(i), links.get(i)));
+        }
+        return identifiedLinks;
+    }
+
+    /**
+     * Draws a single link.
+     *
+     * @param svgCanvas     - canvas
+     * @param link          - link
+     * @param linkId        - id of the link group
+     * @param nodeRegistry  - node registry
+     * @param theme         - compiled document style
+     */
+    private void drawNetworkLink(SvgCanvas svgCanvas, NetworkLink link, String linkId, NetworkNodeRegistry nodeRegistry, RenderTheme theme) {
+        NetworkNode sourceNode = nodeRegistry.findById(link.getSourceNodeId());
+        NetworkNode targetNode = nodeRegistry.findById(link.getTargetNodeId());
+        if (sourceNode == null || targetNode == null) return;
+
+        Point2D.Float sourcePoint = calculateStartingPoint(sourceNode, targetNode);
+        Point2D.Float targetPoint = calculateStartingPoint(targetNode, sourceNode);
+        drawNetworkLink(svgCanvas, linkId, link.getOutgoingTraffic(), link.getIncomingTraffic(), sourcePoint, targetPoint, theme);
     }
 
-    private List<String> calculateAndDrawSuperNodes(List<SuperNode> superNodes, DocumentStyle documentStyle) {
+    /**
+     * Draws a single link of the model, the points of the cursor are reused.
+     *
+     * @param svgCanvas - canvas
+     * @param model     - nodes and links
+     * @param link      - index of the link
+     * @param linkId    - id of the link group
+     * @param points    - cursor of the drawing thread
+     * @param theme     - compiled document style
+     */
+    private void drawNetworkLink(SvgCanvas svgCanvas, DiagramModel model, int link, String linkId, LinkPoints points, RenderTheme theme) {
+        int sourceNode = model.linkSource(link);
+        int targetNode = model.linkTarget(link);
+        if (sourceNode == DiagramModel.NO_NODE || targetNode == DiagramModel.NO_NODE) return;
+
+        calculateStartingPoint(model.nodeX(sourceNode), model.nodeY(sourceNode), model.nodeWidth(sourceNode), model.nodeHeight(sourceNode),
+                model.nodeX(targetNode), model.nodeY(targetNode), model.nodeWidth(targetNode), model.nodeHeight(targetNode), points.source);
+        calculateStartingPoint(model.nodeX(targetNode), model.nodeY(targetNode), model.nodeWidth(targetNode), model.nodeHeight(targetNode),
+                model.nodeX(sourceNode), model.nodeY(sourceNode), model.nodeWidth(sourceNode), model.nodeHeight(sourceNode), points.target);
+        drawNetworkLink(svgCanvas, linkId, model.linkOutgoingTraffic(link), model.linkIncomingTraffic(link), points.source, points.target, theme);
+    }
 
-        List<String> superNodeContents = new ArrayList<>();
+    /**
+     * Draws a link with resolved end points in its own group.
+     */
+    private void drawNetworkLink(SvgCanvas svgCanvas, String linkId, float outgoingTraffic, float incomingTraffic,
+                                 Point2D.Float sourcePoint, Point2D.Float targetPoint, RenderTheme theme) {
+        int minX = (int) Math.min(sourcePoint.x, targetPoint.x) - 50;
+        int minY = (int) Math.min(sourcePoint.y, targetPoint.y) - 50;
+        int maxX = (int) Math.max(sourcePoint.x, targetPoint.x) + 50;
+        int maxY = (int) Math.max(sourcePoint.y, targetPoint.y) + 50;
+
+        sourcePoint.x -= minX;
+        sourcePoint.y -= minY;
+        targetPoint.x -= minX;
+        targetPoint.y -= minY;
+
+        svgCanvas.openGroup(linkId, minX, minY);
+        svgCanvas.begin((maxX - minX), (maxY - minY));
+        linkDrawingService.drawLink(svgCanvas, outgoingTraffic, incomingTraffic, linkId, sourcePoint, targetPoint, theme);
+        svgCanvas.end();
+        svgCanvas.closeGroup();
+    }
+
+    /**
+     * Draws a single node, the node is drawn in coordinates of its group so the model stays untouched.
+     *
+     * @param svgCanvas     - canvas
+     * @param node          - node
+     * @param theme         - compiled document style
+     */
+    private void drawNetworkNode(SvgCanvas svgCanvas, NetworkNode node, RenderTheme theme) {
+        drawNetworkNode(svgCanvas, node.getId(), node.getX(), node.getY(), node.getWidth(), node.getHeight(), node.getName(), theme);
+    }
+
+    private void drawNetworkNode(SvgCanvas svgCanvas, String nodeId, float nodeX, float nodeY, float nodeWidth, float nodeHeight, String name, RenderTheme theme) {
+        nodeDrawer.drawNodeGroup(svgCanvas, nodeId, nodeX, nodeY, nodeWidth, nodeHeight, name, theme);
+    }
+
+    private void drawSuperNodes(SvgCanvas svgCanvas, List<SuperNode> superNodes, RenderTheme theme, SvgDocumentWriter documentWriter) {
         for (SuperNode superNode : superNodes) {
-            superNodeDrawingService.calculateSize(superNode);
-            String content = String.valueOf(superNodeDrawingService.drawSuperNode(null, superNode, documentStyle));
-            superNodeContents.add(content);
+            superNodeDrawingService.drawSuperNode(svgCanvas, superNode, theme);
+            documentWriter.flushIfFull();
         }
-        return superNodeContents;
     }
 
+    /**
+     * Draws super nodes as uses of shared symbols, super nodes with the same box share one symbol, their nodes are drawn with their ids.
+     *
+     * @param svgCanvas      - canvas
+     * @param superNodes     - super nodes
+     * @param theme          - compiled document style
+     * @param documentWriter - document writer
+     */
+    private void drawSuperNodeInstances(SvgCanvas svgCanvas, List<SuperNode> superNodes, RenderTheme theme, SvgDocumentWriter documentWriter) {
+        Map<String, String> symbols = new HashMap<>();
+        for (SuperNode superNode : superNodes) {
+            superNodeDrawingService.drawSuperNodeInstance(svgCanvas, superNode, theme, symbols);
+            documentWriter.flushIfFull();
+        }
+    }
 
     /**
      * Calculates document dimensions.
@@ -166,25 +478,38 @@ public class NetworkDrawingService {
      * @return document dimensions
      */
     public DocumentDimensions calculateDocumentDimensions(List<NetworkNode> nodes, List<SuperNode> superNodes) {
-        float globalMinX = Float.MAX_VALUE;
-        float globalMinY = Float.MAX_VALUE;
         float globalMaxX = Float.MIN_VALUE;
         float globalMaxY = Float.MIN_VALUE;
 
         for (NetworkNode node : nodes) {
-            globalMinX = Math.min(globalMinX, node.getX());
-            globalMinY = Math.min(globalMinY, node.getY());
             globalMaxX = Math.max(globalMaxX, node.getX() + node.getWidth());
             globalMaxY = Math.max(globalMaxY, node.getY() + node.getHeight());
         }
+        return documentDimensions(globalMaxX, globalMaxY, superNodes);
+    }
 
-        if (!superNodes.isEmpty()) {
-            for (SuperNode superNode : superNodes) {
-                globalMinX = Math.min(globalMinX, superNode.getX());
-                globalMinY = Math.min(globalMinY, superNode.getY());
-                globalMaxX = Math.max(globalMaxX, (superNode.getX() + superNode.getWidth()));
-                globalMaxY = Math.max(globalMaxY, (superNode.getY() + superNode.getHeight()));
-            }
+    /**
+     * Calculates document dimensions.
+     *
+     * @param model      - nodes and links
+     * @param superNodes - super nodes
+     * @return document dimensions
+     */
+    public DocumentDimensions calculateDocumentDimensions(DiagramModel model, List<SuperNode> superNodes) {
+        float globalMaxX = Float.MIN_VALUE;
+        float globalMaxY = Float.MIN_VALUE;
+
+        for (int node = 0; node < model.nodeCount(); node++) {
+            globalMaxX = Math.max(globalMaxX, model.nodeX(node) + model.nodeWidth(node));
+            globalMaxY = Math.max(globalMaxY, model.nodeY(node) + model.nodeHeight(node));
+        }
+        return documentDimensions(globalMaxX, globalMaxY, superNodes);
+    }
+
+    private DocumentDimensions documentDimensions(float globalMaxX, float globalMaxY, List<SuperNode> superNodes) {
+        for (SuperNode superNode : superNodes) {
+            globalMaxX = Math.max(globalMaxX, (superNode.getX() + superNode.getWidth()));
+            globalMaxY = Math.max(globalMaxY, (superNode.getY() + superNode.getHeight()));
         }
 
         int width = (int) Math.ceil(globalMaxX);
@@ -206,151 +531,172 @@ public class NetworkDrawingService {
             throw new IllegalArgumentException("Node and targetNode cannot be null.");
         }
 
-        float[] center1 = getCenter(node);
-        float[] center2 = getCenter(targetNode);
-
-        float diffX = center1[0] - center2[0];
-        float diffY = center1[1] - center2[1];
-
         Point2D.Float startingPoint = new Point2D.Float();
-
-        if (Math.abs(diffX) > Math.abs(diffY)) {
-            calculateHorizontalStartingPoint(node, center1, center2, startingPoint);
-        } else {
-            calculateVerticalStartingPoint(node, center1, center2, startingPoint);
-        }
-
+        calculateStartingPoint(node.getX(), node.getY(), node.getWidth(), node.getHeight(),
+                targetNode.getX(), targetNode.getY(), targetNode.getWidth(), targetNode.getHeight(), startingPoint);
         return startingPoint;
     }
 
     /**
-     * Calculates center of the node.
+     * Calculates starting point of the link from the bounds of its end nodes.
      *
-     * @param node - node
-     * @return center of the node
+     * @param x            - x of the source node
+     * @param y            - y of the source node
+     * @param width        - width of the source node
+     * @param height       - height of the source node
+     * @param targetX      - x of the target node
+     * @param targetY      - y of the target node
+     * @param targetWidth  - width of the target node
+     * @param targetHeight - height of the target node
+     * @param point        - receives the starting point
      */
-    private float[] getCenter(NetworkNode node) {
-        return new float[]{
-                node.getX() + node.getWidth() / 2.0f,
-                node.getY() + node.getHeight() / 2.0f
-        };
+    private void calculateStartingPoint(float x, float y, float width, float height,
+                                        float targetX, float targetY, float targetWidth, float targetHeight, Point2D.Float point) {
+        float centerX = x + width / 2.0f;
+        float centerY = y + height / 2.0f;
+        float targetCenterX = targetX + targetWidth / 2.0f;
+        float targetCenterY = targetY + targetHeight / 2.0f;
+
+        float diffX = centerX - targetCenterX;
+        float diffY = centerY - targetCenterY;
+
+        if (Math.abs(diffX) > Math.abs(diffY)) {
+            calculateHorizontalStartingPoint(x, y, width, height, centerX, centerY, targetCenterX, targetCenterY, point);
+        } else {
+            calculateVerticalStartingPoint(x, y, width, height, centerX, centerY, targetCenterY, point);
+        }
     }
 
     /**
      * Calculates horizontal mid-point offset  .
      *
-     * @param node    - node
-     * @param center1 - center of the node
-     * @param center2 - center of the target node
-     * @param point   - point
+     * @param x             - x of the node
+     * @param y             - y of the node
+     * @param width         - width of the node
+     * @param height        - height of the node
+     * @param centerX       - center of the node
+     * @param centerY       - center of the node
+     * @param targetCenterX - center of the target node
+     * @param targetCenterY - center of the target node
+     * @param point         - point
      */
-    private void calculateHorizontalStartingPoint(NetworkNode node, float[] center1, float[] center2, Point2D.Float point) {
-        point.x = center1[0] < center2[0] ? node.getX() + node.getWidth() : node.getX();
+    private void calculateHorizontalStartingPoint(float x, float y, float width, float height, float centerX, float centerY,
+                                                  float targetCenterX, float targetCenterY, Point2D.Float point) {
+        point.x = centerX < targetCenterX ? x + width : x;
 
-        if (Math.abs(center1[1] - center2[1]) <= node.getHeight() + 3) {
-            point.y = center1[1];
+        if (Math.abs(centerY - targetCenterY) <= height + 3) {
+            point.y = centerY;
         } else {
-            if (center1[1] < center2[1]) {
-                point.y = node.getY() + node.getHeight();
+            if (centerY < targetCenterY) {
+                point.y = y + height;
             } else {
-                point.y = node.getY();
+                point.y = y;
             }
         }
 
-        if (point.y == node.getY() || point.y == node.getY() + node.getHeight()) {
-            adjustOffset(point, center1);
+        if (point.y == y || point.y == y + height) {
+            adjustOffset(point, centerX, centerY);
         }
     }
 
     /**
      * Calculates Vertical mid-point offset.
      *
-     * @param node    - node
-     * @param center1 - center of the node
-     * @param center2 - center of the target node
-     * @param point   - point
+     * @param x             - x of the node
+     * @param y             - y of the node
+     * @param width         - width of the node
+     * @param height        - height of the node
+     * @param centerX       - center of the node
+     * @param centerY       - center of the node
+     * @param targetCenterY - center of the target node
+     * @param point         - point
      */
-    private void calculateVerticalStartingPoint(NetworkNode node, float[] center1, float[] center2, Point2D.Float point) {
-        point.x = center1[0];
-        point.y = center1[1] < center2[1] ? node.getY() + node.getHeight() : node.getY();
+    private void calculateVerticalStartingPoint(float x, float y, float width, float height, float centerX, float centerY,
+                                                float targetCenterY, Point2D.Float point) {
+        point.x = centerX;
+        point.y = centerY < targetCenterY ? y + height : y;
 
-        point.y += center1[1] < center2[1] ? -OFFSET : OFFSET;
+        point.y += centerY < targetCenterY ? -OFFSET : OFFSET;
 
-        if (point.x == node.getX() || point.x == node.getX() + node.getWidth()) {
-            adjustOffset(point, center1);
+        if (point.x == x || point.x == x + width) {
+            adjustOffset(point, centerX, centerY);
         }
     }
 
     /**
      * Adjusts offset.
      *
-     * @param point  - point
-     * @param center - center of the node
+     * @param point   - point
+     * @param centerX - center of the node
+     * @param centerY - center of the node
      */
-    private void adjustOffset(Point2D.Float point, float[] center) {
-        point.x += point.x < center[0] ? OFFSET : -OFFSET;
-        point.y += point.y < center[1] ? OFFSET : -OFFSET;
+    private void adjustOffset(Point2D.Float point, float centerX, float centerY) {
+        point.x += point.x < centerX ? OFFSET : -OFFSET;
+        point.y += point.y < centerY ? OFFSET : -OFFSET;
     }
 
 
-    private StringBuilder drawLegend(DocumentStyle documentStyle, DocumentDimensions dimensions) {
-        StringBuilder legendSvgContent = new StringBuilder();
-        if (documentStyle.showLegend()) {
-            SVGGraphics2D svgLegendGraphics = new SVGGraphics2D(dimensions.getWidth(), dimensions.getHeight());
-
-            int fontStyle = documentStyle.fontStyle().getValue();
-            if ((fontStyle & ~(Font.PLAIN | Font.BOLD | Font.ITALIC)) != 0) {
-                fontStyle = Font.PLAIN;
-            }
+    private void drawLegend(SvgCanvas svgLegendGraphics, RenderTheme theme, DocumentDimensions dimensions) {
+        if (theme.getStyle().showLegend()) {
+            svgLegendGraphics.begin(dimensions.getWidth(), dimensions.getHeight());
 
             int titleX = 20;
             int titleY = dimensions.getHeight() - 50;
             svgLegendGraphics.setPaint(Color.BLACK);
-            svgLegendGraphics.setFont(new Font(documentStyle.font(), fontStyle, documentStyle.fontSize()));
+            svgLegendGraphics.setFont(theme.getTextFont().getFont());
             svgLegendGraphics.drawString("Load Scale Legend", titleX, titleY);
 
             int paletteY = titleY +10;
             int paletteWidth = 200;
             int paletteHeight = 20;
 
-            LinkColorStrategy colorStrategy = documentStyle.linkPalette().getStrategy();
+            PaletteTable paletteTable = theme.getLinkPalette();
             int numColors = 100;
             int colorWidth = paletteWidth / numColors;
 
             for (int i = 0; i < numColors; i++) {
-                Color color = colorStrategy.getLinkColor(i);
+                Color color = paletteTable.getColor(i);
                 svgLegendGraphics.setPaint(color);
                 svgLegendGraphics.fillRect(titleX + i * colorWidth, paletteY, colorWidth, paletteHeight);
             }
 
             int labelY = paletteY + paletteHeight + 15;
             svgLegendGraphics.setPaint(Color.BLACK);
-            svgLegendGraphics.setFont(new Font(documentStyle.font(), fontStyle, documentStyle.fontSize() - 2));
+            svgLegendGraphics.setFont(theme.getLegendLabelFont().getFont());
 
             int[] percentages = {0, 10, 25, 40, 55, 70, 85, 100};
             for (int percentage : percentages) {
                 int labelX = titleX + percentage * paletteWidth / 100;
-                svgLegendGraphics.drawString(percentage + "%", labelX, labelY);
+                svgLegendGraphics.drawString(TextMetricsCache.percentLabel(percentage), labelX, labelY);
             }
 
-            legendSvgContent.append(svgLegendGraphics.getSVGElement());
+            svgLegendGraphics.end();
         }
-        return legendSvgContent;
     }
 
-    private StringBuilder drawTitle(DocumentStyle documentStyle, DocumentDimensions dimensions) {
-        StringBuilder titleSvgContent = new StringBuilder();
-        if (documentStyle.title() != null && !documentStyle.title().isEmpty() && documentStyle.showTitle()) {
-            SVGGraphics2D svgTitleGraphics = new SVGGraphics2D(dimensions.getWidth(), dimensions.getHeight());
+    private void drawTitle(SvgCanvas svgTitleGraphics, RenderTheme theme, DocumentDimensions dimensions) {
+        if (theme.drawsTitle()) {
+            String title = theme.getStyle().title();
+            svgTitleGraphics.begin(dimensions.getWidth(), dimensions.getHeight());
             int titleX = dimensions.getWidth() / 2;
             int titleY = 30;
             svgTitleGraphics.setPaint(Color.BLACK);
-            svgTitleGraphics.setFont(new Font(documentStyle.font(), Font.BOLD, documentStyle.fontSize() + 4));
-            FontMetrics fm = svgTitleGraphics.getFontMetrics();
-            int textWidth = fm.stringWidth(documentStyle.title());
-            svgTitleGraphics.drawString(documentStyle.title(), titleX - textWidth / 2, titleY);
-            titleSvgContent.append(svgTitleGraphics.getSVGElement());
+            TextMetricsCache.FontTextMetrics metrics = theme.getTitleFont();
+            svgTitleGraphics.setFont(metrics.getFont());
+            int textWidth = metrics.stringWidth(title);
+            svgTitleGraphics.drawString(title, titleX - textWidth / 2, titleY);
+            svgTitleGraphics.end();
         }
-        return titleSvgContent;
+    }
+
+    private record IdentifiedLink(String id, NetworkLink link) {
+    }
+
+    /**
+     * End points of the link being drawn, reused by the links of one chunk
+     */
+    private static final class LinkPoints {
+        private final Point2D.Float source = new Point2D.Float();
+        private final Point2D.Float target = new Point2D.Float();
     }
 }
@@ -1,11 +1,10 @@
 package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
 
-import org.jfree.svg.SVGGraphics2D;
 import org.springframework.stereotype.Service;
-import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
-
-import java.awt.*;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
 
 @Service
 class NodeDrawingService {
@@ -13,33 +12,83 @@ class NodeDrawingService {
     /**
      * Draws a node
      *
-     * @param svgGraphics2D SVG graphics object
+     * @param svgCanvas     canvas to draw on
      * @param node          node to be drawn
-     * @param documentStyle document style
-     * @return SVG element
+     * @param theme         compiled document style
      */
-    public String drawNode(SVGGraphics2D svgGraphics2D, NetworkNode node, DocumentStyle documentStyle) {
-        int fontStyle = documentStyle.fontStyle().getValue();
-        if ((fontStyle & (Font.PLAIN | Font.BOLD | Font.ITALIC)) != fontStyle) {
-            fontStyle = Font.PLAIN;
-        }
+    public void drawNode(SvgCanvas svgCanvas, NetworkNode node, RenderTheme theme) {
+        drawNode(svgCanvas, node, theme, InstancedShapes.NODE_BOX);
+    }
+
+    /**
+     * Draws a node
+     *
+     * @param svgCanvas     canvas to draw on
+     * @param node          node to be drawn
+     * @param theme         compiled document style
+     * @param boxShapeId    shape of the box referenced when the canvas supports instancing
+     */
+    public void drawNode(SvgCanvas svgCanvas, NetworkNode node, RenderTheme theme, String boxShapeId) {
+        drawNode(svgCanvas, node.getX(), node.getY(), node.getWidth(), node.getHeight(), node.getName(), theme, boxShapeId);
+    }
 
-        svgGraphics2D.setPaint(Color.decode(documentStyle.nodeColor()));
-        svgGraphics2D.fillRect((int) node.getX(), (int) node.getY(), (int) node.getWidth(), (int) node.getHeight());
-        svgGraphics2D.setPaint(Color.decode(documentStyle.borderColor()));
-        svgGraphics2D.drawRect((int) node.getX(), (int) node.getY(), (int) node.getWidth(), (int) node.getHeight());
-        String name = node.getName();
+    /**
+     * Draws a node in its own group with the id of the node, the node is drawn in coordinates of the group so the model stays untouched
+     *
+     * @param svgCanvas     canvas to draw on
+     * @param nodeId        id of the node
+     * @param nodeX         x of the node
+     * @param nodeY         y of the node
+     * @param nodeWidth     width of the node
+     * @param nodeHeight    height of the node
+     * @param name          label of the node
+     * @param theme         compiled document style
+     */
+    public void drawNodeGroup(SvgCanvas svgCanvas, String nodeId, float nodeX, float nodeY, float nodeWidth, float nodeHeight, String name, RenderTheme theme) {
+        int minX = (int) nodeX - 50;
+        int minY = (int) nodeY - 50;
+        int maxX = (int) (nodeX + nodeWidth) + 50;
+        int maxY = (int) (nodeY + nodeHeight) + 50;
+        svgCanvas.openGroup(ElementIds.node(nodeId), minX, minY);
+        svgCanvas.begin((maxX - minX), (maxY - minY));
+        drawNode(svgCanvas, nodeX - minX, nodeY - minY, nodeWidth, nodeHeight, name, theme, InstancedShapes.NODE_BOX);
+        svgCanvas.end();
+        svgCanvas.closeGroup();
+    }
+
+    /**
+     * Draws a node from its coordinates
+     *
+     * @param svgCanvas     canvas to draw on
+     * @param nodeX         x of the node
+     * @param nodeY         y of the node
+     * @param nodeWidth     width of the node
+     * @param nodeHeight    height of the node
+     * @param name          label of the node, nothing is written when null or empty
+     * @param theme         compiled document style
+     * @param boxShapeId    shape of the box referenced when the canvas supports instancing
+     */
+    public void drawNode(SvgCanvas svgCanvas, float nodeX, float nodeY, float nodeWidth, float nodeHeight, String name, RenderTheme theme, String boxShapeId) {
+        int boxX = (int) nodeX;
+        int boxY = (int) nodeY;
+        int boxWidth = (int) nodeWidth;
+        int boxHeight = (int) nodeHeight;
+        if (!svgCanvas.useShape(boxShapeId, boxX, boxY, 0.0f, boxWidth, boxHeight, null)) {
+            svgCanvas.setPaint(theme.getNodeColor());
+            svgCanvas.fillRect(boxX, boxY, boxWidth, boxHeight);
+            svgCanvas.setPaint(theme.getBorderColor());
+            svgCanvas.drawRect(boxX, boxY, boxWidth, boxHeight);
+        }
         if (name != null && !name.isEmpty()) {
-            svgGraphics2D.setFont(new Font(documentStyle.font(), fontStyle, documentStyle.fontSize()));
-            FontMetrics fm = svgGraphics2D.getFontMetrics();
-            int textWidth = fm.stringWidth(name);
-            int textHeight = fm.getAscent() - fm.getDescent();
-            int x = (int) (node.getX() + (node.getWidth() - textWidth) / 2);
-            int y = (int) (node.getY() + (node.getHeight() + textHeight) / 2);
-            svgGraphics2D.drawString(name, x, y);
+            svgCanvas.setPaint(theme.getBorderColor());
+            TextMetricsCache.FontTextMetrics metrics = theme.getTextFont();
+            svgCanvas.setFont(metrics.getFont());
+            int textWidth = metrics.stringWidth(name);
+            int textHeight = metrics.getTextHeight();
+            int x = (int) (nodeX + (nodeWidth - textWidth) / 2);
+            int y = (int) (nodeY + (nodeHeight + textHeight) / 2);
+            svgCanvas.drawString(name, x, y);
         }
-
-        return svgGraphics2D.getSVGElement() + "</g>\n";
     }
 
 
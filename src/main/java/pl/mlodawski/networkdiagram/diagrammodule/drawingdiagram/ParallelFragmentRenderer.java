@@ -0,0 +1,160 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Renders lists of independent elements, or elements read by index, above the threshold the list is split into chunks rendered on a fork-join pool.
+ * Chunks are appended to the document in the original order, so the output is the same as in the sequential mode.
+ */
+@Service
+@Slf4j
+class ParallelFragmentRenderer {
+
+    private final SvgCanvasFactory svgCanvasFactory;
+    private final ForkJoinPool renderPool;
+    private final int threshold;
+    private final int chunkSize;
+
+    ParallelFragmentRenderer(SvgCanvasFactory svgCanvasFactory, RenderPool renderPool,
+                             @Value("${diagram.render.parallel.threshold:5000}") int threshold,
+                             @Value("${diagram.render.parallel.chunk-size:512}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.svgCanvasFactory = svgCanvasFactory;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+        this.renderPool = renderPool.getPool();
+        log.info("Parallel rendering of {} and more elements on {} threads", threshold, this.renderPool.getParallelism());
+    }
+
+    /**
+     * Draws every element and appends the fragments to the document in the list order
+     *
+     * @param elements       elements to draw
+     * @param drawer         draws a single element
+     * @param svgCanvas      canvas of the document, used in the sequential mode
+     * @param documentWriter document writer
+     */
+    public <T> void render(List<T> elements, FragmentDrawer<T> drawer, SvgCanvas svgCanvas, SvgDocumentWriter documentWriter) {
+        render(elements.size(), () -> null, (canvas, cursor, index) -> drawer.draw(canvas, elements.get(index)), svgCanvas, documentWriter);
+    }
+
+    /**
+     * Draws the elements with the indexes from 0 to the count and appends the fragments to the document in the index order.
+     * Every chunk gets its own cursor, so the drawer can reuse it between elements instead of allocating.
+     *
+     * @param count          number of elements
+     * @param cursors        creates the cursor of a chunk
+     * @param drawer         draws a single element
+     * @param svgCanvas      canvas of the document, used in the sequential mode
+     * @param documentWriter document writer
+     */
+    public <C> void render(int count, Supplier<C> cursors, IndexedDrawer<C> drawer, SvgCanvas svgCanvas, SvgDocumentWriter documentWriter) {
+        if (threshold <= 0 || count < threshold) {
+            C cursor = cursors.get();
+            for (int i = 0; i < count; i++) {
+                drawer.draw(svgCanvas, cursor, i);
+                documentWriter.flushIfFull();
+            }
+            return;
+        }
+        renderParallel(count, cursors, drawer, documentWriter);
+    }
+
+    /**
+     * Draws every element into its own fragment, above the threshold the fragments are drawn on the render pool
+     *
+     * @param elements elements to draw
+     * @param drawer   draws a single element
+     * @return fragments in the list order
+     */
+    public <T> String[] renderEach(List<T> elements, FragmentDrawer<T> drawer) {
+        String[] fragments = new String[elements.size()];
+        if (threshold <= 0 || elements.size() < threshold) {
+            for (int i = 0; i < fragments.length; i++) {
+                fragments[i] = renderFragment(elements.get(i), drawer);
+            }
+            return fragments;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(elements.size() / chunkSize + 1);
+        for (int start = 0; start < elements.size(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(elements.size(), start + chunkSize);
+            tasks.add(renderPool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    fragments[i] = renderFragment(elements.get(i), drawer);
+                }
+            }));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        return fragments;
+    }
+
+    /**
+     * Draws a single element into its own fragment
+     *
+     * @param element element to draw
+     * @param drawer  draws the element
+     * @return fragment
+     */
+    public <T> String renderFragment(T element, FragmentDrawer<T> drawer) {
+        StringBuilder fragment = new StringBuilder(256);
+        drawer.draw(svgCanvasFactory.create(fragment), element);
+        return fragment.toString();
+    }
+
+    private <C> void renderParallel(int count, Supplier<C> cursors, IndexedDrawer<C> drawer, SvgDocumentWriter documentWriter) {
+        int window = renderPool.getParallelism() * 2;
+        Deque<ForkJoinTask<StringBuilder>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            while (next < count || !pending.isEmpty()) {
+                while (next < count && pending.size() < window) {
+                    int from = next;
+                    int to = Math.min(count, next + chunkSize);
+                    pending.add(renderPool.submit(() -> renderChunk(from, to, cursors, drawer)));
+                    next = to;
+                }
+                documentWriter.buffer().append(pending.poll().join());
+                documentWriter.flushIfFull();
+            }
+        } finally {
+            pending.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private <C> StringBuilder renderChunk(int from, int to, Supplier<C> cursors, IndexedDrawer<C> drawer) {
+        StringBuilder fragment = new StringBuilder((to - from) * 256);
+        SvgCanvas chunkCanvas = svgCanvasFactory.create(fragment);
+        C cursor = cursors.get();
+        for (int i = from; i < to; i++) {
+            drawer.draw(chunkCanvas, cursor, i);
+        }
+        return fragment;
+    }
+
+    @FunctionalInterface
+    interface FragmentDrawer<T> {
+        void draw(SvgCanvas svgCanvas, T element);
+    }
+
+    @FunctionalInterface
+    interface IndexedDrawer<C> {
+        void draw(SvgCanvas svgCanvas, C cursor, int index);
+    }
+}
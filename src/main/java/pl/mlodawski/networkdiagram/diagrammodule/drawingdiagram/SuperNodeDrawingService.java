@@ -1,14 +1,15 @@
 package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
 
 import lombok.AllArgsConstructor;
-import org.jfree.svg.SVGGraphics2D;
 import org.springframework.stereotype.Service;
-import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
 
 import java.awt.*;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @AllArgsConstructor
@@ -18,40 +19,113 @@ class SuperNodeDrawingService {
 
 
     /**
-     * Draws a super node and all its nodes
+     * Draws a super node box, the positions of its nodes have to be updated with {@link #layoutSuperNode(SuperNode, RenderTheme)} first
      *
-     * @param svgGraphics2D if null, a new SVGGraphics2D object will be created
+     * @param svgCanvas     the canvas to draw on
      * @param superNode     the super node to draw
-     * @param documentStyle the style to use
-     * @return the SVG content of the super node
+     * @param theme         the compiled style to use
      */
-    public StringBuilder drawSuperNode(SVGGraphics2D svgGraphics2D, SuperNode superNode, DocumentStyle documentStyle) {
+    public void drawSuperNode(SvgCanvas svgCanvas, SuperNode superNode, RenderTheme theme) {
+        svgCanvas.openGroup(ElementIds.superNode(superNode.getId()), superNode.getX(), superNode.getY());
+        svgCanvas.begin(superNode.getWidth(), superNode.getHeight());
 
-        if (svgGraphics2D == null) {
-            svgGraphics2D = new SVGGraphics2D(superNode.getWidth(), superNode.getHeight());
-        }
+        Stroke originalStroke = svgCanvas.getStroke();
+        svgCanvas.setStroke(theme.getSuperNodeStroke());
+
+        NetworkNode superNodeAsNode = new NetworkNode(0, 0, superNode.getWidth(), superNode.getHeight(), superNode.getName());
+        nodeDrawer.drawNode(svgCanvas, superNodeAsNode, theme, InstancedShapes.SUPER_NODE_BOX);
+        svgCanvas.setStroke(originalStroke);
 
-        int xTranslate = superNode.getX();
-        int yTranslate = superNode.getY();
+        svgCanvas.end();
+        svgCanvas.closeGroup();
+    }
 
-        Stroke originalStroke = svgGraphics2D.getStroke();
-        svgGraphics2D.setStroke(new BasicStroke(2.0f));
+    /**
+     * Draws a super node box as an instance of a symbol, super nodes with the same box share one symbol.
+     * The nodes of the super node carry ids, so they are drawn after the instance in their own groups, like standalone nodes.
+     * The nodes of the super node have to be left out of the regular node drawing.
+     *
+     * @param svgCanvas the canvas to draw on
+     * @param superNode the super node to draw
+     * @param theme     the compiled style to use
+     * @param symbols   symbol ids by structure of the super node boxes drawn so far in the document
+     */
+    public void drawSuperNodeInstance(SvgCanvas svgCanvas, SuperNode superNode, RenderTheme theme, Map<String, String> symbols) {
+        String structure = structureKey(superNode);
+        String symbolId = symbols.get(structure);
+        if (symbolId == null) {
+            symbolId = InstancedShapes.superNodeSymbol(symbols.size());
+            symbols.put(structure, symbolId);
+            svgCanvas.openSymbol(symbolId);
+            drawSymbolContent(svgCanvas, superNode, theme);
+            svgCanvas.closeSymbol();
+        }
+        svgCanvas.openGroup(ElementIds.superNode(superNode.getId()), superNode.getX(), superNode.getY());
+        svgCanvas.useSymbol(symbolId, 0, 0);
+        svgCanvas.closeGroup();
+        for (List<NetworkNode> nodes : List.of(superNode.getTopNodes(), superNode.getBottomNodes(), superNode.getLeftNodes(), superNode.getRightNodes())) {
+            for (NetworkNode node : nodes) {
+                nodeDrawer.drawNodeGroup(svgCanvas, node.getId(), node.getX(), node.getY(), node.getWidth(), node.getHeight(), node.getName(), theme);
+            }
+        }
+    }
 
-        StringBuilder mainSvgContent = new StringBuilder();
+    /**
+     * Draws the super node box relative to the super node position
+     *
+     * @param svgCanvas the canvas to draw on
+     * @param superNode the super node to draw
+     * @param theme     the compiled style to use
+     */
+    private void drawSymbolContent(SvgCanvas svgCanvas, SuperNode superNode, RenderTheme theme) {
+        svgCanvas.begin(superNode.getWidth(), superNode.getHeight());
+        Stroke originalStroke = svgCanvas.getStroke();
+        svgCanvas.setStroke(theme.getSuperNodeStroke());
         NetworkNode superNodeAsNode = new NetworkNode(0, 0, superNode.getWidth(), superNode.getHeight(), superNode.getName());
-        nodeDrawer.drawNode(svgGraphics2D, superNodeAsNode, documentStyle);
-        svgGraphics2D.setStroke(originalStroke);
-        mainSvgContent.append("<g id=\"").append(superNode.getName()).append("\" transform=\"translate(").append(xTranslate).append(",").append(yTranslate).append(")\">").append(svgGraphics2D.getSVGElement()).append("</g>\n");
+        nodeDrawer.drawNode(svgCanvas, superNodeAsNode, theme, InstancedShapes.SUPER_NODE_BOX);
+        svgCanvas.setStroke(originalStroke);
+        svgCanvas.end();
+    }
+
+    /**
+     * Builds a key equal for super node boxes that differ only in their position
+     *
+     * @param superNode the super node, already laid out
+     * @return structure key
+     */
+    private String structureKey(SuperNode superNode) {
+        StringBuilder key = new StringBuilder(32);
+        key.append(superNode.getWidth()).append('x').append(superNode.getHeight());
+        appendName(key, superNode.getName());
+        return key.toString();
+    }
+
+    private void appendName(StringBuilder key, String name) {
+        if (name == null) {
+            key.append(";-1:");
+            return;
+        }
+        key.append(';').append(name.length()).append(':').append(name);
+    }
+
+    /**
+     * Calculates the size of the super node and moves its nodes around the super node box
+     *
+     * @param superNode     the super node to lay out
+     * @param theme         the compiled style its title is measured with
+     */
+    public void layoutSuperNode(SuperNode superNode, RenderTheme theme) {
+        calculateSize(superNode, theme);
         updateNodePositions(superNode);
-        return mainSvgContent;
     }
 
     /**
      * Calculates the size of the super node based on the size of its nodes and its title
      *
-     * @param superNode the super node to calculate the size for
+     * @param superNode     the super node to calculate the size for
+     * @param theme         the compiled style its title is measured with
      */
-    public void calculateSize(SuperNode superNode) {
+    public void calculateSize(SuperNode superNode, RenderTheme theme) {
         int topWidth = calculateTotalWidth(superNode.getTopNodes());
         int bottomWidth = calculateTotalWidth(superNode.getBottomNodes());
         int leftHeight = calculateTotalHeight(superNode.getLeftNodes());
@@ -60,7 +134,7 @@ class SuperNodeDrawingService {
         int widthFromNodes = Math.max(topWidth, bottomWidth);
         int heightFromNodes = Math.max(leftHeight, rightHeight);
 
-        int widthFromTitle = superNode.getName().length() * 7;
+        int widthFromTitle = theme.getTextFont().stringWidth(superNode.getName());
         superNode.setWidth(Math.max(widthFromNodes, widthFromTitle) + 40);
         superNode.setHeight(heightFromNodes + 40);
 
@@ -0,0 +1,63 @@
+package pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Formats of diagram commands read as a token stream: JSON, Smile and CBOR share the command schema,
+ * the binary formats carry numbers without text parsing. The mappers share the configuration of the application mapper.
+ */
+@Component
+public class CommandFormats {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    private static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper cborMapper;
+
+    public CommandFormats(ObjectMapper objectMapper) {
+        this.jsonMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+    }
+
+    /**
+     * Creates parser of a request body
+     *
+     * @param contentType content type of the body, JSON if missing
+     * @param body        body of the request
+     * @return parser of the body in its format
+     * @throws IOException when the body cannot be read
+     */
+    public JsonParser createParser(String contentType, InputStream body) throws IOException {
+        return mapperFor(contentType).createParser(body);
+    }
+
+    /**
+     * @param contentType content type of the body, JSON if missing
+     * @return mapper of the format
+     */
+    public ObjectMapper mapperFor(String contentType) {
+        if (contentType == null) {
+            return jsonMapper;
+        }
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        if (APPLICATION_SMILE.isCompatibleWith(mediaType)) {
+            return smileMapper;
+        }
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(mediaType)) {
+            return cborMapper;
+        }
+        return jsonMapper;
+    }
+}
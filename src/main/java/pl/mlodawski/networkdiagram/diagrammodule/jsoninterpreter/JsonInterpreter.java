@@ -1,145 +1,487 @@
 package pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramConfig;
 import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.SuperNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.SuperNodePositionJson;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineStage;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.DiagramDigest;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.DiagramValidator;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.SourceFormat;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
 
 
+import java.io.IOException;
 import java.util.*;
 
 @Service
+@AllArgsConstructor
 @Slf4j
 public class JsonInterpreter {
 
+    private final ForceDirectedLayout forceDirectedLayout;
+
+    private final PipelineMetrics pipelineMetrics;
+
     /**
-     * Interprets JSON
+     * Interprets JSON, nodes and super nodes without positions are placed by the automatic layout
      * @param networkJson JSON to interpret
      * @param networkNodes List of NetworkNodes
      * @param superNodes List of SuperNodes
      * @param networkLinks List of NetworkLinks
      */
     public void interpretJson(NetworkDiagramCommand networkJson, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
+        interpretJson(networkJson, networkNodes, superNodes, networkLinks, ValidationMode.FIRST_ERROR);
+    }
+
+    /**
+     * Interprets JSON, nodes and super nodes without positions are placed by the automatic layout
+     * @param networkJson JSON to interpret
+     * @param networkNodes List of NetworkNodes
+     * @param superNodes List of SuperNodes
+     * @param networkLinks List of NetworkLinks
+     * @param validationMode whether the first or every error of the diagram is reported
+     */
+    public void interpretJson(NetworkDiagramCommand networkJson, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                              ValidationMode validationMode) {
         if (networkJson == null) {
             throw new IllegalArgumentException("NetworkDiagramCommand cannot be null");
         }
 
-        Optional.ofNullable(networkJson.getNetworkNodes()).ifPresent(nodes -> nodes.forEach(nodeJson -> {
+        long startNanos = System.nanoTime();
+        Set<NetworkNode> freeNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<SuperNode> freeSuperNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<NetworkNodeJson> nodesJson = Optional.ofNullable(networkJson.getNetworkNodes()).orElse(List.of());
+        DiagramValidator validator = new DiagramValidator(validationMode, SourceFormat.JSON, nodesJson.size());
+
+        for (int i = 0; i < nodesJson.size(); i++) {
+            NetworkNodeJson nodeJson = nodesJson.get(i);
             var node = new NetworkNode(
                     nodeJson.getId(),
-                    nodeJson.getPosition().getX(),
-                    nodeJson.getPosition().getY(),
+                    nodeJson.getPosition() == null ? 0 : nodeJson.getPosition().getX(),
+                    nodeJson.getPosition() == null ? 0 : nodeJson.getPosition().getY(),
                     nodeJson.getSize().getWidth(),
                     nodeJson.getSize().getHeight(),
                     nodeJson.getLabel()
             );
             networkNodes.add(node);
-        }));
+            validator.node(node, i);
+            if (nodeJson.getPosition() == null) {
+                freeNodes.add(node);
+            }
+        }
 
-        Optional.ofNullable(networkJson.getNetworkLinks()).ifPresent(links -> links.forEach(linkJson -> {
-            var link = new NetworkLink(
-                    linkJson.getSourceNodeId(),
-                    linkJson.getTargetNodeId(),
-                    linkJson.getRxTraffic(),
-                    linkJson.getTxTraffic()
-            );
-            networkLinks.add(link);
-        }));
+        List<NetworkLink> links = interpretLinks(Optional.ofNullable(networkJson.getNetworkLinks()).orElse(List.of()));
+        for (int i = 0; i < links.size(); i++) {
+            networkLinks.add(links.get(i));
+            validator.link(links.get(i), i);
+        }
 
-        Optional.ofNullable(networkJson.getSuperNodes()).ifPresent(superNodesJson -> superNodesJson.forEach(superNodeJson -> {
+        List<SuperNodeJson> superNodesJson = Optional.ofNullable(networkJson.getSuperNodes()).orElse(List.of());
+        for (int i = 0; i < superNodesJson.size(); i++) {
+            SuperNodeJson superNodeJson = superNodesJson.get(i);
             var superNode = new SuperNode(
                     superNodeJson.getId(),
-                    (int) superNodeJson.getPosition().getX(),
-                    (int) superNodeJson.getPosition().getY(),
+                    superNodeJson.getPosition() == null ? 0 : (int) superNodeJson.getPosition().getX(),
+                    superNodeJson.getPosition() == null ? 0 : (int) superNodeJson.getPosition().getY(),
                     superNodeJson.getLabel()
             );
+            if (superNodeJson.getPosition() == null) {
+                freeSuperNodes.add(superNode);
+            }
+            int superNodeIndex = validator.superNode(superNode.getId(), i);
 
-            Optional.ofNullable(superNodeJson.getNodePositions()).ifPresent(nodePositions -> nodePositions.forEach(nodePositionJson ->
-                    networkNodes.stream()
-                            .filter(n -> Objects.equals(n.getId(), nodePositionJson.getNodeId()))
-                            .findFirst().ifPresent(node -> superNode.addNode(node, nodePositionJson.getPosition()))
-            ));
+            List<SuperNodePositionJson> nodePositions = Optional.ofNullable(superNodeJson.getNodePositions()).orElse(List.of());
+            for (int j = 0; j < nodePositions.size(); j++) {
+                NetworkNode node = validator.findNode(nodePositions.get(j).getNodeId());
+                if (node != null && validator.nodeInSuperNode(superNodeIndex, node, j)) {
+                    superNode.addNode(node, nodePositions.get(j).getPosition());
+                }
+            }
 
             superNodes.add(superNode);
-        }));
+        }
 
-        validateScript(networkNodes, superNodes, networkLinks);
+        long stageNanos = pipelineMetrics.record(PipelineStage.PARSE, startNanos);
+        validator.finish();
+        stageNanos = pipelineMetrics.record(PipelineStage.VALIDATE, stageNanos);
+        forceDirectedLayout.layout(networkNodes, superNodes, networkLinks, freeNodes, freeSuperNodes);
+        pipelineMetrics.record(PipelineStage.LAYOUT, stageNanos);
     }
 
     /**
-     * Validates the script
+     * Interprets JSON while it is read, the model is built and validated straight from the tokens without the command objects.
+     * Nodes of super nodes are resolved through an id index, also when the nodes come after the super nodes.
+     * Nodes and super nodes without positions are placed by the automatic layout.
+     * @param parser parser positioned before the diagram object, read to its end but not closed
      * @param networkNodes List of NetworkNodes
      * @param superNodes List of SuperNodes
      * @param networkLinks List of NetworkLinks
+     * @return command with only the theme and the config of the diagram
+     * @throws IOException when the JSON cannot be read
+     * @throws IllegalArgumentException when the JSON is malformed or the diagram is invalid
      */
-    private void validateScript(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
-        Set<String> uniqueNodeIds = networkNodes.stream().map(NetworkNode::getId).collect(java.util.stream.Collectors.toSet());
-        Set<String> uniqueSuperNodeIds = superNodes.stream().map(SuperNode::getId).collect(java.util.stream.Collectors.toSet());
-        Set<String> nodeIdsInSuperNodes = new HashSet<>();
+    public NetworkDiagramCommand interpretJsonStream(JsonParser parser, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) throws IOException {
+        return interpretJsonStream(parser, networkNodes, superNodes, networkLinks, ValidationMode.FIRST_ERROR);
+    }
 
-        if (uniqueNodeIds.size() != networkNodes.size()) {
-            log.error("Duplicate Node IDs found");
-            throw new IllegalArgumentException("Duplicate Node IDs found");
-        }
+    /**
+     * Interprets JSON while it is read, see {@link #interpretJsonStream(JsonParser, List, List, List)}
+     * @param parser parser positioned before the diagram object, read to its end but not closed
+     * @param networkNodes List of NetworkNodes
+     * @param superNodes List of SuperNodes
+     * @param networkLinks List of NetworkLinks
+     * @param validationMode whether the first or every error of the diagram is reported
+     * @return command with only the theme and the config of the diagram
+     * @throws IOException when the JSON cannot be read
+     * @throws IllegalArgumentException when the JSON is malformed or the diagram is invalid
+     */
+    public NetworkDiagramCommand interpretJsonStream(JsonParser parser, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                                                     ValidationMode validationMode) throws IOException {
+        return interpretJsonStream(parser, networkNodes, superNodes, networkLinks, validationMode, null);
+    }
 
-        if (uniqueSuperNodeIds.size() != superNodes.size()) {
-            log.error("Duplicate SuperNode IDs found");
-            throw new IllegalArgumentException("Duplicate SuperNode IDs found");
+    /**
+     * Interprets JSON while it is read and hashes its elements for the render key on the way,
+     * see {@link #interpretJsonStream(JsonParser, List, List, List)}
+     * @param parser parser positioned before the diagram object, read to its end but not closed
+     * @param networkNodes List of NetworkNodes
+     * @param superNodes List of SuperNodes
+     * @param networkLinks List of NetworkLinks
+     * @param validationMode whether the first or every error of the diagram is reported
+     * @param diagramDigest digest fed with every element as it is read, null when no render key is needed
+     * @return command with only the theme and the config of the diagram
+     * @throws IOException when the JSON cannot be read
+     * @throws IllegalArgumentException when the JSON is malformed or the diagram is invalid
+     */
+    public NetworkDiagramCommand interpretJsonStream(JsonParser parser, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                                                     ValidationMode validationMode, DiagramDigest diagramDigest) throws IOException {
+        long startNanos = System.nanoTime();
+        DiagramReader diagramReader = new DiagramReader(parser, networkNodes, superNodes, networkLinks, validationMode, diagramDigest);
+        try {
+            diagramReader.read();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage(), e);
         }
-
-        networkLinks.forEach(link -> {
-            if (!uniqueNodeIds.contains(link.getSourceNodeId()) || !uniqueNodeIds.contains(link.getTargetNodeId())) {
-                log.error("Invalid link between non-existing nodes: {} --> {}", link.getSourceNodeId(), link.getTargetNodeId());
-                throw new IllegalArgumentException("Invalid link between non-existing nodes: " + link.getSourceNodeId() + " --> " + link.getTargetNodeId());
-            }
-        });
-
-        superNodes.forEach(superNode -> validateNodesInSuperNode(superNode, uniqueNodeIds, nodeIdsInSuperNodes));
+        long stageNanos = pipelineMetrics.record(PipelineStage.PARSE, startNanos);
+        log.debug("JSON interpreted successfully: {} nodes, {} super nodes, {} links", networkNodes.size(), superNodes.size(), networkLinks.size());
+        diagramReader.finish();
+        stageNanos = pipelineMetrics.record(PipelineStage.VALIDATE, stageNanos);
+        forceDirectedLayout.layout(networkNodes, superNodes, networkLinks, diagramReader.freeNodes, diagramReader.freeSuperNodes);
+        pipelineMetrics.record(PipelineStage.LAYOUT, stageNanos);
+        return diagramReader.style;
     }
 
     /**
-     * Super Node validation
-     * @param superNode SuperNode to validate
-     * @param uniqueNodeIds Set of unique node IDs
-     * @param nodeIdsInSuperNodes Set of node IDs in SuperNodes
+     * Interprets links without their nodes, the ends are not validated
+     * @param linksJson links to interpret
+     * @return List of NetworkLinks in the order of the JSON links
      */
-    private void validateNodesInSuperNode(SuperNode superNode, Set<String> uniqueNodeIds, Set<String> nodeIdsInSuperNodes) {
-        Set<String> nodeIdsInThisSuperNode = new HashSet<>();
-
-        superNode.getTopNodes().forEach(node -> validateNodeInSuperNode(node, superNode, uniqueNodeIds, nodeIdsInSuperNodes, nodeIdsInThisSuperNode));
-        superNode.getBottomNodes().forEach(node -> validateNodeInSuperNode(node, superNode, uniqueNodeIds, nodeIdsInSuperNodes, nodeIdsInThisSuperNode));
-        superNode.getLeftNodes().forEach(node -> validateNodeInSuperNode(node, superNode, uniqueNodeIds, nodeIdsInSuperNodes, nodeIdsInThisSuperNode));
-        superNode.getRightNodes().forEach(node -> validateNodeInSuperNode(node, superNode, uniqueNodeIds, nodeIdsInSuperNodes, nodeIdsInThisSuperNode));
-
-        if (nodeIdsInThisSuperNode.isEmpty()) {
-            log.error("Empty SuperNode: SuperNode ID {}", superNode.getId());
-            throw new IllegalArgumentException("Empty SuperNode: SuperNode ID " + superNode.getId());
+    public List<NetworkLink> interpretLinks(List<NetworkLinkJson> linksJson) {
+        List<NetworkLink> networkLinks = new ArrayList<>(linksJson.size());
+        for (NetworkLinkJson linkJson : linksJson) {
+            networkLinks.add(new NetworkLink(
+                    linkJson.getSourceNodeId(),
+                    linkJson.getTargetNodeId(),
+                    linkJson.getRxTraffic(),
+                    linkJson.getTxTraffic()
+            ));
         }
+        return networkLinks;
     }
 
     /**
-     * Validates a node within a SuperNode
-     * @param node Node to validate
-     * @param superNode SuperNode containing the node
-     * @param uniqueNodeIds Set of unique node IDs
-     * @param nodeIdsInSuperNodes Set of node IDs in SuperNodes
-     * @param nodeIdsInThisSuperNode Set of node IDs in the current SuperNode
+     * Builds the model from the JSON tokens and validates every element when it is read,
+     * checks needing elements that come later in the JSON are finished by {@link #finish()}
      */
-    private void validateNodeInSuperNode(NetworkNode node, SuperNode superNode, Set<String> uniqueNodeIds, Set<String> nodeIdsInSuperNodes, Set<String> nodeIdsInThisSuperNode) {
-        String nodeId = node.getId();
-        if (!uniqueNodeIds.contains(nodeId)) {
-            log.error("Invalid node in SuperNode: Node ID {} in SuperNode {}", nodeId, superNode.getId());
-            throw new IllegalArgumentException("Invalid node in SuperNode: Node ID " + nodeId + " in SuperNode " + superNode.getId());
+    private static final class DiagramReader {
+
+        private final JsonParser parser;
+        private final List<NetworkNode> networkNodes;
+        private final List<SuperNode> superNodes;
+        private final List<NetworkLink> networkLinks;
+        private final NetworkDiagramCommand style = new NetworkDiagramCommand();
+        private final DiagramValidator validator;
+        private final List<PendingNodeEntry> pendingNodeEntries = new ArrayList<>();
+        private final Set<NetworkNode> freeNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<SuperNode> freeSuperNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final DiagramDigest diagramDigest;
+        private final float[] pair = new float[2];
+        private boolean nodesRead;
+
+        DiagramReader(JsonParser parser, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                      ValidationMode validationMode, DiagramDigest diagramDigest) {
+            this.parser = parser;
+            this.diagramDigest = diagramDigest;
+            this.networkNodes = networkNodes;
+            this.superNodes = superNodes;
+            this.networkLinks = networkLinks;
+            this.validator = new DiagramValidator(validationMode, SourceFormat.JSON, 1024);
         }
-        if (!nodeIdsInThisSuperNode.add(nodeId)) {
-            log.error("Duplicate node in SuperNode: Node ID {} in SuperNode {}", nodeId, superNode.getId());
-            throw new IllegalArgumentException("Duplicate node in SuperNode: Node ID " + nodeId + " in SuperNode " + superNode.getId());
+
+        void read() throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Diagram description has to be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "config" -> style.setDiagramConfig(parser.readValueAs(DiagramConfig.class));
+                    case "theme" -> style.setTheme(parser.getValueAsString());
+                    case "nodes" -> {
+                        readArray(this::readNode);
+                        nodesRead = true;
+                    }
+                    case "superNodes" -> readArray(this::readSuperNode);
+                    case "links" -> readArray(this::readLink);
+                    default -> parser.skipChildren();
+                }
+            }
         }
-        if (!nodeIdsInSuperNodes.add(nodeId)) {
-            log.error("Node in multiple SuperNodes: Node ID {}", nodeId);
-            throw new IllegalArgumentException("Node in multiple SuperNodes: Node ID " + nodeId);
+
+        /**
+         * Resolves the nodes of super nodes read before the nodes, checks the links read before the nodes and the super nodes left empty
+         */
+        void finish() {
+            for (PendingNodeEntry pending : pendingNodeEntries) {
+                addToSuperNode(pending.superNodeIndex(), pending.superNode(), pending.nodeEntry());
+            }
+            validator.finish();
+        }
+
+        private void readNode(int index) throws IOException {
+            String id = null;
+            String label = null;
+            boolean positioned = false;
+            float x = 0;
+            float y = 0;
+            float width = Float.NaN;
+            float height = Float.NaN;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id" -> id = parser.getValueAsString();
+                    case "label" -> label = parser.getValueAsString();
+                    case "position" -> {
+                        if (readPair("x", "y")) {
+                            positioned = true;
+                            x = pair[0];
+                            y = pair[1];
+                        }
+                    }
+                    case "size" -> {
+                        if (readPair("width", "height")) {
+                            width = pair[0];
+                            height = pair[1];
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (Float.isNaN(width)) {
+                throw new IllegalArgumentException("Node " + id + " has no size");
+            }
+            if (diagramDigest != null) {
+                diagramDigest.node(id, label, positioned, x, y, width, height);
+            }
+            NetworkNode node = new NetworkNode(id, x, y, width, height, label);
+            networkNodes.add(node);
+            validator.node(node, index);
+            if (!positioned) {
+                freeNodes.add(node);
+            }
+        }
+
+        private void readSuperNode(int index) throws IOException {
+            SuperNode superNode = new SuperNode(null, 0, 0, null);
+            List<NodeEntry> nodeEntries = new ArrayList<>();
+            boolean positioned = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id" -> superNode.setId(parser.getValueAsString());
+                    case "label" -> superNode.setName(parser.getValueAsString());
+                    case "position" -> {
+                        if (readPair("x", "y")) {
+                            positioned = true;
+                            superNode.setX((int) pair[0]);
+                            superNode.setY((int) pair[1]);
+                        }
+                    }
+                    case "nodePositions" -> readArray(position -> nodeEntries.add(readNodePosition(superNode, position)));
+                    default -> parser.skipChildren();
+                }
+            }
+            if (diagramDigest != null) {
+                diagramDigest.superNode(superNode.getId(), superNode.getName(), positioned, superNode.getX(), superNode.getY(), nodeEntries.size());
+                for (NodeEntry nodeEntry : nodeEntries) {
+                    diagramDigest.superNodeEntry(nodeEntry.nodeId(), nodeEntry.position());
+                }
+            }
+            int superNodeIndex = validator.superNode(superNode.getId(), index);
+            for (NodeEntry nodeEntry : nodeEntries) {
+                if (nodesRead) {
+                    addToSuperNode(superNodeIndex, superNode, nodeEntry);
+                } else {
+                    pendingNodeEntries.add(new PendingNodeEntry(superNodeIndex, superNode, nodeEntry));
+                }
+            }
+            superNodes.add(superNode);
+            if (!positioned) {
+                freeSuperNodes.add(superNode);
+            }
+        }
+
+        /**
+         * Reads a node entry of a super node, it is added once the id of the super node is known
+         */
+        private NodeEntry readNodePosition(SuperNode superNode, int index) throws IOException {
+            String nodeId = null;
+            NodePosition position = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "nodeId" -> nodeId = parser.getValueAsString();
+                    case "position" -> position = readSide();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (position == null) {
+                throw new IllegalArgumentException("No position of Node ID " + nodeId + " in SuperNode " + superNode.getId());
+            }
+            return new NodeEntry(nodeId, position, index);
         }
+
+        private NodePosition readSide() throws IOException {
+            String name = parser.getValueAsString();
+            if (name == null) {
+                return null;
+            }
+            try {
+                return NodePosition.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Invalid value '%s' for enum '%s'", name, "position"));
+            }
+        }
+
+        private void readLink(int index) throws IOException {
+            NetworkLink link = new NetworkLink(null, null, 0, 0);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "sourceNodeId" -> link.setSourceNodeId(parser.getValueAsString());
+                    case "targetNodeId" -> link.setTargetNodeId(parser.getValueAsString());
+                    case "rxTraffic" -> link.setIncomingTraffic(readFloat());
+                    case "txTraffic" -> link.setOutgoingTraffic(readFloat());
+                    default -> parser.skipChildren();
+                }
+            }
+            if (diagramDigest != null) {
+                diagramDigest.link(link.getSourceNodeId(), link.getTargetNodeId(), link.getIncomingTraffic(), link.getOutgoingTraffic());
+            }
+            networkLinks.add(link);
+            validator.link(link, index);
+        }
+
+        /**
+         * Adds a resolved node to the super node, nodes that are not in the diagram are left out
+         */
+        private void addToSuperNode(int superNodeIndex, SuperNode superNode, NodeEntry nodeEntry) {
+            NetworkNode node = validator.findNode(nodeEntry.nodeId());
+            if (node != null && validator.nodeInSuperNode(superNodeIndex, node, nodeEntry.index())) {
+                superNode.addNode(node, nodeEntry.position());
+            }
+        }
+
+        /**
+         * Reads the elements of an array, a null array has no elements
+         */
+        private void readArray(ElementReader elementReader) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return;
+            }
+            expect(JsonToken.START_ARRAY);
+            for (int index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+                expect(JsonToken.START_OBJECT);
+                elementReader.read(index);
+            }
+        }
+
+        /**
+         * Reads two numbers of an object into {@link #pair}, missing numbers are 0
+         *
+         * @return false when the object is null
+         */
+        private boolean readPair(String first, String second) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return false;
+            }
+            expect(JsonToken.START_OBJECT);
+            pair[0] = 0;
+            pair[1] = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (field.equals(first)) {
+                    pair[0] = readFloat();
+                } else if (field.equals(second)) {
+                    pair[1] = readFloat();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return true;
+        }
+
+        private float readFloat() throws IOException {
+            return switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getFloatValue();
+                case VALUE_NULL -> 0;
+                case VALUE_STRING -> {
+                    try {
+                        yield Float.parseFloat(parser.getText());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number '" + parser.getText() + "' of " + parser.currentName());
+                    }
+                }
+                default -> throw new IllegalArgumentException("Expected a number for " + parser.currentName());
+            };
+        }
+
+        private void expect(JsonToken token) throws IOException {
+            if (parser.currentToken() != token) {
+                throw new IllegalArgumentException("Expected " + token + " for " + parser.currentName() + " but found " + parser.currentToken());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementReader {
+        void read(int index) throws IOException;
+    }
+
+    private record NodeEntry(String nodeId, NodePosition position, int index) {
+    }
+
+    private record PendingNodeEntry(int superNodeIndex, SuperNode superNode, NodeEntry nodeEntry) {
     }
-}
\ No newline at end of file
+}
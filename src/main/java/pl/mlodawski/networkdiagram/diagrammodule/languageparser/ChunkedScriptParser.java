@@ -0,0 +1,177 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses large scripts in parallel. The script is cut after line breaks into chunks, the chunks are parsed on a dedicated pool
+ * and their statements are passed to the listener in the script order on the calling thread, so the listener sees the same
+ * statements, line numbers and first error as with {@link ScriptParser}. Statements referring to earlier lines,
+ * like nodes of super nodes, are resolved by the listener. Scripts of one chunk are parsed on the calling thread.
+ */
+@Service
+@Slf4j
+public class ChunkedScriptParser {
+
+    /**
+     * Size of the first buffer of a read script, it grows up to the chunk size so small scripts stay small
+     */
+    static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final ScriptParser scriptParser;
+    private final int chunkSize;
+    private final int maxPendingChunks;
+    private final ForkJoinPool parsePool;
+
+    public ChunkedScriptParser(ScriptParser scriptParser, RenderPool renderPool,
+                               @Value("${diagram.script.chunk-size:1048576}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Script chunk size has to be positive");
+        }
+        int threads = renderPool.getPool().getParallelism();
+        this.scriptParser = scriptParser;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = threads * 2;
+        this.parsePool = threads > 1 ? renderPool.getPool() : null;
+    }
+
+    /**
+     * Parses the script line by line
+     *
+     * @param script   script text, lines separated by \n or \r\n
+     * @param maxLines maximum number of lines
+     * @param listener receiver of the statements, called on the calling thread
+     * @return number of lines
+     * @throws ScriptSyntaxException    at the first line that is not a statement
+     * @throws IllegalArgumentException when the script has more lines than allowed
+     */
+    public int parseScript(CharSequence script, int maxLines, ScriptListener listener) {
+        if (parsePool == null || script.length() <= chunkSize) {
+            return scriptParser.parseScript(script, maxLines, listener);
+        }
+        Deque<ForkJoinTask<ScriptChunk>> chunks = new ArrayDeque<>();
+        for (int start = 0; start < script.length(); ) {
+            int chunkStart = start;
+            int chunkEnd = chunkEnd(script, start + chunkSize, script.length());
+            chunks.add(parsePool.submit(() -> ScriptChunk.parse(scriptParser, script, chunkStart, chunkEnd)));
+            start = chunkEnd;
+        }
+        log.debug("Parsing script of {} characters in {} chunks", script.length(), chunks.size());
+        return replay(chunks, 0, maxLines, listener, true);
+    }
+
+    /**
+     * Parses the script while it is read, at most two chunks per thread wait for the listener.
+     * The script is read into a small buffer growing up to the chunk size, it goes to the pool only when it is longer than a chunk.
+     *
+     * @param reader   script text, lines separated by \n or \r\n
+     * @param maxLines maximum number of lines
+     * @param listener receiver of the statements, called on the calling thread
+     * @return number of lines
+     * @throws IOException              when the script cannot be read
+     * @throws ScriptSyntaxException    at the first line that is not a statement
+     * @throws IllegalArgumentException when the script has more lines than allowed
+     */
+    public int parseScript(Reader reader, int maxLines, ScriptListener listener) throws IOException {
+        if (parsePool == null) {
+            return scriptParser.parseScript(reader, maxLines, listener);
+        }
+        Deque<ForkJoinTask<ScriptChunk>> chunks = new ArrayDeque<>();
+        int lineCount = 0;
+        char[] block = new char[Math.min(chunkSize, INITIAL_BUFFER_SIZE)];
+        int filled = 0;
+        try {
+            while (true) {
+                int read = reader.read(block, filled, block.length - filled);
+                if (read != -1) {
+                    filled += read;
+                    if (filled < block.length) {
+                        continue;
+                    }
+                    if (block.length < chunkSize) {
+                        block = Arrays.copyOf(block, (int) Math.min(chunkSize, block.length * 2L));
+                        continue;
+                    }
+                }
+                if (read == -1 && chunks.isEmpty() && lineCount == 0) {
+                    return scriptParser.parseLines(CharBuffer.wrap(block), 0, filled, maxLines, listener);
+                }
+                if (read == -1 && filled == 0) {
+                    break;
+                }
+                int cut = read == -1 ? filled : lastLineEnd(block, filled);
+                if (cut == 0) {
+                    block = Arrays.copyOf(block, block.length * 2);
+                    continue;
+                }
+                char[] chunkText = block;
+                int chunkEnd = cut;
+                chunks.add(parsePool.submit(() -> ScriptChunk.parse(scriptParser, CharBuffer.wrap(chunkText), 0, chunkEnd)));
+                if (read == -1) {
+                    break;
+                }
+                block = new char[Math.max(chunkSize, (filled - cut) * 2)];
+                System.arraycopy(chunkText, cut, block, 0, filled - cut);
+                filled -= cut;
+                if (chunks.size() >= maxPendingChunks) {
+                    lineCount = replay(chunks, lineCount, maxLines, listener, false);
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            chunks.forEach(chunk -> chunk.cancel(false));
+            throw e;
+        }
+        return replay(chunks, lineCount, maxLines, listener, true);
+    }
+
+    /**
+     * Passes the parsed chunks to the listener in order, all of them or only the oldest one
+     */
+    private int replay(Deque<ForkJoinTask<ScriptChunk>> chunks, int linesBefore, int maxLines, ScriptListener listener, boolean all) {
+        int lineCount = linesBefore;
+        int replayed = all ? chunks.size() : 1;
+        try {
+            for (int i = 0; i < replayed; i++) {
+                lineCount = chunks.removeFirst().join().replay(listener, lineCount, maxLines);
+            }
+        } catch (RuntimeException e) {
+            chunks.forEach(chunk -> chunk.cancel(false));
+            chunks.clear();
+            throw e;
+        }
+        return lineCount;
+    }
+
+    /**
+     * @return end of the line reaching the position, after its line break
+     */
+    private static int chunkEnd(CharSequence script, int position, int length) {
+        while (position < length && script.charAt(position - 1) != '\n') {
+            position++;
+        }
+        return Math.min(position, length);
+    }
+
+    /**
+     * @return end of the last complete line of the block, after its line break, or 0 when the block has no line break
+     */
+    private static int lastLineEnd(char[] block, int filled) {
+        for (int i = filled - 1; i >= 0; i--) {
+            if (block[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,110 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+
+import java.util.Arrays;
+
+/**
+ * Statements of consecutive script lines parsed apart from the lines before them, with line numbers counted from
+ * the start of the chunk. Replaying the chunks in order gives the listener the same calls and the same first error
+ * as parsing the whole script at once.
+ */
+final class ScriptChunk implements ScriptListener {
+
+    private Object[] statements = new Object[256];
+    private int[] lineNumbers = new int[256];
+    private int statementCount;
+    private int lineCount;
+    private ScriptSyntaxException error;
+
+    /**
+     * Parses the lines of the text range, stops at the first syntax error and keeps it for the replay
+     *
+     * @param scriptParser parser
+     * @param text         script text
+     * @param start        start of the first line
+     * @param end          end of the last line
+     * @return parsed chunk
+     */
+    static ScriptChunk parse(ScriptParser scriptParser, CharSequence text, int start, int end) {
+        ScriptChunk chunk = new ScriptChunk();
+        try {
+            chunk.lineCount = scriptParser.parseLines(text, start, end, Integer.MAX_VALUE, chunk);
+        } catch (ScriptSyntaxException e) {
+            chunk.error = e;
+        }
+        return chunk;
+    }
+
+    /**
+     * Passes the statements to the listener as if the chunk was parsed after the lines before it
+     *
+     * @param listener    receiver of the statements
+     * @param linesBefore number of the script lines before the chunk
+     * @param maxLines    maximum number of the script lines
+     * @return number of the script lines up to the end of the chunk
+     * @throws ScriptSyntaxException    at the syntax error of the chunk, with its line number in the script
+     * @throws IllegalArgumentException when the script reaches more lines than allowed
+     */
+    int replay(ScriptListener listener, int linesBefore, int maxLines) {
+        for (int i = 0; i < statementCount; i++) {
+            int lineNumber = linesBefore + lineNumbers[i];
+            checkLine(lineNumber, maxLines);
+            switch (statements[i]) {
+                case NetworkNode node -> listener.node(node, lineNumber);
+                case SuperNode superNode -> listener.superNode(superNode, lineNumber);
+                case NetworkLink link -> listener.link(link, lineNumber);
+                case NodeInSuperNode member -> listener.nodeInSuperNode(member.nodeId(), member.position(), member.superNodeId(), lineNumber);
+                default -> throw new IllegalStateException("Unknown statement " + statements[i]);
+            }
+        }
+        if (error != null) {
+            int lineNumber = linesBefore + error.getLine();
+            checkLine(lineNumber, maxLines);
+            throw new ScriptSyntaxException(lineNumber, error.getColumn(), error.getReason());
+        }
+        checkLine(linesBefore + lineCount, maxLines);
+        return linesBefore + lineCount;
+    }
+
+    @Override
+    public void node(NetworkNode node, int lineNumber) {
+        add(node, lineNumber);
+    }
+
+    @Override
+    public void superNode(SuperNode superNode, int lineNumber) {
+        add(superNode, lineNumber);
+    }
+
+    @Override
+    public void link(NetworkLink link, int lineNumber) {
+        add(link, lineNumber);
+    }
+
+    @Override
+    public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+        add(new NodeInSuperNode(nodeId, position, superNodeId), lineNumber);
+    }
+
+    private void add(Object statement, int lineNumber) {
+        if (statementCount == statements.length) {
+            statements = Arrays.copyOf(statements, statementCount * 2);
+            lineNumbers = Arrays.copyOf(lineNumbers, statementCount * 2);
+        }
+        statements[statementCount] = statement;
+        lineNumbers[statementCount++] = lineNumber;
+    }
+
+    private static void checkLine(int lineNumber, int maxLines) {
+        if (lineNumber > maxLines) {
+            throw new IllegalArgumentException("Script has more than " + maxLines + " lines");
+        }
+    }
+
+    private record NodeInSuperNode(String nodeId, NodePosition position, String superNodeId) {
+    }
+}
@@ -0,0 +1,246 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+/**
+ * Lexer of one script line read straight from the script text. Tokens may be separated by spaces or tabs.
+ * Numbers are converted without creating strings, only ids and labels are copied out of the text.
+ */
+final class ScriptCursor {
+
+    private static final float[] FLOAT_POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    private static final double[] DOUBLE_POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private final CharSequence text;
+    private final int lineStart;
+    private final int end;
+    private final int lineNumber;
+    private int position;
+
+    private int numberStart;
+    private long mantissa;
+    private int exponent;
+    private boolean negative;
+    private boolean exact;
+
+    /**
+     * @param text       script text
+     * @param start      start of the line in the text
+     * @param end        end of the line in the text, without the line break
+     * @param lineNumber line number, starting from 1
+     */
+    ScriptCursor(CharSequence text, int start, int end, int lineNumber) {
+        this.text = text;
+        this.lineStart = start;
+        this.end = end;
+        this.lineNumber = lineNumber;
+        this.position = start;
+    }
+
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return true when the rest of the line is blank
+     */
+    boolean atEnd() {
+        skipWhitespace();
+        return position == end;
+    }
+
+    /**
+     * Consumes the token when the line continues with it
+     *
+     * @param token expected token
+     * @return true when the token was consumed
+     */
+    boolean tryToken(String token) {
+        skipWhitespace();
+        if (!startsWith(token)) {
+            return false;
+        }
+        position += token.length();
+        return true;
+    }
+
+    /**
+     * @param token expected token
+     * @throws ScriptSyntaxException when the line does not continue with the token
+     */
+    void expect(String token) {
+        if (!tryToken(token)) {
+            throw error("expected '" + token + "'");
+        }
+    }
+
+    /**
+     * Consumes one of the characters
+     *
+     * @param characters accepted characters
+     * @return consumed character, or 0 when the line continues with another one
+     */
+    char tryOneOf(String characters) {
+        skipWhitespace();
+        if (position < end && characters.indexOf(text.charAt(position)) >= 0) {
+            return text.charAt(position++);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the prefix followed by the digits of an id
+     *
+     * @param prefix prefix of the id, like N or SN
+     * @return digits of the id
+     */
+    String readId(String prefix) {
+        expect(prefix);
+        int start = position;
+        while (position < end && isDigit(text.charAt(position))) {
+            position++;
+        }
+        if (position == start) {
+            throw error("expected the digits of the " + prefix + " id");
+        }
+        return text.subSequence(start, position).toString();
+    }
+
+    /**
+     * @return text between double quotes, not empty
+     */
+    String readQuoted() {
+        expect("\"");
+        int start = position;
+        while (position < end && text.charAt(position) != '"') {
+            position++;
+        }
+        if (position == end) {
+            throw error("expected '\"' closing the text");
+        }
+        if (position == start) {
+            throw error("expected a text");
+        }
+        String quoted = text.subSequence(start, position).toString();
+        position++;
+        return quoted;
+    }
+
+    /**
+     * @return number rounded like {@link Float#parseFloat(String)}
+     */
+    float readFloat() {
+        scanNumber();
+        if (exact && mantissa < 1L << 24 && Math.abs(exponent) < FLOAT_POWERS_OF_TEN.length) {
+            float value = exponent >= 0 ? mantissa * FLOAT_POWERS_OF_TEN[exponent] : mantissa / FLOAT_POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        return Float.parseFloat(text.subSequence(numberStart, position).toString());
+    }
+
+    /**
+     * @return number rounded like {@link Double#parseDouble(String)}
+     */
+    double readDouble() {
+        scanNumber();
+        if (exact && mantissa < 1L << 53 && Math.abs(exponent) < DOUBLE_POWERS_OF_TEN.length) {
+            double value = exponent >= 0 ? mantissa * DOUBLE_POWERS_OF_TEN[exponent] : mantissa / DOUBLE_POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(text.subSequence(numberStart, position).toString());
+    }
+
+    /**
+     * @param message what was expected
+     * @return error at the current column with the found character
+     */
+    ScriptSyntaxException error(String message) {
+        skipWhitespace();
+        String found = position == end ? "end of line" : "'" + text.charAt(position) + "'";
+        return new ScriptSyntaxException(lineNumber, position - lineStart + 1, message + " but found " + found);
+    }
+
+    /**
+     * Reads a decimal number with an optional sign, fraction and exponent into the mantissa and the power of ten.
+     * Numbers with more digits than a long holds are marked as not exact and converted from their text.
+     */
+    private void scanNumber() {
+        skipWhitespace();
+        numberStart = position;
+        negative = false;
+        mantissa = 0;
+        exponent = 0;
+        exact = true;
+        if (position < end && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            negative = text.charAt(position) == '-';
+            position++;
+        }
+        int digits = 0;
+        int significantDigits = 0;
+        boolean fraction = false;
+        while (position < end) {
+            char character = text.charAt(position);
+            if (isDigit(character)) {
+                digits++;
+                if (significantDigits > 0 || character != '0') {
+                    significantDigits++;
+                }
+                if (significantDigits <= MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (character - '0');
+                    exponent -= fraction ? 1 : 0;
+                } else {
+                    exact = false;
+                }
+            } else if (character == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (digits == 0) {
+            position = numberStart;
+            throw error("expected a number");
+        }
+        if (position < end && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < end && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+                negativeExponent = text.charAt(position) == '-';
+                position++;
+            }
+            int exponentStart = position;
+            int exponentValue = 0;
+            while (position < end && isDigit(text.charAt(position))) {
+                exponentValue = Math.min(exponentValue * 10 + (text.charAt(position) - '0'), 100_000);
+                position++;
+            }
+            if (position == exponentStart) {
+                throw error("expected the digits of the exponent");
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+    }
+
+    private boolean startsWith(String token) {
+        if (end - position < token.length()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (text.charAt(position + i) != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (position < end && (text.charAt(position) == ' ' || text.charAt(position) == '\t' || text.charAt(position) == '\r')) {
+            position++;
+        }
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+}
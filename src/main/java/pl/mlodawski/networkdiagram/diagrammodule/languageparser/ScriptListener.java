@@ -0,0 +1,38 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+
+/**
+ * Receives the statements of a script in the order of its lines
+ */
+public interface ScriptListener {
+
+    /**
+     * @param node       declared node, a node without Position has NaN coordinates
+     * @param lineNumber line of the statement, starting from 1
+     */
+    void node(NetworkNode node, int lineNumber);
+
+    /**
+     * @param superNode  declared super node without nodes
+     * @param lineNumber line of the statement, starting from 1
+     */
+    void superNode(SuperNode superNode, int lineNumber);
+
+    /**
+     * @param link       declared link
+     * @param lineNumber line of the statement, starting from 1
+     */
+    void link(NetworkLink link, int lineNumber);
+
+    /**
+     * @param nodeId      id of the node
+     * @param position    side of the super node, null when the line has no position symbol
+     * @param superNodeId id of the super node
+     * @param lineNumber  line of the statement, starting from 1
+     */
+    void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber);
+}
@@ -1,132 +1,336 @@
 package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
 
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkNodeUtilsService;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNodeRegistry;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Parser of the script language. Every line is classified by its first token and read in one pass:
+ * <pre>
+ * Node N1: Position(10, 20), Size(80, 40), Label("Router")
+ * SuperNode SN1: Position(300, 200), Label("Rack")
+ * N1 ---[30,70]--> N2
+ * N1 --^--> SN1
+ * </pre>
+ * Position of a node is optional, blank lines are skipped.
+ */
 @Service
-@AllArgsConstructor
 @Slf4j
 public class ScriptParser {
 
-    private final NetworkNodeUtilsService networkNodeUtilsService;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
 
+    /**
+     * Parses the script line by line
+     * @param script script text, lines separated by \n or \r\n
+     * @param listener receiver of the statements
+     * @return number of lines
+     * @throws ScriptSyntaxException at the first line that is not a statement
+     */
+    public int parseScript(CharSequence script, ScriptListener listener) {
+        return parseScript(script, Integer.MAX_VALUE, listener);
+    }
+
+    /**
+     * Parses the script line by line
+     * @param script script text, lines separated by \n or \r\n
+     * @param maxLines maximum number of lines
+     * @param listener receiver of the statements
+     * @return number of lines
+     * @throws ScriptSyntaxException at the first line that is not a statement
+     * @throws IllegalArgumentException when the script has more lines than allowed
+     */
+    public int parseScript(CharSequence script, int maxLines, ScriptListener listener) {
+        return parseLines(script, 0, script.length(), maxLines, listener);
+    }
+
+    /**
+     * Parses the lines of a part of the script, line numbers start from 1 at the start of the part
+     * @param text script text
+     * @param start start of the first line
+     * @param end end of the last line
+     * @param maxLines maximum number of lines
+     * @param listener receiver of the statements
+     * @return number of lines
+     * @throws ScriptSyntaxException at the first line that is not a statement
+     * @throws IllegalArgumentException when the part has more lines than allowed
+     */
+    public int parseLines(CharSequence text, int start, int end, int maxLines, ScriptListener listener) {
+        int lineNumber = 0;
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && text.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            parseLine(text, lineStart, lineEnd, countLine(lineNumber, maxLines), listener);
+            lineNumber++;
+            lineStart = lineEnd + 1;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Parses the script line by line while it is read, only the line being parsed is kept in memory
+     * @param reader script text, lines separated by \n or \r\n
+     * @param maxLines maximum number of lines
+     * @param listener receiver of the statements
+     * @return number of lines
+     * @throws IOException when the script cannot be read
+     * @throws ScriptSyntaxException at the first line that is not a statement
+     * @throws IllegalArgumentException when the script has more lines than allowed
+     */
+    public int parseScript(Reader reader, int maxLines, ScriptListener listener) throws IOException {
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        CharBuffer text = CharBuffer.wrap(buffer);
+        int lineNumber = 0;
+        int filled = 0;
+        int read;
+        while ((read = reader.read(buffer, filled, buffer.length - filled)) != -1) {
+            int scanned = filled;
+            filled += read;
+            int lineStart = 0;
+            for (int i = scanned; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    parseLine(text, lineStart, i, countLine(lineNumber, maxLines), listener);
+                    lineNumber++;
+                    lineStart = i + 1;
+                }
+            }
+            filled -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, filled);
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                text = CharBuffer.wrap(buffer);
+            }
+        }
+        if (filled > 0) {
+            parseLine(text, 0, filled, countLine(lineNumber, maxLines), listener);
+            lineNumber++;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Parses one line of a script
+     * @param text text holding the line
+     * @param start start of the line in the text
+     * @param end end of the line in the text, without the line break
+     * @param lineNumber line number reported with the statement and the errors, starting from 1
+     * @param listener receiver of the statement
+     * @throws ScriptSyntaxException when the line is not blank and not a statement
+     */
+    public void parseLine(CharSequence text, int start, int end, int lineNumber, ScriptListener listener) {
+        ScriptCursor cursor = new ScriptCursor(text, start, end, lineNumber);
+        if (cursor.atEnd()) {
+            return;
+        }
+        if (cursor.tryToken("SuperNode")) {
+            listener.superNode(parseSuperNode(cursor), lineNumber);
+        } else if (cursor.tryToken("Node")) {
+            listener.node(parseNetworkNode(cursor), lineNumber);
+        } else if (cursor.tryToken("N")) {
+            parseConnection(cursor, listener);
+        } else {
+            throw cursor.error("expected 'Node', 'SuperNode' or a node id");
+        }
+        if (!cursor.atEnd()) {
+            throw cursor.error("expected end of line");
+        }
+    }
 
     /**
-     * Method parses line from script and returns NetworkNode object
+     * Method parses line from script and returns NetworkNode object, a node without Position gets NaN coordinates
      * @param line line from script
-     * @return NetworkNode object
+     * @return NetworkNode object, null when the line is not a node
      */
     public NetworkNode parseNetworkNode(String line) {
-        Pattern pattern = Pattern.compile("Node N(\\d+): Position\\(([^,]+), ([^)]+)\\), Size\\(([^,]+), ([^)]+)\\), Label\\(\"([^\"]+)\"\\)");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String id = matcher.group(1);
-            float x = Float.parseFloat(matcher.group(2));
-            float y = Float.parseFloat(matcher.group(3));
-            float width = Float.parseFloat(matcher.group(4));
-            float height = Float.parseFloat(matcher.group(5));
-            String name = matcher.group(6);
-            return new NetworkNode(id, x, y, width, height, name);
-        }
-        log.error("Error while parsing network node on line: {}",line);
-        return null;
+        SingleStatement statement = parseSingle(line);
+        return statement.node;
     }
 
     /**
      * Method parses line from script and returns SuperNode object
      * @param line line from script
+     * @return SuperNode object, null when the line is not a super node
      */
     public SuperNode parseSuperNode(String line) {
-        Pattern pattern = Pattern.compile("SuperNode SN(\\d+): Position\\(([^,]+), ([^)]+)\\), Label\\(\"([^\"]+)\"\\)");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String id = matcher.group(1);
-            int x = (int) Double.parseDouble(matcher.group(2));
-            int y = (int) Double.parseDouble(matcher.group(3));
-            String name = matcher.group(4);
-            return new SuperNode(id, x, y, name);
-        }
-        log.error("Error while parsing super node on line: {}",line);
-        return null;
+        SingleStatement statement = parseSingle(line);
+        return statement.superNode;
     }
 
     /**
      * Method parses line from script and returns NetworkLink object
      * @param line line from script
-     * @return NetworkLink object
+     * @return NetworkLink object, null when the line is not a link
      */
     public NetworkLink parseNetworkLink(String line) {
-        Pattern pattern = Pattern.compile("N(\\d+) ---\\[([^,]+),([^]]+)]--> N(\\d+)");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String sourceNodeId = matcher.group(1);
-            float outgoingTraffic = Float.parseFloat(matcher.group(2));
-            float incomingTraffic = Float.parseFloat(matcher.group(3));
-            String targetNodeId = matcher.group(4);
-            return new NetworkLink(sourceNodeId, targetNodeId, incomingTraffic, outgoingTraffic);
-        }
-        log.error("Error while parsing network link on line: {}", line);
-        return null;
+        SingleStatement statement = parseSingle(line);
+        return statement.link;
     }
 
     /**
-     * Method parses line from script and returns NetworkLink object
+     * Method parses line from script and adds the node to the super node
      * @param line line from script
-     * @param allNodes list of all nodes
+     * @param nodeRegistry registry of all nodes declared so far
      * @param allSuperNodes list of all super nodes
-     * @return NetworkLink object
+     * @return updated SuperNode object
      */
-    public SuperNode parseNodePositionInSuperNode(String line, List<NetworkNode> allNodes, List<SuperNode> allSuperNodes) {
-        // Pattern without position symbol
-        Pattern pattern = Pattern.compile("N(\\d+) --([<>^v]?)--> SN(\\d+)");
-        Matcher matcher = pattern.matcher(line);
-        if (matcher.find()) {
-            String nodeId = matcher.group(1);
-            String positionSymbol = matcher.group(2);
-            String superNodeId = matcher.group(3);
-
-            NodePosition position = null;
-            if (!positionSymbol.isEmpty()) {
-                position = switch (positionSymbol) {
-                    case "^" -> NodePosition.TOP;
-                    case "v" -> NodePosition.BOTTOM;
-                    case "<" -> NodePosition.LEFT;
-                    case ">" -> NodePosition.RIGHT;
-                    default -> throw new IllegalArgumentException("Invalid position symbol: " + positionSymbol);
-                };
-            }
+    public SuperNode parseNodePositionInSuperNode(String line, NetworkNodeRegistry nodeRegistry, List<SuperNode> allSuperNodes) {
+        SingleStatement statement = parseSingle(line);
+        if (statement.superNodeId == null) {
+            throw new IllegalArgumentException("Invalid line format: " + line);
+        }
+        SuperNode superNode = allSuperNodes.stream()
+                .filter(node -> node.getId().equals(statement.superNodeId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("SuperNode with ID " + statement.superNodeId + " not found"));
+        NetworkNode node = nodeRegistry.findById(statement.nodeId);
+        if (node == null) {
+            throw new IllegalArgumentException("NetworkNode with ID " + statement.nodeId + " not found");
+        }
+        if (statement.position != null) {
+            superNode.addNode(node, statement.position);
+        } else {
+            log.warn("No position symbol found for line: {}", line);
+        }
+        return superNode;
+    }
 
-            SuperNode superNode = allSuperNodes.stream()
-                    .filter(node -> node.getId().equals(superNodeId))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("SuperNode with ID " + superNodeId + " not found"));
+    /**
+     * @return number of the next line, starting from 1
+     */
+    private int countLine(int lineCount, int maxLines) {
+        if (lineCount == maxLines) {
+            throw new IllegalArgumentException("Script has more than " + maxLines + " lines");
+        }
+        return lineCount + 1;
+    }
 
-            NetworkNode node = networkNodeUtilsService.findNodeById(allNodes, nodeId);
-            if (node == null) {
-                throw new IllegalArgumentException("NetworkNode with ID " + nodeId + " not found");
-            }
+    private NetworkNode parseNetworkNode(ScriptCursor cursor) {
+        String id = cursor.readId("N");
+        cursor.expect(":");
+        float x = Float.NaN;
+        float y = Float.NaN;
+        if (cursor.tryToken("Position")) {
+            cursor.expect("(");
+            x = cursor.readFloat();
+            cursor.expect(",");
+            y = cursor.readFloat();
+            cursor.expect(")");
+            cursor.expect(",");
+        }
+        cursor.expect("Size");
+        cursor.expect("(");
+        float width = cursor.readFloat();
+        cursor.expect(",");
+        float height = cursor.readFloat();
+        cursor.expect(")");
+        cursor.expect(",");
+        return new NetworkNode(id, x, y, width, height, parseLabel(cursor));
+    }
 
-            if (position != null) {
-                superNode.addNode(node, position);
-            } else {
-                log.warn("No position symbol found for line: {}", line);
-            }
-            log.debug("Parsed line: " + line);
-            return superNode;
-        } else {
-            log.error("Error while parsing on line: {}", line);
-            throw new IllegalArgumentException("Invalid line format: " + line);
+    private SuperNode parseSuperNode(ScriptCursor cursor) {
+        String id = cursor.readId("SN");
+        cursor.expect(":");
+        cursor.expect("Position");
+        cursor.expect("(");
+        int x = (int) cursor.readDouble();
+        cursor.expect(",");
+        int y = (int) cursor.readDouble();
+        cursor.expect(")");
+        cursor.expect(",");
+        return new SuperNode(id, x, y, parseLabel(cursor));
+    }
+
+    private String parseLabel(ScriptCursor cursor) {
+        cursor.expect("Label");
+        cursor.expect("(");
+        String label = cursor.readQuoted();
+        cursor.expect(")");
+        return label;
+    }
+
+    /**
+     * Parses a link, N1 ---[out,in]--> N2, or a node in a super node, N1 --^--> SN1, after the N of the first node
+     */
+    private void parseConnection(ScriptCursor cursor, ScriptListener listener) {
+        String sourceNodeId = cursor.readId("");
+        cursor.expect("--");
+        if (cursor.tryToken("-[")) {
+            float outgoingTraffic = cursor.readFloat();
+            cursor.expect(",");
+            float incomingTraffic = cursor.readFloat();
+            cursor.expect("]");
+            cursor.expect("-->");
+            String targetNodeId = cursor.readId("N");
+            listener.link(new NetworkLink(sourceNodeId, targetNodeId, incomingTraffic, outgoingTraffic), cursor.getLineNumber());
+            return;
+        }
+        NodePosition position = switch (cursor.tryOneOf("^v<>")) {
+            case '^' -> NodePosition.TOP;
+            case 'v' -> NodePosition.BOTTOM;
+            case '<' -> NodePosition.LEFT;
+            case '>' -> NodePosition.RIGHT;
+            default -> null;
+        };
+        cursor.expect("-->");
+        String superNodeId = cursor.readId("SN");
+        listener.nodeInSuperNode(sourceNodeId, position, superNodeId, cursor.getLineNumber());
+    }
+
+    private SingleStatement parseSingle(String line) {
+        SingleStatement statement = new SingleStatement();
+        try {
+            parseLine(line, 0, line.length(), 1, statement);
+        } catch (ScriptSyntaxException e) {
+            log.debug("Line is not a statement: {}", e.getMessage());
         }
+        return statement;
     }
 
+    /**
+     * Keeps the statement of a single line
+     */
+    private static final class SingleStatement implements ScriptListener {
+
+        private NetworkNode node;
+        private SuperNode superNode;
+        private NetworkLink link;
+        private String nodeId;
+        private NodePosition position;
+        private String superNodeId;
+
+        @Override
+        public void node(NetworkNode node, int lineNumber) {
+            this.node = node;
+        }
+
+        @Override
+        public void superNode(SuperNode superNode, int lineNumber) {
+            this.superNode = superNode;
+        }
+
+        @Override
+        public void link(NetworkLink link, int lineNumber) {
+            this.link = link;
+        }
+
+        @Override
+        public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+            this.nodeId = nodeId;
+            this.position = position;
+            this.superNodeId = superNodeId;
+        }
+    }
 }
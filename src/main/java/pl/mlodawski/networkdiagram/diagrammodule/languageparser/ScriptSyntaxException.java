@@ -0,0 +1,21 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import lombok.Getter;
+
+/**
+ * Thrown for a script line that does not follow the script grammar, answered with 400
+ */
+@Getter
+public class ScriptSyntaxException extends IllegalArgumentException {
+
+    private final int line;
+    private final int column;
+    private final String reason;
+
+    public ScriptSyntaxException(int line, int column, String reason) {
+        super("Line " + line + ", column " + column + ": " + reason);
+        this.line = line;
+        this.column = column;
+        this.reason = reason;
+    }
+}
@@ -12,8 +12,8 @@ import java.awt.*;
     }
 
     @Override
-    public Color getLinkColor(int percentage) {
-        percentage = Math.min(100, Math.max(0, percentage));
+    public Color getLinkColor(float percentage) {
+        percentage = Math.min(100.0f, Math.max(0.0f, percentage));
         float ratio = percentage / 100.0f;
         int blue = (int) (255 * ratio);
         int yellow = 255 - blue;
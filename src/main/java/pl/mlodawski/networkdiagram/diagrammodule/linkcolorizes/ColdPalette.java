@@ -12,8 +12,8 @@ import java.awt.Color;
     }
 
     @Override
-    public Color getLinkColor(int percentage) {
-        float ratio = Math.min(100, Math.max(0, percentage)) / 100.0f;
+    public Color getLinkColor(float percentage) {
+        float ratio = Math.min(100.0f, Math.max(0.0f, percentage)) / 100.0f;
         int green = (int) (255 * ratio);
         return new Color(0, green, 255);
     }
@@ -19,8 +19,11 @@ public enum ColorStrategy {
     @JsonProperty("strategy")
     private final LinkColorStrategy strategy;
 
+    private final PaletteTable table;
+
     ColorStrategy(String name, LinkColorStrategy strategy) {
         this.name = name;
         this.strategy = strategy;
+        this.table = PaletteTable.compile(strategy);
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * User defined palette, linear gradient between color stops spread evenly from 0% to 100%.
+ */
+class GradientPalette implements LinkColorStrategy {
+
+    private final Color[] stops;
+
+    GradientPalette(List<Color> stops) {
+        if (stops == null || stops.size() < 2) {
+            throw new IllegalArgumentException("Gradient palette needs at least two colors");
+        }
+        this.stops = stops.toArray(new Color[0]);
+    }
+
+    @Override
+    public Color getLinkColor(float percentage) {
+        float position = Math.min(100.0f, Math.max(0.0f, percentage)) / 100.0f * (stops.length - 1);
+        int index = Math.min(stops.length - 2, (int) position);
+        float ratio = position - index;
+        Color from = stops[index];
+        Color to = stops[index + 1];
+        return new Color(
+                interpolate(from.getRed(), to.getRed(), ratio),
+                interpolate(from.getGreen(), to.getGreen(), ratio),
+                interpolate(from.getBlue(), to.getBlue(), ratio)
+        );
+    }
+
+    private int interpolate(int from, int to, float ratio) {
+        return Math.round(from + (to - from) * ratio);
+    }
+}
@@ -12,8 +12,8 @@ import java.awt.*;
     }
 
     @Override
-    public Color getLinkColor(int percentage) {
-        int gray = (int) (255 * (Math.min(100, Math.max(0, percentage)) / 100.0f));
+    public Color getLinkColor(float percentage) {
+        int gray = (int) (255 * (Math.min(100.0f, Math.max(0.0f, percentage)) / 100.0f));
         return new Color(gray, gray, gray);
     }
 }
\ No newline at end of file
@@ -3,5 +3,5 @@ package pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes;
 import java.awt.*;
 
 public interface LinkColorStrategy {
-    Color getLinkColor(int percentage);
-}
\ No newline at end of file
+    Color getLinkColor(float percentage);
+}
@@ -0,0 +1,65 @@
+package pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled lookup tables of the user defined gradient palettes, keyed by their color stops.
+ * Built-in palettes are compiled once by {@link ColorStrategy}.
+ */
+@Service
+@Slf4j
+public class LinkPaletteCache {
+
+    private final Map<String, PaletteTable> gradientTables = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    public LinkPaletteCache(@Value("${diagram.palette.cache.max-size:256}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the lookup table of the palette
+     *
+     * @param strategy built-in palette, used when no gradient is given
+     * @param gradient hex colors of the user defined gradient, may be null
+     * @return lookup table
+     */
+    public PaletteTable resolve(ColorStrategy strategy, List<String> gradient) {
+        if (gradient == null || gradient.isEmpty()) {
+            return strategy.getTable();
+        }
+        String key = String.join(",", gradient).toLowerCase(Locale.ROOT);
+        PaletteTable table = gradientTables.get(key);
+        if (table != null) {
+            return table;
+        }
+        table = compileGradient(gradient);
+        if (gradientTables.size() < maxSize) {
+            PaletteTable existing = gradientTables.putIfAbsent(key, table);
+            return existing != null ? existing : table;
+        }
+        log.debug("Gradient palette cache is full, palette {} is not cached", key);
+        return table;
+    }
+
+    private PaletteTable compileGradient(List<String> gradient) {
+        List<Color> stops = new ArrayList<>(gradient.size());
+        for (String hexColor : gradient) {
+            try {
+                stops.add(Color.decode(hexColor));
+            } catch (NumberFormatException | NullPointerException e) {
+                throw new IllegalArgumentException("Invalid gradient color: " + hexColor);
+            }
+        }
+        return PaletteTable.compile(new GradientPalette(stops));
+    }
+}
@@ -0,0 +1,76 @@
+package pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes;
+
+import java.awt.*;
+
+/**
+ * Immutable lookup table of a palette, holds the color and its SVG hex string for {@link #STEPS} load levels from 0% to 100%.
+ */
+public final class PaletteTable {
+
+    public static final int STEPS = 1024;
+
+    private final Color[] colors;
+    private final String[] hexColors;
+
+    private PaletteTable(Color[] colors) {
+        this.colors = colors;
+        this.hexColors = new String[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            hexColors[i] = String.format("#%06x", colors[i].getRGB() & 0xFFFFFF);
+        }
+    }
+
+    /**
+     * Compiles the strategy into a lookup table
+     *
+     * @param strategy palette to compile
+     * @return lookup table
+     */
+    public static PaletteTable compile(LinkColorStrategy strategy) {
+        Color[] colors = new Color[STEPS];
+        for (int bucket = 0; bucket < STEPS; bucket++) {
+            colors[bucket] = strategy.getLinkColor(percentageOf(bucket));
+        }
+        return new PaletteTable(colors);
+    }
+
+    /**
+     * Finds the bucket of the load level
+     *
+     * @param percentage load in percent, clamped to 0..100
+     * @return bucket index
+     */
+    public int bucket(float percentage) {
+        if (!(percentage > 0.0f)) {
+            return 0;
+        }
+        if (percentage >= 100.0f) {
+            return STEPS - 1;
+        }
+        return Math.round(percentage * (STEPS - 1) / 100.0f);
+    }
+
+    public Color getColor(float percentage) {
+        return colors[bucket(percentage)];
+    }
+
+    public String getHexColor(float percentage) {
+        return hexColors[bucket(percentage)];
+    }
+
+    public Color getColorAt(int bucket) {
+        return colors[bucket];
+    }
+
+    public String getHexColorAt(int bucket) {
+        return hexColors[bucket];
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return load level the bucket was compiled for
+     */
+    static float percentageOf(int bucket) {
+        return bucket * 100.0f / (STEPS - 1);
+    }
+}
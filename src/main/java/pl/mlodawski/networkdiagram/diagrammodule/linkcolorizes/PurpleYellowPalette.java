@@ -12,8 +12,8 @@ import java.awt.Color;
     }
 
     @Override
-    public Color getLinkColor(int percentage) {
-        float ratio = Math.min(100, Math.max(0, percentage)) / 100.0f;
+    public Color getLinkColor(float percentage) {
+        float ratio = Math.min(100.0f, Math.max(0.0f, percentage)) / 100.0f;
         int purple = (int) (255 * ratio);
         int yellow = 255 - purple;
         return new Color(purple, yellow, purple);
@@ -12,11 +12,11 @@ class RainbowPalette implements LinkColorStrategy {
     }
 
     @Override
-    public Color getLinkColor(int percentage) {
+    public Color getLinkColor(float percentage) {
         if (percentage == 0) {
             return Color.GRAY;
         }
-        float hue = Math.min(100, Math.max(0, percentage)) / 101.0f;
+        float hue = Math.min(100.0f, Math.max(0.0f, percentage)) / 101.0f;
         return Color.getHSBColor(hue, 1.0f, 1.0f);
     }
 }
@@ -12,8 +12,8 @@ import java.awt.*;
     }
 
     @Override
-    public Color getLinkColor(int percentage) {
-        float ratio = Math.min(100, Math.max(0, percentage)) / 100.0f;
+    public Color getLinkColor(float percentage) {
+        float ratio = Math.min(100.0f, Math.max(0.0f, percentage)) / 100.0f;
         int red = (int) (255 * ratio);
         int green = 255 - red;
         return new Color(red, green, 0);
@@ -0,0 +1,337 @@
+package pl.mlodawski.networkdiagram.diagrammodule.livestream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.LinkDelta;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSessionListener;
+import pl.mlodawski.networkdiagram.diagrammodule.session.UnknownSessionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes the changes of the diagram sessions to the stream subscribers.
+ * Every session keeps a short shared history of its updates, the JSON of an update is written once and sent to all subscribers.
+ * A subscriber holds only the version it has sent and runs on its own virtual thread, so a slow client blocks nobody but itself.
+ * When it gets back, everything it missed is coalesced into one event with the latest colors and labels of every changed link,
+ * and if it missed more than the history or a change of the topology, it is told to fetch the document again.
+ */
+@Service
+@Slf4j
+public class DiagramStreamHub implements DiagramSessionListener {
+
+    static final String DELTA_EVENT = "delta";
+    static final String DOCUMENT_EVENT = "document";
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final int historySize;
+    private final int maxSubscribers;
+    private final long heartbeatMillis;
+    private final Counter eventCounter;
+    private final Counter coalescedCounter;
+    private final Counter resyncCounter;
+    private final Timer fanOutTimer;
+
+    public DiagramStreamHub(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                            @Value("${diagram.stream.history:32}") int historySize,
+                            @Value("${diagram.stream.max-subscribers:10000}") int maxSubscribers,
+                            @Value("${diagram.stream.heartbeat-ms:15000}") long heartbeatMillis) {
+        if (historySize <= 0 || maxSubscribers <= 0 || heartbeatMillis <= 0) {
+            throw new IllegalArgumentException("Stream history, subscriber limit and heartbeat have to be positive");
+        }
+        this.objectMapper = objectMapper;
+        this.historySize = historySize;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeatMillis = heartbeatMillis;
+        this.eventCounter = meterRegistry.counter("diagram.stream.events");
+        this.coalescedCounter = meterRegistry.counter("diagram.stream.coalesced");
+        this.resyncCounter = meterRegistry.counter("diagram.stream.resyncs");
+        this.fanOutTimer = meterRegistry.timer("diagram.stream.fanout");
+        meterRegistry.gauge("diagram.stream.subscribers", subscriberCount);
+    }
+
+    /**
+     * Subscribes to the changes of the session, the first event is the current version of the session
+     *
+     * @param sessionId id of the session
+     * @param sink      connection of the subscriber
+     * @return subscription, closing it ends the stream
+     */
+    public Subscription subscribe(String sessionId, StreamSink sink) {
+        Channel channel = channels.get(sessionId);
+        if (channel == null) {
+            throw new UnknownSessionException(sessionId);
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Too many stream subscribers");
+        }
+        Subscriber subscriber = new Subscriber(sessionId, channel, sink);
+        synchronized (channel) {
+            channel.subscribers.add(subscriber);
+            subscriber.sentVersion = channel.version;
+        }
+        Thread.ofVirtual().name("diagram-stream-" + sessionId).start(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * @return number of open subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @Override
+    public void sessionCreated(String sessionId, long version) {
+        channels.put(sessionId, new Channel(version, historySize));
+    }
+
+    @Override
+    public void trafficUpdated(String sessionId, DiagramSession.TrafficDelta delta) {
+        publish(sessionId, new Update(delta.version(), delta.links()));
+    }
+
+    @Override
+    public void documentChanged(String sessionId, long version) {
+        publish(sessionId, new Update(version, null));
+    }
+
+    @Override
+    public void sessionClosed(String sessionId) {
+        Channel channel = channels.remove(sessionId);
+        if (channel != null) {
+            channel.subscribers.forEach(Subscriber::close);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        channels.keySet().forEach(this::sessionClosed);
+    }
+
+    private void publish(String sessionId, Update update) {
+        Channel channel = channels.get(sessionId);
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel) {
+            channel.append(update);
+        }
+        for (Subscriber subscriber : channel.subscribers) {
+            subscriber.signal();
+        }
+    }
+
+    private String serialize(DiagramSession.TrafficDelta delta) {
+        try {
+            return objectMapper.writeValueAsString(delta);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String documentData(long version) {
+        return "{\"version\":" + version + "}";
+    }
+
+    private static String coalescedEvent(List<Update> updates) {
+        for (Update update : updates) {
+            if (update.links == null) {
+                return DOCUMENT_EVENT;
+            }
+        }
+        return DELTA_EVENT;
+    }
+
+    /**
+     * Merges the missed updates, the latest colors and labels of a link win
+     *
+     * @param updates missed updates in the version order
+     * @return event data bringing the subscriber to the last update
+     */
+    private String coalescedData(List<Update> updates) {
+        long version = updates.getLast().version;
+        if (DOCUMENT_EVENT.equals(coalescedEvent(updates))) {
+            return documentData(version);
+        }
+        Map<String, LinkDelta> latest = new LinkedHashMap<>();
+        for (Update update : updates) {
+            for (LinkDelta link : update.links) {
+                latest.put(link.id(), link);
+            }
+        }
+        return serialize(new DiagramSession.TrafficDelta(version, new ArrayList<>(latest.values())));
+    }
+
+    /**
+     * Open stream of a subscriber
+     */
+    public interface Subscription {
+
+        void close();
+    }
+
+    /**
+     * Change of a session, the event data is written on the first send and shared by all subscribers
+     */
+    private final class Update {
+
+        private final long version;
+        private final long publishedNanos = System.nanoTime();
+        private final List<LinkDelta> links;
+        private String data;
+
+        Update(long version, List<LinkDelta> links) {
+            this.version = version;
+            this.links = links;
+        }
+
+        String event() {
+            return links == null ? DOCUMENT_EVENT : DELTA_EVENT;
+        }
+
+        synchronized String data() {
+            if (data == null) {
+                data = links == null ? documentData(version) : serialize(new DiagramSession.TrafficDelta(version, links));
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Updates a subscriber has not sent yet, null updates when the subscriber fell behind the history
+     */
+    private record Pending(long version, List<Update> updates) {
+    }
+
+    private static final class Channel {
+
+        private final Update[] history;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private long version;
+
+        Channel(long version, int historySize) {
+            this.version = version;
+            this.history = new Update[historySize];
+        }
+
+        void append(Update update) {
+            history[(int) (update.version % history.length)] = update;
+            version = update.version;
+        }
+
+        synchronized Pending pending(long sentVersion) {
+            if (version - sentVersion > history.length) {
+                return new Pending(version, null);
+            }
+            List<Update> updates = new ArrayList<>((int) (version - sentVersion));
+            for (long missed = sentVersion + 1; missed <= version; missed++) {
+                Update update = history[(int) (missed % history.length)];
+                if (update == null || update.version != missed) {
+                    return new Pending(version, null);
+                }
+                updates.add(update);
+            }
+            return new Pending(version, updates);
+        }
+    }
+
+    private final class Subscriber implements Subscription, Runnable {
+
+        private final String sessionId;
+        private final Channel channel;
+        private final StreamSink sink;
+        private final Semaphore signal = new Semaphore(0);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private long sentVersion;
+
+        Subscriber(String sessionId, Channel channel, StreamSink sink) {
+            this.sessionId = sessionId;
+            this.channel = channel;
+            this.sink = sink;
+        }
+
+        void signal() {
+            if (signal.availablePermits() == 0) {
+                signal.release();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                channel.subscribers.remove(this);
+                subscriberCount.decrementAndGet();
+                signal.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                send(DOCUMENT_EVENT, sentVersion, documentData(sentVersion));
+                while (!closed.get()) {
+                    if (!signal.tryAcquire(heartbeatMillis, TimeUnit.MILLISECONDS)) {
+                        sink.heartbeat();
+                        continue;
+                    }
+                    signal.drainPermits();
+                    if (!closed.get()) {
+                        sendPending();
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Stream subscriber of session {} disconnected: {}", sessionId, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+                sink.close();
+            }
+        }
+
+        private void sendPending() throws IOException {
+            Pending pending = channel.pending(sentVersion);
+            if (pending.updates() == null) {
+                resyncCounter.increment();
+                send(DOCUMENT_EVENT, pending.version(), documentData(pending.version()));
+            } else if (pending.updates().size() == 1) {
+                Update update = pending.updates().getFirst();
+                send(update.event(), update.version, update.data());
+                fanOutTimer.record(System.nanoTime() - update.publishedNanos, TimeUnit.NANOSECONDS);
+            } else if (!pending.updates().isEmpty()) {
+                coalescedCounter.increment(pending.updates().size() - 1);
+                Update last = pending.updates().getLast();
+                send(coalescedEvent(pending.updates()), last.version, coalescedData(pending.updates()));
+                fanOutTimer.record(System.nanoTime() - last.publishedNanos, TimeUnit.NANOSECONDS);
+            }
+            sentVersion = pending.version();
+        }
+
+        private void send(String event, long version, String data) throws IOException {
+            sink.send(event, version, data);
+            eventCounter.increment();
+        }
+    }
+}
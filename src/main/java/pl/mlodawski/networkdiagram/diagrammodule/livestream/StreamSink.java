@@ -0,0 +1,31 @@
+package pl.mlodawski.networkdiagram.diagrammodule.livestream;
+
+import java.io.IOException;
+
+/**
+ * Connection of a stream subscriber, written only by the thread of the subscriber
+ */
+public interface StreamSink {
+
+    /**
+     * Sends an event, blocks while the client is slow
+     *
+     * @param event   event name
+     * @param version session version the event brings the client to
+     * @param data    JSON data of the event
+     * @throws IOException when the client is gone
+     */
+    void send(String event, long version, String data) throws IOException;
+
+    /**
+     * Sends a comment keeping the connection open through idle periods
+     *
+     * @throws IOException when the client is gone
+     */
+    void heartbeat() throws IOException;
+
+    /**
+     * Ends the stream
+     */
+    void close();
+}
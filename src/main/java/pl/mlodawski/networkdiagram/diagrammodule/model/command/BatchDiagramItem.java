@@ -0,0 +1,27 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.command;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Single diagram of a batch, described either by a command or by a natural language script
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class BatchDiagramItem {
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("command")
+    private NetworkDiagramCommand command;
+
+    @JsonProperty("script")
+    private String script;
+
+    @JsonProperty("theme")
+    private String theme;
+
+
+}
@@ -6,6 +6,8 @@ import lombok.Data;
 import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.FontStyle;
 
+import java.util.List;
+
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @AllArgsConstructor
@@ -22,6 +24,7 @@ public class DiagramConfig {
     private String title;
     private boolean showTitle;
     private boolean showLegend;
+    private List<String> linkGradient;
 
 
 }
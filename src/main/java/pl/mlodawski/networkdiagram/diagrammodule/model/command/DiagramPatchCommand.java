@@ -0,0 +1,26 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.command;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class DiagramPatchCommand {
+
+    @JsonProperty("nodes")
+    private List<NetworkNodeJson> networkNodes;
+
+    @JsonProperty("links")
+    private List<NetworkLinkJson> networkLinks;
+
+    @JsonProperty("removedNodes")
+    private List<String> removedNodeIds;
+
+    @JsonProperty("removedLinks")
+    private List<NetworkLinkJson> removedLinks;
+
+
+}
@@ -13,6 +13,9 @@ public class NetworkDiagramCommand {
     @JsonProperty("config")
     private DiagramConfig diagramConfig;
 
+    @JsonProperty("theme")
+    private String theme;
+
     @JsonProperty("nodes")
     private List<NetworkNodeJson> networkNodes;
 
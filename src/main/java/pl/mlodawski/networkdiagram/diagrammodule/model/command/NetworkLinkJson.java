@@ -20,5 +20,11 @@ public class NetworkLinkJson {
     @JsonProperty("rxTraffic")
     private float rxTraffic;
 
+    /**
+     * Element id of the link in a drawn session diagram, addresses one of parallel links, see ElementIds
+     */
+    @JsonProperty("linkId")
+    private String linkId;
+
 
 }
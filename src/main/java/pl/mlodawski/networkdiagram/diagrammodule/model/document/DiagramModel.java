@@ -0,0 +1,291 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.document;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable columnar form of the nodes and links of one diagram. Coordinates, sizes and traffic live in primitive arrays,
+ * ids and labels are indexes into a table of distinct strings, so a link costs four numbers instead of an object with two id strings.
+ * Elements are read by their index without allocating. Link ends are resolved through the string table,
+ * when the same node id is used twice the first node wins, like in {@link NetworkNodeRegistry}.
+ * Super nodes are few and stay objects, the model only marks the nodes that belong to one.
+ */
+public final class DiagramModel {
+
+    public static final int NO_NODE = -1;
+
+    private static final int NO_STRING = -1;
+
+    private final String[] strings;
+    private final int[] nodeOfString;
+    private final int nodeCount;
+    private final float[] nodeX;
+    private final float[] nodeY;
+    private final float[] nodeWidth;
+    private final float[] nodeHeight;
+    private final int[] nodeId;
+    private final int[] nodeLabel;
+    private final boolean[] superNodeMember;
+    private final int linkCount;
+    private final int[] linkSource;
+    private final int[] linkTarget;
+    private final float[] linkIncomingTraffic;
+    private final float[] linkOutgoingTraffic;
+
+    private DiagramModel(Builder builder) {
+        this.strings = Arrays.copyOf(builder.strings, builder.stringCount);
+        this.nodeOfString = new int[builder.stringCount];
+        Arrays.fill(nodeOfString, NO_NODE);
+        this.nodeCount = builder.nodeCount;
+        this.nodeX = Arrays.copyOf(builder.nodeX, nodeCount);
+        this.nodeY = Arrays.copyOf(builder.nodeY, nodeCount);
+        this.nodeWidth = Arrays.copyOf(builder.nodeWidth, nodeCount);
+        this.nodeHeight = Arrays.copyOf(builder.nodeHeight, nodeCount);
+        this.nodeId = Arrays.copyOf(builder.nodeId, nodeCount);
+        this.nodeLabel = Arrays.copyOf(builder.nodeLabel, nodeCount);
+        this.superNodeMember = Arrays.copyOf(builder.superNodeMember, nodeCount);
+        this.linkCount = builder.linkCount;
+        this.linkSource = Arrays.copyOf(builder.linkSource, linkCount);
+        this.linkTarget = Arrays.copyOf(builder.linkTarget, linkCount);
+        this.linkIncomingTraffic = Arrays.copyOf(builder.linkIncomingTraffic, linkCount);
+        this.linkOutgoingTraffic = Arrays.copyOf(builder.linkOutgoingTraffic, linkCount);
+        for (int node = 0; node < nodeCount; node++) {
+            if (nodeId[node] != NO_STRING && nodeOfString[nodeId[node]] == NO_NODE) {
+                nodeOfString[nodeId[node]] = node;
+            }
+        }
+    }
+
+    /**
+     * Creates the model of the nodes and links, the nodes of the super nodes are found by identity
+     *
+     * @param nodes      nodes
+     * @param superNodes super nodes
+     * @param links      links, also with ends that are not in the nodes
+     * @return model with the elements in the list order
+     */
+    public static DiagramModel of(List<NetworkNode> nodes, List<SuperNode> superNodes, List<NetworkLink> links) {
+        Set<NetworkNode> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (SuperNode superNode : superNodes) {
+            members.addAll(superNode.getTopNodes());
+            members.addAll(superNode.getBottomNodes());
+            members.addAll(superNode.getLeftNodes());
+            members.addAll(superNode.getRightNodes());
+        }
+        Builder builder = new Builder(nodes.size(), links.size());
+        for (NetworkNode node : nodes) {
+            int index = builder.addNode(node.getId(), node.getX(), node.getY(), node.getWidth(), node.getHeight(), node.getName());
+            if (members.contains(node)) {
+                builder.markSuperNodeMember(index);
+            }
+        }
+        for (NetworkLink link : links) {
+            builder.addLink(link.getSourceNodeId(), link.getTargetNodeId(), link.getIncomingTraffic(), link.getOutgoingTraffic());
+        }
+        return builder.build();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public float nodeX(int node) {
+        return nodeX[node];
+    }
+
+    public float nodeY(int node) {
+        return nodeY[node];
+    }
+
+    public float nodeWidth(int node) {
+        return nodeWidth[node];
+    }
+
+    public float nodeHeight(int node) {
+        return nodeHeight[node];
+    }
+
+    public String nodeId(int node) {
+        return string(nodeId[node]);
+    }
+
+    public String nodeLabel(int node) {
+        return string(nodeLabel[node]);
+    }
+
+    /**
+     * @param node index of the node
+     * @return true when the node belongs to a super node
+     */
+    public boolean isSuperNodeMember(int node) {
+        return superNodeMember[node];
+    }
+
+    public int linkCount() {
+        return linkCount;
+    }
+
+    /**
+     * @param link index of the link
+     * @return index of the source node or {@link #NO_NODE}
+     */
+    public int linkSource(int link) {
+        return nodeOf(linkSource[link]);
+    }
+
+    /**
+     * @param link index of the link
+     * @return index of the target node or {@link #NO_NODE}
+     */
+    public int linkTarget(int link) {
+        return nodeOf(linkTarget[link]);
+    }
+
+    public String linkSourceId(int link) {
+        return string(linkSource[link]);
+    }
+
+    public String linkTargetId(int link) {
+        return string(linkTarget[link]);
+    }
+
+    public float linkIncomingTraffic(int link) {
+        return linkIncomingTraffic[link];
+    }
+
+    public float linkOutgoingTraffic(int link) {
+        return linkOutgoingTraffic[link];
+    }
+
+    /**
+     * @return number of distinct ids and labels
+     */
+    public int stringCount() {
+        return strings.length;
+    }
+
+    private String string(int reference) {
+        return reference == NO_STRING ? null : strings[reference];
+    }
+
+    private int nodeOf(int reference) {
+        return reference == NO_STRING ? NO_NODE : nodeOfString[reference];
+    }
+
+    /**
+     * Collects the elements of a model, equal ids and labels are stored once
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> stringReferences;
+        private String[] strings;
+        private int stringCount;
+        private int nodeCount;
+        private float[] nodeX;
+        private float[] nodeY;
+        private float[] nodeWidth;
+        private float[] nodeHeight;
+        private int[] nodeId;
+        private int[] nodeLabel;
+        private boolean[] superNodeMember;
+        private int linkCount;
+        private int[] linkSource;
+        private int[] linkTarget;
+        private float[] linkIncomingTraffic;
+        private float[] linkOutgoingTraffic;
+
+        public Builder(int expectedNodes, int expectedLinks) {
+            int nodes = Math.max(expectedNodes, 16);
+            int links = Math.max(expectedLinks, 16);
+            this.stringReferences = HashMap.newHashMap(nodes * 2);
+            this.strings = new String[nodes * 2];
+            this.nodeX = new float[nodes];
+            this.nodeY = new float[nodes];
+            this.nodeWidth = new float[nodes];
+            this.nodeHeight = new float[nodes];
+            this.nodeId = new int[nodes];
+            this.nodeLabel = new int[nodes];
+            this.superNodeMember = new boolean[nodes];
+            this.linkSource = new int[links];
+            this.linkTarget = new int[links];
+            this.linkIncomingTraffic = new float[links];
+            this.linkOutgoingTraffic = new float[links];
+        }
+
+        /**
+         * Adds a node
+         *
+         * @return index of the node
+         */
+        public int addNode(String id, float x, float y, float width, float height, String label) {
+            if (nodeCount == nodeX.length) {
+                int capacity = nodeCount * 2;
+                nodeX = Arrays.copyOf(nodeX, capacity);
+                nodeY = Arrays.copyOf(nodeY, capacity);
+                nodeWidth = Arrays.copyOf(nodeWidth, capacity);
+                nodeHeight = Arrays.copyOf(nodeHeight, capacity);
+                nodeId = Arrays.copyOf(nodeId, capacity);
+                nodeLabel = Arrays.copyOf(nodeLabel, capacity);
+                superNodeMember = Arrays.copyOf(superNodeMember, capacity);
+            }
+            nodeX[nodeCount] = x;
+            nodeY[nodeCount] = y;
+            nodeWidth[nodeCount] = width;
+            nodeHeight[nodeCount] = height;
+            nodeId[nodeCount] = intern(id);
+            nodeLabel[nodeCount] = intern(label);
+            return nodeCount++;
+        }
+
+        /**
+         * Marks the node as a node of a super node
+         *
+         * @param node index of the node
+         */
+        public void markSuperNodeMember(int node) {
+            superNodeMember[node] = true;
+        }
+
+        /**
+         * Adds a link, the ends are resolved when the model is built
+         */
+        public void addLink(String sourceNodeId, String targetNodeId, float incomingTraffic, float outgoingTraffic) {
+            if (linkCount == linkSource.length) {
+                int capacity = linkCount * 2;
+                linkSource = Arrays.copyOf(linkSource, capacity);
+                linkTarget = Arrays.copyOf(linkTarget, capacity);
+                linkIncomingTraffic = Arrays.copyOf(linkIncomingTraffic, capacity);
+                linkOutgoingTraffic = Arrays.copyOf(linkOutgoingTraffic, capacity);
+            }
+            linkSource[linkCount] = intern(sourceNodeId);
+            linkTarget[linkCount] = intern(targetNodeId);
+            linkIncomingTraffic[linkCount] = incomingTraffic;
+            linkOutgoingTraffic[linkCount] = outgoingTraffic;
+            linkCount++;
+        }
+
+        public DiagramModel build() {
+            return new DiagramModel(this);
+        }
+
+        private int intern(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer reference = stringReferences.putIfAbsent(value, stringCount);
+            if (reference != null) {
+                return reference;
+            }
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount] = value;
+            return stringCount++;
+        }
+    }
+}
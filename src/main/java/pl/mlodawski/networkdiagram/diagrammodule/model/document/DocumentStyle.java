@@ -7,6 +7,8 @@ import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
 
 import pl.mlodawski.networkdiagram.diagrammodule.validator.hexvalidators.HexColor;
 
+import java.util.List;
+
 
 public record DocumentStyle(@JsonProperty("font") String font, @JsonProperty("fontSize") int fontSize,
                             @HexColor @JsonProperty("fontColor") String fontColor,
@@ -17,6 +19,16 @@ public record DocumentStyle(@JsonProperty("font") String font, @JsonProperty("fo
                             @JsonProperty("linkPalette") ColorStrategy linkPalette,
                             @JsonProperty("showLegend") boolean showTitle,
                             @JsonProperty("title") String title,
-                            @JsonProperty("showLegend") boolean showLegend
+                            @JsonProperty("showLegend") boolean showLegend,
+                            @JsonProperty("linkGradient") List<String> linkGradient
 ) {
+
+    public DocumentStyle {
+        linkGradient = linkGradient == null ? null : List.copyOf(linkGradient);
+    }
+
+    public DocumentStyle(String font, int fontSize, String fontColor, FontStyle fontStyle, String bgColor, String borderColor,
+                         String nodeColor, ColorStrategy linkPalette, boolean showTitle, String title, boolean showLegend) {
+        this(font, fontSize, fontColor, fontStyle, bgColor, borderColor, nodeColor, linkPalette, showTitle, title, showLegend, null);
+    }
 }
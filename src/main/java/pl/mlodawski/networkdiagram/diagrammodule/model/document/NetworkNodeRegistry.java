@@ -0,0 +1,89 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the nodes of one diagram, maps node ids to dense indexes in registration order.
+ * When the same id is registered twice the first node wins, duplicates are reported by the validation.
+ */
+public class NetworkNodeRegistry {
+
+    public static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> indexById;
+    private final List<NetworkNode> nodes;
+
+    public NetworkNodeRegistry(int expectedSize) {
+        this.indexById = HashMap.newHashMap(expectedSize);
+        this.nodes = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * Creates registry of the given nodes
+     *
+     * @param nodes nodes to index
+     * @return node registry
+     */
+    public static NetworkNodeRegistry of(List<NetworkNode> nodes) {
+        NetworkNodeRegistry registry = new NetworkNodeRegistry(nodes.size());
+        for (NetworkNode node : nodes) {
+            registry.register(node);
+        }
+        return registry;
+    }
+
+    /**
+     * Registers node
+     *
+     * @param node node to register
+     * @return dense index of the node id
+     */
+    public int register(NetworkNode node) {
+        Integer index = indexById.putIfAbsent(node.getId(), nodes.size());
+        if (index != null) {
+            return index;
+        }
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+
+    /**
+     * Finds dense index of the node
+     *
+     * @param id id of the node
+     * @return index of the node or {@link #NOT_FOUND}
+     */
+    public int indexOf(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? NOT_FOUND : index;
+    }
+
+    /**
+     * Finds a node by id
+     *
+     * @param id id of the node
+     * @return node or null if there is no node with the given id
+     */
+    public NetworkNode findById(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? null : nodes.get(index);
+    }
+
+    /**
+     * @param index dense index of the node
+     * @return node
+     */
+    public NetworkNode get(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * @return number of distinct node ids
+     */
+    public int size() {
+        return nodes.size();
+    }
+}
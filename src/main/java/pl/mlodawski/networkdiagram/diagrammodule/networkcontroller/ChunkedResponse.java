@@ -0,0 +1,176 @@
+package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hands a document drawn on its own virtual thread to the response body in chunks. The drawing only queues the chunks and never
+ * waits for the client, so the client gets the first bytes while the rest is drawn and a slow client does not hold the render permit:
+ * only the chunks it has not read yet stay in memory. The chunks of a document within the cache entry limit are kept to cache it.
+ */
+final class ChunkedResponse extends OutputStream {
+
+    private static final int CHUNK_BYTES = 16384;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private final int maxCachedBytes;
+    private List<byte[]> cachedChunks = new ArrayList<>();
+    private byte[] chunk = new byte[CHUNK_BYTES];
+    private int chunkLength;
+    private long bytesDrawn;
+    private volatile boolean abandoned;
+    private volatile Throwable failure;
+
+    /**
+     * @param maxCachedBytes size up to which the drawn document is kept for the render cache
+     */
+    ChunkedResponse(int maxCachedBytes) {
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Starts the drawing on a new virtual thread
+     *
+     * @param threadName name of the drawing thread
+     * @param drawing    drawing writing the document into this stream
+     * @param drawn      gets the whole document once it is drawn, if it is within the cache entry limit
+     */
+    void draw(String threadName, Runnable drawing, Consumer<byte[]> drawn) {
+        Thread.ofVirtual().name(threadName).start(() -> {
+            byte[] document;
+            try {
+                drawing.run();
+                handOff();
+                document = cachedDocument();
+            } catch (Throwable e) {
+                failure = e;
+                chunks.add(END);
+                return;
+            }
+            chunks.add(END);
+            if (document != null) {
+                drawn.accept(document);
+            }
+        });
+    }
+
+    /**
+     * Writes the chunks to the response as they are drawn, see {@link #writeTo(OutputStream, Runnable)}
+     *
+     * @param outputStream response body
+     * @return bytes written
+     * @throws IOException when the response cannot be written
+     */
+    long writeTo(OutputStream outputStream) throws IOException {
+        return writeTo(outputStream, () -> {
+        });
+    }
+
+    /**
+     * Writes the chunks to the response as they are drawn, until the end of the document.
+     * When the response cannot be written the drawing is stopped at its next write.
+     *
+     * @param outputStream response body
+     * @param firstChunk   run before the first chunk is written
+     * @return bytes written
+     * @throws IOException when the response cannot be written
+     */
+    long writeTo(OutputStream outputStream, Runnable firstChunk) throws IOException {
+        long bytesWritten = 0;
+        try {
+            for (byte[] next = take(); next != END; next = take()) {
+                if (bytesWritten == 0) {
+                    firstChunk.run();
+                }
+                outputStream.write(next);
+                outputStream.flush();
+                bytesWritten += next.length;
+            }
+        } catch (IOException | RuntimeException e) {
+            abandoned = true;
+            chunks.clear();
+            throw e;
+        }
+        Throwable drawingFailure = failure;
+        if (drawingFailure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (drawingFailure instanceof Error error) {
+            throw error;
+        }
+        if (drawingFailure != null) {
+            throw new IllegalStateException("Diagram could not be drawn", drawingFailure);
+        }
+        return bytesWritten;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (abandoned) {
+            throw new IOException("Response is no longer written");
+        }
+        while (length > 0) {
+            int copied = Math.min(length, CHUNK_BYTES - chunkLength);
+            System.arraycopy(bytes, offset, chunk, chunkLength, copied);
+            chunkLength += copied;
+            offset += copied;
+            length -= copied;
+            if (chunkLength == CHUNK_BYTES) {
+                handOff();
+            }
+        }
+    }
+
+    private byte[] take() throws InterruptedIOException {
+        try {
+            return chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the drawing");
+        }
+    }
+
+    private void handOff() {
+        if (chunkLength == 0) {
+            return;
+        }
+        byte[] full = chunkLength == CHUNK_BYTES ? chunk : Arrays.copyOf(chunk, chunkLength);
+        chunk = new byte[CHUNK_BYTES];
+        chunkLength = 0;
+        bytesDrawn += full.length;
+        if (cachedChunks != null) {
+            if (bytesDrawn > maxCachedBytes) {
+                cachedChunks = null;
+            } else {
+                cachedChunks.add(full);
+            }
+        }
+        chunks.add(full);
+    }
+
+    private byte[] cachedDocument() {
+        if (cachedChunks == null) {
+            return null;
+        }
+        byte[] document = new byte[(int) bytesDrawn];
+        int position = 0;
+        for (byte[] cached : cachedChunks) {
+            System.arraycopy(cached, 0, document, position, cached.length);
+            position += cached.length;
+        }
+        return document;
+    }
+}
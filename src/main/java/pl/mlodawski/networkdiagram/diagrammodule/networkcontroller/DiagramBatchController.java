@@ -0,0 +1,43 @@
+package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.mlodawski.networkdiagram.diagrammodule.batchrender.BatchRenderService;
+import pl.mlodawski.networkdiagram.diagrammodule.batchrender.MultipartBatchWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.BatchDiagramItem;
+
+import java.util.List;
+
+@RestController
+@AllArgsConstructor
+@Slf4j
+@RequestMapping("/api/diagram")
+public class DiagramBatchController {
+
+    private final BatchRenderService batchRenderService;
+
+    /**
+     * Renders many diagrams in one request.
+     * Every diagram is a part of a multipart/mixed response, written as soon as it is rendered, so the parts come in the completion order.
+     * The X-Diagram-Index and X-Diagram-Id headers of a part tell which diagram it is, X-Diagram-Status tells if it is an SVG or an error.
+     *
+     * @param items diagrams, each with either a command or a script
+     * @return multipart response with a part for every diagram
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> renderBatch(@RequestBody List<BatchDiagramItem> items) {
+        BatchRenderService.PreparedBatch batch = batchRenderService.prepare(items);
+        String boundary = MultipartBatchWriter.newBoundary();
+        log.debug("Rendering batch of {} diagrams", batch.items().size());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MultipartBatchWriter.contentType(boundary)))
+                .body(outputStream -> batchRenderService.render(batch, new MultipartBatchWriter(outputStream, boundary)));
+    }
+}
@@ -0,0 +1,236 @@
+package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.CommandFormats;
+import pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.JsonInterpreter;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramPatchCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderCache;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSessionService;
+import pl.mlodawski.networkdiagram.diagrammodule.session.SessionReference;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+import pl.mlodawski.networkdiagram.diagrammodule.tilepyramid.RenderedTile;
+import pl.mlodawski.networkdiagram.diagrammodule.tilepyramid.TileFormat;
+import pl.mlodawski.networkdiagram.diagrammodule.tilepyramid.TileRenderService;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.languagevalidators.ScriptInterpreter;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@AllArgsConstructor
+@Slf4j
+@RequestMapping("/api/diagram/session")
+public class DiagramSessionController {
+
+    private static final String SVG_VALUE = "image/svg+xml";
+
+    private final ScriptInterpreter interpreter;
+
+    private final JsonInterpreter jsonInterpreter;
+
+    private final ThemeRegistry themeRegistry;
+
+    private final DiagramSessionService diagramSessionService;
+
+    private final RenderBulkhead renderBulkhead;
+
+    private final TileRenderService tileRenderService;
+
+    private final CommandFormats commandFormats;
+
+    /**
+     * Creates session of the diagram, later updates send only the changes
+     *
+     * @param request request with the diagram as the JSON, Smile or CBOR body, interpreted while it is read,
+     *                validation=all reports every error of the diagram
+     * @return session id and version
+     * @throws IOException when the request body cannot be read
+     */
+    @PostMapping(value = "", consumes = {MediaType.APPLICATION_JSON_VALUE, CommandFormats.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SessionReference> createSessionByJson(HttpServletRequest request) throws IOException {
+        List<NetworkNode> networkNodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> networkLinks = new ArrayList<>();
+        NetworkDiagramCommand style;
+        try (JsonParser parser = commandFormats.createParser(request.getContentType(), request.getInputStream())) {
+            style = jsonInterpreter.interpretJsonStream(parser, networkNodes, superNodes, networkLinks, ValidationMode.of(request.getParameter(ValidationMode.PARAMETER)));
+        }
+        RenderTheme renderTheme = style.getTheme() != null
+                ? themeRegistry.resolve(style.getTheme())
+                : themeRegistry.compile(style.getDiagramConfig());
+        return created(renderBulkhead.execute(() -> diagramSessionService.create(networkNodes, superNodes, networkLinks, renderTheme)));
+    }
+
+    /**
+     * Creates session of the diagram described in the natural language
+     *
+     * @param request request with the diagram description as the body, interpreted while it is read,
+     *                validation=all reports every error of the diagram
+     * @param theme   theme name or hash, the default theme if missing
+     * @return session id and version
+     * @throws IOException when the request body cannot be read
+     */
+    @PostMapping(value = "/nl", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SessionReference> createSessionByNaturalLanguage(HttpServletRequest request,
+                                                                           @RequestParam(value = "theme", required = false) String theme) throws IOException {
+        List<NetworkNode> networkNodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> networkLinks = new ArrayList<>();
+        Charset charset = request.getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(request.getCharacterEncoding());
+        interpreter.interpretScript(request.getInputStream(), charset, networkNodes, superNodes, networkLinks,
+                ValidationMode.of(request.getParameter(ValidationMode.PARAMETER)));
+        RenderTheme renderTheme = theme == null ? themeRegistry.defaultTheme() : themeRegistry.resolve(theme);
+        return created(renderBulkhead.execute(() -> diagramSessionService.create(networkNodes, superNodes, networkLinks, renderTheme)));
+    }
+
+    /**
+     * Draws the current version of the diagram
+     *
+     * @param id          session id
+     * @param ifNoneMatch value of the If-None-Match header
+     * @return SVG document, or 304 if the client has the current version
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_ATOM_XML_VALUE)
+    public ResponseEntity<StreamingResponseBody> getDiagram(@PathVariable("id") String id,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DiagramSession session = diagramSessionService.get(id);
+        String currentVersion = versionTag(session.getId(), session.getVersion());
+        if (RenderCache.matches(ifNoneMatch, currentVersion)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(RenderCache.eTag(currentVersion)).build();
+        }
+        DiagramSession.VersionedDocument document = session.document();
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(versionTag(session.getId(), document.version())))
+                .contentType(MediaType.APPLICATION_ATOM_XML)
+                .contentLength(document.svg().length)
+                .body(outputStream -> outputStream.write(document.svg()));
+    }
+
+    /**
+     * Draws a tile of the current version, zoom 0 is one tile with the whole diagram, every zoom doubles the tiles in both directions
+     *
+     * @param id          session id
+     * @param z           zoom
+     * @param x           column
+     * @param y           row
+     * @param ifNoneMatch value of the If-None-Match header
+     * @return SVG tile, or 304 if the client has the tile of the current version
+     */
+    @GetMapping(value = "/{id}/tiles/{z}/{x}/{y}.svg", produces = SVG_VALUE)
+    public ResponseEntity<StreamingResponseBody> getSvgTile(@PathVariable("id") String id, @PathVariable("z") int z,
+                                                            @PathVariable("x") int x, @PathVariable("y") int y,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return tile(id, z, x, y, TileFormat.SVG, ifNoneMatch);
+    }
+
+    /**
+     * Draws a tile of the current version as a PNG image
+     *
+     * @param id          session id
+     * @param z           zoom
+     * @param x           column
+     * @param y           row
+     * @param ifNoneMatch value of the If-None-Match header
+     * @return PNG tile, or 304 if the client has the tile of the current version
+     */
+    @GetMapping(value = "/{id}/tiles/{z}/{x}/{y}.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<StreamingResponseBody> getPngTile(@PathVariable("id") String id, @PathVariable("z") int z,
+                                                            @PathVariable("x") int x, @PathVariable("y") int y,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return tile(id, z, x, y, TileFormat.PNG, ifNoneMatch);
+    }
+
+    /**
+     * Updates traffic of the links or edits the topology, only the changed fragments are drawn again
+     *
+     * @param id    session id
+     * @param patch changes
+     * @return session version and number of changed fragments
+     */
+    @PatchMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<SessionReference> patchDiagram(@PathVariable("id") String id, @RequestBody DiagramPatchCommand patch) {
+        DiagramSession session = diagramSessionService.get(id);
+        int changed = session.apply(patch);
+        return ResponseEntity.ok(new SessionReference(session.getId(), session.getVersion(), changed));
+    }
+
+    /**
+     * Updates traffic of existing links and answers with the colors and labels of the links that changed,
+     * for clients updating the drawn diagram in place
+     *
+     * @param id    session id
+     * @param links new traffic of the links
+     * @return session version with the changed links
+     */
+    @PatchMapping(value = "/{id}/traffic", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DiagramSession.TrafficDelta> updateTraffic(@PathVariable("id") String id, @RequestBody List<NetworkLinkJson> links) {
+        return ResponseEntity.ok(diagramSessionService.get(id).updateTraffic(links));
+    }
+
+    /**
+     * Removes the session
+     *
+     * @param id session id
+     * @return no content
+     */
+    @DeleteMapping(value = "/{id}")
+    public ResponseEntity<Void> deleteSession(@PathVariable("id") String id) {
+        diagramSessionService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<StreamingResponseBody> tile(String id, int z, int x, int y, TileFormat format, String ifNoneMatch) {
+        DiagramSession session = diagramSessionService.get(id);
+        String currentTile = TileRenderService.tileKey(session.getId(), session.getVersion(), z, x, y, format);
+        if (RenderCache.matches(ifNoneMatch, currentTile)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(RenderCache.eTag(currentTile)).build();
+        }
+        RenderedTile tile = renderBulkhead.execute(() -> tileRenderService.render(session, z, x, y, format));
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(tile.renderKey()))
+                .contentType(format.getMediaType())
+                .contentLength(tile.content().length)
+                .body(outputStream -> outputStream.write(tile.content()));
+    }
+
+    private String versionTag(String id, long version) {
+        return id + "-" + version;
+    }
+
+    private ResponseEntity<SessionReference> created(DiagramSession session) {
+        log.info("Created diagram session {}", session.getId());
+        return ResponseEntity.created(URI.create("/api/diagram/session/" + session.getId()))
+                .body(new SessionReference(session.getId(), session.getVersion(), null));
+    }
+}
@@ -0,0 +1,87 @@
+package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pl.mlodawski.networkdiagram.diagrammodule.livestream.DiagramStreamHub;
+import pl.mlodawski.networkdiagram.diagrammodule.livestream.StreamSink;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RestController
+@Slf4j
+@RequestMapping("/api/diagram")
+public class DiagramStreamController {
+
+    private final DiagramStreamHub diagramStreamHub;
+
+    private final long timeoutMillis;
+
+    public DiagramStreamController(DiagramStreamHub diagramStreamHub, @Value("${diagram.stream.timeout-ms:1800000}") long timeoutMillis) {
+        this.diagramStreamHub = diagramStreamHub;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Streams the changes of a diagram session as server-sent events.
+     * A delta event carries the colors and labels of the changed links, a document event tells the client to fetch the document again.
+     *
+     * @param id session id
+     * @return event stream, the first event is the current version of the session
+     */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDiagram(@PathVariable("id") String id) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        SseEmitterSink sink = new SseEmitterSink(emitter);
+        DiagramStreamHub.Subscription subscription;
+        try {
+            subscription = diagramStreamHub.subscribe(id, sink);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        Runnable completed = () -> {
+            sink.closed.set(true);
+            subscription.close();
+        };
+        emitter.onCompletion(completed);
+        emitter.onTimeout(completed);
+        emitter.onError(error -> completed.run());
+        log.debug("Streaming diagram session {} to a new subscriber", id);
+        return emitter;
+    }
+
+    private static final class SseEmitterSink implements StreamSink {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        SseEmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(String event, long version, String data) throws IOException {
+            emitter.send(SseEmitter.event().name(event).id(Long.toString(version)).data(data, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -1,29 +1,55 @@
 package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
 
 
+import com.fasterxml.jackson.core.JsonParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.LinkDelta;
 import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.CommandFormats;
 import pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.JsonInterpreter;
-import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
-import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramConfig;
 import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
 import pl.mlodawski.networkdiagram.diagrammodule.validator.languagevalidators.ScriptInterpreter;
-import pl.mlodawski.networkdiagram.diagrammodule.model.document.FontStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DiagramModel;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
-import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram.PngDiagramRenderer;
+import pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram.RasterOptions;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.DiagramDigest;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderCache;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderKeyFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @AllArgsConstructor
@@ -37,69 +63,253 @@ public class NetworkDrawingController {
 
     private final NetworkDrawingService networkDrawingService;
 
+    private final MeterRegistry meterRegistry;
+
+    private final ThemeRegistry themeRegistry;
+
+    private final RenderCache renderCache;
+
+    private final RenderKeyFactory renderKeyFactory;
+
+    private final RenderBulkhead renderBulkhead;
+
+    private final PngDiagramRenderer pngDiagramRenderer;
+
+    private final CommandFormats commandFormats;
+
+    private final PipelineMetrics pipelineMetrics;
 
 
     @PostMapping(value = "/nl", produces = MediaType.APPLICATION_ATOM_XML_VALUE)
-    public ResponseEntity<byte[]> genDiagramSvgByNaturalLanguage(@RequestBody String diagramDescription) {
-        log.debug("Received diagram description: " + diagramDescription + " from user");
+    public ResponseEntity<StreamingResponseBody> genDiagramSvgByNaturalLanguage(HttpServletRequest request,
+                                                                                @RequestParam(value = "theme", required = false) String theme,
+                                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        long startTime = System.nanoTime();
+        RenderTheme renderTheme = theme == null ? themeRegistry.defaultTheme() : themeRegistry.resolve(theme);
         List<NetworkNode> networkNodes = new ArrayList<>();
         List<SuperNode> superNodes = new ArrayList<>();
         List<NetworkLink> networkLinks = new ArrayList<>();
-        log.debug("Interpreting diagram description");
-        interpreter.interpretScript(diagramDescription, networkNodes, superNodes, networkLinks);
-        log.info("Interpreted diagram description successfully");
-        DocumentStyle documentStyle = new DocumentStyle("Arial", 12, "#000000", FontStyle.PLAIN, "#ffffff", "#000000", "#ffffff", ColorStrategy.RED_GREEN,true,"true",true);
-        log.debug("Drawing diagram");
-        StringBuilder file = networkDrawingService.drawDocument(networkNodes, superNodes, networkLinks, documentStyle);
-        log.info("Diagram drawn successfully");
-        return ResponseEntity.ok(file.toString().getBytes());
+        String renderKey = interpretScript(request, renderTheme, networkNodes, superNodes, networkLinks);
+        ResponseEntity<StreamingResponseBody> cachedResponse = cachedResponse(renderKey, MediaType.APPLICATION_ATOM_XML, ifNoneMatch);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        DiagramModel model = networkDrawingService.prepareModel(networkNodes, superNodes, networkLinks, renderTheme);
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(renderKey))
+                .contentType(MediaType.APPLICATION_ATOM_XML)
+                .body(outputStream -> drawDocument(model, superNodes, renderTheme, renderKey, outputStream, startTime));
     }
 
-    @PostMapping(value = "", produces = MediaType.APPLICATION_ATOM_XML_VALUE)
-    public ResponseEntity<byte[]> genDiagramSvgByJson(@RequestBody NetworkDiagramCommand networkDiagramCommand) {
-        log.debug("Received diagram description: " + networkDiagramCommand + " from user");
+    @PostMapping(value = "", consumes = {MediaType.APPLICATION_JSON_VALUE, CommandFormats.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE}, produces = MediaType.APPLICATION_ATOM_XML_VALUE)
+    public ResponseEntity<StreamingResponseBody> genDiagramSvgByJson(HttpServletRequest request,
+                                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        long startTime = System.nanoTime();
         List<NetworkNode> networkNodes = new ArrayList<>();
         List<SuperNode> superNodes = new ArrayList<>();
         List<NetworkLink> networkLinks = new ArrayList<>();
-        log.debug("Interpreting diagram description");
-        jsonInterpreter.interpretJson(networkDiagramCommand, networkNodes, superNodes, networkLinks);
-        log.info("Interpreted diagram description successfully");
-
-        DiagramConfig diagramConfig = Optional.ofNullable(networkDiagramCommand.getDiagramConfig()).orElse(getDefaultDiagramConfig());
-
-        DocumentStyle documentStyle = new DocumentStyle(
-                Optional.ofNullable(diagramConfig.getFontName()).orElse("Arial"),
-                Optional.of(diagramConfig.getFontSize()).orElse(12),
-                Optional.ofNullable(diagramConfig.getFontColor()).orElse("#000000"),
-                Optional.ofNullable(diagramConfig.getFontType()).orElse(FontStyle.PLAIN),
-                Optional.ofNullable(diagramConfig.getBackgroundColor()).orElse("#ffffff"),
-                Optional.ofNullable(diagramConfig.getBorderColor()).orElse("#000000"),
-                Optional.ofNullable(diagramConfig.getNodeColor()).orElse("#ffffff"),
-                Optional.ofNullable(diagramConfig.getColorStrategy()).orElse(ColorStrategy.RED_GREEN),
-                Optional.of(diagramConfig.isShowTitle()).orElse(true),
-                Optional.ofNullable(diagramConfig.getTitle()).orElse("true"),
-                Optional.of(diagramConfig.isShowLegend()).orElse(true)
-        );
-
-        log.debug("Drawing diagram");
-        StringBuilder file = networkDrawingService.drawDocument(networkNodes, superNodes, networkLinks, documentStyle);
-        log.info("Diagram drawn successfully");
-        return ResponseEntity.ok(file.toString().getBytes());
+        RenderedCommand command = interpretJson(request, networkNodes, superNodes, networkLinks);
+        ResponseEntity<StreamingResponseBody> cachedResponse = cachedResponse(command.renderKey(), MediaType.APPLICATION_ATOM_XML, ifNoneMatch);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        DiagramModel model = networkDrawingService.prepareModel(networkNodes, superNodes, networkLinks, command.theme());
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(command.renderKey()))
+                .contentType(MediaType.APPLICATION_ATOM_XML)
+                .body(outputStream -> drawDocument(model, superNodes, command.theme(), command.renderKey(), outputStream, startTime));
+    }
+
+    @PostMapping(value = "/nl", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<StreamingResponseBody> genDiagramPngByNaturalLanguage(HttpServletRequest request,
+                                                                                @RequestParam(value = "theme", required = false) String theme,
+                                                                                @RequestParam(value = "scale", required = false) Float scale,
+                                                                                @RequestParam(value = "dpi", required = false) Integer dpi,
+                                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        RasterOptions rasterOptions = RasterOptions.of(scale, dpi);
+        RenderTheme renderTheme = theme == null ? themeRegistry.defaultTheme() : themeRegistry.resolve(theme);
+        List<NetworkNode> networkNodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> networkLinks = new ArrayList<>();
+        String renderKey = renderKeyFactory.forRaster(interpretScript(request, renderTheme, networkNodes, superNodes, networkLinks), rasterOptions);
+        ResponseEntity<StreamingResponseBody> cachedResponse = cachedResponse(renderKey, MediaType.IMAGE_PNG, ifNoneMatch);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(renderKey))
+                .contentType(MediaType.IMAGE_PNG)
+                .body(outputStream -> drawImage(networkNodes, superNodes, networkLinks, renderTheme, rasterOptions, renderKey, outputStream));
+    }
+
+    @PostMapping(value = "", consumes = {MediaType.APPLICATION_JSON_VALUE, CommandFormats.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE}, produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<StreamingResponseBody> genDiagramPngByJson(HttpServletRequest request,
+                                                                     @RequestParam(value = "scale", required = false) Float scale,
+                                                                     @RequestParam(value = "dpi", required = false) Integer dpi,
+                                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        RasterOptions rasterOptions = RasterOptions.of(scale, dpi);
+        List<NetworkNode> networkNodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> networkLinks = new ArrayList<>();
+        RenderedCommand command = interpretJson(request, networkNodes, superNodes, networkLinks);
+        String renderKey = renderKeyFactory.forRaster(command.renderKey(), rasterOptions);
+        ResponseEntity<StreamingResponseBody> cachedResponse = cachedResponse(renderKey, MediaType.IMAGE_PNG, ifNoneMatch);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(renderKey))
+                .contentType(MediaType.IMAGE_PNG)
+                .body(outputStream -> drawImage(networkNodes, superNodes, networkLinks, command.theme(), rasterOptions, renderKey, outputStream));
+    }
+
+    /**
+     * Computes the colors and labels of the links for new traffic values, without drawing anything.
+     * The ids match the elements of a diagram drawn with the same links in the same order.
+     *
+     * @param networkDiagramCommand links with the new traffic, the theme or config of the drawn diagram, nodes are not needed
+     * @return fill of both arrows and text of both labels for every link
+     */
+    @PostMapping(value = "/delta", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<LinkDelta>> getLinkDeltas(@RequestBody NetworkDiagramCommand networkDiagramCommand) {
+        RenderTheme renderTheme = networkDiagramCommand.getTheme() != null
+                ? themeRegistry.resolve(networkDiagramCommand.getTheme())
+                : themeRegistry.compile(networkDiagramCommand.getDiagramConfig());
+        List<NetworkLink> networkLinks = jsonInterpreter.interpretLinks(Optional.ofNullable(networkDiagramCommand.getNetworkLinks()).orElse(List.of()));
+        return ResponseEntity.ok(networkDrawingService.describeLinks(networkLinks, renderTheme));
+    }
+
+    /**
+     * Interprets the script while the request body is read, the body is hashed for the render key on the way,
+     * so neither the body nor its lines are kept in memory. With the validation=all parameter every error of the diagram is reported.
+     *
+     * @param request      request with the script as the body
+     * @param theme        theme the diagram is drawn with
+     * @param networkNodes nodes
+     * @param superNodes   super nodes
+     * @param networkLinks links
+     * @return render key of the script
+     */
+    private String interpretScript(HttpServletRequest request, RenderTheme theme, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
+        Charset charset = request.getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(request.getCharacterEncoding());
+        MessageDigest digest = renderKeyFactory.scriptDigest(charset, theme);
+        try {
+            interpreter.interpretScript(new DigestInputStream(request.getInputStream(), digest), charset, networkNodes, superNodes, networkLinks,
+                    ValidationMode.of(request.getParameter(ValidationMode.PARAMETER)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pipelineMetrics.recordDiagram(networkNodes.size(), networkLinks.size());
+        return renderKeyFactory.forScript(digest);
+    }
+
+    /**
+     * Interprets the command while the request body is read, without binding it to the command objects,
+     * its elements are hashed for the render key on the way. With the validation=all parameter every error of the diagram is reported.
+     *
+     * @param request      request with the command as the JSON, Smile or CBOR body
+     * @param networkNodes nodes
+     * @param superNodes   super nodes
+     * @param networkLinks links
+     * @return theme and render key of the command
+     */
+    private RenderedCommand interpretJson(HttpServletRequest request, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
+        DiagramDigest diagramDigest = new DiagramDigest();
+        NetworkDiagramCommand style;
+        try (JsonParser parser = commandFormats.createParser(request.getContentType(), request.getInputStream())) {
+            style = jsonInterpreter.interpretJsonStream(parser, networkNodes, superNodes, networkLinks,
+                    ValidationMode.of(request.getParameter(ValidationMode.PARAMETER)), diagramDigest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pipelineMetrics.recordDiagram(networkNodes.size(), networkLinks.size());
+        RenderTheme renderTheme = style.getTheme() != null
+                ? themeRegistry.resolve(style.getTheme())
+                : themeRegistry.compile(style.getDiagramConfig());
+        return new RenderedCommand(renderTheme, renderKeyFactory.forCommand(diagramDigest, renderTheme));
+    }
+
+    /**
+     * Answers from the render cache, called once the diagram is interpreted and before it is drawn
+     *
+     * @param renderKey   render key of the request
+     * @param mediaType   content type of the document
+     * @param ifNoneMatch value of the If-None-Match header
+     * @return 304 if the client has the document, the cached document, or null if it has to be rendered
+     */
+    private ResponseEntity<StreamingResponseBody> cachedResponse(String renderKey, MediaType mediaType, String ifNoneMatch) {
+        if (RenderCache.matches(ifNoneMatch, renderKey)) {
+            log.debug("Diagram {} not modified", renderKey);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(RenderCache.eTag(renderKey)).build();
+        }
+        byte[] document = renderCache.get(renderKey);
+        if (document == null) {
+            return null;
+        }
+        log.debug("Diagram {} served from the render cache", renderKey);
+        return ResponseEntity.ok()
+                .eTag(RenderCache.eTag(renderKey))
+                .contentType(mediaType)
+                .contentLength(document.length)
+                .body(outputStream -> outputStream.write(document));
+    }
+
+    /**
+     * Draws the diagram once the render bulkhead lets it in and streams it to the response while it is drawn,
+     * see {@link ChunkedResponse}, a slow client does not hold the permit. Only a sample of the drawn diagrams is logged,
+     * see {@link PipelineMetrics#sampleLog()}.
+     *
+     * @param model         nodes and links
+     * @param superNodes    laid out super nodes
+     * @param theme         compiled document style
+     * @param renderKey     render key the document is cached under
+     * @param outputStream  response body
+     * @param startTime     System.nanoTime() of the request start
+     * @throws IOException when the response cannot be written
+     */
+    private void drawDocument(DiagramModel model, List<SuperNode> superNodes, RenderTheme theme, String renderKey, OutputStream outputStream, long startTime) throws IOException {
+        ChunkedResponse response = new ChunkedResponse(renderCache.getMaxEntryBytes());
+        response.draw("diagram-draw-" + renderKey,
+                () -> renderBulkhead.run(() -> networkDrawingService.drawDocument(model, superNodes, theme, new SvgDocumentWriter(response))),
+                document -> renderCache.put(renderKey, document));
+        long bytesWritten = response.writeTo(outputStream,
+                () -> meterRegistry.timer("diagram.response.first.byte").record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS));
+        pipelineMetrics.recordResponse(bytesWritten);
+        if (log.isInfoEnabled() && pipelineMetrics.sampleLog()) {
+            log.info("Drew diagram {} with {} nodes and {} links, {} bytes in {} ms", renderKey, model.nodeCount(), model.linkCount(),
+                    bytesWritten, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * Draws the diagram as a PNG image once the render bulkhead lets it in and streams the bands to the response while they are encoded,
+     * see {@link ChunkedResponse}. Only a sample of the drawn images is logged, see {@link PipelineMetrics#sampleLog()}.
+     *
+     * @param networkNodes  nodes
+     * @param superNodes    super nodes
+     * @param networkLinks  links
+     * @param theme         compiled document style
+     * @param rasterOptions scale and resolution of the image
+     * @param renderKey     render key the image is cached under
+     * @param outputStream  response body
+     * @throws IOException when the response cannot be written
+     */
+    private void drawImage(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme, RasterOptions rasterOptions,
+                           String renderKey, OutputStream outputStream) throws IOException {
+        ChunkedResponse response = new ChunkedResponse(renderCache.getMaxEntryBytes());
+        response.draw("diagram-draw-" + renderKey,
+                () -> renderBulkhead.run(() -> pngDiagramRenderer.render(networkNodes, superNodes, networkLinks, theme, rasterOptions, response)),
+                image -> renderCache.put(renderKey, image));
+        long bytesWritten = response.writeTo(outputStream);
+        pipelineMetrics.recordResponse(bytesWritten);
+        if (log.isInfoEnabled() && pipelineMetrics.sampleLog()) {
+            log.info("Drew diagram image {} with {} nodes and {} links, {} bytes", renderKey, networkNodes.size(), networkLinks.size(), bytesWritten);
+        }
     }
 
-    private DiagramConfig getDefaultDiagramConfig() {
-        return new DiagramConfig(
-                "Arial",
-                12,
-                "#000000",
-                FontStyle.PLAIN,
-                "#ffffff",
-                "#000000",
-                "#ffffff",
-                ColorStrategy.RED_GREEN,
-                null,
-                false,
-                true
-        );
+    /**
+     * Theme of an interpreted command and the render key of its document
+     */
+    private record RenderedCommand(RenderTheme theme, String renderKey) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramConfig;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeReference;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeRegistry;
+
+@RestController
+@AllArgsConstructor
+@Slf4j
+@RequestMapping("/api/theme")
+public class ThemeController {
+
+    private final ThemeRegistry themeRegistry;
+
+    /**
+     * Compiles the config, the returned hash can be passed as the theme of later requests
+     *
+     * @param diagramConfig diagram config
+     * @return content hash of the theme
+     */
+    @PostMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ThemeReference> compileTheme(@RequestBody DiagramConfig diagramConfig) {
+        RenderTheme theme = themeRegistry.compile(diagramConfig);
+        return ResponseEntity.ok(new ThemeReference(null, theme.getHash()));
+    }
+
+    /**
+     * Registers the config under the name, replacing the previous theme of that name.
+     * Names of the built-in themes, like "default", are reserved and answered with 400.
+     *
+     * @param name          theme name
+     * @param diagramConfig diagram config
+     * @return name and content hash of the theme
+     */
+    @PutMapping(value = "/{name}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ThemeReference> registerTheme(@PathVariable("name") String name, @RequestBody DiagramConfig diagramConfig) {
+        RenderTheme theme = themeRegistry.register(name, themeRegistry.toDocumentStyle(diagramConfig));
+        log.info("Registered theme {} with hash {}", name, theme.getHash());
+        return ResponseEntity.ok(new ThemeReference(name, theme.getHash()));
+    }
+}
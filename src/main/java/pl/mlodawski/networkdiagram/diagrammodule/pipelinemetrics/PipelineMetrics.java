@@ -0,0 +1,85 @@
+package pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times the stages of drawing a diagram and counts the nodes, links and bytes of every request, exported through the Prometheus endpoint.
+ * Timers are registered once and looked up by the stage ordinal, so recording a stage is one clock read and one histogram update.
+ * Also decides which requests are logged, so a busy server logs a sample of the requests instead of every one.
+ */
+@Component
+public class PipelineMetrics {
+
+    private final Timer[] stageTimers;
+    private final DistributionSummary nodes;
+    private final DistributionSummary links;
+    private final DistributionSummary responseBytes;
+    private final int logSampleRate;
+    private final AtomicLong logCandidates = new AtomicLong();
+
+    public PipelineMetrics(MeterRegistry meterRegistry,
+                           @Value("${diagram.metrics.log-sample-rate:100}") int logSampleRate) {
+        if (logSampleRate < 0) {
+            throw new IllegalArgumentException("Log sample rate cannot be negative");
+        }
+        PipelineStage[] stages = PipelineStage.values();
+        this.stageTimers = new Timer[stages.length];
+        for (PipelineStage stage : stages) {
+            stageTimers[stage.ordinal()] = Timer.builder("diagram.pipeline.stage")
+                    .tag("stage", stage.getTag())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        this.nodes = DistributionSummary.builder("diagram.request.nodes").register(meterRegistry);
+        this.links = DistributionSummary.builder("diagram.request.links").register(meterRegistry);
+        this.responseBytes = DistributionSummary.builder("diagram.response.bytes").baseUnit("bytes").register(meterRegistry);
+        this.logSampleRate = logSampleRate;
+    }
+
+    /**
+     * Records the time of a stage that ended now
+     *
+     * @param stage      stage
+     * @param startNanos System.nanoTime() of the stage start
+     * @return System.nanoTime() of the stage end, the start of the next stage
+     */
+    public long record(PipelineStage stage, long startNanos) {
+        long endNanos = System.nanoTime();
+        stageTimers[stage.ordinal()].record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+        return endNanos;
+    }
+
+    /**
+     * Counts the elements of an interpreted diagram
+     *
+     * @param nodeCount number of nodes
+     * @param linkCount number of links
+     */
+    public void recordDiagram(int nodeCount, int linkCount) {
+        nodes.record(nodeCount);
+        links.record(linkCount);
+    }
+
+    /**
+     * Counts the bytes of a drawn response
+     *
+     * @param bytes bytes written to the response body
+     */
+    public void recordResponse(long bytes) {
+        responseBytes.record(bytes);
+    }
+
+    /**
+     * @return true for one of every diagram.metrics.log-sample-rate calls, never when the rate is 0
+     */
+    public boolean sampleLog() {
+        return logSampleRate > 0 && logCandidates.getAndIncrement() % logSampleRate == 0;
+    }
+}
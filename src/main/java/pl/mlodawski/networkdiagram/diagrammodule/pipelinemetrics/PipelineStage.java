@@ -0,0 +1,50 @@
+package pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics;
+
+import lombok.Getter;
+
+/**
+ * Stages a diagram passes from the request body to the response, each is timed under its own tag
+ */
+@Getter
+public enum PipelineStage {
+
+    /**
+     * Reading the description and checking every element when it is read
+     */
+    PARSE("parse"),
+
+    /**
+     * Checks that need the whole diagram, like links to nodes declared later and empty super nodes
+     */
+    VALIDATE("validate"),
+
+    /**
+     * Automatic layout of the nodes and super nodes without positions
+     */
+    LAYOUT("layout"),
+
+    /**
+     * Placing the nodes of the super nodes and freezing the model
+     */
+    SUPER_NODE_LAYOUT("supernode-layout"),
+
+    /**
+     * Header, definitions and title of the document
+     */
+    DOCUMENT("document"),
+    LINKS("links"),
+    NODES("nodes"),
+    SUPER_NODES("supernodes"),
+    LEGEND("legend"),
+
+    /**
+     * Writing out what is left in the buffer, earlier bytes are written while the other stages run
+     */
+    SERIALIZE("serialize");
+
+    private final String tag;
+
+    PipelineStage(String tag) {
+        this.tag = tag;
+    }
+}
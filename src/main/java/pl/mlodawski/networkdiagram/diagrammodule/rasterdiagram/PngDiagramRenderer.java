@@ -0,0 +1,173 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentDimensions;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Draws diagrams as PNG images. The diagram is recorded once, then rasterized in horizontal bands on a fork-join pool,
+ * every band on its own image, and the bands are encoded in order as soon as they are ready.
+ * Only a window of bands is in memory at once, so the memory does not grow with the height of the image.
+ */
+@Service
+@Slf4j
+public class PngDiagramRenderer {
+
+    private final NetworkDrawingService networkDrawingService;
+    private final ForkJoinPool rasterPool;
+    private final long bandBytes;
+    private final long maxPixels;
+    private final int compression;
+
+    public PngDiagramRenderer(NetworkDrawingService networkDrawingService, RenderPool renderPool,
+                              @Value("${diagram.png.band-bytes:4194304}") long bandBytes,
+                              @Value("${diagram.png.max-pixels:100000000}") long maxPixels,
+                              @Value("${diagram.png.compression:6}") int compression) {
+        if (bandBytes <= 0 || maxPixels <= 0 || compression < 0 || compression > 9) {
+            throw new IllegalArgumentException("Band size and pixel limit have to be positive, compression between 0 and 9");
+        }
+        this.networkDrawingService = networkDrawingService;
+        this.rasterPool = renderPool.getPool();
+        this.bandBytes = bandBytes;
+        this.maxPixels = maxPixels;
+        this.compression = compression;
+        log.info("Rasterizing PNG diagrams on {} threads in bands of {} bytes, up to {} pixels", rasterPool.getParallelism(), bandBytes, maxPixels);
+    }
+
+    /**
+     * Draws the diagram and writes it as a PNG image
+     *
+     * @param networkNodes  nodes
+     * @param superNodes    super nodes
+     * @param networkLinks  links
+     * @param theme         compiled document style
+     * @param options       scale and resolution of the image
+     * @param outputStream  output stream
+     */
+    public void render(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme,
+                       RasterOptions options, OutputStream outputStream) {
+        RecordingCanvas canvas = new RecordingCanvas();
+        DocumentDimensions dimensions = networkDrawingService.drawDocument(networkNodes, superNodes, networkLinks, theme, canvas);
+        float pixelScale = options.pixelScale();
+        int width = Math.max(1, (int) Math.ceil(dimensions.getWidth() * pixelScale));
+        int height = Math.max(1, (int) Math.ceil(dimensions.getHeight() * pixelScale));
+        if ((long) width * height > maxPixels) {
+            throw new IllegalArgumentException("Image of " + width + "x" + height + " pixels is larger than the limit of " + maxPixels + " pixels");
+        }
+        int bandHeight = (int) Math.max(1, Math.min(height, bandBytes / (4L * width)));
+        Raster raster = new Raster(canvas.operations(), width, pixelScale, 0, 0, theme.getBackgroundColor());
+        try {
+            StreamingPngEncoder encoder = new StreamingPngEncoder(outputStream, width, height, options.dpi(), compression);
+            encodeBands(raster, encoder, height, bandHeight);
+            encoder.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Draws part of the diagram as a small PNG image, like a map tile, on the calling thread
+     *
+     * @param viewBox        document area shown, scaled to the width of the image
+     * @param width          image width
+     * @param height         image height
+     * @param theme          compiled document style
+     * @param elementsDrawer draws the elements of the area
+     * @param outputStream   output stream
+     */
+    public void renderViewport(Rectangle2D viewBox, int width, int height, RenderTheme theme, Consumer<SvgCanvas> elementsDrawer, OutputStream outputStream) {
+        if ((long) width * height > maxPixels) {
+            throw new IllegalArgumentException("Image of " + width + "x" + height + " pixels is larger than the limit of " + maxPixels + " pixels");
+        }
+        RecordingCanvas canvas = new RecordingCanvas();
+        elementsDrawer.accept(canvas);
+        Raster raster = new Raster(canvas.operations(), width, (float) (width / viewBox.getWidth()), viewBox.getX(), viewBox.getY(), theme.getBackgroundColor());
+        try {
+            StreamingPngEncoder encoder = new StreamingPngEncoder(outputStream, width, height, RasterOptions.DOCUMENT_DPI, compression);
+            BufferedImage image = raster.band(0, height);
+            encoder.writeRows(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), height);
+            encoder.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void encodeBands(Raster raster, StreamingPngEncoder encoder, int height, int bandHeight) throws IOException {
+        int window = rasterPool.getParallelism() * 2;
+        Deque<ForkJoinTask<BufferedImage>> pending = new ArrayDeque<>(window);
+        int nextTop = 0;
+        try {
+            while (nextTop < height || !pending.isEmpty()) {
+                while (nextTop < height && pending.size() < window) {
+                    int top = nextTop;
+                    int rows = Math.min(bandHeight, height - top);
+                    pending.add(rasterPool.submit(() -> raster.band(top, rows)));
+                    nextTop += rows;
+                }
+                BufferedImage band = pending.poll().join();
+                encoder.writeRows(((DataBufferInt) band.getRaster().getDataBuffer()).getData(), band.getHeight());
+            }
+        } finally {
+            pending.forEach(task -> task.cancel(false));
+        }
+    }
+
+    /**
+     * Recorded diagram painted onto bands of the image
+     */
+    private record Raster(List<RecordingCanvas.DrawOperation> operations, int width, float pixelScale, double originX, double originY, Color background) {
+
+        BufferedImage band(int top, int rows) {
+            BufferedImage band = new BufferedImage(width, rows, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = band.createGraphics();
+            try {
+                graphics.setColor(background);
+                graphics.fillRect(0, 0, width, rows);
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+                AffineTransform transform = AffineTransform.getTranslateInstance(0, -top);
+                transform.scale(pixelScale, pixelScale);
+                transform.translate(-originX, -originY);
+                graphics.setTransform(transform);
+                double documentTop = originY + top / pixelScale;
+                double documentBottom = originY + (top + rows) / pixelScale;
+                double documentLeft = originX;
+                double documentRight = originX + width / pixelScale;
+                for (RecordingCanvas.DrawOperation operation : operations) {
+                    Rectangle2D bounds = operation.bounds();
+                    if (bounds.getMaxY() >= documentTop && bounds.getMinY() <= documentBottom
+                            && bounds.getMaxX() >= documentLeft && bounds.getMinX() <= documentRight) {
+                        operation.paint(graphics);
+                    }
+                }
+            } finally {
+                graphics.dispose();
+            }
+            return band;
+        }
+    }
+}
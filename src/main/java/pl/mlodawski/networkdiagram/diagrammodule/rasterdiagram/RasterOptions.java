@@ -0,0 +1,41 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram;
+
+/**
+ * Size of the raster, the document is scaled by the scale and by the dpi relative to the 96 dpi of the SVG document
+ *
+ * @param scale scale of the document
+ * @param dpi   resolution of the image
+ */
+public record RasterOptions(float scale, int dpi) {
+
+    public static final int DOCUMENT_DPI = 96;
+
+    private static final float MAX_SCALE = 16;
+    private static final int MIN_DPI = 24;
+    private static final int MAX_DPI = 1200;
+
+    public RasterOptions {
+        if (!(scale > 0 && scale <= MAX_SCALE)) {
+            throw new IllegalArgumentException("Scale has to be greater than 0 and at most " + MAX_SCALE);
+        }
+        if (dpi < MIN_DPI || dpi > MAX_DPI) {
+            throw new IllegalArgumentException("DPI has to be between " + MIN_DPI + " and " + MAX_DPI);
+        }
+    }
+
+    /**
+     * @param scale scale of the document, null for 1
+     * @param dpi   resolution of the image, null for 96
+     * @return options with the defaults applied
+     */
+    public static RasterOptions of(Float scale, Integer dpi) {
+        return new RasterOptions(scale == null ? 1 : scale, dpi == null ? DOCUMENT_DPI : dpi);
+    }
+
+    /**
+     * @return image pixels per document pixel
+     */
+    public float pixelScale() {
+        return scale * dpi / DOCUMENT_DPI;
+    }
+}
@@ -0,0 +1,207 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram;
+
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Canvas recording the drawn shapes and texts with their state and document bounds, so the diagram is drawn once
+ * and replayed onto any number of raster tiles. Ids and instancing are not needed in a raster and are ignored.
+ */
+final class RecordingCanvas implements SvgCanvas {
+
+    private static final Stroke DEFAULT_STROKE = new BasicStroke(1.0f);
+    private static final Font DEFAULT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+
+    private final List<DrawOperation> operations = new ArrayList<>();
+    private final Deque<int[]> groups = new ArrayDeque<>();
+    private int translateX;
+    private int translateY;
+    private Color paint;
+    private Stroke stroke;
+    private Font font;
+
+    RecordingCanvas() {
+        resetState();
+    }
+
+    /**
+     * @return recorded operations in the drawing order
+     */
+    List<DrawOperation> operations() {
+        return operations;
+    }
+
+    @Override
+    public void begin(int width, int height) {
+        resetState();
+    }
+
+    @Override
+    public void end() {
+        resetState();
+    }
+
+    @Override
+    public void openGroup(String id, int translateX, int translateY) {
+        groups.push(new int[]{translateX, translateY});
+        this.translateX += translateX;
+        this.translateY += translateY;
+    }
+
+    @Override
+    public boolean openShapeGroup(String id, Color fill) {
+        return false;
+    }
+
+    @Override
+    public void closeGroup() {
+        int[] translation = groups.pop();
+        translateX -= translation[0];
+        translateY -= translation[1];
+    }
+
+    @Override
+    public void openSymbol(String id) {
+        throw new UnsupportedOperationException("Symbols are not drawn on a raster");
+    }
+
+    @Override
+    public void closeSymbol() {
+        throw new UnsupportedOperationException("Symbols are not drawn on a raster");
+    }
+
+    @Override
+    public void useSymbol(String id, int x, int y) {
+        throw new UnsupportedOperationException("Symbols are not drawn on a raster");
+    }
+
+    @Override
+    public boolean useShape(String shapeId, float translateX, float translateY, float rotation, float scaleX, float scaleY, Color fill) {
+        return false;
+    }
+
+    @Override
+    public void setElementId(String id) {
+    }
+
+    @Override
+    public void setPaint(Color color) {
+        this.paint = color;
+    }
+
+    @Override
+    public void setStroke(Stroke stroke) {
+        this.stroke = stroke;
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        this.font = font;
+    }
+
+    @Override
+    public FontMetrics getFontMetrics() {
+        return TextMetricsCache.fontMetrics(font);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        draw(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        Shape translated = translated(shape);
+        operations.add(new DrawOperation(Kind.FILL, translated, null, 0, 0, paint, null, null, translated.getBounds2D()));
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        Shape translated = translated(shape);
+        Rectangle2D bounds = translated.getBounds2D();
+        double margin = stroke instanceof BasicStroke basicStroke ? basicStroke.getLineWidth() * Math.max(1, basicStroke.getMiterLimit()) / 2 + 1 : 16;
+        bounds.setRect(bounds.getX() - margin, bounds.getY() - margin, bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+        operations.add(new DrawOperation(Kind.DRAW, translated, null, 0, 0, paint, stroke, null, bounds));
+    }
+
+    @Override
+    public void drawString(String text, float x, float y) {
+        FontMetrics metrics = getFontMetrics();
+        float documentX = x + translateX;
+        float documentY = y + translateY;
+        Rectangle2D bounds = new Rectangle2D.Float(documentX - metrics.getMaxAdvance(), documentY - metrics.getMaxAscent(),
+                metrics.stringWidth(text) + 2 * metrics.getMaxAdvance(), metrics.getMaxAscent() + metrics.getMaxDescent());
+        operations.add(new DrawOperation(Kind.TEXT, null, text, documentX, documentY, paint, null, font, bounds));
+    }
+
+    /**
+     * Copies the shape into document coordinates, callers may reuse their shapes after drawing them
+     */
+    private Shape translated(Shape shape) {
+        return AffineTransform.getTranslateInstance(translateX, translateY).createTransformedShape(shape);
+    }
+
+    private void resetState() {
+        paint = Color.BLACK;
+        stroke = DEFAULT_STROKE;
+        font = DEFAULT_FONT;
+    }
+
+    enum Kind {
+        FILL, DRAW, TEXT
+    }
+
+    /**
+     * Shape or text drawn in document coordinates with the state it was drawn with
+     *
+     * @param kind   what is painted
+     * @param shape  shape in document coordinates, null for texts
+     * @param text   text, null for shapes
+     * @param x      x of the text baseline
+     * @param y      y of the text baseline
+     * @param paint  paint
+     * @param stroke stroke of drawn shapes
+     * @param font   font of texts
+     * @param bounds bounds of the painted pixels in document coordinates
+     */
+    record DrawOperation(Kind kind, Shape shape, String text, float x, float y, Color paint, Stroke stroke, Font font, Rectangle2D bounds) {
+
+        /**
+         * Paints the operation, the graphics transform maps document coordinates to the tile
+         *
+         * @param graphics graphics of the tile
+         */
+        void paint(Graphics2D graphics) {
+            graphics.setPaint(paint);
+            switch (kind) {
+                case FILL -> graphics.fill(shape);
+                case DRAW -> {
+                    graphics.setStroke(stroke);
+                    graphics.draw(shape);
+                }
+                case TEXT -> {
+                    graphics.setFont(font);
+                    graphics.drawString(text, x, y);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes an 8-bit RGB PNG row by row, only the current and the previous row are kept.
+ * Rows are filtered with Paeth and deflated into IDAT chunks of bounded size written as soon as they fill up.
+ */
+final class StreamingPngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte PAETH_FILTER = 4;
+    private static final double INCHES_PER_METER = 1 / 0.0254;
+
+    private final OutputStream outputStream;
+    private final int width;
+    private final int height;
+    private final DeflaterOutputStream deflater;
+    private final Deflater compressor;
+    private final byte[] filteredRow;
+    private byte[] previousRow;
+    private byte[] currentRow;
+    private int rowsWritten;
+
+    /**
+     * Writes the PNG header
+     *
+     * @param outputStream output stream
+     * @param width        image width
+     * @param height       image height
+     * @param dpi          resolution written to the pHYs chunk
+     * @param compression  deflate level from 0 to 9
+     * @throws IOException when the output fails
+     */
+    StreamingPngEncoder(OutputStream outputStream, int width, int height, int dpi, int compression) throws IOException {
+        this.outputStream = outputStream;
+        this.width = width;
+        this.height = height;
+        this.previousRow = new byte[width * 3];
+        this.currentRow = new byte[width * 3];
+        this.filteredRow = new byte[width * 3 + 1];
+        this.compressor = new Deflater(compression);
+        this.deflater = new DeflaterOutputStream(new IdatOutputStream(), compressor, CHUNK_SIZE);
+        outputStream.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        writeInt(header, width);
+        writeInt(header, height);
+        header.write(8);
+        header.write(2);
+        header.write(0);
+        header.write(0);
+        header.write(0);
+        writeChunk("IHDR", header.toByteArray(), 0, header.size());
+        ByteArrayOutputStream physical = new ByteArrayOutputStream(9);
+        int pixelsPerMeter = (int) Math.round(dpi * INCHES_PER_METER);
+        writeInt(physical, pixelsPerMeter);
+        writeInt(physical, pixelsPerMeter);
+        physical.write(1);
+        writeChunk("pHYs", physical.toByteArray(), 0, physical.size());
+    }
+
+    /**
+     * Encodes rows of packed RGB pixels
+     *
+     * @param pixels packed 0xRRGGBB pixels, row after row
+     * @param rows   number of rows in the pixels
+     * @throws IOException when the output fails
+     */
+    void writeRows(int[] pixels, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("More rows than the image height");
+        }
+        for (int row = 0; row < rows; row++) {
+            int offset = row * width;
+            for (int x = 0, i = 0; x < width; x++) {
+                int pixel = pixels[offset + x];
+                currentRow[i++] = (byte) (pixel >> 16);
+                currentRow[i++] = (byte) (pixel >> 8);
+                currentRow[i++] = (byte) pixel;
+            }
+            filterPaeth();
+            deflater.write(filteredRow);
+            byte[] swap = previousRow;
+            previousRow = currentRow;
+            currentRow = swap;
+        }
+        rowsWritten += rows;
+    }
+
+    /**
+     * Writes the remaining compressed data and the end of the image
+     *
+     * @throws IOException when the output fails
+     */
+    void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException("Image has " + rowsWritten + " of " + height + " rows");
+        }
+        deflater.finish();
+        compressor.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        outputStream.flush();
+    }
+
+    private void filterPaeth() {
+        filteredRow[0] = PAETH_FILTER;
+        for (int i = 0; i < currentRow.length; i++) {
+            int left = i >= 3 ? currentRow[i - 3] & 0xff : 0;
+            int up = previousRow[i] & 0xff;
+            int upLeft = i >= 3 ? previousRow[i - 3] & 0xff : 0;
+            filteredRow[i + 1] = (byte) (currentRow[i] - paethPredictor(left, up, upLeft));
+        }
+    }
+
+    private static int paethPredictor(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int leftDistance = Math.abs(estimate - left);
+        int upDistance = Math.abs(estimate - up);
+        int upLeftDistance = Math.abs(estimate - upLeft);
+        if (leftDistance <= upDistance && leftDistance <= upLeftDistance) {
+            return left;
+        }
+        return upDistance <= upLeftDistance ? up : upLeft;
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        writeInt(outputStream, length);
+        outputStream.write(typeBytes);
+        outputStream.write(data, offset, length);
+        writeInt(outputStream, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Receives the deflated data and writes it as IDAT chunks
+     */
+    private final class IdatOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > 0) {
+                writeChunk("IDAT", bytes, offset, length);
+            }
+        }
+    }
+}
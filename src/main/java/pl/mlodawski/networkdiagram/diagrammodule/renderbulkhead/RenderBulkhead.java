@@ -0,0 +1,112 @@
+package pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of documents drawn and diagrams laid out at the same time, by default to the number of cores.
+ * Requests run on virtual threads, so reading the request and writing the response cost no platform thread,
+ * but drawing and the automatic layout are CPU-bound and more of them at once than cores only add latency to all of them.
+ * Callers queue in the arrival order and give up after the queue timeout.
+ */
+@Service
+@Slf4j
+public class RenderBulkhead {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long queueTimeoutNanos;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public RenderBulkhead(MeterRegistry meterRegistry,
+                          @Value("${diagram.render.bulkhead.max-concurrent:0}") int maxConcurrent,
+                          @Value("${diagram.render.bulkhead.queue-timeout-ms:2000}") long queueTimeoutMillis) {
+        if (queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Queue timeout cannot be negative");
+        }
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.waitTimer = Timer.builder("diagram.render.bulkhead.wait").publishPercentileHistogram().register(meterRegistry);
+        this.rejected = meterRegistry.counter("diagram.render.bulkhead.rejected");
+        meterRegistry.gauge("diagram.render.bulkhead.queued", queued);
+        meterRegistry.gauge("diagram.render.bulkhead.active", active);
+        log.info("Drawing up to {} documents at once, queue timeout {} ms", this.maxConcurrent, queueTimeoutMillis);
+    }
+
+    /**
+     * Runs the drawing once a permit is free
+     *
+     * @param drawing drawing to run
+     * @return result of the drawing
+     * @throws RenderRejectedException when no permit got free within the queue timeout
+     */
+    public <T> T execute(Supplier<T> drawing) {
+        acquire();
+        try {
+            return drawing.get();
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * Runs the drawing once a permit is free
+     *
+     * @param drawing drawing to run
+     * @throws RenderRejectedException when no permit got free within the queue timeout
+     */
+    public void run(Runnable drawing) {
+        execute(() -> {
+            drawing.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return maximum number of documents drawn at once
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return number of callers waiting for a permit
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    private void acquire() {
+        long start = System.nanoTime();
+        queued.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenderRejectedException("Interrupted while waiting to draw the diagram");
+        } finally {
+            queued.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new RenderRejectedException("Too many diagrams are being drawn, try again later");
+        }
+        active.incrementAndGet();
+    }
+}
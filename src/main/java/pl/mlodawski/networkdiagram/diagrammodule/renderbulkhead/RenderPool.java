@@ -0,0 +1,36 @@
+package pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork-join pool shared by the CPU-bound stages: script chunks, the automatic layout, document fragments and PNG bands.
+ * One pool sized to the cores keeps the stages from starting more threads than there are cores, by default one per core.
+ */
+@Component
+@Slf4j
+public class RenderPool {
+
+    private final ForkJoinPool pool;
+
+    public RenderPool(@Value("${diagram.render.pool.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        log.info("CPU-bound rendering stages share a pool of {} threads", pool.getParallelism());
+    }
+
+    /**
+     * @return the shared pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
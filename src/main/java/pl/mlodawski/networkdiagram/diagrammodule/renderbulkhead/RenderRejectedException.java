@@ -0,0 +1,11 @@
+package pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead;
+
+/**
+ * Thrown when a diagram waited too long for the render bulkhead, answered with 503
+ */
+public class RenderRejectedException extends RuntimeException {
+
+    public RenderRejectedException(String message) {
+        super(message);
+    }
+}
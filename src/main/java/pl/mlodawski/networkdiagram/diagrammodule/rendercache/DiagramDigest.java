@@ -0,0 +1,107 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rendercache;
+
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Content hash of a diagram command fed element by element while the command is read, so a streamed command gets its render key
+ * without being bound to the command objects. Nodes, super nodes and links are hashed in separate sections in the order of the elements,
+ * so the hash does not depend on the order of the sections or of the fields, nor on the format of the command.
+ * Fields not drawn, like the link ids of sessions, are left out.
+ */
+public final class DiagramDigest {
+
+    private final MessageDigest nodes = RenderKeyFactory.newSha256();
+    private final MessageDigest superNodes = RenderKeyFactory.newSha256();
+    private final MessageDigest links = RenderKeyFactory.newSha256();
+    private final ByteBuffer numbers = ByteBuffer.allocate(5 * Integer.BYTES);
+
+    /**
+     * @param id         node id
+     * @param label      node label
+     * @param positioned false when the node is placed by the automatic layout
+     * @param x          x of the node, 0 when not positioned
+     * @param y          y of the node, 0 when not positioned
+     * @param width      width of the node
+     * @param height     height of the node
+     */
+    public void node(String id, String label, boolean positioned, float x, float y, float width, float height) {
+        update(nodes, id);
+        update(nodes, label);
+        numbers.clear();
+        numbers.putInt(positioned ? 1 : 0).putFloat(x).putFloat(y).putFloat(width).putFloat(height);
+        update(nodes);
+    }
+
+    /**
+     * Hashes a super node, followed by its node entries
+     *
+     * @param id         super node id
+     * @param label      super node label
+     * @param positioned false when the super node is placed by the automatic layout
+     * @param x          x of the super node, 0 when not positioned
+     * @param y          y of the super node, 0 when not positioned
+     * @param nodeCount  number of node entries hashed next with {@link #superNodeEntry}
+     */
+    public void superNode(String id, String label, boolean positioned, int x, int y, int nodeCount) {
+        update(superNodes, id);
+        update(superNodes, label);
+        numbers.clear();
+        numbers.putInt(positioned ? 1 : 0).putInt(x).putInt(y).putInt(nodeCount);
+        update(superNodes);
+    }
+
+    /**
+     * @param nodeId   id of the node in the super node
+     * @param position side of the super node the node is on
+     */
+    public void superNodeEntry(String nodeId, NodePosition position) {
+        update(superNodes, nodeId);
+        update(superNodes, position == null ? null : position.name());
+    }
+
+    /**
+     * @param sourceNodeId id of the source node
+     * @param targetNodeId id of the target node
+     * @param rxTraffic    incoming traffic
+     * @param txTraffic    outgoing traffic
+     */
+    public void link(String sourceNodeId, String targetNodeId, float rxTraffic, float txTraffic) {
+        update(links, sourceNodeId);
+        update(links, targetNodeId);
+        numbers.clear();
+        numbers.putFloat(rxTraffic).putFloat(txTraffic);
+        update(links);
+    }
+
+    /**
+     * Finishes the sections into the digest of the render key, the digest cannot be fed afterwards
+     *
+     * @param digest digest of the render key
+     */
+    void finishInto(MessageDigest digest) {
+        digest.update(nodes.digest());
+        digest.update(superNodes.digest());
+        digest.update(links.digest());
+    }
+
+    private void update(MessageDigest section) {
+        section.update(numbers.array(), 0, numbers.position());
+    }
+
+    private void update(MessageDigest section, String text) {
+        numbers.clear();
+        if (text == null) {
+            numbers.putInt(-1);
+            update(section);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        numbers.putInt(bytes.length);
+        update(section);
+        section.update(bytes);
+    }
+}
@@ -0,0 +1,144 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rendercache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of rendered documents keyed by the render key, bounded by the total size of the cached bytes.
+ * The least recently used documents are evicted first, documents larger than the entry limit are not cached.
+ */
+@Service
+@Slf4j
+public class RenderCache {
+
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final LinkedHashMap<String, byte[]> documents = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long bytes;
+
+    public RenderCache(MeterRegistry meterRegistry,
+                       @Value("${diagram.render.cache.max-bytes:67108864}") long maxBytes,
+                       @Value("${diagram.render.cache.max-entry-bytes:8388608}") int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = (int) Math.min(maxEntryBytes, maxBytes);
+        this.hits = meterRegistry.counter("diagram.render.cache.hits");
+        this.misses = meterRegistry.counter("diagram.render.cache.misses");
+        this.evictions = meterRegistry.counter("diagram.render.cache.evictions");
+        meterRegistry.gauge("diagram.render.cache.bytes", this, RenderCache::getBytes);
+        meterRegistry.gauge("diagram.render.cache.entries", this, RenderCache::size);
+        meterRegistry.gauge("diagram.render.cache.hit.ratio", this, RenderCache::hitRatio);
+        log.info("Render cache of {} bytes, entries up to {} bytes", maxBytes, this.maxEntryBytes);
+    }
+
+    /**
+     * Strong entity tag of the document rendered for the key
+     *
+     * @param renderKey render key
+     * @return quoted entity tag
+     */
+    public static String eTag(String renderKey) {
+        return "\"" + renderKey + "\"";
+    }
+
+    /**
+     * Checks the If-None-Match header against the entity tag of the key
+     *
+     * @param ifNoneMatch value of the If-None-Match header, may be null
+     * @param renderKey   render key
+     * @return true if the client already has the document
+     */
+    public static boolean matches(String ifNoneMatch, String renderKey) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String eTag = eTag(renderKey);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the document rendered for the key
+     *
+     * @param renderKey render key
+     * @return rendered document or null
+     */
+    public synchronized byte[] get(String renderKey) {
+        byte[] document = documents.get(renderKey);
+        (document == null ? misses : hits).increment();
+        return document;
+    }
+
+    /**
+     * Caches the document, evicting the least recently used documents over the size limit
+     *
+     * @param renderKey render key
+     * @param document  rendered document
+     */
+    public synchronized void put(String renderKey, byte[] document) {
+        if (document.length > maxEntryBytes) {
+            return;
+        }
+        byte[] previous = documents.put(renderKey, document);
+        if (previous != null) {
+            bytes -= weight(renderKey, previous);
+        }
+        bytes += weight(renderKey, document);
+        Iterator<Map.Entry<String, byte[]>> eldest = documents.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, byte[]> entry = eldest.next();
+            bytes -= weight(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * @return size of the largest document cached
+     */
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * @return bytes held by the cache, including the estimated overhead of the entries
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of cached documents
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    private double hitRatio() {
+        double lookups = hits.count() + misses.count();
+        return lookups == 0 ? 0 : hits.count() / lookups;
+    }
+
+    private static long weight(String renderKey, byte[] document) {
+        return document.length + renderKey.length() * 2L + ENTRY_OVERHEAD;
+    }
+}
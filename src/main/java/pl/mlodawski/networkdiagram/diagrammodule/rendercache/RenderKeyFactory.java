@@ -0,0 +1,138 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rendercache;
+
+import org.springframework.stereotype.Component;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.SuperNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.SuperNodePositionJson;
+import pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram.RasterOptions;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Computes render keys, content hashes of everything the rendered document depends on: the diagram, the theme and the render mode.
+ * Commands are hashed element by element with {@link DiagramDigest}, while a single request is read or from the bound batch command,
+ * so single and batch requests share the key whatever the format or the field order of the request.
+ */
+@Component
+public class RenderKeyFactory {
+
+    private static final int HASH_BYTES = 16;
+
+    private final SvgCanvasFactory svgCanvasFactory;
+
+    public RenderKeyFactory(SvgCanvasFactory svgCanvasFactory) {
+        this.svgCanvasFactory = svgCanvasFactory;
+    }
+
+    /**
+     * @param command diagram command
+     * @param theme   theme the diagram is drawn with
+     * @return render key of the command
+     */
+    public String forCommand(NetworkDiagramCommand command, RenderTheme theme) {
+        DiagramDigest diagramDigest = new DiagramDigest();
+        for (NetworkNodeJson node : Optional.ofNullable(command.getNetworkNodes()).orElse(List.of())) {
+            diagramDigest.node(node.getId(), node.getLabel(), node.getPosition() != null,
+                    node.getPosition() == null ? 0 : node.getPosition().getX(),
+                    node.getPosition() == null ? 0 : node.getPosition().getY(),
+                    node.getSize() == null ? Float.NaN : node.getSize().getWidth(),
+                    node.getSize() == null ? Float.NaN : node.getSize().getHeight());
+        }
+        for (SuperNodeJson superNode : Optional.ofNullable(command.getSuperNodes()).orElse(List.of())) {
+            List<SuperNodePositionJson> nodePositions = Optional.ofNullable(superNode.getNodePositions()).orElse(List.of());
+            diagramDigest.superNode(superNode.getId(), superNode.getLabel(), superNode.getPosition() != null,
+                    superNode.getPosition() == null ? 0 : (int) superNode.getPosition().getX(),
+                    superNode.getPosition() == null ? 0 : (int) superNode.getPosition().getY(),
+                    nodePositions.size());
+            for (SuperNodePositionJson nodePosition : nodePositions) {
+                diagramDigest.superNodeEntry(nodePosition.getNodeId(), nodePosition.getPosition());
+            }
+        }
+        for (NetworkLinkJson link : Optional.ofNullable(command.getNetworkLinks()).orElse(List.of())) {
+            diagramDigest.link(link.getSourceNodeId(), link.getTargetNodeId(), link.getRxTraffic(), link.getTxTraffic());
+        }
+        return forCommand(diagramDigest, theme);
+    }
+
+    /**
+     * @param diagramDigest digest fed with the whole command while it was read
+     * @param theme         theme the diagram is drawn with, known once the command is read
+     * @return render key of the command, the same as of the bound command
+     */
+    public String forCommand(DiagramDigest diagramDigest, RenderTheme theme) {
+        MessageDigest digest = newDigest("json", theme);
+        diagramDigest.finishInto(digest);
+        return HexFormat.of().formatHex(digest.digest(), 0, HASH_BYTES);
+    }
+
+    /**
+     * @param script natural language description of the diagram
+     * @param theme  theme the diagram is drawn with
+     * @return render key of the script
+     */
+    public String forScript(String script, RenderTheme theme) {
+        MessageDigest digest = scriptDigest(StandardCharsets.UTF_8, theme);
+        digest.update(script.getBytes(StandardCharsets.UTF_8));
+        return forScript(digest);
+    }
+
+    /**
+     * Starts the render key of a script hashed while it is read, a UTF-8 script gets the same key as with {@link #forScript(String, RenderTheme)}.
+     * Scripts in other charsets are keyed by their bytes and the charset.
+     *
+     * @param charset charset of the script bytes
+     * @param theme   theme the diagram is drawn with
+     * @return digest to update with the script bytes
+     */
+    public MessageDigest scriptDigest(Charset charset, RenderTheme theme) {
+        return newDigest(StandardCharsets.UTF_8.equals(charset) ? "nl" : "nl-" + charset.name(), theme);
+    }
+
+    /**
+     * @param scriptDigest digest from {@link #scriptDigest(Charset, RenderTheme)} updated with the whole script
+     * @return render key of the script
+     */
+    public String forScript(MessageDigest scriptDigest) {
+        return HexFormat.of().formatHex(scriptDigest.digest(), 0, HASH_BYTES);
+    }
+
+    /**
+     * @param renderKey render key of the vector document
+     * @param options   scale and resolution of the image
+     * @return render key of the PNG image of the document
+     */
+    public String forRaster(String renderKey, RasterOptions options) {
+        MessageDigest digest = newDigest("png", options.scale() + ":" + options.dpi());
+        digest.update(renderKey.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(), 0, HASH_BYTES);
+    }
+
+    private MessageDigest newDigest(String format, RenderTheme theme) {
+        return newDigest(format, svgCanvasFactory.getRenderMode().name() + ':' + theme.getHash());
+    }
+
+    private MessageDigest newDigest(String format, String variant) {
+        MessageDigest digest = newSha256();
+        String prefix = format + ':' + variant + ':';
+        digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+        return digest;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
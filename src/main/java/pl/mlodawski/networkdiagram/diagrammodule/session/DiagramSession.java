@@ -0,0 +1,505 @@
+package pl.mlodawski.networkdiagram.diagrammodule.session;
+
+import lombok.extern.slf4j.Slf4j;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.ElementIds;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.LinkDelta;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.PaletteTable;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramPatchCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNodeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Diagram kept on the server between requests, with the drawn fragment of every link and node.
+ * Updates redraw only the links whose colors or labels changed and the nodes that were edited, with the links attached to them.
+ * Changed links are redrawn when the document is drawn next, traffic updates answered with a delta draw nothing.
+ * Nodes of super nodes are laid out by the super node and cannot be edited.
+ * Links are addressed by their ends, parallel links between the same nodes by their element id from {@link ElementIds}.
+ */
+@Slf4j
+public class DiagramSession {
+
+    private static final int NEW_LINK = -1;
+
+    private final String id;
+    private final RenderTheme theme;
+    private final NetworkDrawingService networkDrawingService;
+    private final DiagramSessionListener listener;
+    private final List<NetworkNode> networkNodes;
+    private final List<SuperNode> superNodes;
+    private final List<NetworkLink> networkLinks;
+    private final List<String> linkIds;
+    private final List<String> linkFragments;
+    private final List<LinkState> linkStates;
+    private final Map<NetworkNode, String> nodeFragments = new IdentityHashMap<>();
+    private final Set<String> superNodeMemberIds = new HashSet<>();
+    private NetworkNodeRegistry nodeRegistry;
+    private Map<String, List<Integer>> linkIndexesByEnds;
+    private long version;
+    private byte[] document;
+    private int documentSize = 64 * 1024;
+
+    DiagramSession(String id, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme,
+                   NetworkDrawingService networkDrawingService, DiagramSessionListener listener) {
+        this.id = id;
+        this.theme = theme;
+        this.networkDrawingService = networkDrawingService;
+        this.listener = listener;
+        this.networkNodes = new ArrayList<>(networkNodes);
+        this.superNodes = superNodes;
+        this.networkLinks = new ArrayList<>(networkLinks);
+        networkDrawingService.layoutSuperNodes(superNodes, theme);
+        for (SuperNode superNode : superNodes) {
+            forEachMember(superNode, node -> superNodeMemberIds.add(node.getId()));
+        }
+        this.nodeRegistry = NetworkNodeRegistry.of(this.networkNodes);
+        this.linkIds = new ArrayList<>(Arrays.asList(ElementIds.links(this.networkLinks)));
+        this.linkFragments = new ArrayList<>(Arrays.asList(networkDrawingService.drawLinkFragments(this.networkLinks, linkIds, nodeRegistry, theme)));
+        this.linkStates = new ArrayList<>(this.networkLinks.size());
+        for (NetworkLink link : this.networkLinks) {
+            linkStates.add(LinkState.of(link, theme.getLinkPalette()));
+        }
+        List<NetworkNode> standaloneNodes = networkDrawingService.standaloneNodes(this.networkNodes, superNodes);
+        String[] fragments = networkDrawingService.drawNodeFragments(standaloneNodes, theme);
+        for (int i = 0; i < fragments.length; i++) {
+            nodeFragments.put(standaloneNodes.get(i), fragments[i]);
+        }
+        this.linkIndexesByEnds = indexLinks();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return number of updates that changed the drawing
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Applies the changes, the patch is validated as a whole before anything is changed
+     *
+     * @param patch removed links and nodes, added or edited nodes, added links and new traffic of existing links;
+     *              a removed link with only its ends removes every link between them
+     * @return number of changed fragments
+     */
+    public synchronized int apply(DiagramPatchCommand patch) {
+        validate(patch);
+        boolean topologyChanged = removeLinksAndNodes(patch);
+        Set<NetworkNode> changedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Optional.ofNullable(patch.getNetworkNodes()).ifPresent(nodes -> nodes.forEach(nodeJson -> changedNodes.add(upsertNode(nodeJson))));
+
+        BitSet changedLinks = new BitSet(networkLinks.size());
+        if (!changedNodes.isEmpty()) {
+            for (int i = 0; i < networkLinks.size(); i++) {
+                NetworkLink link = networkLinks.get(i);
+                if (changedNodes.contains(nodeRegistry.findById(link.getSourceNodeId())) || changedNodes.contains(nodeRegistry.findById(link.getTargetNodeId()))) {
+                    changedLinks.set(i);
+                }
+            }
+        }
+        int linkCount = networkLinks.size();
+        Map<String, Integer> indexesById = linkIndexesById();
+        Optional.ofNullable(patch.getNetworkLinks()).ifPresent(links -> links.forEach(linkJson -> upsertLink(linkJson, indexesById, changedLinks)));
+        if (topologyChanged || networkLinks.size() != linkCount) {
+            reassignLinkIds(changedLinks);
+        }
+
+        int changed = redrawNodes(changedNodes) + invalidateLinks(changedLinks);
+        if (changed > 0 || topologyChanged) {
+            version++;
+            document = null;
+            listener.documentChanged(id, version);
+        }
+        log.debug("Session {} updated to version {}, {} fragments changed", id, version, changed);
+        return changed;
+    }
+
+    /**
+     * Updates traffic of existing links, the changed links are only described, they are redrawn with the next document
+     *
+     * @param links new traffic of the links
+     * @return session version with the colors and labels of the links that changed
+     */
+    public synchronized TrafficDelta updateTraffic(List<NetworkLinkJson> links) {
+        Map<String, Integer> indexesById = linkIndexesById();
+        for (NetworkLinkJson linkJson : links) {
+            if (linkIndex(linkJson, indexesById) == NEW_LINK) {
+                throw new IllegalArgumentException("Unknown link: " + linkJson.getSourceNodeId() + " --> " + linkJson.getTargetNodeId());
+            }
+        }
+        BitSet changedLinks = new BitSet(networkLinks.size());
+        links.forEach(linkJson -> upsertLink(linkJson, indexesById, changedLinks));
+        List<LinkDelta> deltas = new ArrayList<>(changedLinks.cardinality());
+        for (int index = changedLinks.nextSetBit(0); index >= 0; index = changedLinks.nextSetBit(index + 1)) {
+            deltas.add(networkDrawingService.describeLink(networkLinks.get(index), linkIds.get(index), theme));
+        }
+        if (invalidateLinks(changedLinks) == 0) {
+            return new TrafficDelta(version, deltas);
+        }
+        version++;
+        document = null;
+        TrafficDelta delta = new TrafficDelta(version, deltas);
+        listener.trafficUpdated(id, delta);
+        return delta;
+    }
+
+    /**
+     * Draws the document from the fragments, the document is kept until the next update changing the drawing
+     *
+     * @return SVG document with the version it was drawn for
+     */
+    public synchronized VersionedDocument document() {
+        if (document == null) {
+            redrawLinks();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(documentSize);
+            List<String> standaloneNodeFragments = new ArrayList<>(nodeFragments.size());
+            for (NetworkNode node : networkNodes) {
+                String fragment = nodeFragments.get(node);
+                if (fragment != null) {
+                    standaloneNodeFragments.add(fragment);
+                }
+            }
+            networkDrawingService.drawDocument(networkNodes, superNodes, linkFragments, standaloneNodeFragments, theme, new SvgDocumentWriter(outputStream));
+            document = outputStream.toByteArray();
+            documentSize = document.length;
+        }
+        return new VersionedDocument(version, document);
+    }
+
+    /**
+     * Copies the diagram, later updates do not change the copy. Super nodes are shared, their nodes cannot be edited.
+     *
+     * @return nodes, super nodes and links of the current version
+     */
+    public synchronized Snapshot snapshot() {
+        List<NetworkNode> nodes = new ArrayList<>(networkNodes.size());
+        for (NetworkNode node : networkNodes) {
+            nodes.add(new NetworkNode(node.getId(), node.getX(), node.getY(), node.getWidth(), node.getHeight(), node.getName()));
+        }
+        List<NetworkLink> links = new ArrayList<>(networkLinks.size());
+        for (NetworkLink link : networkLinks) {
+            links.add(new NetworkLink(link.getSourceNodeId(), link.getTargetNodeId(), link.getIncomingTraffic(), link.getOutgoingTraffic()));
+        }
+        return new Snapshot(id, version, theme, nodes, List.copyOf(superNodes), links, List.copyOf(linkIds));
+    }
+
+    private void validate(DiagramPatchCommand patch) {
+        Set<String> nodeIds = new HashSet<>(networkNodes.size() * 2);
+        networkNodes.forEach(node -> nodeIds.add(node.getId()));
+        Map<String, Integer> indexesById = linkIndexesById();
+        Set<String> removedEnds = new HashSet<>();
+        BitSet removedLinks = new BitSet(networkLinks.size());
+        Optional.ofNullable(patch.getRemovedLinks()).ifPresent(links -> links.forEach(linkJson -> {
+            if (linkJson.getLinkId() != null) {
+                removedLinks.set(addressedLink(linkJson, indexesById));
+            } else if (linkIndexesByEnds.containsKey(ends(linkJson.getSourceNodeId(), linkJson.getTargetNodeId()))) {
+                removedEnds.add(ends(linkJson.getSourceNodeId(), linkJson.getTargetNodeId()));
+            } else {
+                throw new IllegalArgumentException("Unknown link: " + linkJson.getSourceNodeId() + " --> " + linkJson.getTargetNodeId());
+            }
+        }));
+        Optional.ofNullable(patch.getRemovedNodeIds()).ifPresent(ids -> ids.forEach(nodeId -> {
+            validateEditable(nodeId);
+            if (!nodeIds.remove(nodeId)) {
+                throw new IllegalArgumentException("Unknown node: " + nodeId);
+            }
+        }));
+        Optional.ofNullable(patch.getNetworkNodes()).ifPresent(nodes -> nodes.forEach(nodeJson -> {
+            if (nodeJson.getId() == null) {
+                throw new IllegalArgumentException("Node id cannot be null");
+            }
+            validateEditable(nodeJson.getId());
+            if (nodeIds.add(nodeJson.getId()) && (nodeJson.getPosition() == null || nodeJson.getSize() == null)) {
+                throw new IllegalArgumentException("New node without position or size: " + nodeJson.getId());
+            }
+        }));
+        Optional.ofNullable(patch.getNetworkLinks()).ifPresent(links -> links.forEach(linkJson -> {
+            if (linkJson.getLinkId() != null) {
+                NetworkLink link = networkLinks.get(addressedLink(linkJson, indexesById));
+                if (removedLinks.get(indexesById.get(linkJson.getLinkId())) || removedEnds.contains(ends(link.getSourceNodeId(), link.getTargetNodeId()))
+                        || !nodeIds.contains(link.getSourceNodeId()) || !nodeIds.contains(link.getTargetNodeId())) {
+                    throw new IllegalArgumentException("Link removed by the same patch: " + linkJson.getLinkId());
+                }
+                return;
+            }
+            if (!nodeIds.contains(linkJson.getSourceNodeId()) || !nodeIds.contains(linkJson.getTargetNodeId())) {
+                throw new IllegalArgumentException("Invalid link between non-existing nodes: " + linkJson.getSourceNodeId() + " --> " + linkJson.getTargetNodeId());
+            }
+            if (!removedEnds.contains(ends(linkJson.getSourceNodeId(), linkJson.getTargetNodeId()))) {
+                linkIndex(linkJson, indexesById);
+            }
+        }));
+    }
+
+    private void validateEditable(String nodeId) {
+        if (superNodeMemberIds.contains(nodeId)) {
+            throw new IllegalArgumentException("Node of a super node cannot be edited: " + nodeId);
+        }
+    }
+
+    private boolean removeLinksAndNodes(DiagramPatchCommand patch) {
+        Set<String> removedNodeIds = new HashSet<>(Optional.ofNullable(patch.getRemovedNodeIds()).orElse(List.of()));
+        Set<String> removedEnds = new HashSet<>();
+        Set<String> removedLinkIds = new HashSet<>();
+        Optional.ofNullable(patch.getRemovedLinks()).ifPresent(links -> links.forEach(linkJson -> {
+            if (linkJson.getLinkId() != null) {
+                removedLinkIds.add(linkJson.getLinkId());
+            } else {
+                removedEnds.add(ends(linkJson.getSourceNodeId(), linkJson.getTargetNodeId()));
+            }
+        }));
+        if (removedNodeIds.isEmpty() && removedEnds.isEmpty() && removedLinkIds.isEmpty()) {
+            return false;
+        }
+        int kept = 0;
+        for (int i = 0; i < networkLinks.size(); i++) {
+            NetworkLink link = networkLinks.get(i);
+            if (removedEnds.contains(ends(link.getSourceNodeId(), link.getTargetNodeId())) || removedLinkIds.contains(linkIds.get(i))
+                    || removedNodeIds.contains(link.getSourceNodeId()) || removedNodeIds.contains(link.getTargetNodeId())) {
+                continue;
+            }
+            networkLinks.set(kept, link);
+            linkIds.set(kept, linkIds.get(i));
+            linkFragments.set(kept, linkFragments.get(i));
+            linkStates.set(kept, linkStates.get(i));
+            kept++;
+        }
+        networkLinks.subList(kept, networkLinks.size()).clear();
+        linkIds.subList(kept, linkIds.size()).clear();
+        linkFragments.subList(kept, linkFragments.size()).clear();
+        linkStates.subList(kept, linkStates.size()).clear();
+        if (!removedNodeIds.isEmpty()) {
+            networkNodes.removeIf(node -> {
+                boolean removed = removedNodeIds.contains(node.getId());
+                if (removed) {
+                    nodeFragments.remove(node);
+                }
+                return removed;
+            });
+            nodeRegistry = NetworkNodeRegistry.of(networkNodes);
+        }
+        linkIndexesByEnds = indexLinks();
+        return true;
+    }
+
+    private NetworkNode upsertNode(NetworkNodeJson nodeJson) {
+        NetworkNode node = nodeRegistry.findById(nodeJson.getId());
+        if (node == null) {
+            node = new NetworkNode(nodeJson.getId(), nodeJson.getPosition().getX(), nodeJson.getPosition().getY(),
+                    nodeJson.getSize().getWidth(), nodeJson.getSize().getHeight(), nodeJson.getLabel());
+            networkNodes.add(node);
+            nodeRegistry.register(node);
+            return node;
+        }
+        if (nodeJson.getPosition() != null) {
+            node.setX(nodeJson.getPosition().getX());
+            node.setY(nodeJson.getPosition().getY());
+        }
+        if (nodeJson.getSize() != null) {
+            node.setWidth(nodeJson.getSize().getWidth());
+            node.setHeight(nodeJson.getSize().getHeight());
+        }
+        if (nodeJson.getLabel() != null) {
+            node.setName(nodeJson.getLabel());
+        }
+        return node;
+    }
+
+    private void upsertLink(NetworkLinkJson linkJson, Map<String, Integer> indexesById, BitSet changedLinks) {
+        int index = linkIndex(linkJson, indexesById);
+        if (index == NEW_LINK) {
+            networkLinks.add(new NetworkLink(linkJson.getSourceNodeId(), linkJson.getTargetNodeId(), linkJson.getRxTraffic(), linkJson.getTxTraffic()));
+            linkIds.add(null);
+            linkFragments.add(null);
+            linkStates.add(null);
+            List<Integer> indexes = new ArrayList<>(1);
+            indexes.add(networkLinks.size() - 1);
+            linkIndexesByEnds.put(ends(linkJson.getSourceNodeId(), linkJson.getTargetNodeId()), indexes);
+            changedLinks.set(networkLinks.size() - 1);
+            return;
+        }
+        NetworkLink link = networkLinks.get(index);
+        link.setOutgoingTraffic(linkJson.getTxTraffic());
+        link.setIncomingTraffic(linkJson.getRxTraffic());
+        if (!LinkState.of(link, theme.getLinkPalette()).equals(linkStates.get(index))) {
+            changedLinks.set(index);
+        }
+    }
+
+    /**
+     * Finds the link an update is addressed to, by its element id, or by its ends when one link connects them
+     *
+     * @param linkJson    link update
+     * @param indexesById indexes of the links by their element ids
+     * @return index of the link, or {@link #NEW_LINK} if no link connects the ends
+     * @throws IllegalArgumentException for an unknown element id, or ends of parallel links without an element id
+     */
+    private int linkIndex(NetworkLinkJson linkJson, Map<String, Integer> indexesById) {
+        if (linkJson.getLinkId() != null) {
+            return addressedLink(linkJson, indexesById);
+        }
+        List<Integer> indexes = linkIndexesByEnds.get(ends(linkJson.getSourceNodeId(), linkJson.getTargetNodeId()));
+        if (indexes == null) {
+            return NEW_LINK;
+        }
+        if (indexes.size() > 1) {
+            throw new IllegalArgumentException("Parallel links " + linkJson.getSourceNodeId() + " --> " + linkJson.getTargetNodeId()
+                    + " have to be addressed by their linkId");
+        }
+        return indexes.getFirst();
+    }
+
+    /**
+     * @return index of the link with the element id of the update, the ends of the update have to match the link if given
+     */
+    private int addressedLink(NetworkLinkJson linkJson, Map<String, Integer> indexesById) {
+        Integer index = indexesById.get(linkJson.getLinkId());
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown link: " + linkJson.getLinkId());
+        }
+        NetworkLink link = networkLinks.get(index);
+        if ((linkJson.getSourceNodeId() != null && !linkJson.getSourceNodeId().equals(link.getSourceNodeId()))
+                || (linkJson.getTargetNodeId() != null && !linkJson.getTargetNodeId().equals(link.getTargetNodeId()))) {
+            throw new IllegalArgumentException("Link " + linkJson.getLinkId() + " does not connect " + linkJson.getSourceNodeId() + " --> " + linkJson.getTargetNodeId());
+        }
+        return index;
+    }
+
+    private int redrawNodes(Set<NetworkNode> changedNodes) {
+        for (NetworkNode node : changedNodes) {
+            nodeFragments.put(node, networkDrawingService.drawNodeFragment(node, theme));
+        }
+        return changedNodes.size();
+    }
+
+    /**
+     * Drops the fragments of the changed links, they are drawn again by {@link #redrawLinks()}
+     *
+     * @param changedLinks indexes of the changed links
+     * @return number of changed links
+     */
+    private int invalidateLinks(BitSet changedLinks) {
+        for (int index = changedLinks.nextSetBit(0); index >= 0; index = changedLinks.nextSetBit(index + 1)) {
+            linkFragments.set(index, null);
+            linkStates.set(index, LinkState.of(networkLinks.get(index), theme.getLinkPalette()));
+        }
+        return changedLinks.cardinality();
+    }
+
+    private void redrawLinks() {
+        List<NetworkLink> links = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int index = 0; index < linkFragments.size(); index++) {
+            if (linkFragments.get(index) == null) {
+                links.add(networkLinks.get(index));
+                ids.add(linkIds.get(index));
+            }
+        }
+        if (links.isEmpty()) {
+            return;
+        }
+        String[] fragments = networkDrawingService.drawLinkFragments(links, ids, nodeRegistry, theme);
+        int fragment = 0;
+        for (int index = 0; index < linkFragments.size(); index++) {
+            if (linkFragments.get(index) == null) {
+                linkFragments.set(index, fragments[fragment++]);
+            }
+        }
+        log.debug("Session {} redrew {} links", id, fragments.length);
+    }
+
+    /**
+     * Gives the ids to the added links, removed and added links can renumber the repeated links between the same nodes
+     *
+     * @param changedLinks indexes of the links that have to be redrawn, the renumbered links are added
+     */
+    private void reassignLinkIds(BitSet changedLinks) {
+        String[] ids = ElementIds.links(networkLinks);
+        for (int index = 0; index < ids.length; index++) {
+            if (!ids[index].equals(linkIds.get(index))) {
+                linkIds.set(index, ids[index]);
+                changedLinks.set(index);
+            }
+        }
+    }
+
+    private Map<String, Integer> linkIndexesById() {
+        Map<String, Integer> indexes = HashMap.newHashMap(linkIds.size());
+        for (int i = 0; i < linkIds.size(); i++) {
+            if (linkIds.get(i) != null) {
+                indexes.put(linkIds.get(i), i);
+            }
+        }
+        return indexes;
+    }
+
+    private Map<String, List<Integer>> indexLinks() {
+        Map<String, List<Integer>> indexes = HashMap.newHashMap(networkLinks.size());
+        for (int i = 0; i < networkLinks.size(); i++) {
+            NetworkLink link = networkLinks.get(i);
+            indexes.computeIfAbsent(ends(link.getSourceNodeId(), link.getTargetNodeId()), key -> new ArrayList<>(1)).add(i);
+        }
+        return indexes;
+    }
+
+    private static String ends(String sourceNodeId, String targetNodeId) {
+        return sourceNodeId + '\u0000' + targetNodeId;
+    }
+
+    private static void forEachMember(SuperNode superNode, Consumer<NetworkNode> action) {
+        superNode.getTopNodes().forEach(action);
+        superNode.getBottomNodes().forEach(action);
+        superNode.getLeftNodes().forEach(action);
+        superNode.getRightNodes().forEach(action);
+    }
+
+    /**
+     * Colors and labels of the links changed by a traffic update
+     *
+     * @param version session version after the update
+     * @param links   changed links
+     */
+    public record TrafficDelta(long version, List<LinkDelta> links) {
+    }
+
+    /**
+     * Diagram of a session version, with the ids the links have in the drawn document
+     */
+    public record Snapshot(String sessionId, long version, RenderTheme theme, List<NetworkNode> networkNodes, List<SuperNode> superNodes,
+                           List<NetworkLink> networkLinks, List<String> linkIds) {
+    }
+
+    /**
+     * Drawn document of a session version
+     */
+    public record VersionedDocument(long version, byte[] svg) {
+    }
+
+    /**
+     * What the drawn fragment of a link depends on besides the nodes: the colors and the labels of both directions
+     */
+    record LinkState(int outgoingColor, int incomingColor, int outgoingLabel, int incomingLabel) {
+
+        static LinkState of(NetworkLink link, PaletteTable paletteTable) {
+            return new LinkState(
+                    paletteTable.getColor(link.getOutgoingTraffic()).getRGB(),
+                    paletteTable.getColor(link.getIncomingTraffic()).getRGB(),
+                    (int) link.getOutgoingTraffic(),
+                    (int) link.getIncomingTraffic()
+            );
+        }
+    }
+}
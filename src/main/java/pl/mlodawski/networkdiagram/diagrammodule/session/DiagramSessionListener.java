@@ -0,0 +1,37 @@
+package pl.mlodawski.networkdiagram.diagrammodule.session;
+
+/**
+ * Receives the changes of the diagram sessions. The changes of a session are reported while the session is locked,
+ * in the order of its versions, so the listener has to return quickly.
+ */
+public interface DiagramSessionListener {
+
+    /**
+     * @param sessionId id of the created session
+     * @param version   version of the session
+     */
+    default void sessionCreated(String sessionId, long version) {
+    }
+
+    /**
+     * @param sessionId id of the session
+     * @param delta     new version with the links whose colors or labels changed
+     */
+    default void trafficUpdated(String sessionId, DiagramSession.TrafficDelta delta) {
+    }
+
+    /**
+     * Reported for the changes that cannot be described by a traffic delta, like topology edits
+     *
+     * @param sessionId id of the session
+     * @param version   new version of the session
+     */
+    default void documentChanged(String sessionId, long version) {
+    }
+
+    /**
+     * @param sessionId id of the removed or dropped session
+     */
+    default void sessionClosed(String sessionId) {
+    }
+}
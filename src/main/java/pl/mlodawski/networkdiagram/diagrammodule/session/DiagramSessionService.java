@@ -0,0 +1,92 @@
+package pl.mlodawski.networkdiagram.diagrammodule.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the diagram sessions, over the configured number of sessions the least recently used session is dropped
+ */
+@Service
+@Slf4j
+public class DiagramSessionService {
+
+    private final NetworkDrawingService networkDrawingService;
+    private final DiagramSessionListener listener;
+    private final LinkedHashMap<String, DiagramSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSessions;
+
+    public DiagramSessionService(NetworkDrawingService networkDrawingService, DiagramSessionListener listener,
+                                 @Value("${diagram.session.max-sessions:256}") int maxSessions) {
+        this.networkDrawingService = networkDrawingService;
+        this.listener = listener;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Creates session of the interpreted diagram and draws its fragments
+     *
+     * @param networkNodes nodes
+     * @param superNodes   super nodes
+     * @param networkLinks links
+     * @param theme        compiled document style
+     * @return new session
+     */
+    public DiagramSession create(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, RenderTheme theme) {
+        DiagramSession session = new DiagramSession(UUID.randomUUID().toString(), networkNodes, superNodes, networkLinks, theme, networkDrawingService, listener);
+        listener.sessionCreated(session.getId(), session.getVersion());
+        synchronized (sessions) {
+            sessions.put(session.getId(), session);
+            Iterator<Map.Entry<String, DiagramSession>> eldest = sessions.entrySet().iterator();
+            while (sessions.size() > maxSessions && eldest.hasNext()) {
+                String droppedId = eldest.next().getKey();
+                log.info("Dropping least recently used diagram session {}", droppedId);
+                eldest.remove();
+                listener.sessionClosed(droppedId);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Finds the session
+     *
+     * @param id session id
+     * @return session
+     */
+    public DiagramSession get(String id) {
+        DiagramSession session;
+        synchronized (sessions) {
+            session = sessions.get(id);
+        }
+        if (session == null) {
+            throw new UnknownSessionException(id);
+        }
+        return session;
+    }
+
+    /**
+     * Removes the session
+     *
+     * @param id session id
+     */
+    public void delete(String id) {
+        synchronized (sessions) {
+            if (sessions.remove(id) == null) {
+                throw new UnknownSessionException(id);
+            }
+        }
+        listener.sessionClosed(id);
+    }
+}
@@ -0,0 +1,9 @@
+package pl.mlodawski.networkdiagram.diagrammodule.session;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SessionReference(@JsonProperty("id") String id, @JsonProperty("version") long version,
+                               @JsonProperty("renderedFragments") Integer renderedFragments) {
+}
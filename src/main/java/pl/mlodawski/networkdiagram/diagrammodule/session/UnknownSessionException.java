@@ -0,0 +1,11 @@
+package pl.mlodawski.networkdiagram.diagrammodule.session;
+
+/**
+ * Thrown for a diagram session that does not exist or was dropped, answered with 404
+ */
+public class UnknownSessionException extends RuntimeException {
+
+    public UnknownSessionException(String sessionId) {
+        super("Unknown diagram session: " + sessionId);
+    }
+}
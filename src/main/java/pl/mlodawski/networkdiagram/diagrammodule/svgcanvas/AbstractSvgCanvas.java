@@ -0,0 +1,83 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import java.awt.*;
+
+/**
+ * Base class of the canvases, writes groups and escaped text into the shared output buffer.
+ */
+abstract class AbstractSvgCanvas implements SvgCanvas {
+
+    protected final StringBuilder target;
+
+    protected AbstractSvgCanvas(StringBuilder target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target cannot be null");
+        }
+        this.target = target;
+    }
+
+    @Override
+    public void openGroup(String id, int translateX, int translateY) {
+        target.append("<g");
+        if (id != null) {
+            target.append(" id=\"");
+            appendEscaped(target, id);
+            target.append('"');
+        }
+        target.append(" transform=\"translate(").append(translateX).append(',').append(translateY).append(")\">");
+    }
+
+    @Override
+    public boolean openShapeGroup(String id, Color fill) {
+        return false;
+    }
+
+    @Override
+    public void closeGroup() {
+        target.append("</g>\n");
+    }
+
+    @Override
+    public void openSymbol(String id) {
+        target.append("<defs><symbol id=\"");
+        appendEscaped(target, id);
+        target.append("\" overflow=\"visible\">");
+    }
+
+    @Override
+    public void closeSymbol() {
+        target.append("</symbol></defs>\n");
+    }
+
+    @Override
+    public void useSymbol(String id, int x, int y) {
+        target.append("<use href=\"#");
+        appendEscaped(target, id);
+        target.append("\" x=\"").append(x).append("\" y=\"").append(y).append("\"/>\n");
+    }
+
+    @Override
+    public boolean useShape(String shapeId, float translateX, float translateY, float rotation, float scaleX, float scaleY, Color fill) {
+        return false;
+    }
+
+    /**
+     * Appends text escaped for use in XML content and attribute values
+     *
+     * @param out  output buffer
+     * @param text text to escape
+     */
+    static void appendEscaped(StringBuilder out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&apos;");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import org.jfree.svg.SVGGraphics2D;
+import org.jfree.svg.SVGHints;
+
+import java.awt.*;
+
+/**
+ * Canvas backed by JFreeSVG, every element is drawn on its own SVGGraphics2D and written as a nested svg.
+ */
+public class JFreeSvgCanvas extends AbstractSvgCanvas {
+
+    private static final String JFREESVG_NAMESPACE = "xmlns:jfreesvg=\"http://www.jfree.org/jfreesvg/svg\"";
+    private static final String JFREESVG_NAMESPACE_SINGLE_QUOTED = "xmlns:jfreesvg='http://www.jfree.org/jfreesvg/svg'";
+
+    private SVGGraphics2D graphics;
+
+    public JFreeSvgCanvas(StringBuilder target) {
+        super(target);
+    }
+
+    @Override
+    public void begin(int width, int height) {
+        graphics = new SVGGraphics2D(width, height);
+    }
+
+    @Override
+    public void end() {
+        String element = graphics().getSVGElement();
+        target.append(element.replace(JFREESVG_NAMESPACE, "").replace(JFREESVG_NAMESPACE_SINGLE_QUOTED, ""));
+        graphics = null;
+    }
+
+    @Override
+    public void setElementId(String id) {
+        graphics().setRenderingHint(SVGHints.KEY_ELEMENT_ID, id);
+    }
+
+    @Override
+    public void setPaint(Color color) {
+        graphics().setPaint(color);
+    }
+
+    @Override
+    public void setStroke(Stroke stroke) {
+        graphics().setStroke(stroke);
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return graphics().getStroke();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        graphics().setFont(font);
+    }
+
+    @Override
+    public FontMetrics getFontMetrics() {
+        return graphics().getFontMetrics();
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        graphics().fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        graphics().drawRect(x, y, width, height);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        graphics().fill(shape);
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        graphics().draw(shape);
+    }
+
+    @Override
+    public void drawString(String text, float x, float y) {
+        graphics().drawString(text, x, y);
+    }
+
+    private SVGGraphics2D graphics() {
+        if (graphics == null) {
+            throw new IllegalStateException("Drawing outside of begin() and end()");
+        }
+        return graphics;
+    }
+}
@@ -0,0 +1,309 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+
+/**
+ * Canvas writing rects, paths and text directly into the output buffer, one instance is reused for the whole document.
+ * With instancing enabled shapes from the document defs are referenced with use elements instead of being drawn.
+ */
+public class StreamingSvgCanvas extends AbstractSvgCanvas {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Stroke DEFAULT_STROKE = new BasicStroke(1.0f);
+    private static final Font DEFAULT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+
+    private final float[] segment = new float[6];
+    private final boolean instancing;
+    private Color paint;
+    private Stroke stroke;
+    private Font font;
+    private String elementId;
+    private Color shapeGroupFill;
+
+    public StreamingSvgCanvas(StringBuilder target) {
+        this(target, false);
+    }
+
+    public StreamingSvgCanvas(StringBuilder target, boolean instancing) {
+        super(target);
+        this.instancing = instancing;
+        resetState();
+    }
+
+    @Override
+    public void begin(int width, int height) {
+        resetState();
+    }
+
+    @Override
+    public void end() {
+        resetState();
+    }
+
+    @Override
+    public boolean openShapeGroup(String id, Color fill) {
+        if (!instancing) {
+            return false;
+        }
+        target.append("<g id=\"");
+        appendEscaped(target, id);
+        target.append("\" fill=\"");
+        appendColor(target, fill);
+        target.append("\">");
+        shapeGroupFill = fill;
+        return true;
+    }
+
+    @Override
+    public void closeGroup() {
+        shapeGroupFill = null;
+        super.closeGroup();
+    }
+
+    @Override
+    public void setElementId(String id) {
+        this.elementId = id;
+    }
+
+    @Override
+    public void setPaint(Color color) {
+        this.paint = color;
+    }
+
+    @Override
+    public void setStroke(Stroke stroke) {
+        this.stroke = stroke;
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        this.font = font;
+    }
+
+    @Override
+    public FontMetrics getFontMetrics() {
+        return TextMetricsCache.fontMetrics(font);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        appendRect(x, y, width, height);
+        appendFill();
+        target.append("/>");
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        appendRect(x, y, width, height);
+        target.append(" fill=\"none\"");
+        appendStroke();
+        target.append("/>");
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        appendPath(shape);
+        appendFill();
+        target.append("/>");
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        appendPath(shape);
+        target.append(" fill=\"none\"");
+        appendStroke();
+        target.append("/>");
+    }
+
+    @Override
+    public void drawString(String text, float x, float y) {
+        target.append("<text");
+        appendElementId();
+        target.append(" x=\"");
+        appendNumber(target, x);
+        target.append("\" y=\"");
+        appendNumber(target, y);
+        target.append('"');
+        appendFill();
+        target.append(" font-family=\"");
+        appendEscaped(target, fontFamily(font));
+        target.append("\" font-size=\"").append(font.getSize()).append("px\"");
+        if (font.isBold()) {
+            target.append(" font-weight=\"bold\"");
+        }
+        if (font.isItalic()) {
+            target.append(" font-style=\"italic\"");
+        }
+        target.append('>');
+        appendEscaped(target, text);
+        target.append("</text>");
+    }
+
+    @Override
+    public boolean useShape(String shapeId, float translateX, float translateY, float rotation, float scaleX, float scaleY, Color fill) {
+        if (!instancing) {
+            return false;
+        }
+        target.append("<use");
+        appendElementId();
+        target.append(" href=\"#");
+        appendEscaped(target, shapeId);
+        target.append("\" transform=\"translate(");
+        appendNumber(target, translateX);
+        target.append(',');
+        appendNumber(target, translateY);
+        target.append(')');
+        if (rotation != 0.0f) {
+            target.append(" rotate(");
+            appendNumber(target, rotation);
+            target.append(')');
+        }
+        if (scaleX != 1.0f || scaleY != 1.0f) {
+            target.append(" scale(");
+            appendNumber(target, scaleX);
+            target.append(',');
+            appendNumber(target, scaleY);
+            target.append(')');
+        }
+        target.append('"');
+        if (fill != null && !fill.equals(shapeGroupFill)) {
+            target.append(" fill=\"");
+            appendColor(target, fill);
+            target.append('"');
+        }
+        target.append("/>");
+        return true;
+    }
+
+    private void resetState() {
+        paint = Color.BLACK;
+        stroke = DEFAULT_STROKE;
+        font = DEFAULT_FONT;
+        elementId = null;
+    }
+
+    private static String fontFamily(Font font) {
+        return switch (font.getName()) {
+            case Font.DIALOG, Font.SANS_SERIF -> "sans-serif";
+            case Font.SERIF -> "serif";
+            case Font.DIALOG_INPUT, Font.MONOSPACED -> "monospace";
+            default -> font.getName();
+        };
+    }
+
+    private void appendRect(int x, int y, int width, int height) {
+        target.append("<rect");
+        appendElementId();
+        target.append(" x=\"").append(x)
+                .append("\" y=\"").append(y)
+                .append("\" width=\"").append(width)
+                .append("\" height=\"").append(height)
+                .append('"');
+    }
+
+    private void appendPath(Shape shape) {
+        target.append("<path");
+        appendElementId();
+        target.append(" d=\"");
+        PathIterator iterator = shape.getPathIterator(null);
+        while (!iterator.isDone()) {
+            switch (iterator.currentSegment(segment)) {
+                case PathIterator.SEG_MOVETO -> appendSegment('M', 1);
+                case PathIterator.SEG_LINETO -> appendSegment('L', 1);
+                case PathIterator.SEG_QUADTO -> appendSegment('Q', 2);
+                case PathIterator.SEG_CUBICTO -> appendSegment('C', 3);
+                case PathIterator.SEG_CLOSE -> target.append('Z');
+                default -> throw new IllegalStateException("Unknown path segment");
+            }
+            iterator.next();
+        }
+        target.append('"');
+    }
+
+    private void appendSegment(char command, int points) {
+        target.append(command);
+        for (int i = 0; i < points * 2; i += 2) {
+            if (i > 0) {
+                target.append(' ');
+            }
+            appendNumber(target, segment[i]);
+            target.append(' ');
+            appendNumber(target, segment[i + 1]);
+        }
+    }
+
+    private void appendElementId() {
+        if (elementId != null) {
+            target.append(" id=\"");
+            appendEscaped(target, elementId);
+            target.append('"');
+            elementId = null;
+        }
+    }
+
+    private void appendFill() {
+        target.append(" fill=\"");
+        appendColor(target, paint);
+        target.append('"');
+        if (paint.getAlpha() != 255) {
+            target.append(" fill-opacity=\"");
+            appendNumber(target, paint.getAlpha() / 255.0f);
+            target.append('"');
+        }
+    }
+
+    private void appendStroke() {
+        target.append(" stroke=\"");
+        appendColor(target, paint);
+        target.append("\" stroke-width=\"");
+        appendNumber(target, stroke instanceof BasicStroke basicStroke ? basicStroke.getLineWidth() : 1.0f);
+        target.append('"');
+        if (paint.getAlpha() != 255) {
+            target.append(" stroke-opacity=\"");
+            appendNumber(target, paint.getAlpha() / 255.0f);
+            target.append('"');
+        }
+    }
+
+    /**
+     * Appends color as #rrggbb
+     *
+     * @param out   output buffer
+     * @param color color to append
+     */
+    static void appendColor(StringBuilder out, Color color) {
+        int rgb = color.getRGB();
+        out.append('#');
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            out.append(HEX_DIGITS[(rgb >> shift) & 0xF]);
+        }
+    }
+
+    /**
+     * Appends number rounded to two decimal places without trailing zeros
+     *
+     * @param out   output buffer
+     * @param value number to append
+     */
+    static void appendNumber(StringBuilder out, float value) {
+        long scaled = Math.round(value * 100.0);
+        if (scaled < 0) {
+            out.append('-');
+            scaled = -scaled;
+        }
+        out.append(scaled / 100);
+        int fraction = (int) (scaled % 100);
+        if (fraction != 0) {
+            out.append('.').append(fraction / 10);
+            if (fraction % 10 != 0) {
+                out.append(fraction % 10);
+            }
+        }
+    }
+}
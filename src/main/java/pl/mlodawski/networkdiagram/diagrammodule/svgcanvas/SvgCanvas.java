@@ -0,0 +1,109 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import java.awt.*;
+
+/**
+ * Drawing surface used by the drawing services. Every element of the diagram is drawn between
+ * {@link #begin(int, int)} and {@link #end()}, optionally wrapped in a translated group.
+ */
+public interface SvgCanvas {
+
+    /**
+     * Starts drawing a new element
+     *
+     * @param width  width of the element viewport
+     * @param height height of the element viewport
+     */
+    void begin(int width, int height);
+
+    /**
+     * Finishes drawing the current element and writes it to the output
+     */
+    void end();
+
+    /**
+     * Opens a translated group
+     *
+     * @param id         id of the group, may be null
+     * @param translateX x translation
+     * @param translateY y translation
+     */
+    void openGroup(String id, int translateX, int translateY);
+
+    /**
+     * Opens a group of shapes referenced with {@link #useShape}, instances with the fill of the group inherit it
+     * so the fill can be changed on the group alone
+     *
+     * @param id   id of the group
+     * @param fill fill of the group
+     * @return false if the canvas does not reference shapes, nothing is written then
+     */
+    boolean openShapeGroup(String id, Color fill);
+
+    /**
+     * Closes the group opened by {@link #openGroup(String, int, int)} or {@link #openShapeGroup(String, Color)}
+     */
+    void closeGroup();
+
+    /**
+     * Opens a reusable symbol, the content drawn until {@link #closeSymbol()} is rendered only where the symbol is used
+     *
+     * @param id id of the symbol
+     */
+    void openSymbol(String id);
+
+    /**
+     * Closes the symbol opened by {@link #openSymbol(String)}
+     */
+    void closeSymbol();
+
+    /**
+     * Draws an instance of a symbol
+     *
+     * @param id id of the symbol
+     * @param x  x position of the instance
+     * @param y  y position of the instance
+     */
+    void useSymbol(String id, int x, int y);
+
+    /**
+     * Draws an instance of a shape defined in the document defs, the shape is scaled, rotated and then translated
+     *
+     * @param shapeId    id of the shape
+     * @param translateX x translation
+     * @param translateY y translation
+     * @param rotation   rotation in degrees
+     * @param scaleX     x scale
+     * @param scaleY     y scale
+     * @param fill       fill of the instance, null to keep the fill of the shape
+     * @return false if the canvas does not reference shapes, the caller has to draw the shape itself
+     */
+    boolean useShape(String shapeId, float translateX, float translateY, float rotation, float scaleX, float scaleY, Color fill);
+
+    /**
+     * Sets the id of the next drawn element
+     *
+     * @param id id of the element, a valid XML name, null for no id
+     */
+    void setElementId(String id);
+
+    void setPaint(Color color);
+
+    void setStroke(Stroke stroke);
+
+    Stroke getStroke();
+
+    void setFont(Font font);
+
+    FontMetrics getFontMetrics();
+
+    void fillRect(int x, int y, int width, int height);
+
+    void drawRect(int x, int y, int width, int height);
+
+    void fill(Shape shape);
+
+    void draw(Shape shape);
+
+    void drawString(String text, float x, float y);
+}
@@ -0,0 +1,26 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+@Getter
+public class SvgCanvasFactory {
+
+    private final SvgRenderMode renderMode;
+
+    public SvgCanvasFactory(@Value("${diagram.render.mode:STREAMING}") SvgRenderMode renderMode) {
+        this.renderMode = renderMode;
+    }
+
+    /**
+     * Creates a canvas writing into the given buffer
+     *
+     * @param target output buffer
+     * @return canvas of the configured render mode
+     */
+    public SvgCanvas create(StringBuilder target) {
+        return renderMode.createCanvas(target);
+    }
+}
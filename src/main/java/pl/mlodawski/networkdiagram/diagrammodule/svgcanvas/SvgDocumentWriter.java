@@ -0,0 +1,104 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffer of the rendered document, flushed as UTF-8 to the output stream whenever it grows over the chunk size.
+ */
+public class SvgDocumentWriter implements Flushable {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE * 2);
+    private final Writer writer;
+    private char[] chunk = new char[CHUNK_SIZE * 2];
+    private long firstByteNanos;
+    private long bytesWritten;
+
+    public SvgDocumentWriter(OutputStream outputStream) {
+        this.writer = new OutputStreamWriter(new CountingOutputStream(outputStream), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return buffer the canvas writes into
+     */
+    public StringBuilder buffer() {
+        return buffer;
+    }
+
+    /**
+     * Writes the buffer to the output stream once it reaches the chunk size
+     */
+    public void flushIfFull() {
+        if (buffer.length() >= CHUNK_SIZE) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * Writes the remaining buffer and flushes the output stream
+     */
+    @Override
+    public void flush() {
+        writeBuffer();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return System.nanoTime() of the first byte written to the output stream, 0 if nothing was written
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * @return number of bytes written to the output stream
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void writeBuffer() {
+        int length = buffer.length();
+        if (length == 0) {
+            return;
+        }
+        if (chunk.length < length) {
+            chunk = new char[length];
+        }
+        buffer.getChars(0, length, chunk, 0);
+        buffer.setLength(0);
+        try {
+            writer.write(chunk, 0, length);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private class CountingOutputStream extends FilterOutputStream {
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (firstByteNanos == 0 && length > 0) {
+                firstByteNanos = System.nanoTime();
+            }
+            out.write(bytes, offset, length);
+            bytesWritten += length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import java.util.function.Function;
+
+public enum SvgRenderMode {
+    STREAMING(StreamingSvgCanvas::new, false),
+    INSTANCED(target -> new StreamingSvgCanvas(target, true), true),
+    JFREESVG(JFreeSvgCanvas::new, false);
+
+    private final Function<StringBuilder, SvgCanvas> canvasFactory;
+    private final boolean instancing;
+
+    SvgRenderMode(Function<StringBuilder, SvgCanvas> canvasFactory, boolean instancing) {
+        this.canvasFactory = canvasFactory;
+        this.instancing = instancing;
+    }
+
+    /**
+     * @return true if arrows, boxes and super nodes are written once in defs and referenced with use
+     */
+    public boolean isInstancing() {
+        return instancing;
+    }
+
+    public SvgCanvas createCanvas(StringBuilder target) {
+        return canvasFactory.apply(target);
+    }
+}
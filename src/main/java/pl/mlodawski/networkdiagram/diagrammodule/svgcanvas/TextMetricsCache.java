@@ -0,0 +1,163 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared cache of fonts and text widths, keyed by font family, style, size and text.
+ * Widths of the traffic labels 0% to 100% are measured once per font, other texts are cached up to the configured size.
+ */
+@Component
+public class TextMetricsCache {
+
+    private static final int MAX_PERCENT_LABEL = 100;
+    private static final String[] PERCENT_LABELS = new String[MAX_PERCENT_LABEL + 1];
+    private static final int MAX_FONTS = 256;
+
+    static {
+        for (int percentage = 0; percentage <= MAX_PERCENT_LABEL; percentage++) {
+            PERCENT_LABELS[percentage] = percentage + "%";
+        }
+    }
+
+    private static final Graphics2D METRICS_GRAPHICS = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    private static final Map<Font, FontMetrics> FONT_METRICS = new ConcurrentHashMap<>();
+
+    private final Map<FontKey, FontTextMetrics> fonts = new ConcurrentHashMap<>();
+    private final Map<TextKey, Integer> widths = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    public TextMetricsCache(@Value("${diagram.text-metrics.cache.max-size:65536}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns metrics of the font, styles other than plain, bold and italic fall back to plain
+     *
+     * @param family font family
+     * @param style  font style
+     * @param size   font size
+     * @return font with its metrics
+     */
+    public FontTextMetrics metrics(String family, int style, int size) {
+        if ((style & ~(Font.PLAIN | Font.BOLD | Font.ITALIC)) != 0) {
+            style = Font.PLAIN;
+        }
+        FontKey key = new FontKey(family, style, size);
+        FontTextMetrics metrics = fonts.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        metrics = new FontTextMetrics(key, new Font(family, style, size));
+        if (fonts.size() < MAX_FONTS) {
+            FontTextMetrics existing = fonts.putIfAbsent(key, metrics);
+            return existing != null ? existing : metrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * @param percentage traffic percentage
+     * @return label of the percentage, shared for 0% to 100%
+     */
+    public static String percentLabel(int percentage) {
+        if (percentage >= 0 && percentage <= MAX_PERCENT_LABEL) {
+            return PERCENT_LABELS[percentage];
+        }
+        return percentage + "%";
+    }
+
+    /**
+     * Returns metrics of the font for canvases measuring their current font. The metrics are taken from one shared graphics
+     * under its lock, since Graphics2D is not thread-safe, and cached for up to 256 fonts.
+     *
+     * @param font font to measure
+     * @return metrics of the font
+     */
+    public static FontMetrics fontMetrics(Font font) {
+        FontMetrics metrics = FONT_METRICS.get(font);
+        if (metrics != null) {
+            return metrics;
+        }
+        synchronized (METRICS_GRAPHICS) {
+            metrics = METRICS_GRAPHICS.getFontMetrics(font);
+        }
+        if (FONT_METRICS.size() < MAX_FONTS) {
+            FontMetrics existing = FONT_METRICS.putIfAbsent(font, metrics);
+            return existing != null ? existing : metrics;
+        }
+        return metrics;
+    }
+
+    private record FontKey(String family, int style, int size) {
+    }
+
+    private record TextKey(FontKey font, String text) {
+    }
+
+    /**
+     * Font with its measured label widths, immutable and shared between threads
+     */
+    public final class FontTextMetrics {
+
+        private final FontKey key;
+        private final Font font;
+        private final FontMetrics fontMetrics;
+        private final int textHeight;
+        private final int[] percentLabelWidths = new int[MAX_PERCENT_LABEL + 1];
+
+        private FontTextMetrics(FontKey key, Font font) {
+            this.key = key;
+            this.font = font;
+            this.fontMetrics = fontMetrics(font);
+            this.textHeight = fontMetrics.getAscent() - fontMetrics.getDescent();
+            for (int percentage = 0; percentage <= MAX_PERCENT_LABEL; percentage++) {
+                percentLabelWidths[percentage] = fontMetrics.stringWidth(PERCENT_LABELS[percentage]);
+            }
+        }
+
+        public Font getFont() {
+            return font;
+        }
+
+        /**
+         * @return ascent minus descent, the height used to center text
+         */
+        public int getTextHeight() {
+            return textHeight;
+        }
+
+        /**
+         * @param text text to measure
+         * @return width of the text in pixels
+         */
+        public int stringWidth(String text) {
+            TextKey textKey = new TextKey(key, text);
+            Integer width = widths.get(textKey);
+            if (width != null) {
+                return width;
+            }
+            int measured = fontMetrics.stringWidth(text);
+            if (widths.size() < maxSize) {
+                widths.putIfAbsent(textKey, measured);
+            }
+            return measured;
+        }
+
+        /**
+         * @param percentage traffic percentage
+         * @return width of the percentage label in pixels
+         */
+        public int percentLabelWidth(int percentage) {
+            if (percentage >= 0 && percentage <= MAX_PERCENT_LABEL) {
+                return percentLabelWidths[percentage];
+            }
+            return stringWidth(percentLabel(percentage));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pl.mlodawski.networkdiagram.diagrammodule.theme;
+
+import lombok.Getter;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.PaletteTable;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache.FontTextMetrics;
+
+import java.awt.*;
+
+/**
+ * Document style compiled into the resources used while drawing: decoded colors, fonts with their metrics, strokes and the palette table.
+ * Immutable, one instance is shared by all renders using the same style.
+ */
+@Getter
+public final class RenderTheme {
+
+    private static final Stroke LINK_STROKE = new BasicStroke(3);
+    private static final Stroke SUPER_NODE_STROKE = new BasicStroke(2.0f);
+
+    private final String hash;
+    private final DocumentStyle style;
+
+    private final Color fontColor;
+    private final Color backgroundColor;
+    private final Color borderColor;
+    private final Color nodeColor;
+    private final String backgroundHex;
+    private final String borderHex;
+    private final String nodeHex;
+
+    private final FontTextMetrics textFont;
+    private final FontTextMetrics titleFont;
+    private final FontTextMetrics legendLabelFont;
+
+    private final PaletteTable linkPalette;
+    private final Stroke linkStroke = LINK_STROKE;
+    private final Stroke superNodeStroke = SUPER_NODE_STROKE;
+
+    RenderTheme(String hash, DocumentStyle style, ResolvedColors colors, FontTextMetrics textFont, FontTextMetrics titleFont,
+                FontTextMetrics legendLabelFont, PaletteTable linkPalette) {
+        this.hash = hash;
+        this.style = style;
+        this.fontColor = colors.fontColor();
+        this.backgroundColor = colors.backgroundColor();
+        this.borderColor = colors.borderColor();
+        this.nodeColor = colors.nodeColor();
+        this.backgroundHex = ResolvedColors.hex(colors.backgroundColor());
+        this.borderHex = ResolvedColors.hex(colors.borderColor());
+        this.nodeHex = ResolvedColors.hex(colors.nodeColor());
+        this.textFont = textFont;
+        this.titleFont = titleFont;
+        this.legendLabelFont = legendLabelFont;
+        this.linkPalette = linkPalette;
+    }
+
+    /**
+     * @return true if the document title should be drawn
+     */
+    public boolean drawsTitle() {
+        return style.showTitle() && style.title() != null && !style.title().isEmpty();
+    }
+
+    /**
+     * Colors of the style decoded once
+     */
+    record ResolvedColors(Color fontColor, Color backgroundColor, Color borderColor, Color nodeColor) {
+
+        static ResolvedColors of(DocumentStyle style) {
+            return new ResolvedColors(
+                    decode("fontColor", style.fontColor()),
+                    decode("bgColor", style.bgColor()),
+                    decode("borderColor", style.borderColor()),
+                    decode("nodeColor", style.nodeColor())
+            );
+        }
+
+        static String hex(Color color) {
+            return String.format("#%06x", color.getRGB() & 0xFFFFFF);
+        }
+
+        private static Color decode(String field, String value) {
+            try {
+                return Color.decode(value);
+            } catch (NumberFormatException | NullPointerException e) {
+                throw new IllegalArgumentException("Invalid color '" + value + "' for " + field);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package pl.mlodawski.networkdiagram.diagrammodule.theme;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ThemeReference(@JsonProperty("name") String name, @JsonProperty("hash") String hash) {
+}
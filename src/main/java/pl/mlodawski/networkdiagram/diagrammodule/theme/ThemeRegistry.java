@@ -0,0 +1,258 @@
+package pl.mlodawski.networkdiagram.diagrammodule.theme;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.LinkPaletteCache;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramConfig;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.FontStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache.FontTextMetrics;
+
+import java.awt.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compiles document styles into {@link RenderTheme}s and keeps them by content hash and by name.
+ * The same style always compiles to the same hash, so clients can reference a theme they used before by its hash.
+ * Both maps are bounded and drop the least recently used theme, every compiled theme is stored so its hash resolves
+ * until it is dropped. Built-in themes are kept apart and cannot be replaced.
+ */
+@Service
+@Slf4j
+public class ThemeRegistry {
+
+    public static final String DEFAULT_THEME = "default";
+
+    private static final int HASH_BYTES = 16;
+    private static final DiagramConfig DEFAULT_CONFIG = new DiagramConfig("Arial", 12, "#000000", FontStyle.PLAIN, "#ffffff", "#000000", "#ffffff",
+            ColorStrategy.RED_GREEN, null, false, true, null);
+
+    private final TextMetricsCache textMetricsCache;
+    private final LinkPaletteCache linkPaletteCache;
+    private final LinkedHashMap<String, RenderTheme> themesByHash = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, RenderTheme> themesByName = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSize;
+    private final int maxNames;
+    private final RenderTheme defaultTheme;
+
+    /**
+     * Built-in themes by name and by hash
+     */
+    private final Map<String, RenderTheme> builtInThemes;
+
+    public ThemeRegistry(TextMetricsCache textMetricsCache, LinkPaletteCache linkPaletteCache,
+                         @Value("${diagram.theme.cache.max-size:1024}") int maxSize,
+                         @Value("${diagram.theme.names.max-size:256}") int maxNames) {
+        if (maxSize <= 0 || maxNames <= 0) {
+            throw new IllegalArgumentException("Theme cache sizes have to be positive");
+        }
+        this.textMetricsCache = textMetricsCache;
+        this.linkPaletteCache = linkPaletteCache;
+        this.maxSize = maxSize;
+        this.maxNames = maxNames;
+        this.defaultTheme = build(new DocumentStyle("Arial", 12, "#000000", FontStyle.PLAIN, "#ffffff", "#000000", "#ffffff", ColorStrategy.RED_GREEN, true, "true", true));
+        this.builtInThemes = Map.of(DEFAULT_THEME, defaultTheme, defaultTheme.getHash(), defaultTheme);
+    }
+
+    /**
+     * Finds a theme by name or by content hash
+     *
+     * @param reference name or hash of the theme
+     * @return theme
+     */
+    public RenderTheme resolve(String reference) {
+        RenderTheme theme = builtInThemes.get(reference);
+        if (theme == null) {
+            synchronized (themesByName) {
+                theme = themesByName.get(reference);
+            }
+        }
+        if (theme == null) {
+            synchronized (themesByHash) {
+                theme = themesByHash.get(reference);
+            }
+        }
+        if (theme == null) {
+            throw new IllegalArgumentException("Unknown theme: " + reference);
+        }
+        return theme;
+    }
+
+    /**
+     * @return theme used by the natural language endpoint
+     */
+    public RenderTheme defaultTheme() {
+        return defaultTheme;
+    }
+
+    /**
+     * Compiles the diagram config, missing values are taken from the defaults
+     *
+     * @param diagramConfig diagram config, may be null
+     * @return compiled theme
+     */
+    public RenderTheme compile(DiagramConfig diagramConfig) {
+        return compile(toDocumentStyle(Optional.ofNullable(diagramConfig).orElse(DEFAULT_CONFIG)));
+    }
+
+    /**
+     * Compiles the document style, or returns the theme compiled before for the same content.
+     * The theme is stored, so its hash resolves until the theme is the least recently used one of a full cache.
+     *
+     * @param documentStyle document style
+     * @return compiled theme
+     */
+    public RenderTheme compile(DocumentStyle documentStyle) {
+        RenderTheme.ResolvedColors colors = RenderTheme.ResolvedColors.of(documentStyle);
+        String hash = contentHash(documentStyle, colors);
+        RenderTheme theme = builtInThemes.get(hash);
+        if (theme != null) {
+            return theme;
+        }
+        synchronized (themesByHash) {
+            theme = themesByHash.get(hash);
+        }
+        if (theme != null) {
+            return theme;
+        }
+        theme = build(hash, documentStyle, colors);
+        synchronized (themesByHash) {
+            RenderTheme existing = themesByHash.putIfAbsent(hash, theme);
+            if (existing != null) {
+                return existing;
+            }
+            dropEldest(themesByHash, maxSize, "theme");
+        }
+        return theme;
+    }
+
+    /**
+     * Registers the style under the name, replacing the previous theme of that name.
+     * Names of built-in themes and names looking like a theme hash are reserved.
+     *
+     * @param name          theme name
+     * @param documentStyle document style
+     * @return compiled theme
+     */
+    public RenderTheme register(String name, DocumentStyle documentStyle) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Theme name cannot be empty");
+        }
+        if (builtInThemes.containsKey(name) || isHash(name)) {
+            throw new IllegalArgumentException("Theme name is reserved: " + name);
+        }
+        RenderTheme theme = compile(documentStyle);
+        synchronized (themesByName) {
+            themesByName.put(name, theme);
+            dropEldest(themesByName, maxNames, "theme name");
+        }
+        return theme;
+    }
+
+    /**
+     * Applies the defaults to the missing values of the config
+     *
+     * @param diagramConfig diagram config
+     * @return document style
+     */
+    public DocumentStyle toDocumentStyle(DiagramConfig diagramConfig) {
+        return new DocumentStyle(
+                Optional.ofNullable(diagramConfig.getFontName()).orElse("Arial"),
+                diagramConfig.getFontSize() > 0 ? diagramConfig.getFontSize() : 12,
+                Optional.ofNullable(diagramConfig.getFontColor()).orElse("#000000"),
+                Optional.ofNullable(diagramConfig.getFontType()).orElse(FontStyle.PLAIN),
+                Optional.ofNullable(diagramConfig.getBackgroundColor()).orElse("#ffffff"),
+                Optional.ofNullable(diagramConfig.getBorderColor()).orElse("#000000"),
+                Optional.ofNullable(diagramConfig.getNodeColor()).orElse("#ffffff"),
+                Optional.ofNullable(diagramConfig.getColorStrategy()).orElse(ColorStrategy.RED_GREEN),
+                diagramConfig.isShowTitle(),
+                Optional.ofNullable(diagramConfig.getTitle()).orElse("true"),
+                diagramConfig.isShowLegend(),
+                diagramConfig.getLinkGradient()
+        );
+    }
+
+    private RenderTheme build(DocumentStyle documentStyle) {
+        RenderTheme.ResolvedColors colors = RenderTheme.ResolvedColors.of(documentStyle);
+        return build(contentHash(documentStyle, colors), documentStyle, colors);
+    }
+
+    private RenderTheme build(String hash, DocumentStyle documentStyle, RenderTheme.ResolvedColors colors) {
+        int fontStyle = documentStyle.fontStyle() == null ? Font.PLAIN : documentStyle.fontStyle().getValue();
+        FontTextMetrics textFont = textMetricsCache.metrics(documentStyle.font(), fontStyle, documentStyle.fontSize());
+        FontTextMetrics titleFont = textMetricsCache.metrics(documentStyle.font(), Font.BOLD, documentStyle.fontSize() + 4);
+        FontTextMetrics legendLabelFont = textMetricsCache.metrics(documentStyle.font(), fontStyle, documentStyle.fontSize() - 2);
+        ColorStrategy linkPalette = Optional.ofNullable(documentStyle.linkPalette()).orElse(ColorStrategy.RED_GREEN);
+        return new RenderTheme(hash, documentStyle, colors, textFont, titleFont, legendLabelFont,
+                linkPaletteCache.resolve(linkPalette, documentStyle.linkGradient()));
+    }
+
+    /**
+     * Hash of the style content, colors are normalized to lowercase #rrggbb so #FFFFFF and #ffffff give the same hash
+     */
+    private String contentHash(DocumentStyle documentStyle, RenderTheme.ResolvedColors colors) {
+        StringBuilder canonical = new StringBuilder(128);
+        appendField(canonical, documentStyle.font());
+        appendField(canonical, String.valueOf(documentStyle.fontSize()));
+        appendField(canonical, RenderTheme.ResolvedColors.hex(colors.fontColor()));
+        appendField(canonical, documentStyle.fontStyle() == null ? null : documentStyle.fontStyle().name());
+        appendField(canonical, RenderTheme.ResolvedColors.hex(colors.backgroundColor()));
+        appendField(canonical, RenderTheme.ResolvedColors.hex(colors.borderColor()));
+        appendField(canonical, RenderTheme.ResolvedColors.hex(colors.nodeColor()));
+        appendField(canonical, documentStyle.linkPalette() == null ? null : documentStyle.linkPalette().name());
+        appendField(canonical, String.valueOf(documentStyle.showTitle()));
+        appendField(canonical, documentStyle.title());
+        appendField(canonical, String.valueOf(documentStyle.showLegend()));
+        List<String> gradient = documentStyle.linkGradient();
+        appendField(canonical, gradient == null ? null : String.join(",", gradient).toLowerCase(Locale.ROOT));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, HASH_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Drops the least recently used entries of a full map, called while holding its lock
+     */
+    private static void dropEldest(LinkedHashMap<String, RenderTheme> themes, int maxEntries, String kind) {
+        Iterator<Map.Entry<String, RenderTheme>> eldest = themes.entrySet().iterator();
+        while (themes.size() > maxEntries && eldest.hasNext()) {
+            log.debug("Dropping least recently used {} {}", kind, eldest.next().getKey());
+            eldest.remove();
+        }
+    }
+
+    private static boolean isHash(String name) {
+        if (name.length() != HASH_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.digit(name.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendField(StringBuilder canonical, String value) {
+        if (value == null) {
+            canonical.append("-1:");
+            return;
+        }
+        canonical.append(value.length()).append(':').append(value);
+    }
+}
@@ -0,0 +1,10 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+/**
+ * Drawn tile
+ *
+ * @param renderKey render key of the tile, different for every session version
+ * @param content   SVG or PNG image
+ */
+public record RenderedTile(String renderKey, byte[] content) {
+}
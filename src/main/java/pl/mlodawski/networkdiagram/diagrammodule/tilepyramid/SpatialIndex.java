@@ -0,0 +1,179 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Static R-tree of boxes packed in the order of the Hilbert curve through their centers, built once and only queried.
+ * The tree is kept in flat arrays, every level after the level below it, so a query allocates only the result.
+ */
+final class SpatialIndex {
+
+    private static final int NODE_SIZE = 16;
+    private static final int HILBERT_ORDER = 15;
+    private static final int HILBERT_MAX = (1 << HILBERT_ORDER) - 1;
+
+    private final int itemCount;
+    private final float[] boxes;
+    private final int[] indices;
+    private final int[] levelEnds;
+
+    private SpatialIndex(int itemCount, float[] boxes, int[] indices, int[] levelEnds) {
+        this.itemCount = itemCount;
+        this.boxes = boxes;
+        this.indices = indices;
+        this.levelEnds = levelEnds;
+    }
+
+    /**
+     * Builds the index of the boxes, item i has the box at 4 * i: min x, min y, max x, max y
+     *
+     * @param itemBoxes boxes of the items
+     * @return index returning the item numbers
+     */
+    static SpatialIndex of(float[] itemBoxes) {
+        int count = itemBoxes.length / 4;
+        int nodeCount = count;
+        int levelSize = count;
+        int levels = 1;
+        while (levelSize > 1) {
+            levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+            nodeCount += levelSize;
+            levels++;
+        }
+        float[] boxes = new float[nodeCount * 4];
+        int[] indices = new int[nodeCount];
+        int[] levelEnds = new int[count == 0 ? 1 : levels];
+
+        int[] order = hilbertOrder(itemBoxes, count);
+        for (int position = 0; position < count; position++) {
+            System.arraycopy(itemBoxes, order[position] * 4, boxes, position * 4, 4);
+            indices[position] = order[position];
+        }
+        levelEnds[0] = count;
+        int levelStart = 0;
+        int position = count;
+        for (int level = 1; level < levelEnds.length; level++) {
+            int levelEnd = levelEnds[level - 1];
+            for (int child = levelStart; child < levelEnd; child += NODE_SIZE) {
+                int childEnd = Math.min(child + NODE_SIZE, levelEnd);
+                float minX = Float.POSITIVE_INFINITY;
+                float minY = Float.POSITIVE_INFINITY;
+                float maxX = Float.NEGATIVE_INFINITY;
+                float maxY = Float.NEGATIVE_INFINITY;
+                for (int i = child; i < childEnd; i++) {
+                    minX = Math.min(minX, boxes[i * 4]);
+                    minY = Math.min(minY, boxes[i * 4 + 1]);
+                    maxX = Math.max(maxX, boxes[i * 4 + 2]);
+                    maxY = Math.max(maxY, boxes[i * 4 + 3]);
+                }
+                boxes[position * 4] = minX;
+                boxes[position * 4 + 1] = minY;
+                boxes[position * 4 + 2] = maxX;
+                boxes[position * 4 + 3] = maxY;
+                indices[position] = child;
+                position++;
+            }
+            levelStart = levelEnd;
+            levelEnds[level] = position;
+        }
+        return new SpatialIndex(count, boxes, indices, levelEnds);
+    }
+
+    /**
+     * @param area searched area
+     * @return numbers of the items whose boxes intersect the area, in ascending order
+     */
+    int[] search(Rectangle2D area) {
+        if (itemCount == 0) {
+            return new int[0];
+        }
+        float minX = (float) area.getMinX();
+        float minY = (float) area.getMinY();
+        float maxX = (float) area.getMaxX();
+        float maxY = (float) area.getMaxY();
+        int[] result = new int[Math.min(itemCount, 64)];
+        int found = 0;
+        int[] stack = new int[levelEnds.length * NODE_SIZE * 2];
+        int stackSize = 0;
+        int nodeStart = indices.length - 1;
+        int level = levelEnds.length - 1;
+        while (true) {
+            int nodeEnd = Math.min(nodeStart + NODE_SIZE, levelEnds[level]);
+            for (int position = nodeStart; position < nodeEnd; position++) {
+                if (boxes[position * 4 + 2] < minX || boxes[position * 4 + 3] < minY
+                        || boxes[position * 4] > maxX || boxes[position * 4 + 1] > maxY) {
+                    continue;
+                }
+                if (level == 0) {
+                    if (found == result.length) {
+                        result = Arrays.copyOf(result, Math.min(itemCount, found * 2));
+                    }
+                    result[found++] = indices[position];
+                } else {
+                    stack[stackSize++] = indices[position];
+                    stack[stackSize++] = level - 1;
+                }
+            }
+            if (stackSize == 0) {
+                break;
+            }
+            level = stack[--stackSize];
+            nodeStart = stack[--stackSize];
+        }
+        int[] items = Arrays.copyOf(result, found);
+        Arrays.sort(items);
+        return items;
+    }
+
+    /**
+     * Sorts the items by the Hilbert curve position of their centers, so the items close to each other end up in the same nodes
+     */
+    private static int[] hilbertOrder(float[] itemBoxes, int count) {
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, itemBoxes[i * 4]);
+            minY = Math.min(minY, itemBoxes[i * 4 + 1]);
+            maxX = Math.max(maxX, itemBoxes[i * 4 + 2]);
+            maxY = Math.max(maxY, itemBoxes[i * 4 + 3]);
+        }
+        float width = Math.max(maxX - minX, Float.MIN_NORMAL);
+        float height = Math.max(maxY - minY, Float.MIN_NORMAL);
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            float centerX = (itemBoxes[i * 4] + itemBoxes[i * 4 + 2]) / 2;
+            float centerY = (itemBoxes[i * 4 + 1] + itemBoxes[i * 4 + 3]) / 2;
+            int x = (int) (HILBERT_MAX * (centerX - minX) / width);
+            int y = (int) (HILBERT_MAX * (centerY - minY) / height);
+            keys[i] = hilbert(x, y) << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private static long hilbert(int x, int y) {
+        long distance = 0;
+        for (int half = 1 << (HILBERT_ORDER - 1); half > 0; half >>= 1) {
+            int rx = (x & half) != 0 ? 1 : 0;
+            int ry = (y & half) != 0 ? 1 : 0;
+            distance += (long) half * half * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,27 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Image format of the tiles
+ */
+public enum TileFormat {
+    SVG("svg", new MediaType("image", "svg+xml")),
+    PNG("png", MediaType.IMAGE_PNG);
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    TileFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
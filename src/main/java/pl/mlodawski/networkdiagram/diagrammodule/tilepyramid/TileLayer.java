@@ -0,0 +1,227 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.ElementIds;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNodeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Elements drawn at a level of detail, with spatial indexes of the links, the nodes and the super nodes,
+ * so a tile draws only the elements reaching into it, in the document order.
+ */
+final class TileLayer {
+
+    /**
+     * Margin of the drawn element around its shape, the same as the margin of the element groups in the document
+     */
+    private static final float ELEMENT_MARGIN = 50;
+    private static final String GROUP_ID_PREFIX = "\u0000super-node-";
+
+    private final List<NetworkLink> links;
+    private final List<String> linkIds;
+    private final NetworkNodeRegistry nodeRegistry;
+    private final List<NetworkNode> nodes;
+    private final List<SuperNode> superNodes;
+    private final SpatialIndex linkIndex;
+    private final SpatialIndex nodeIndex;
+    private final SpatialIndex superNodeIndex;
+
+    private TileLayer(List<NetworkLink> links, List<String> linkIds, NetworkNodeRegistry nodeRegistry, List<NetworkNode> nodes, List<SuperNode> superNodes) {
+        List<NetworkLink> drawnLinks = new ArrayList<>(links.size());
+        List<String> drawnLinkIds = new ArrayList<>(links.size());
+        List<float[]> linkBoxes = new ArrayList<>(links.size());
+        for (int i = 0; i < links.size(); i++) {
+            NetworkNode source = nodeRegistry.findById(links.get(i).getSourceNodeId());
+            NetworkNode target = nodeRegistry.findById(links.get(i).getTargetNodeId());
+            if (source != null && target != null) {
+                drawnLinks.add(links.get(i));
+                drawnLinkIds.add(linkIds.get(i));
+                linkBoxes.add(new float[]{
+                        Math.min(source.getX(), target.getX()) - ELEMENT_MARGIN,
+                        Math.min(source.getY(), target.getY()) - ELEMENT_MARGIN,
+                        Math.max(source.getX() + source.getWidth(), target.getX() + target.getWidth()) + ELEMENT_MARGIN,
+                        Math.max(source.getY() + source.getHeight(), target.getY() + target.getHeight()) + ELEMENT_MARGIN
+                });
+            }
+        }
+        float[] boxes = new float[linkBoxes.size() * 4];
+        for (int i = 0; i < linkBoxes.size(); i++) {
+            System.arraycopy(linkBoxes.get(i), 0, boxes, i * 4, 4);
+        }
+        this.links = drawnLinks;
+        this.linkIds = drawnLinkIds;
+        this.nodeRegistry = nodeRegistry;
+        this.nodes = nodes;
+        this.superNodes = superNodes;
+        this.linkIndex = SpatialIndex.of(boxes);
+        this.nodeIndex = SpatialIndex.of(nodeBoxes(nodes));
+        this.superNodeIndex = SpatialIndex.of(superNodeBoxes(superNodes));
+    }
+
+    /**
+     * @param snapshot diagram
+     * @return every element as in the document
+     */
+    static TileLayer detailed(DiagramSession.Snapshot snapshot) {
+        return new TileLayer(snapshot.networkLinks(), snapshot.linkIds(), NetworkNodeRegistry.of(snapshot.networkNodes()),
+                snapshot.networkNodes(), snapshot.superNodes());
+    }
+
+    /**
+     * Collapses the nodes of every super node into the super node box. Links inside a super node are dropped, links between
+     * the same super nodes or between a super node and the same node are merged into one link with the average traffic.
+     *
+     * @param snapshot diagram
+     * @return standalone nodes, super nodes and the links between them
+     */
+    static TileLayer collapsed(DiagramSession.Snapshot snapshot) {
+        Map<String, String> groupIds = new HashMap<>();
+        List<NetworkNode> groupBoxes = new ArrayList<>(snapshot.superNodes().size());
+        for (int i = 0; i < snapshot.superNodes().size(); i++) {
+            SuperNode superNode = snapshot.superNodes().get(i);
+            String groupId = GROUP_ID_PREFIX + i;
+            groupBoxes.add(new NetworkNode(groupId, superNode.getX(), superNode.getY(), superNode.getWidth(), superNode.getHeight(), superNode.getName()));
+            for (List<NetworkNode> members : List.of(superNode.getTopNodes(), superNode.getBottomNodes(), superNode.getLeftNodes(), superNode.getRightNodes())) {
+                members.forEach(member -> groupIds.put(member.getId(), groupId));
+            }
+        }
+        List<NetworkNode> standaloneNodes = new ArrayList<>(snapshot.networkNodes().size());
+        for (NetworkNode node : snapshot.networkNodes()) {
+            if (!groupIds.containsKey(node.getId())) {
+                standaloneNodes.add(node);
+            }
+        }
+        NetworkNodeRegistry nodeRegistry = NetworkNodeRegistry.of(standaloneNodes);
+        groupBoxes.forEach(nodeRegistry::register);
+
+        List<LinkAggregate> aggregates = new ArrayList<>();
+        Map<String, LinkAggregate> aggregatesByEnds = new HashMap<>();
+        for (NetworkLink link : snapshot.networkLinks()) {
+            String source = groupIds.getOrDefault(link.getSourceNodeId(), link.getSourceNodeId());
+            String target = groupIds.getOrDefault(link.getTargetNodeId(), link.getTargetNodeId());
+            if (source.equals(link.getSourceNodeId()) && target.equals(link.getTargetNodeId())) {
+                aggregates.add(new LinkAggregate(link));
+                continue;
+            }
+            if (source.equals(target)) {
+                continue;
+            }
+            String ends = source.compareTo(target) < 0 ? source + '\u0000' + target : target + '\u0000' + source;
+            LinkAggregate aggregate = aggregatesByEnds.get(ends);
+            if (aggregate == null) {
+                aggregate = new LinkAggregate(source, target);
+                aggregatesByEnds.put(ends, aggregate);
+                aggregates.add(aggregate);
+            }
+            aggregate.add(link, source);
+        }
+        List<NetworkLink> links = new ArrayList<>(aggregates.size());
+        aggregates.forEach(aggregate -> links.add(aggregate.toLink()));
+        return new TileLayer(links, Arrays.asList(ElementIds.links(links)), nodeRegistry, standaloneNodes, snapshot.superNodes());
+    }
+
+    /**
+     * Draws the elements reaching into the area
+     *
+     * @param svgCanvas             canvas
+     * @param area                  document area
+     * @param networkDrawingService drawing service
+     * @param theme                 compiled document style
+     */
+    void draw(SvgCanvas svgCanvas, Rectangle2D area, NetworkDrawingService networkDrawingService, RenderTheme theme) {
+        int[] linkNumbers = linkIndex.search(area);
+        List<NetworkLink> areaLinks = new ArrayList<>(linkNumbers.length);
+        List<String> areaLinkIds = new ArrayList<>(linkNumbers.length);
+        for (int number : linkNumbers) {
+            areaLinks.add(links.get(number));
+            areaLinkIds.add(linkIds.get(number));
+        }
+        networkDrawingService.drawElements(svgCanvas, areaLinks, areaLinkIds, nodeRegistry,
+                select(nodes, nodeIndex.search(area)), select(superNodes, superNodeIndex.search(area)), theme);
+    }
+
+    /**
+     * @return drawn links, merged links as one link
+     */
+    List<NetworkLink> links() {
+        return links;
+    }
+
+    private static <T> List<T> select(List<T> elements, int[] numbers) {
+        List<T> selected = new ArrayList<>(numbers.length);
+        for (int number : numbers) {
+            selected.add(elements.get(number));
+        }
+        return selected;
+    }
+
+    private static float[] nodeBoxes(List<NetworkNode> nodes) {
+        float[] boxes = new float[nodes.size() * 4];
+        for (int i = 0; i < nodes.size(); i++) {
+            NetworkNode node = nodes.get(i);
+            setBox(boxes, i, node.getX(), node.getY(), node.getWidth(), node.getHeight());
+        }
+        return boxes;
+    }
+
+    private static float[] superNodeBoxes(List<SuperNode> superNodes) {
+        float[] boxes = new float[superNodes.size() * 4];
+        for (int i = 0; i < superNodes.size(); i++) {
+            SuperNode superNode = superNodes.get(i);
+            setBox(boxes, i, superNode.getX(), superNode.getY(), superNode.getWidth(), superNode.getHeight());
+        }
+        return boxes;
+    }
+
+    private static void setBox(float[] boxes, int index, float x, float y, float width, float height) {
+        boxes[index * 4] = x - ELEMENT_MARGIN;
+        boxes[index * 4 + 1] = y - ELEMENT_MARGIN;
+        boxes[index * 4 + 2] = x + width + ELEMENT_MARGIN;
+        boxes[index * 4 + 3] = y + height + ELEMENT_MARGIN;
+    }
+
+    /**
+     * Links merged into one, traffic of the links drawn in the other direction is swapped
+     */
+    private static final class LinkAggregate {
+
+        private final String sourceNodeId;
+        private final String targetNodeId;
+        private float incomingTraffic;
+        private float outgoingTraffic;
+        private int count;
+
+        LinkAggregate(String sourceNodeId, String targetNodeId) {
+            this.sourceNodeId = sourceNodeId;
+            this.targetNodeId = targetNodeId;
+        }
+
+        LinkAggregate(NetworkLink link) {
+            this(link.getSourceNodeId(), link.getTargetNodeId());
+            add(link, link.getSourceNodeId());
+        }
+
+        void add(NetworkLink link, String source) {
+            boolean sameDirection = source.equals(sourceNodeId);
+            incomingTraffic += sameDirection ? link.getIncomingTraffic() : link.getOutgoingTraffic();
+            outgoingTraffic += sameDirection ? link.getOutgoingTraffic() : link.getIncomingTraffic();
+            count++;
+        }
+
+        NetworkLink toLink() {
+            return new NetworkLink(sourceNodeId, targetNodeId, incomingTraffic / count, outgoingTraffic / count);
+        }
+    }
+}
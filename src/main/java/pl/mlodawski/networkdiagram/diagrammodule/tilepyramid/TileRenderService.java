@@ -0,0 +1,113 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram.PngDiagramRenderer;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderCache;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Draws {z}/{x}/{y} tiles of diagram sessions. The spatial indexes of a session version are built with its first tile
+ * and kept for the most recently used sessions, drawn tiles are kept in the render cache.
+ */
+@Service
+@Slf4j
+public class TileRenderService {
+
+    private final NetworkDrawingService networkDrawingService;
+    private final PngDiagramRenderer pngDiagramRenderer;
+    private final RenderCache renderCache;
+    private final double collapseScale;
+    private final int maxScenes;
+    private final LinkedHashMap<String, TileScene> scenes = new LinkedHashMap<>(16, 0.75f, true);
+
+    public TileRenderService(NetworkDrawingService networkDrawingService, PngDiagramRenderer pngDiagramRenderer, RenderCache renderCache,
+                             @Value("${diagram.tiles.collapse-scale:0.5}") double collapseScale,
+                             @Value("${diagram.tiles.max-scenes:16}") int maxScenes) {
+        this.networkDrawingService = networkDrawingService;
+        this.pngDiagramRenderer = pngDiagramRenderer;
+        this.renderCache = renderCache;
+        this.collapseScale = collapseScale;
+        this.maxScenes = maxScenes;
+    }
+
+    /**
+     * @param sessionId session id
+     * @param version   session version
+     * @param z         zoom
+     * @param x         column
+     * @param y         row
+     * @param format    image format
+     * @return render key of the tile
+     */
+    public static String tileKey(String sessionId, long version, int z, int x, int y, TileFormat format) {
+        return "tile-" + sessionId + '-' + version + '-' + z + '-' + x + '-' + y + '.' + format.getExtension();
+    }
+
+    /**
+     * Draws the tile of the current session version, or takes it from the render cache
+     *
+     * @param session session
+     * @param z       zoom
+     * @param x       column
+     * @param y       row
+     * @param format  image format
+     * @return tile with its render key
+     */
+    public RenderedTile render(DiagramSession session, int z, int x, int y, TileFormat format) {
+        String renderKey = tileKey(session.getId(), session.getVersion(), z, x, y, format);
+        byte[] cached = renderCache.get(renderKey);
+        if (cached != null) {
+            return new RenderedTile(renderKey, cached);
+        }
+        TileScene scene = scene(session);
+        DiagramSession.Snapshot snapshot = scene.getSnapshot();
+        renderKey = tileKey(snapshot.sessionId(), snapshot.version(), z, x, y, format);
+        Rectangle2D area = scene.tileArea(z, x, y);
+        TileLayer layer = scene.layer(z);
+        RenderTheme theme = snapshot.theme();
+        Consumer<SvgCanvas> elementsDrawer = svgCanvas -> layer.draw(svgCanvas, area, networkDrawingService, theme);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 * 1024);
+        switch (format) {
+            case SVG -> networkDrawingService.drawViewport(area, TileScene.TILE_SIZE, TileScene.TILE_SIZE, theme, new SvgDocumentWriter(outputStream), elementsDrawer);
+            case PNG -> pngDiagramRenderer.renderViewport(area, TileScene.TILE_SIZE, TileScene.TILE_SIZE, theme, elementsDrawer, outputStream);
+        }
+        byte[] tile = outputStream.toByteArray();
+        renderCache.put(renderKey, tile);
+        log.debug("Drew tile {}", renderKey);
+        return new RenderedTile(renderKey, tile);
+    }
+
+    /**
+     * @param session session
+     * @return tile pyramid of the current session version
+     */
+    TileScene scene(DiagramSession session) {
+        synchronized (scenes) {
+            TileScene scene = scenes.get(session.getId());
+            if (scene != null && scene.getSnapshot().version() == session.getVersion()) {
+                return scene;
+            }
+        }
+        DiagramSession.Snapshot snapshot = session.snapshot();
+        TileScene scene = new TileScene(snapshot, networkDrawingService.calculateDocumentDimensions(snapshot.networkNodes(), snapshot.superNodes()), collapseScale);
+        log.info("Indexed session {} version {} for tiles, {} zoom levels", snapshot.sessionId(), snapshot.version(), scene.getMaxZoom() + 1);
+        synchronized (scenes) {
+            scenes.put(snapshot.sessionId(), scene);
+            while (scenes.size() > maxScenes) {
+                scenes.remove(scenes.keySet().iterator().next());
+            }
+        }
+        return scene;
+    }
+}
@@ -0,0 +1,71 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentDimensions;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Tile pyramid of a session version. At the highest zoom without overzoom one tile pixel is one document pixel, every lower
+ * zoom halves the scale, at zoom 0 the whole document fits in one tile. Below the collapse scale the collapsed layer is drawn.
+ */
+final class TileScene {
+
+    static final int TILE_SIZE = 256;
+    private static final int MAX_OVERZOOM = 2;
+
+    private final DiagramSession.Snapshot snapshot;
+    private final int maxZoom;
+    private final double collapseScale;
+    private final TileLayer detailed;
+    private final TileLayer collapsed;
+
+    TileScene(DiagramSession.Snapshot snapshot, DocumentDimensions dimensions, double collapseScale) {
+        this.snapshot = snapshot;
+        int zoom = 0;
+        while ((long) TILE_SIZE << zoom < Math.max(dimensions.getWidth(), dimensions.getHeight())) {
+            zoom++;
+        }
+        this.maxZoom = zoom;
+        this.collapseScale = collapseScale;
+        this.detailed = TileLayer.detailed(snapshot);
+        this.collapsed = snapshot.superNodes().isEmpty() ? detailed : TileLayer.collapsed(snapshot);
+    }
+
+    DiagramSession.Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return highest zoom drawn without scaling the document up
+     */
+    int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * @param z zoom
+     * @param x column
+     * @param y row
+     * @return document area of the tile
+     */
+    Rectangle2D tileArea(int z, int x, int y) {
+        if (z < 0 || z > maxZoom + MAX_OVERZOOM) {
+            throw new IllegalArgumentException("Zoom has to be between 0 and " + (maxZoom + MAX_OVERZOOM));
+        }
+        int tiles = 1 << z;
+        if (x < 0 || y < 0 || x >= tiles || y >= tiles) {
+            throw new IllegalArgumentException("Tile " + x + "/" + y + " is outside of the " + tiles + "x" + tiles + " tiles of zoom " + z);
+        }
+        double extent = Math.scalb((double) TILE_SIZE, maxZoom - z);
+        return new Rectangle2D.Double(x * extent, y * extent, extent, extent);
+    }
+
+    /**
+     * @param z zoom
+     * @return layer drawn at the zoom
+     */
+    TileLayer layer(int z) {
+        return Math.scalb(1.0, z - maxZoom) < collapseScale ? collapsed : detailed;
+    }
+}
@@ -0,0 +1,53 @@
+package pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators;
+
+import java.util.Comparator;
+
+/**
+ * Error of a diagram description
+ *
+ * @param location where the element is in the description, see {@link SourceFormat}
+ * @param message  what is wrong with the element
+ */
+public record DiagramError(String location, String message) {
+
+    /**
+     * Orders errors by location, numbers in the locations compare by value so "Line 10" goes after "Line 9"
+     */
+    public static final Comparator<DiagramError> BY_LOCATION = Comparator.comparing(DiagramError::location, DiagramError::compareLocations);
+
+    static int compareLocations(String first, String second) {
+        int i = 0;
+        int j = 0;
+        while (i < first.length() && j < second.length()) {
+            char a = first.charAt(i);
+            char b = second.charAt(j);
+            if (Character.isDigit(a) && Character.isDigit(b)) {
+                int numberEnd = digitsEnd(first, i);
+                int otherNumberEnd = digitsEnd(second, j);
+                int result = Integer.compare(numberEnd - i, otherNumberEnd - j);
+                if (result == 0) {
+                    result = first.substring(i, numberEnd).compareTo(second.substring(j, otherNumberEnd));
+                }
+                if (result != 0) {
+                    return result;
+                }
+                i = numberEnd;
+                j = otherNumberEnd;
+            } else if (a != b) {
+                return Character.compare(a, b);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return Integer.compare(first.length() - i, second.length() - j);
+    }
+
+    private static int digitsEnd(String location, int start) {
+        int end = start;
+        while (end < location.length() && Character.isDigit(location.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,25 @@
+package pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Thrown for a diagram description with errors, answered with 400 listing every error
+ */
+@Getter
+public class DiagramValidationException extends IllegalArgumentException {
+
+    private final List<DiagramError> errors;
+
+    public DiagramValidationException(List<DiagramError> errors) {
+        super(message(errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    private static String message(List<DiagramError> errors) {
+        DiagramError first = errors.getFirst();
+        String message = first.location() + ": " + first.message();
+        return errors.size() == 1 ? message : message + " (and " + (errors.size() - 1) + " more errors)";
+    }
+}
@@ -0,0 +1,188 @@
+package pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators;
+
+import lombok.extern.slf4j.Slf4j;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNodeRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates a diagram in one pass while its elements are interpreted, shared by the script and the JSON interpreters.
+ * Node and super node ids are mapped to dense indexes once, the checks of duplicates, links, nodes of super nodes
+ * and empty super nodes work on the indexes. Links to nodes that are not known yet and empty super nodes are checked by {@link #finish()}.
+ * In the {@link ValidationMode#FIRST_ERROR} mode the first error is thrown, otherwise the errors are collected and thrown together
+ * sorted by location. Errors are caused by the client, a rejected diagram is logged once at debug level.
+ */
+@Slf4j
+public class DiagramValidator {
+
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Errors reported at most, a larger number does not help fixing the description
+     */
+    static final int MAX_ERRORS = 1000;
+
+    private final ValidationMode mode;
+    private final SourceFormat sourceFormat;
+    private final NetworkNodeRegistry nodeRegistry;
+    private final Map<String, Integer> superNodeIndexes = new HashMap<>();
+    private final List<String> superNodeIds = new ArrayList<>();
+    private int[] superNodePositions = new int[16];
+    private final BitSet nonEmptySuperNodes = new BitSet();
+    private int[] superNodeOfNode;
+    private final List<PendingLink> pendingLinks = new ArrayList<>();
+    private final List<DiagramError> errors = new ArrayList<>();
+
+    public DiagramValidator(ValidationMode mode, SourceFormat sourceFormat, int expectedNodes) {
+        this.mode = mode;
+        this.sourceFormat = sourceFormat;
+        this.nodeRegistry = new NetworkNodeRegistry(expectedNodes);
+        this.superNodeOfNode = new int[Math.max(expectedNodes, 16)];
+    }
+
+    /**
+     * Registers a node, a node with the id of an earlier node is an error
+     *
+     * @param node     node
+     * @param position position of the node in the description
+     * @return dense index of the node or {@link #NOT_FOUND} for a duplicate
+     */
+    public int node(NetworkNode node, int position) {
+        int nodeCount = nodeRegistry.size();
+        int index = nodeRegistry.register(node);
+        if (index < nodeCount) {
+            reject(sourceFormat.node(position), "Duplicate Node ID: " + node.getId());
+            return NOT_FOUND;
+        }
+        return index;
+    }
+
+    /**
+     * @param id id of the node
+     * @return first node registered with the id, or null
+     */
+    public NetworkNode findNode(String id) {
+        return nodeRegistry.findById(id);
+    }
+
+    /**
+     * Registers a super node, a super node with the id of an earlier one is an error
+     *
+     * @param superNodeId id of the super node
+     * @param position    position of the super node in the description
+     * @return dense index of the super node, every super node gets its own
+     */
+    public int superNode(String superNodeId, int position) {
+        int index = superNodeIds.size();
+        superNodeIds.add(superNodeId);
+        if (index == superNodePositions.length) {
+            superNodePositions = Arrays.copyOf(superNodePositions, index * 2);
+        }
+        superNodePositions[index] = position;
+        if (superNodeIndexes.putIfAbsent(superNodeId, index) != null) {
+            reject(sourceFormat.superNode(position), "Duplicate SuperNode ID: " + superNodeId);
+        }
+        return index;
+    }
+
+    /**
+     * @param superNodeId id of the super node
+     * @return dense index of the first super node registered with the id, or {@link #NOT_FOUND}
+     */
+    public int findSuperNode(String superNodeId) {
+        return superNodeIndexes.getOrDefault(superNodeId, NOT_FOUND);
+    }
+
+    /**
+     * Checks a node added to a super node, a node can be in one super node only and only once
+     *
+     * @param superNode dense index of the super node
+     * @param node      registered node
+     * @param position  position of the node entry in the description
+     * @return true if the node can be added to the super node
+     */
+    public boolean nodeInSuperNode(int superNode, NetworkNode node, int position) {
+        int nodeIndex = nodeRegistry.indexOf(node.getId());
+        if (nodeIndex >= superNodeOfNode.length) {
+            superNodeOfNode = Arrays.copyOf(superNodeOfNode, Math.max(nodeIndex + 1, superNodeOfNode.length * 2));
+        }
+        int owner = superNodeOfNode[nodeIndex] - 1;
+        if (owner == superNode) {
+            reject(sourceFormat.nodeInSuperNode(superNodePositions[superNode], position),
+                    "Duplicate node in SuperNode: Node ID " + node.getId() + " in SuperNode " + superNodeIds.get(superNode));
+            return false;
+        }
+        if (owner >= 0) {
+            reject(sourceFormat.nodeInSuperNode(superNodePositions[superNode], position), "Node in multiple SuperNodes: Node ID " + node.getId());
+            return false;
+        }
+        superNodeOfNode[nodeIndex] = superNode + 1;
+        nonEmptySuperNodes.set(superNode);
+        return true;
+    }
+
+    /**
+     * Checks the ends of a link, ends not registered yet are checked by {@link #finish()}
+     *
+     * @param link     link
+     * @param position position of the link in the description
+     */
+    public void link(NetworkLink link, int position) {
+        if (nodeRegistry.indexOf(link.getSourceNodeId()) == NetworkNodeRegistry.NOT_FOUND
+                || nodeRegistry.indexOf(link.getTargetNodeId()) == NetworkNodeRegistry.NOT_FOUND) {
+            pendingLinks.add(new PendingLink(link, position));
+        }
+    }
+
+    /**
+     * Reports an error found by the interpreter
+     *
+     * @param location location of the element, see {@link SourceFormat}
+     * @param message  what is wrong with the element
+     * @throws DiagramValidationException in the {@link ValidationMode#FIRST_ERROR} mode or when there are too many errors
+     */
+    public void reject(String location, String message) {
+        errors.add(new DiagramError(location, message));
+        if (mode == ValidationMode.FIRST_ERROR || errors.size() == MAX_ERRORS) {
+            throw rejected();
+        }
+    }
+
+    /**
+     * Checks the links to nodes registered after them and the super nodes left empty
+     *
+     * @throws DiagramValidationException when the diagram has errors
+     */
+    public void finish() {
+        for (PendingLink pending : pendingLinks) {
+            NetworkLink link = pending.link();
+            if (nodeRegistry.indexOf(link.getSourceNodeId()) == NetworkNodeRegistry.NOT_FOUND
+                    || nodeRegistry.indexOf(link.getTargetNodeId()) == NetworkNodeRegistry.NOT_FOUND) {
+                reject(sourceFormat.link(pending.position()),
+                        "Invalid link between non-existing nodes: " + link.getSourceNodeId() + " --> " + link.getTargetNodeId());
+            }
+        }
+        for (int superNode = nonEmptySuperNodes.nextClearBit(0); superNode < superNodeIds.size(); superNode = nonEmptySuperNodes.nextClearBit(superNode + 1)) {
+            reject(sourceFormat.superNode(superNodePositions[superNode]), "Empty SuperNode: SuperNode ID " + superNodeIds.get(superNode));
+        }
+        if (!errors.isEmpty()) {
+            throw rejected();
+        }
+    }
+
+    private DiagramValidationException rejected() {
+        errors.sort(DiagramError.BY_LOCATION);
+        log.debug("Rejected {} diagram with {} errors, first {}: {}", sourceFormat, errors.size(), errors.getFirst().location(), errors.getFirst().message());
+        return new DiagramValidationException(errors);
+    }
+
+    private record PendingLink(NetworkLink link, int position) {
+    }
+}
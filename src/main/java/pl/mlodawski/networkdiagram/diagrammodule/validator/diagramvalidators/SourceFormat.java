@@ -0,0 +1,72 @@
+package pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators;
+
+/**
+ * Format of a diagram description, turns the position of an element into its location in the description.
+ * Positions are script lines or indexes of the JSON arrays, locations are only built for elements with errors.
+ */
+public enum SourceFormat {
+
+    SCRIPT {
+        @Override
+        public String node(int position) {
+            return line(position);
+        }
+
+        @Override
+        public String superNode(int position) {
+            return line(position);
+        }
+
+        @Override
+        public String link(int position) {
+            return line(position);
+        }
+
+        @Override
+        public String nodeInSuperNode(int superNodePosition, int position) {
+            return line(position);
+        }
+    },
+    JSON {
+        @Override
+        public String node(int position) {
+            return "nodes[" + position + "]";
+        }
+
+        @Override
+        public String superNode(int position) {
+            return "superNodes[" + position + "]";
+        }
+
+        @Override
+        public String link(int position) {
+            return "links[" + position + "]";
+        }
+
+        @Override
+        public String nodeInSuperNode(int superNodePosition, int position) {
+            return superNode(superNodePosition) + ".nodePositions[" + position + "]";
+        }
+    };
+
+    public abstract String node(int position);
+
+    public abstract String superNode(int position);
+
+    public abstract String link(int position);
+
+    /**
+     * @param superNodePosition position of the super node
+     * @param position          position of the node entry, in a script the line adding the node
+     * @return location of the node entry of the super node
+     */
+    public abstract String nodeInSuperNode(int superNodePosition, int position);
+
+    /**
+     * @param line line of a script
+     * @return location of the line
+     */
+    public static String line(int line) {
+        return "Line " + line;
+    }
+}
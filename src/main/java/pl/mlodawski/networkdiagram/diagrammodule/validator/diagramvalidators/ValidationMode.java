@@ -0,0 +1,23 @@
+package pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators;
+
+/**
+ * How many errors of a diagram are reported: the first one, or every error found in one pass
+ */
+public enum ValidationMode {
+
+    FIRST_ERROR,
+    ALL_ERRORS;
+
+    /**
+     * Request parameter selecting the mode, "all" reports every error
+     */
+    public static final String PARAMETER = "validation";
+
+    /**
+     * @param value value of the {@link #PARAMETER} request parameter, may be null
+     * @return {@link #ALL_ERRORS} for "all", {@link #FIRST_ERROR} otherwise
+     */
+    public static ValidationMode of(String value) {
+        return "all".equalsIgnoreCase(value) ? ALL_ERRORS : FIRST_ERROR;
+    }
+}
@@ -1,118 +1,272 @@
 package pl.mlodawski.networkdiagram.diagrammodule.validator.languagevalidators;
 
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
-import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptParser;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineStage;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ChunkedScriptParser;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptListener;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.DiagramValidator;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.SourceFormat;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.util.*;
 
 @Service
-@AllArgsConstructor
 @Slf4j
 public class ScriptInterpreter {
 
-    private final ScriptParser scriptParser;
+    private final ChunkedScriptParser scriptParser;
+    private final ForceDirectedLayout forceDirectedLayout;
+    private final PipelineMetrics pipelineMetrics;
+    private final long maxBytes;
+    private final int maxLines;
+
+    public ScriptInterpreter(ChunkedScriptParser scriptParser, ForceDirectedLayout forceDirectedLayout, PipelineMetrics pipelineMetrics,
+                             @Value("${diagram.script.max-bytes:268435456}") long maxBytes,
+                             @Value("${diagram.script.max-lines:5000000}") int maxLines) {
+        this.scriptParser = scriptParser;
+        this.forceDirectedLayout = forceDirectedLayout;
+        this.pipelineMetrics = pipelineMetrics;
+        this.maxBytes = maxBytes;
+        this.maxLines = maxLines;
+    }
 
     public void interpretScript(String script, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
-        String[] lines = script.split("\\n");
-        log.debug("Interpreting script with {} lines", lines.length);
-        for (String line : lines) {
-            interpretLine(line.trim(), networkNodes, superNodes, networkLinks);
-        }
-        log.debug("Script interpreted successfully: {}{}{}", networkNodes.size(), superNodes.size(), networkLinks.size());
-        validateScript(networkNodes, superNodes, networkLinks);
+        interpretScript(script, networkNodes, superNodes, networkLinks, ValidationMode.FIRST_ERROR);
     }
 
-    private void interpretLine(String line, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
-        NetworkNode node = scriptParser.parseNetworkNode(line);
-        if (node != null) {
-            networkNodes.add(node);
-            return;
-        }
-        log.debug("Interpreting line: {}", line);
-        NetworkLink link = scriptParser.parseNetworkLink(line);
-        if (link != null) {
-            networkLinks.add(link);
-            return;
+    /**
+     * Interprets the script, the lists are filled with the elements of the script
+     *
+     * @param script         script text
+     * @param networkNodes   List of NetworkNodes
+     * @param superNodes     List of SuperNodes
+     * @param networkLinks   List of NetworkLinks
+     * @param validationMode whether the first or every error of the diagram is reported
+     * @throws IllegalArgumentException when the script is invalid or exceeds the size or line limit, the size is counted in UTF-8 bytes
+     */
+    public void interpretScript(String script, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                                ValidationMode validationMode) {
+        if (script.length() > maxBytes || script.length() * 3L > maxBytes && utf8Length(script) > maxBytes) {
+            throw new IllegalArgumentException("Script is larger than " + maxBytes + " bytes");
         }
-        log.debug("Interpreting line: {}", line);
-        SuperNode superNode = scriptParser.parseSuperNode(line);
-        if (superNode != null) {
-            superNodes.add(superNode);
-            return;
+        long startNanos = System.nanoTime();
+        ModelBuilder modelBuilder = new ModelBuilder(networkNodes, superNodes, networkLinks, validationMode);
+        int lineCount = scriptParser.parseScript(script, maxLines, modelBuilder);
+        finishScript(lineCount, modelBuilder, networkNodes, superNodes, networkLinks, startNanos);
+    }
+
+    /**
+     * Interprets the script while it is read, so only the model is kept in memory and not the script text
+     *
+     * @param inputStream script bytes, read to the end but not closed
+     * @param charset     charset of the script
+     * @param networkNodes List of NetworkNodes
+     * @param superNodes   List of SuperNodes
+     * @param networkLinks List of NetworkLinks
+     * @throws IllegalArgumentException when the script is invalid or exceeds the size or line limit
+     */
+    public void interpretScript(InputStream inputStream, Charset charset, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
+        interpretScript(inputStream, charset, networkNodes, superNodes, networkLinks, ValidationMode.FIRST_ERROR);
+    }
+
+    /**
+     * Interprets the script while it is read, so only the model is kept in memory and not the script text
+     *
+     * @param inputStream    script bytes, read to the end but not closed
+     * @param charset        charset of the script
+     * @param networkNodes   List of NetworkNodes
+     * @param superNodes     List of SuperNodes
+     * @param networkLinks   List of NetworkLinks
+     * @param validationMode whether the first or every error of the diagram is reported
+     * @throws IllegalArgumentException when the script is invalid or exceeds the size or line limit
+     */
+    public void interpretScript(InputStream inputStream, Charset charset, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                                ValidationMode validationMode) {
+        long startNanos = System.nanoTime();
+        ModelBuilder modelBuilder = new ModelBuilder(networkNodes, superNodes, networkLinks, validationMode);
+        int lineCount;
+        try {
+            lineCount = scriptParser.parseScript(new InputStreamReader(new BoundedInputStream(inputStream, maxBytes), charset), maxLines, modelBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        log.debug("Interpreting line: {}", line);
-        interpretNodePositionInSuperNode(line, networkNodes, superNodes);
+        finishScript(lineCount, modelBuilder, networkNodes, superNodes, networkLinks, startNanos);
     }
 
-    private void interpretNodePositionInSuperNode(String line, List<NetworkNode> networkNodes, List<SuperNode> superNodes) {
-        SuperNode updatedSuperNode = scriptParser.parseNodePositionInSuperNode(line, networkNodes, superNodes);
-        if (updatedSuperNode != null) {
-            superNodes.remove(updatedSuperNode);
-            superNodes.add(updatedSuperNode);
-            log.debug("Node position in SuperNode updated: {}", updatedSuperNode.getId());
+    /**
+     * Counts the bytes of the script in UTF-8 without encoding it, a surrogate pair is 4 bytes
+     */
+    private static long utf8Length(String script) {
+        long length = script.length();
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c >= 0x800 && !Character.isSurrogate(c)) {
+                length += 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
         }
+        return length;
     }
 
-    private void validateScript(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
-        Set<String> uniqueNodeIds = new HashSet<>();
-        Set<String> uniqueSuperNodeIds = new HashSet<>();
-        Set<String> nodeIdsInSuperNodes = new HashSet<>();
+    private void finishScript(int lineCount, ModelBuilder modelBuilder, List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks,
+                              long startNanos) {
+        long stageNanos = pipelineMetrics.record(PipelineStage.PARSE, startNanos);
+        log.debug("Script interpreted successfully: {} lines, {} nodes, {} super nodes, {} links", lineCount, networkNodes.size(), superNodes.size(), networkLinks.size());
+        modelBuilder.finish();
+        stageNanos = pipelineMetrics.record(PipelineStage.VALIDATE, stageNanos);
+        layoutNodesWithoutPosition(networkNodes, superNodes, networkLinks);
+        pipelineMetrics.record(PipelineStage.LAYOUT, stageNanos);
+    }
 
+    private void layoutNodesWithoutPosition(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks) {
+        Set<NetworkNode> freeNodes = Collections.newSetFromMap(new IdentityHashMap<>());
         for (NetworkNode node : networkNodes) {
-            if (!uniqueNodeIds.add(node.getId())) {
-                log.error("Duplicate Node ID: {}", node.getId());
-                throw new IllegalArgumentException("Duplicate Node ID: " + node.getId());
+            if (Float.isNaN(node.getX())) {
+                node.setX(0);
+                node.setY(0);
+                freeNodes.add(node);
             }
         }
+        forceDirectedLayout.layout(networkNodes, superNodes, networkLinks, freeNodes, Set.of());
+    }
 
-        for (SuperNode superNode : superNodes) {
-            if (!uniqueSuperNodeIds.add(superNode.getId())) {
-                log.error("Duplicate SuperNode ID: {}", superNode.getId());
-                throw new IllegalArgumentException("Duplicate SuperNode ID: " + superNode.getId());
-            }
+    /**
+     * Adds the statements of the script to the model and validates them, nodes are added to super nodes declared on earlier lines
+     */
+    private final class ModelBuilder implements ScriptListener {
+
+        private final List<NetworkNode> networkNodes;
+        private final List<SuperNode> superNodes;
+        private final List<NetworkLink> networkLinks;
+        private final DiagramValidator validator;
+        private final List<SuperNode> declaredSuperNodes = new ArrayList<>();
+        private int[] lastNodeLines = new int[16];
+
+        ModelBuilder(List<NetworkNode> networkNodes, List<SuperNode> superNodes, List<NetworkLink> networkLinks, ValidationMode validationMode) {
+            this.networkNodes = networkNodes;
+            this.superNodes = superNodes;
+            this.networkLinks = networkLinks;
+            this.validator = new DiagramValidator(validationMode, SourceFormat.SCRIPT, 1024);
+        }
+
+        @Override
+        public void node(NetworkNode node, int lineNumber) {
+            networkNodes.add(node);
+            validator.node(node, lineNumber);
         }
 
-        for (NetworkLink link : networkLinks) {
-            if (!uniqueNodeIds.contains(link.getSourceNodeId()) || !uniqueNodeIds.contains(link.getTargetNodeId())) {
-                log.error("Invalid link between non-existing nodes: {} --> {}", link.getSourceNodeId(), link.getTargetNodeId());
-                throw new IllegalArgumentException("Invalid link between non-existing nodes: " + link.getSourceNodeId() + " --> " + link.getTargetNodeId());
+        @Override
+        public void superNode(SuperNode superNode, int lineNumber) {
+            superNodes.add(superNode);
+            declaredSuperNodes.add(superNode);
+            int index = validator.superNode(superNode.getId(), lineNumber);
+            if (index == lastNodeLines.length) {
+                lastNodeLines = Arrays.copyOf(lastNodeLines, index * 2);
             }
         }
 
-        for (SuperNode superNode : superNodes) {
-            validateNodesInSuperNode(superNode, uniqueNodeIds, nodeIdsInSuperNodes);
+        @Override
+        public void link(NetworkLink link, int lineNumber) {
+            networkLinks.add(link);
+            validator.link(link, lineNumber);
         }
-    }
 
-    private void validateNodesInSuperNode(SuperNode superNode, Set<String> uniqueNodeIds, Set<String> nodeIdsInSuperNodes) {
-        Set<String> nodeIdsInThisSuperNode = new HashSet<>();
+        @Override
+        public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+            int superNodeIndex = validator.findSuperNode(superNodeId);
+            if (superNodeIndex == DiagramValidator.NOT_FOUND) {
+                validator.reject(SourceFormat.line(lineNumber), "SuperNode with ID " + superNodeId + " not found");
+                return;
+            }
+            NetworkNode node = validator.findNode(nodeId);
+            if (node == null) {
+                validator.reject(SourceFormat.line(lineNumber), "NetworkNode with ID " + nodeId + " not found");
+                return;
+            }
+            SuperNode superNode = declaredSuperNodes.get(superNodeIndex);
+            if (position == null) {
+                log.warn("No position symbol for node {} in SuperNode {} on line {}", nodeId, superNodeId, lineNumber);
+            } else if (validator.nodeInSuperNode(superNodeIndex, node, lineNumber)) {
+                superNode.addNode(node, position);
+            }
+            lastNodeLines[superNodeIndex] = lineNumber;
+        }
 
-        for (List<NetworkNode> nodeList : Arrays.asList(superNode.getTopNodes(), superNode.getBottomNodes(), superNode.getLeftNodes(), superNode.getRightNodes())) {
-            for (NetworkNode node : nodeList) {
-                String nodeId = node.getId();
-                if (!uniqueNodeIds.contains(nodeId)) {
-                    log.error("Invalid node in SuperNode: Node ID {} in SuperNode {}", nodeId, superNode.getId());
-                    throw new IllegalArgumentException("Invalid node in SuperNode: Node ID " + nodeId + " in SuperNode " + superNode.getId());
+        /**
+         * Orders the super nodes and validates the diagram. Super nodes with node lines are moved behind the others
+         * in the order of their last node line, the order they are drawn in.
+         */
+        void finish() {
+            long[] referenced = new long[declaredSuperNodes.size()];
+            int referencedCount = 0;
+            for (int i = 0; i < declaredSuperNodes.size(); i++) {
+                if (lastNodeLines[i] > 0) {
+                    referenced[referencedCount++] = (long) lastNodeLines[i] << 32 | i;
                 }
-                if (!nodeIdsInThisSuperNode.add(nodeId)) {
-                    log.error("Duplicate node in SuperNode: Node ID {} in SuperNode {}", nodeId, superNode.getId());
-                    throw new IllegalArgumentException("Duplicate node in SuperNode: Node ID " + nodeId + " in SuperNode " + superNode.getId());
+            }
+            if (referencedCount > 0) {
+                Arrays.sort(referenced, 0, referencedCount);
+                superNodes.subList(superNodes.size() - declaredSuperNodes.size(), superNodes.size()).clear();
+                for (int i = 0; i < declaredSuperNodes.size(); i++) {
+                    if (lastNodeLines[i] == 0) {
+                        superNodes.add(declaredSuperNodes.get(i));
+                    }
                 }
-                if (!nodeIdsInSuperNodes.add(nodeId)) {
-                    log.error("Node in multiple SuperNodes: Node ID {}", nodeId);
-                    throw new IllegalArgumentException("Node in multiple SuperNodes: Node ID " + nodeId);
+                for (int i = 0; i < referencedCount; i++) {
+                    superNodes.add(declaredSuperNodes.get((int) referenced[i]));
                 }
             }
+            validator.finish();
         }
+    }
 
-        if (nodeIdsInThisSuperNode.isEmpty()) {
-            log.error("Empty SuperNode: SuperNode ID {}", superNode.getId());
-            throw new IllegalArgumentException("Empty SuperNode: SuperNode ID " + superNode.getId());
+    /**
+     * Stops reading a script larger than the limit, at the first byte over it
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long bytesRead;
+
+        BoundedInputStream(InputStream inputStream, long maxBytes) {
+            super(inputStream);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            count(read == -1 ? 0 : 1);
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, (int) Math.min(length, maxBytes - bytesRead + 1));
+            count(Math.max(read, 0));
+            return read;
+        }
+
+        private void count(int read) {
+            bytesRead += read;
+            if (bytesRead > maxBytes) {
+                throw new IllegalArgumentException("Script is larger than " + maxBytes + " bytes");
+            }
         }
     }
 }
@@ -0,0 +1,113 @@
+package pl.mlodawski.networkdiagram.diagrammodule;
+
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.LinkPaletteCache;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.FontStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generated topologies used by tests and benchmarks
+ */
+public final class TestTopologies {
+
+    private static final int COLUMNS = 100;
+    private static final ThemeRegistry THEME_REGISTRY = new ThemeRegistry(new TextMetricsCache(65536), new LinkPaletteCache(16), 64, 16);
+
+    private TestTopologies() {
+    }
+
+    /**
+     * Creates nodes laid out on a grid
+     *
+     * @param count number of nodes
+     * @return nodes with ids 1..count
+     */
+    public static List<NetworkNode> gridNodes(int count) {
+        List<NetworkNode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float x = 20 + (i % COLUMNS) * 150;
+            float y = 60 + (i / COLUMNS) * 120;
+            nodes.add(new NetworkNode(String.valueOf(i + 1), x, y, 80, 40, "Node " + (i + 1)));
+        }
+        return nodes;
+    }
+
+    /**
+     * Links every node with its right and bottom neighbour on the grid
+     *
+     * @param nodes nodes created by {@link #gridNodes(int)}
+     * @return links with traffic spread over 0..100%
+     */
+    public static List<NetworkLink> gridLinks(List<NetworkNode> nodes) {
+        List<NetworkLink> links = new ArrayList<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++) {
+            if ((i + 1) % COLUMNS != 0 && i + 1 < nodes.size()) {
+                links.add(link(nodes.get(i), nodes.get(i + 1), links.size()));
+            }
+            if (i + COLUMNS < nodes.size()) {
+                links.add(link(nodes.get(i), nodes.get(i + COLUMNS), links.size()));
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Writes a script with a node on every fourth line, links on the others and a super node with one node every hundred lines
+     *
+     * @param lineCount number of lines
+     * @return script text
+     */
+    public static String script(int lineCount) {
+        StringBuilder builder = new StringBuilder(lineCount * 40);
+        int nodeCount = 0;
+        for (int line = 0; line < lineCount; line++) {
+            if (line % 4 == 0) {
+                nodeCount++;
+                builder.append("Node N").append(nodeCount).append(": Position(").append(nodeCount % COLUMNS * 150.5f).append(", ")
+                        .append(nodeCount / COLUMNS * 120).append("), Size(80, 40), Label(\"Node ").append(nodeCount).append("\")\n");
+            } else if (line % 100 == 1) {
+                builder.append("SuperNode SN").append(line).append(": Position(").append(line).append(", 20), Label(\"Rack\")\n");
+            } else if (line % 100 == 2) {
+                builder.append('N').append(nodeCount).append(" --^--> SN").append(line - 1).append('\n');
+            } else {
+                builder.append('N').append(nodeCount).append(" ---[").append(line % 100).append(',').append(line % 37)
+                        .append("]--> N").append(Math.max(1, nodeCount - line % 7)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return style used by the endpoints when no config is given
+     */
+    public static DocumentStyle defaultStyle() {
+        return new DocumentStyle("Arial", 12, "#000000", FontStyle.PLAIN, "#ffffff", "#000000", "#ffffff", ColorStrategy.RED_GREEN, true, "Title", true);
+    }
+
+    /**
+     * @return {@link #defaultStyle()} compiled for drawing
+     */
+    public static RenderTheme defaultTheme() {
+        return theme(defaultStyle());
+    }
+
+    /**
+     * @param documentStyle document style
+     * @return style compiled for drawing
+     */
+    public static RenderTheme theme(DocumentStyle documentStyle) {
+        return THEME_REGISTRY.compile(documentStyle);
+    }
+
+    private static NetworkLink link(NetworkNode source, NetworkNode target, int index) {
+        return new NetworkLink(source.getId(), target.getId(), (index * 7) % 101, (index * 13) % 101);
+    }
+}
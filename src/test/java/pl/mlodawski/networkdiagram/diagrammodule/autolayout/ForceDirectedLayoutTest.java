@@ -0,0 +1,148 @@
+package pl.mlodawski.networkdiagram.diagrammodule.autolayout;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderRejectedException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForceDirectedLayoutTest {
+
+    private final RenderPool renderPool = new RenderPool(2);
+    private final RenderBulkhead renderBulkhead = new RenderBulkhead(new SimpleMeterRegistry(), 1, 0);
+    private final ForceDirectedLayout forceDirectedLayout = new ForceDirectedLayout(renderPool, renderBulkhead, true, 300, 200, 0.8f, 0.5f);
+
+    @AfterEach
+    void shutdown() {
+        renderPool.getPool().shutdown();
+    }
+
+    @Test
+    void layout_FreeGrid_PlacesNodesApartAndLinkedNodesCloser() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(1500);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        nodes.forEach(node -> {
+            node.setX(0);
+            node.setY(0);
+        });
+
+        forceDirectedLayout.layout(nodes, List.of(), links, new HashSet<>(nodes), Set.of());
+
+        Set<String> positions = new HashSet<>();
+        for (NetworkNode node : nodes) {
+            assertTrue(node.getX() >= 20 && node.getY() >= 60, node.getId());
+            positions.add(node.getX() + ":" + node.getY());
+        }
+        assertEquals(nodes.size(), positions.size());
+        double linkedDistance = 0;
+        for (NetworkLink link : links) {
+            linkedDistance += distance(nodes.get(Integer.parseInt(link.getSourceNodeId()) - 1), nodes.get(Integer.parseInt(link.getTargetNodeId()) - 1));
+        }
+        double anyDistance = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            anyDistance += distance(nodes.get(i), nodes.get((i * 7919) % nodes.size()));
+        }
+        assertTrue(linkedDistance / links.size() < anyDistance / nodes.size() / 2);
+    }
+
+    @Test
+    void layout_FixedNodes_StayAndFreeNodeMovesNextToNeighbour() {
+        NetworkNode fixed = new NetworkNode("1", 500, 500, 80, 40, "A");
+        NetworkNode other = new NetworkNode("2", 3000, 500, 80, 40, "B");
+        NetworkNode free = new NetworkNode("3", 0, 0, 80, 40, "C");
+        List<NetworkNode> nodes = List.of(fixed, other, free);
+
+        forceDirectedLayout.layout(nodes, List.of(), List.of(new NetworkLink("1", "3", 10, 10)), Set.of(free), Set.of());
+
+        assertEquals(500f, fixed.getX());
+        assertEquals(500f, fixed.getY());
+        assertEquals(3000f, other.getX());
+        assertTrue(distance(free, fixed) < distance(free, other));
+        assertTrue(distance(free, fixed) > 40);
+    }
+
+    @Test
+    void layout_FreeSuperNode_MovesAsOneBodyWithItsNodes() {
+        List<NetworkNode> nodes = new ArrayList<>();
+        SuperNode superNode = new SuperNode("1", 0, 0, "Group");
+        for (int i = 1; i <= 4; i++) {
+            NetworkNode member = new NetworkNode(String.valueOf(i), 0, 0, 80, 40, "Member " + i);
+            nodes.add(member);
+            superNode.addNode(member, NodePosition.values()[i - 1]);
+        }
+        NetworkNode fixed = new NetworkNode("5", 1000, 1000, 80, 40, "Fixed");
+        nodes.add(fixed);
+
+        forceDirectedLayout.layout(nodes, List.of(superNode), List.of(new NetworkLink("1", "5", 10, 10), new NetworkLink("1", "2", 10, 10)),
+                Set.of(), Set.of(superNode));
+
+        assertNotEquals(0, superNode.getX() + superNode.getY());
+        for (int i = 0; i < 4; i++) {
+            assertEquals((float) superNode.getX(), nodes.get(i).getX());
+            assertEquals((float) superNode.getY(), nodes.get(i).getY());
+        }
+        assertEquals(1000f, fixed.getX());
+    }
+
+    @Test
+    void layout_SameDiagramTwice_PlacesNodesTheSameWay() {
+        List<NetworkNode> first = freeGrid(1500);
+        List<NetworkNode> second = freeGrid(1500);
+
+        forceDirectedLayout.layout(first, List.of(), TestTopologies.gridLinks(first), new HashSet<>(first), Set.of());
+        forceDirectedLayout.layout(second, List.of(), TestTopologies.gridLinks(second), new HashSet<>(second), Set.of());
+
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getX(), second.get(i).getX(), first.get(i).getId());
+            assertEquals(first.get(i).getY(), second.get(i).getY(), first.get(i).getId());
+        }
+    }
+
+    @Test
+    void layout_Disabled_RejectsNodesWithoutPosition() {
+        ForceDirectedLayout disabledLayout = new ForceDirectedLayout(renderPool, renderBulkhead, false, 300, 200, 0.8f, 0.5f);
+        NetworkNode free = new NetworkNode("1", 0, 0, 80, 40, "A");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> disabledLayout.layout(List.of(free), List.of(), List.of(), Set.of(free), Set.of()));
+        disabledLayout.layout(List.of(free), List.of(), List.of(), Set.of(), Set.of());
+    }
+
+    @Test
+    void layout_NoFreeRenderPermit_RejectedBeforeLayingOut() {
+        List<NetworkNode> nodes = freeGrid(10);
+
+        assertThrows(RenderRejectedException.class, () -> renderBulkhead.run(
+                () -> forceDirectedLayout.layout(nodes, List.of(), TestTopologies.gridLinks(nodes), new HashSet<>(nodes), Set.of())));
+
+        assertTrue(nodes.stream().allMatch(node -> node.getX() == 0 && node.getY() == 0));
+        forceDirectedLayout.layout(nodes, List.of(), TestTopologies.gridLinks(nodes), new HashSet<>(nodes), Set.of());
+        assertTrue(nodes.stream().anyMatch(node -> node.getX() != 0 || node.getY() != 0));
+    }
+
+    private static List<NetworkNode> freeGrid(int count) {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(count);
+        nodes.forEach(node -> {
+            node.setX(0);
+            node.setY(0);
+        });
+        return nodes;
+    }
+
+    private static double distance(NetworkNode a, NetworkNode b) {
+        return Math.hypot(a.getX() - b.getX(), a.getY() - b.getY());
+    }
+}
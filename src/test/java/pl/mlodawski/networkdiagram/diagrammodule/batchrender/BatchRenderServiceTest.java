@@ -0,0 +1,171 @@
+package pl.mlodawski.networkdiagram.diagrammodule.batchrender;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.DrawingServices;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.JsonInterpreter;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ChunkedScriptParser;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptParser;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.LinkPaletteCache;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.BatchDiagramItem;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderCache;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderKeyFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.ThemeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.languagevalidators.ScriptInterpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRenderServiceTest {
+
+    private static final String COMMAND = """
+            {"id": "json", "command": {"nodes": [
+              {"id": "1", "position": {"x": 10, "y": 10}, "size": {"width": 80, "height": 40}, "label": "A"},
+              {"id": "2", "position": {"x": 200, "y": 10}, "size": {"width": 80, "height": 40}, "label": "B"}],
+             "links": [{"sourceNodeId": "1", "targetNodeId": "2", "txTraffic": 30, "rxTraffic": 70}]}}""";
+    private static final String SCRIPT = """
+            Node N1: Position(10, 10), Size(80, 40), Label("A")
+            Node N2: Position(200, 10), Size(80, 40), Label("B")
+            N1 ---[30,70]--> N2""";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+    private final ThemeRegistry themeRegistry = new ThemeRegistry(new TextMetricsCache(1024), new LinkPaletteCache(16), 16, 16);
+    private final ForceDirectedLayout forceDirectedLayout = new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f);
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry(), 0);
+    private final ScriptInterpreter scriptInterpreter = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, 1 << 20, 10_000);
+    private final JsonInterpreter jsonInterpreter = new JsonInterpreter(forceDirectedLayout, pipelineMetrics);
+    private final BatchRenderService batchRenderService = new BatchRenderService(scriptInterpreter, jsonInterpreter, networkDrawingService,
+            themeRegistry, new RenderCache(new SimpleMeterRegistry(), 1 << 20, 1 << 18),
+            new RenderKeyFactory(new SvgCanvasFactory(SvgRenderMode.STREAMING)), objectMapper, new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), new SimpleMeterRegistry(), 16);
+
+    @Test
+    void render_MixedBatch_WritesEveryDiagramOnceAndErrorsAsParts() throws IOException {
+        List<BatchDiagramItem> items = items("[" + COMMAND + ", {\"id\": \"nl\", \"script\": " + objectMapper.writeValueAsString(SCRIPT) + "},"
+                + "{\"id\": \"theme\", \"script\": \"Node N1: Position(1, 1), Size(1, 1), Label(\\\"A\\\")\", \"theme\": \"missing\"},"
+                + "{\"script\": \"N1 ---[1,1]--> N9\"}, {\"id\": \"empty\"}, " + COMMAND + "]");
+
+        BatchRenderService.PreparedBatch batch = batchRenderService.prepare(items);
+        Map<Integer, Part> parts = render(batch);
+
+        assertEquals(6, parts.size());
+        assertSame(batch.items().get(0).theme(), batch.items().get(5).theme());
+        assertArrayEquals(renderCommand(items.get(0)), parts.get(0).body());
+        assertArrayEquals(parts.get(0).body(), parts.get(5).body());
+        assertEquals("json", parts.get(0).headers().get("X-Diagram-Id"));
+        assertNotNull(parts.get(0).headers().get("ETag"));
+        assertEquals("200", parts.get(1).headers().get("X-Diagram-Status"));
+        assertArrayEquals(renderScript(SCRIPT), parts.get(1).body());
+        for (int index = 2; index <= 4; index++) {
+            Part error = parts.get(index);
+            assertEquals("400", error.headers().get("X-Diagram-Status"));
+            assertEquals(MultipartBatchWriter.ERROR_CONTENT_TYPE, error.headers().get("Content-Type"));
+            assertFalse(objectMapper.readTree(error.body()).get("message").asText().isEmpty());
+        }
+        assertTrue(new String(parts.get(2).body(), StandardCharsets.UTF_8).contains("Unknown theme"));
+    }
+
+    @Test
+    void prepare_InvalidBatch_IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> batchRenderService.prepare(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> batchRenderService.prepare(items("[{\"id\": \"a\\r\\nX-Injected: 1\", \"script\": \"\"}]")));
+        List<BatchDiagramItem> tooMany = new ArrayList<>();
+        for (int i = 0; i < 17; i++) {
+            tooMany.add(new BatchDiagramItem());
+        }
+        assertThrows(IllegalArgumentException.class, () -> batchRenderService.prepare(tooMany));
+    }
+
+    private List<BatchDiagramItem> items(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<>() { });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<Integer, Part> render(BatchRenderService.PreparedBatch batch) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        batchRenderService.render(batch, new MultipartBatchWriter(response, "b"));
+        byte[] body = response.toByteArray();
+        Map<Integer, Part> parts = new HashMap<>();
+        int position = 0;
+        while (true) {
+            int headersEnd = indexOf(body, "\r\n\r\n", position);
+            String head = new String(body, position, (headersEnd < 0 ? body.length : headersEnd) - position, StandardCharsets.US_ASCII);
+            if (head.startsWith("--b--")) {
+                return parts;
+            }
+            Map<String, String> headers = new HashMap<>();
+            for (String line : head.split("\r\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+            int length = Integer.parseInt(headers.get("Content-Length"));
+            byte[] partBody = new byte[length];
+            System.arraycopy(body, headersEnd + 4, partBody, 0, length);
+            assertNull(parts.put(Integer.parseInt(headers.get("X-Diagram-Index")), new Part(headers, partBody)));
+            position = headersEnd + 4 + length + 2;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, String text, int from) {
+        byte[] pattern = text.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = from; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private byte[] renderCommand(BatchDiagramItem item) {
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> links = new ArrayList<>();
+        jsonInterpreter.interpretJson(item.getCommand(), nodes, superNodes, links);
+        ByteArrayOutputStream svg = new ByteArrayOutputStream();
+        networkDrawingService.drawDocument(nodes, superNodes, links, themeRegistry.compile(item.getCommand().getDiagramConfig()), new SvgDocumentWriter(svg));
+        return svg.toByteArray();
+    }
+
+    private byte[] renderScript(String script) {
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> links = new ArrayList<>();
+        scriptInterpreter.interpretScript(script, nodes, superNodes, links);
+        ByteArrayOutputStream svg = new ByteArrayOutputStream();
+        networkDrawingService.drawDocument(nodes, superNodes, links, themeRegistry.defaultTheme(), new SvgDocumentWriter(svg));
+        return svg.toByteArray();
+    }
+
+    record Part(Map<String, String> headers, byte[] body) {
+    }
+}
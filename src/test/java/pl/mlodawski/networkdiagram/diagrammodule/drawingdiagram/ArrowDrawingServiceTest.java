@@ -1,8 +1,8 @@
 package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
 
-import org.jfree.svg.SVGGraphics2D;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvas;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
@@ -17,7 +17,7 @@ class ArrowDrawingServiceTest {
     @Test
     void drawArrow_ShouldWorkCorrectlyWithValidInputs() {
         // Arrange
-        SVGGraphics2D svgGraphics2D= mock(SVGGraphics2D.class);
+        SvgCanvas svgCanvas = mock(SvgCanvas.class);
         ArrowDrawingService arrowDrawingService = new ArrowDrawingService();
         float x1 = 0;
         float y1 = 0;
@@ -27,15 +27,15 @@ class ArrowDrawingServiceTest {
         Color borderColor = Color.BLACK;
 
         // Act
-        arrowDrawingService.drawArrow(svgGraphics2D, x1, y1, x2, y2, lineColor, borderColor);
+        arrowDrawingService.drawArrow(svgCanvas, x1, y1, x2, y2, lineColor, borderColor);
 
         // Assert
-        verify(svgGraphics2D).setPaint(lineColor);
-        verify(svgGraphics2D).setPaint(borderColor);
+        verify(svgCanvas).setPaint(lineColor);
+        verify(svgCanvas).setPaint(borderColor);
     }
 
     @Test
-    void drawArrow_ShouldThrowIllegalArgumentExceptionForInvalidSVGGraphics2D() {
+    void drawArrow_ShouldThrowIllegalArgumentExceptionForInvalidSvgCanvas() {
         // Arrange
         ArrowDrawingService arrowDrawingService = new ArrowDrawingService();
         float x1 = 0;
@@ -53,7 +53,7 @@ class ArrowDrawingServiceTest {
     void drawArrow_ShouldThrowIllegalArgumentExceptionForInvalidLineColor() {
         // Arrange
         ArrowDrawingService arrowDrawingService = new ArrowDrawingService();
-        SVGGraphics2D svgGraphics2D = mock(SVGGraphics2D.class);
+        SvgCanvas svgCanvas = mock(SvgCanvas.class);
         float x1 = 0;
         float y1 = 0;
         float x2 = 0;
@@ -61,14 +61,14 @@ class ArrowDrawingServiceTest {
         Color borderColor = Color.BLACK;
 
         // Act & Assert
-        assertThrows(IllegalArgumentException.class, () -> arrowDrawingService.drawArrow(svgGraphics2D, x1, y1, x2, y2, null, borderColor));
+        assertThrows(IllegalArgumentException.class, () -> arrowDrawingService.drawArrow(svgCanvas, x1, y1, x2, y2, null, borderColor));
     }
 
     @Test
     void drawArrow_ShouldThrowIllegalArgumentExceptionForNegativeCoordinates() {
         // Arrange
         ArrowDrawingService arrowDrawingService = new ArrowDrawingService();
-        SVGGraphics2D svgGraphics2D = mock(SVGGraphics2D.class);
+        SvgCanvas svgCanvas = mock(SvgCanvas.class);
         float x1 = -1;
         float y1 = -1;
         float x2 = -1;
@@ -77,7 +77,7 @@ class ArrowDrawingServiceTest {
         Color borderColor = Color.BLACK;
 
         // Act & Assert
-        assertThrows(IllegalArgumentException.class, () -> arrowDrawingService.drawArrow(svgGraphics2D, x1, y1, x2, y2, lineColor, borderColor));
+        assertThrows(IllegalArgumentException.class, () -> arrowDrawingService.drawArrow(svgCanvas, x1, y1, x2, y2, lineColor, borderColor));
     }
 
     @Test
@@ -0,0 +1,34 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+/**
+ * Wires the drawing services without the Spring context, for tests and benchmarks
+ */
+public final class DrawingServices {
+
+    private DrawingServices() {
+    }
+
+    public static NetworkDrawingService networkDrawingService(SvgRenderMode renderMode, int parallelThreshold, int parallelism, int chunkSize) {
+        return networkDrawingService(renderMode, parallelThreshold, parallelism, chunkSize, new PipelineMetrics(new SimpleMeterRegistry(), 0));
+    }
+
+    public static NetworkDrawingService networkDrawingService(SvgRenderMode renderMode, int parallelThreshold, int parallelism, int chunkSize,
+                                                              PipelineMetrics pipelineMetrics) {
+        SvgCanvasFactory svgCanvasFactory = new SvgCanvasFactory(renderMode);
+        NodeDrawingService nodeDrawingService = new NodeDrawingService();
+        return new NetworkDrawingService(
+                nodeDrawingService,
+                new SuperNodeDrawingService(nodeDrawingService),
+                new LinkDrawingService(new ArrowDrawingService()),
+                svgCanvasFactory,
+                new ParallelFragmentRenderer(svgCanvasFactory, new RenderPool(parallelism), parallelThreshold, chunkSize),
+                pipelineMetrics
+        );
+    }
+}
@@ -0,0 +1,33 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ElementIdsTest {
+
+    @Test
+    void node_EncodesCharactersOutsideLettersAndDigits() {
+        assertEquals("n-core1", ElementIds.node("core1"));
+        assertEquals("n-a_20b_26_3c_5f", ElementIds.node("a b&<_"));
+        assertEquals("n-_c5_82", ElementIds.node("ł"));
+        assertNotEquals(ElementIds.node("a b"), ElementIds.node("a_20b"));
+    }
+
+    @Test
+    void links_NumbersRepeatedLinksBetweenTheSameNodes() {
+        List<NetworkLink> links = List.of(
+                new NetworkLink("a", "b", 0, 0),
+                new NetworkLink("b", "a", 0, 0),
+                new NetworkLink("a", "b", 0, 0),
+                new NetworkLink("a-b", "c", 0, 0));
+
+        assertArrayEquals(new String[]{"l-a-b", "l-b-a", "l-a-b-2", "l-a_2db-c"}, ElementIds.links(links));
+        assertEquals("l-a-b-2-out-label", ElementIds.outgoingLabel(ElementIds.links(links)[2]));
+    }
+}
@@ -0,0 +1,182 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetworkDrawingServiceTest {
+
+    @Test
+    void drawDocument_ParallelMode_IsByteIdenticalToSequentialMode() {
+        NetworkDrawingService sequential = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+        NetworkDrawingService parallel = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 1, 4, 7);
+
+        byte[] sequentialSvg = render(sequential, 1000);
+        byte[] parallelSvg = render(parallel, 1000);
+
+        assertArrayEquals(sequentialSvg, parallelSvg);
+    }
+
+    @Test
+    void drawDocument_DoesNotMoveNodes() {
+        NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+        List<NetworkNode> nodes = TestTopologies.gridNodes(10);
+
+        networkDrawingService.drawDocument(nodes, new ArrayList<>(), TestTopologies.gridLinks(nodes), TestTopologies.defaultTheme(), new SvgDocumentWriter(new ByteArrayOutputStream()));
+
+        assertEquals(20.0f, nodes.get(0).getX());
+        assertEquals(60.0f, nodes.get(0).getY());
+    }
+
+    @Test
+    void drawDocument_InstancedMode_ReferencesDefinedShapesAndIsSmaller() throws Exception {
+        NetworkDrawingService streaming = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+        NetworkDrawingService instanced = DrawingServices.networkDrawingService(SvgRenderMode.INSTANCED, 0, 1, 512);
+
+        byte[] streamingSvg = renderWithSuperNodes(streaming);
+        byte[] instancedSvg = renderWithSuperNodes(instanced);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(instancedSvg));
+        Set<String> ids = new HashSet<>();
+        collectIds(document.getDocumentElement(), ids);
+        NodeList uses = document.getElementsByTagName("use");
+        assertTrue(uses.getLength() > 0);
+        for (int i = 0; i < uses.getLength(); i++) {
+            String href = ((Element) uses.item(i)).getAttribute("href");
+            assertTrue(ids.contains(href.substring(1)), "Undefined shape " + href);
+        }
+        assertEquals(1, document.getElementsByTagName("symbol").getLength());
+        assertTrue(instancedSvg.length < streamingSvg.length * 4 / 5, instancedSvg.length + " >= " + streamingSvg.length);
+    }
+
+    @Test
+    void drawDocument_InstancedMode_SuperNodesAndTheirNodesKeepTheirIds() throws Exception {
+        NetworkDrawingService instanced = DrawingServices.networkDrawingService(SvgRenderMode.INSTANCED, 0, 1, 512);
+
+        byte[] instancedSvg = renderWithSuperNodes(instanced);
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(instancedSvg));
+        Map<String, Element> elements = new HashMap<>();
+        collectElementsById(document.getDocumentElement(), elements);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(elements.containsKey(ElementIds.superNode("s" + i)), "s" + i);
+        }
+        for (int i = 1; i <= 400; i++) {
+            assertTrue(elements.containsKey(ElementIds.node(String.valueOf(i))), String.valueOf(i));
+        }
+    }
+
+    @Test
+    void drawDocument_InstancedParallelMode_IsByteIdenticalToSequentialMode() {
+        NetworkDrawingService sequential = DrawingServices.networkDrawingService(SvgRenderMode.INSTANCED, 0, 1, 512);
+        NetworkDrawingService parallel = DrawingServices.networkDrawingService(SvgRenderMode.INSTANCED, 1, 4, 7);
+
+        assertArrayEquals(render(sequential, 1000), render(parallel, 1000));
+    }
+
+    @Test
+    void drawDocument_ElementIdsAreUniqueAndMatchLinkDeltas() throws Exception {
+        for (SvgRenderMode renderMode : List.of(SvgRenderMode.STREAMING, SvgRenderMode.INSTANCED)) {
+            NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(renderMode, 0, 1, 512);
+            List<NetworkNode> nodes = List.of(
+                    new NetworkNode("a b", 20, 60, 80, 40, "Same"),
+                    new NetworkNode("a_20b", 220, 60, 80, 40, "Same"),
+                    new NetworkNode("<r\"1>", 420, 60, 80, 40, "Router"));
+            List<NetworkLink> links = List.of(
+                    new NetworkLink("a b", "a_20b", 10, 90),
+                    new NetworkLink("a b", "a_20b", 55, 0),
+                    new NetworkLink("a_20b", "<r\"1>", 100, 33));
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            networkDrawingService.drawDocument(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme(), new SvgDocumentWriter(outputStream));
+
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(outputStream.toByteArray()));
+            Map<String, Element> elements = new HashMap<>();
+            collectElementsById(document.getDocumentElement(), elements);
+            assertTrue(elements.containsKey(ElementIds.node("a b")));
+            assertTrue(elements.containsKey(ElementIds.node("a_20b")));
+            assertTrue(elements.containsKey(ElementIds.node("<r\"1>")));
+            List<LinkDelta> deltas = networkDrawingService.describeLinks(links, TestTopologies.defaultTheme());
+            assertEquals(3, new HashSet<>(deltas.stream().map(LinkDelta::id).toList()).size());
+            for (LinkDelta delta : deltas) {
+                assertTrue(delta.id().matches("[A-Za-z0-9_-]+"), delta.id());
+                assertEquals(delta.outgoingFill(), elements.get(ElementIds.outgoingArrow(delta.id())).getAttribute("fill"));
+                assertEquals(delta.incomingFill(), elements.get(ElementIds.incomingArrow(delta.id())).getAttribute("fill"));
+                assertEquals(delta.outgoingLabel(), elements.get(ElementIds.outgoingLabel(delta.id())).getTextContent());
+                assertEquals(delta.incomingLabel(), elements.get(ElementIds.incomingLabel(delta.id())).getTextContent());
+            }
+        }
+    }
+
+    private void collectElementsById(Element element, Map<String, Element> elements) {
+        if (element.hasAttribute("id")) {
+            assertNull(elements.put(element.getAttribute("id"), element), "Repeated id " + element.getAttribute("id"));
+        }
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i) instanceof Element child) {
+                collectElementsById(child, elements);
+            }
+        }
+    }
+
+    private byte[] renderWithSuperNodes(NetworkDrawingService networkDrawingService) {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(400);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        List<SuperNode> superNodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            SuperNode superNode = new SuperNode("s" + i, i * 600, 2000, "Rack");
+            NodePosition[] positions = NodePosition.values();
+            for (int port = 0; port < positions.length; port++) {
+                NetworkNode member = nodes.get(i * positions.length + port);
+                member.setName("eth" + port);
+                superNode.addNode(member, positions[port]);
+            }
+            superNodes.add(superNode);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        networkDrawingService.drawDocument(nodes, superNodes, links, TestTopologies.defaultTheme(), new SvgDocumentWriter(outputStream));
+        return outputStream.toByteArray();
+    }
+
+    private void collectIds(Element element, Set<String> ids) {
+        if (element.hasAttribute("id")) {
+            ids.add(element.getAttribute("id"));
+        }
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i) instanceof Element child) {
+                collectIds(child, ids);
+            }
+        }
+    }
+
+    private byte[] render(NetworkDrawingService networkDrawingService, int nodeCount) {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(nodeCount);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        networkDrawingService.drawDocument(nodes, new ArrayList<>(), TestTopologies.gridLinks(nodes), TestTopologies.defaultTheme(), new SvgDocumentWriter(outputStream));
+        return outputStream.toByteArray();
+    }
+}
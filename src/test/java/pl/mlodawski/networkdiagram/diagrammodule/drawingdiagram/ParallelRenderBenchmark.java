@@ -0,0 +1,58 @@
+package pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the document rendering with the number of render threads, parallelism 0 is the sequential mode.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.ParallelRenderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelRenderBenchmark {
+
+    @Param({"0", "1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    @Param({"20000"})
+    public int nodeCount;
+
+    private NetworkDrawingService networkDrawingService;
+    private List<NetworkNode> nodes;
+    private List<NetworkLink> links;
+
+    @Setup
+    public void setUp() {
+        int threshold = parallelism == 0 ? 0 : 1;
+        networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, threshold, Math.max(1, parallelism), 512);
+        nodes = TestTopologies.gridNodes(nodeCount);
+        links = TestTopologies.gridLinks(nodes);
+    }
+
+    @Benchmark
+    public long drawDocument() {
+        SvgDocumentWriter documentWriter = new SvgDocumentWriter(OutputStream.nullOutputStream());
+        networkDrawingService.drawDocument(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme(), documentWriter);
+        return documentWriter.getBytesWritten();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParallelRenderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.PositionJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.SizeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a grid topology with about 100k links sent as JSON, Smile and CBOR, bound to the command objects
+ * and interpreted from the token stream. The payload size of every format is printed at the setup.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter.CommandFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandFormatBenchmark {
+
+    @Param({"application/json", "application/x-jackson-smile", "application/cbor"})
+    public String contentType;
+
+    @Param({"50000"})
+    public int nodeCount;
+
+    private CommandFormats commandFormats;
+    private JsonInterpreter jsonInterpreter;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        commandFormats = new CommandFormats(new ObjectMapper());
+        jsonInterpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), new PipelineMetrics(new SimpleMeterRegistry(), 0));
+        List<NetworkNode> nodes = TestTopologies.gridNodes(nodeCount);
+        payload = commandFormats.mapperFor(contentType).writeValueAsBytes(command(nodes, TestTopologies.gridLinks(nodes)));
+        System.out.printf("%n%s payload of %d nodes: %d bytes%n", contentType, nodeCount, payload.length);
+    }
+
+    @Benchmark
+    public NetworkDiagramCommand bind() throws IOException {
+        return commandFormats.mapperFor(contentType).readValue(payload, NetworkDiagramCommand.class);
+    }
+
+    @Benchmark
+    public int interpretStream() throws IOException {
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<NetworkLink> links = new ArrayList<>();
+        try (JsonParser parser = commandFormats.createParser(contentType, new ByteArrayInputStream(payload))) {
+            jsonInterpreter.interpretJsonStream(parser, nodes, new ArrayList<>(), links);
+        }
+        return nodes.size() + links.size();
+    }
+
+    private static NetworkDiagramCommand command(List<NetworkNode> nodes, List<NetworkLink> links) {
+        List<NetworkNodeJson> nodesJson = new ArrayList<>(nodes.size());
+        for (NetworkNode node : nodes) {
+            PositionJson position = new PositionJson();
+            position.setX(node.getX());
+            position.setY(node.getY());
+            SizeJson size = new SizeJson();
+            size.setWidth(node.getWidth());
+            size.setHeight(node.getHeight());
+            NetworkNodeJson nodeJson = new NetworkNodeJson();
+            nodeJson.setId(node.getId());
+            nodeJson.setPosition(position);
+            nodeJson.setSize(size);
+            nodeJson.setLabel(node.getName());
+            nodesJson.add(nodeJson);
+        }
+        List<NetworkLinkJson> linksJson = new ArrayList<>(links.size());
+        for (NetworkLink link : links) {
+            NetworkLinkJson linkJson = new NetworkLinkJson();
+            linkJson.setSourceNodeId(link.getSourceNodeId());
+            linkJson.setTargetNodeId(link.getTargetNodeId());
+            linkJson.setRxTraffic(link.getIncomingTraffic());
+            linkJson.setTxTraffic(link.getOutgoingTraffic());
+            linksJson.add(linkJson);
+        }
+        NetworkDiagramCommand command = new NetworkDiagramCommand();
+        command.setNetworkNodes(nodesJson);
+        command.setNetworkLinks(linksJson);
+        return command;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CommandFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+}
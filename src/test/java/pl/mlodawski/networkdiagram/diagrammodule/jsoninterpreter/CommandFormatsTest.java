@@ -0,0 +1,100 @@
+package pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.DiagramDigest;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderKeyFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandFormatsTest {
+
+    private static final String COMMAND = """
+            {"theme": "dark",
+             "nodes": [{"id": "N1", "position": {"x": 10.5, "y": 20}, "size": {"width": 80, "height": 40}, "label": "Router"},
+                       {"id": "N2", "size": {"width": 60, "height": 30}, "label": "Switch"}],
+             "superNodes": [{"id": "SN1", "position": {"x": 300, "y": 200}, "label": "Rack", "nodePositions": [{"nodeId": "N1", "position": "BOTTOM"}]}],
+             "links": [{"sourceNodeId": "N1", "targetNodeId": "N2", "txTraffic": 30.25, "rxTraffic": 70}]}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CommandFormats commandFormats = new CommandFormats(objectMapper);
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry(), 0);
+    private final JsonInterpreter jsonInterpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
+
+    @Test
+    void createParser_BinaryFormats_ReadTheSameDiagramAsJson() throws IOException {
+        NetworkDiagramCommand command = objectMapper.readValue(COMMAND, NetworkDiagramCommand.class);
+        String json = interpret("application/json", commandFormats.mapperFor(null).writeValueAsBytes(command));
+
+        assertEquals(json, interpret("application/x-jackson-smile", commandFormats.mapperFor("application/x-jackson-smile").writeValueAsBytes(command)));
+        assertEquals(json, interpret("application/cbor", commandFormats.mapperFor("application/cbor").writeValueAsBytes(command)));
+        assertEquals(json, interpret("application/json;charset=UTF-8", COMMAND.getBytes()));
+        assertTrue(json.startsWith("dark N1 10.5 20.0 80.0 40.0 Router"), json);
+    }
+
+    @Test
+    void interpretJsonStream_OtherFormatOrFieldOrder_GivesTheRenderKeyOfTheBatchCommand() throws IOException {
+        RenderKeyFactory renderKeyFactory = new RenderKeyFactory(new SvgCanvasFactory(SvgRenderMode.STREAMING));
+        NetworkDiagramCommand command = objectMapper.readValue(COMMAND, NetworkDiagramCommand.class);
+        String reordered = """
+                {"links": [{"rxTraffic": 70, "txTraffic": "30.25", "targetNodeId": "N2", "sourceNodeId": "N1", "linkId": "l1"}],
+                 "superNodes": [{"nodePositions": [{"position": "BOTTOM", "nodeId": "N1"}], "label": "Rack", "position": {"y": 200, "x": 300}, "id": "SN1"}],
+                 "nodes": [{"label": "Router", "size": {"height": 40, "width": 80}, "position": {"y": 20, "x": 10.5}, "id": "N1"},
+                           {"label": "Switch", "size": {"height": 30, "width": 60}, "id": "N2"}],
+                 "theme": "dark"}
+                """;
+        String key = renderKeyFactory.forCommand(command, TestTopologies.defaultTheme());
+
+        assertEquals(key, streamedKey(renderKeyFactory, "application/json", reordered.getBytes()));
+        assertEquals(key, streamedKey(renderKeyFactory, "application/cbor", commandFormats.mapperFor("application/cbor").writeValueAsBytes(command)));
+        assertNotEquals(key, streamedKey(renderKeyFactory, "application/json", reordered.replace("\"x\": 10.5", "\"x\": 11").getBytes()));
+        assertNotEquals(key, streamedKey(renderKeyFactory, "application/json", reordered.replace("\"position\": {\"y\": 20, \"x\": 10.5}, ", "").getBytes()));
+    }
+
+    private String streamedKey(RenderKeyFactory renderKeyFactory, String contentType, byte[] body) throws IOException {
+        DiagramDigest diagramDigest = new DiagramDigest();
+        try (JsonParser parser = commandFormats.createParser(contentType, new ByteArrayInputStream(body))) {
+            jsonInterpreter.interpretJsonStream(parser, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), ValidationMode.FIRST_ERROR, diagramDigest);
+        }
+        return renderKeyFactory.forCommand(diagramDigest, TestTopologies.defaultTheme());
+    }
+
+    private String interpret(String contentType, byte[] body) throws IOException {
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> links = new ArrayList<>();
+        NetworkDiagramCommand style;
+        try (JsonParser parser = commandFormats.createParser(contentType, new ByteArrayInputStream(body))) {
+            style = jsonInterpreter.interpretJsonStream(parser, nodes, superNodes, links);
+        }
+        StringBuilder description = new StringBuilder(style.getTheme());
+        NetworkNode node = nodes.getFirst();
+        description.append(' ').append(node.getId()).append(' ').append(node.getX()).append(' ').append(node.getY()).append(' ')
+                .append(node.getWidth()).append(' ').append(node.getHeight()).append(' ').append(node.getName());
+        description.append(' ').append(nodes.size()).append(' ').append(nodes.get(1).getId());
+        description.append(' ').append(superNodes.getFirst().getId()).append(superNodes.getFirst().getBottomNodes().size());
+        NetworkLink link = links.getFirst();
+        description.append(' ').append(link.getSourceNodeId()).append(link.getTargetNodeId()).append(link.getOutgoingTraffic()).append(',').append(link.getIncomingTraffic());
+        return description.toString();
+    }
+}
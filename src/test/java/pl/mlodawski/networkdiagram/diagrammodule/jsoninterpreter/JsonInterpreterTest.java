@@ -1,13 +1,24 @@
 package pl.mlodawski.networkdiagram.diagrammodule.jsoninterpreter;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
 import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.DiagramValidationException;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,6 +28,8 @@ import java.util.List;
 @SpringBootTest
 public class JsonInterpreterTest {
 
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry(), 0);
+
     /**
      * Test method for interpretJson of class JsonInterpreter for NetworkNode creation
      */
@@ -28,7 +41,7 @@ public class JsonInterpreterTest {
         List<SuperNode> superNodes = new ArrayList<>();
         List<NetworkLink> links = new ArrayList<>();
 
-        JsonInterpreter interpreter = new JsonInterpreter();
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
         interpreter.interpretJson(command, nodes, superNodes, links);
 
         Assertions.assertEquals(0, nodes.size());
@@ -45,7 +58,7 @@ public class JsonInterpreterTest {
         List<SuperNode> superNodes = new ArrayList<>();
         List<NetworkLink> links = new ArrayList<>();
 
-        JsonInterpreter interpreter = new JsonInterpreter();
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
         interpreter.interpretJson(command, nodes, superNodes, links);
 
         Assertions.assertEquals(0, superNodes.size());
@@ -62,7 +75,7 @@ public class JsonInterpreterTest {
         List<SuperNode> superNodes = new ArrayList<>();
         List<NetworkLink> links = new ArrayList<>();
 
-        JsonInterpreter interpreter = new JsonInterpreter();
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
         interpreter.interpretJson(command, nodes, superNodes, links);
 
         Assertions.assertEquals(0, links.size());
@@ -78,9 +91,116 @@ public class JsonInterpreterTest {
         List<SuperNode> superNodes = new ArrayList<>();
         List<NetworkLink> links = new ArrayList<>();
 
-        JsonInterpreter interpreter = new JsonInterpreter();
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
 
         Assertions.assertThrows(IllegalArgumentException.class, () ->
                 interpreter.interpretJson(null, nodes, superNodes, links));
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for interpretJsonStream of class JsonInterpreter, the model has to match the one built from the command
+     */
+    @Test
+    public void testInterpretJsonStreamSameModelAsCommand() throws IOException {
+        String json = """
+                {"theme": "dark", "superNodes": [{"id": "SN1", "position": {"x": 300, "y": 200}, "label": "Rack",
+                  "nodePositions": [{"nodeId": "N1", "position": "TOP"}, {"nodeId": "N2", "position": "LEFT"}]}],
+                 "links": [{"sourceNodeId": "N1", "targetNodeId": "N2", "txTraffic": 30, "rxTraffic": 70.5}],
+                 "unknown": {"nested": [1, 2]},
+                 "nodes": [{"id": "N1", "position": {"x": 10, "y": 20}, "size": {"width": 80, "height": 40}, "label": "Router"},
+                           {"id": "N2", "position": {"x": 210, "y": 20.5}, "size": {"width": 60, "height": 30}, "label": "Switch"}]}
+                """;
+        ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        List<NetworkLink> links = new ArrayList<>();
+        List<NetworkNode> streamedNodes = new ArrayList<>();
+        List<SuperNode> streamedSuperNodes = new ArrayList<>();
+        List<NetworkLink> streamedLinks = new ArrayList<>();
+
+        interpreter.interpretJson(objectMapper.readValue(json, NetworkDiagramCommand.class), nodes, superNodes, links);
+        NetworkDiagramCommand style;
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            style = interpreter.interpretJsonStream(parser, streamedNodes, streamedSuperNodes, streamedLinks);
+        }
+
+        Assertions.assertEquals("dark", style.getTheme());
+        Assertions.assertEquals(describe(nodes, superNodes, links), describe(streamedNodes, streamedSuperNodes, streamedLinks));
+    }
+
+    /**
+     * Test method for interpretJsonStream of class JsonInterpreter for invalid diagrams
+     */
+    @Test
+    public void testInterpretJsonStreamForInvalidDiagrams() {
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
+        String node = "{\"id\": \"N1\", \"position\": {\"x\": 0, \"y\": 0}, \"size\": {\"width\": 80, \"height\": 40}, \"label\": \"A\"}";
+
+        Assertions.assertEquals("nodes[1]: Duplicate Node ID: N1",
+                interpretStreamError(interpreter, "{\"nodes\": [" + node + ", " + node + "]}"));
+        Assertions.assertEquals("links[0]: Invalid link between non-existing nodes: N1 --> N9",
+                interpretStreamError(interpreter, "{\"links\": [{\"sourceNodeId\": \"N1\", \"targetNodeId\": \"N9\"}], \"nodes\": [" + node + "]}"));
+        Assertions.assertEquals("superNodes[1].nodePositions[0]: Node in multiple SuperNodes: Node ID N1",
+                interpretStreamError(interpreter, "{\"nodes\": [" + node + "], \"superNodes\": ["
+                        + "{\"id\": \"SN1\", \"nodePositions\": [{\"nodeId\": \"N1\", \"position\": \"TOP\"}]},"
+                        + "{\"id\": \"SN2\", \"nodePositions\": [{\"nodeId\": \"N1\", \"position\": \"TOP\"}]}]}"));
+        Assertions.assertEquals("superNodes[0]: Empty SuperNode: SuperNode ID SN1",
+                interpretStreamError(interpreter, "{\"superNodes\": [{\"id\": \"SN1\", \"nodePositions\": [{\"nodeId\": \"N7\", \"position\": \"TOP\"}]}], \"nodes\": [" + node + "]}"));
+        Assertions.assertTrue(interpretStreamError(interpreter, "{\"nodes\": [" + node).startsWith("Invalid JSON"));
+    }
+
+    /**
+     * Test method for interpretJson and interpretJsonStream of class JsonInterpreter reporting every error
+     */
+    @Test
+    public void testInterpretJsonAllErrorsReportsEveryErrorWithItsPath() throws Exception {
+        JsonInterpreter interpreter = new JsonInterpreter(new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f), pipelineMetrics);
+        String json = """
+                {"nodes": [{"id": "N1", "size": {"width": 80, "height": 40}},
+                           {"id": "N2", "size": {"width": 80, "height": 40}},
+                           {"id": "N1", "size": {"width": 80, "height": 40}}],
+                 "links": [{"sourceNodeId": "N1", "targetNodeId": "N2"}, {"sourceNodeId": "N2", "targetNodeId": "N3"}],
+                 "superNodes": [{"id": "SN1", "nodePositions": [{"nodeId": "N1", "position": "TOP"}, {"nodeId": "N1", "position": "LEFT"}]},
+                                {"id": "SN2", "nodePositions": [{"nodeId": "N7", "position": "TOP"}]}]}
+                """;
+        List<String> expected = List.of(
+                "links[1]: Invalid link between non-existing nodes: N2 --> N3",
+                "nodes[2]: Duplicate Node ID: N1",
+                "superNodes[0].nodePositions[1]: Duplicate node in SuperNode: Node ID N1 in SuperNode SN1",
+                "superNodes[1]: Empty SuperNode: SuperNode ID SN2");
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        DiagramValidationException commandError = Assertions.assertThrows(DiagramValidationException.class, () -> interpreter.interpretJson(
+                objectMapper.readValue(json, NetworkDiagramCommand.class), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), ValidationMode.ALL_ERRORS));
+        DiagramValidationException streamError = Assertions.assertThrows(DiagramValidationException.class, () -> {
+            try (JsonParser parser = objectMapper.createParser(json)) {
+                interpreter.interpretJsonStream(parser, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), ValidationMode.ALL_ERRORS);
+            }
+        });
+
+        Assertions.assertEquals(expected, commandError.getErrors().stream().map(error -> error.location() + ": " + error.message()).toList());
+        Assertions.assertEquals(expected, streamError.getErrors().stream().map(error -> error.location() + ": " + error.message()).toList());
+        Assertions.assertEquals("links[1]: Invalid link between non-existing nodes: N2 --> N3 (and 3 more errors)", streamError.getMessage());
+    }
+
+    private static String interpretStreamError(JsonInterpreter interpreter, String json) {
+        return Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            try (JsonParser parser = new ObjectMapper().createParser(json)) {
+                interpreter.interpretJsonStream(parser, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            }
+        }).getMessage();
+    }
+
+    private static String describe(List<NetworkNode> nodes, List<SuperNode> superNodes, List<NetworkLink> links) {
+        StringBuilder description = new StringBuilder();
+        nodes.forEach(node -> description.append(node.getId()).append(node.getX()).append(',').append(node.getY()).append(',')
+                .append(node.getWidth()).append(',').append(node.getHeight()).append(node.getName()).append('\n'));
+        superNodes.forEach(superNode -> description.append(superNode.getId()).append(superNode.getX()).append(',').append(superNode.getY())
+                .append(superNode.getName()).append(superNode.getTopNodes().stream().map(NetworkNode::getId).toList())
+                .append(superNode.getLeftNodes().stream().map(NetworkNode::getId).toList()).append('\n'));
+        links.forEach(link -> description.append(link.getSourceNodeId()).append(link.getTargetNodeId())
+                .append(link.getIncomingTraffic()).append(',').append(link.getOutgoingTraffic()).append('\n'));
+        return description.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the script parsing with the number of parse threads, parallelism 1 is the sequential parser.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.languageparser.ChunkedScriptParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ChunkedScriptParserBenchmark {
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    @Param({"1000000"})
+    public int lineCount;
+
+    private RenderPool renderPool;
+    private ChunkedScriptParser chunkedScriptParser;
+    private String script;
+
+    @Setup
+    public void setUp() {
+        renderPool = new RenderPool(parallelism);
+        chunkedScriptParser = new ChunkedScriptParser(new ScriptParser(), renderPool, 1 << 20);
+        script = TestTopologies.script(lineCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderPool.getPool().shutdown();
+    }
+
+    @Benchmark
+    public long parseText() {
+        StatementCounter counter = new StatementCounter();
+        chunkedScriptParser.parseScript(script, Integer.MAX_VALUE, counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long parseReader() throws IOException {
+        StatementCounter counter = new StatementCounter();
+        chunkedScriptParser.parseScript(new StringReader(script), Integer.MAX_VALUE, counter);
+        return counter.count;
+    }
+
+    private static final class StatementCounter implements ScriptListener {
+
+        private long count;
+
+        @Override
+        public void node(NetworkNode node, int lineNumber) {
+            count++;
+        }
+
+        @Override
+        public void superNode(SuperNode superNode, int lineNumber) {
+            count++;
+        }
+
+        @Override
+        public void link(NetworkLink link, int lineNumber) {
+            count++;
+        }
+
+        @Override
+        public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+            count++;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChunkedScriptParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
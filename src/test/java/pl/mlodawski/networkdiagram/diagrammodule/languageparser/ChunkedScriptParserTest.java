@@ -0,0 +1,145 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedScriptParserTest {
+
+    private final ScriptParser scriptParser = new ScriptParser();
+    private final RenderPool renderPool = new RenderPool(3);
+    private final ChunkedScriptParser chunkedScriptParser = new ChunkedScriptParser(scriptParser, renderPool, 256);
+
+    @AfterEach
+    void shutdown() {
+        renderPool.getPool().shutdown();
+    }
+
+    @Test
+    void parseScript_ManyChunks_ReportsSameStatementsAsSequentialParser() throws IOException {
+        for (String script : List.of(script(2000, ""), script(2000, "\n\n"), script(3, ""), "")) {
+            List<String> sequential = new ArrayList<>();
+            List<String> fromText = new ArrayList<>();
+            List<String> fromReader = new ArrayList<>();
+
+            int sequentialLines = scriptParser.parseScript(script, new RecordingListener(sequential));
+            int textLines = chunkedScriptParser.parseScript(script, Integer.MAX_VALUE, new RecordingListener(fromText));
+            int readerLines = chunkedScriptParser.parseScript(trickle(script), Integer.MAX_VALUE, new RecordingListener(fromReader));
+
+            assertEquals(sequentialLines, textLines);
+            assertEquals(sequentialLines, readerLines);
+            assertEquals(sequential, fromText);
+            assertEquals(sequential, fromReader);
+        }
+    }
+
+    @Test
+    void parseScript_ChunkLargerThanFirstBuffer_GrowsTheBufferBeforeCutting() throws IOException {
+        ChunkedScriptParser largeChunks = new ChunkedScriptParser(scriptParser, renderPool, ChunkedScriptParser.INITIAL_BUFFER_SIZE * 3);
+        for (String script : List.of(script(20, ""), script(2000, ""))) {
+            List<String> sequential = new ArrayList<>();
+            List<String> fromReader = new ArrayList<>();
+
+            int sequentialLines = scriptParser.parseScript(script, new RecordingListener(sequential));
+            int readerLines = largeChunks.parseScript(trickle(script), Integer.MAX_VALUE, new RecordingListener(fromReader));
+
+            assertEquals(sequentialLines, readerLines);
+            assertEquals(sequential, fromReader);
+        }
+    }
+
+    @Test
+    void parseScript_ErrorsInLaterChunks_ReportsFirstErrorLikeSequentialParser() {
+        String script = script(1000, "").replace("Node N700:", "Node N700;").replace("Node N900:", "Node 900:");
+
+        ScriptSyntaxException sequential = assertThrows(ScriptSyntaxException.class,
+                () -> scriptParser.parseScript(script, new RecordingListener(new ArrayList<>())));
+        ScriptSyntaxException fromText = assertThrows(ScriptSyntaxException.class,
+                () -> chunkedScriptParser.parseScript(script, Integer.MAX_VALUE, new RecordingListener(new ArrayList<>())));
+        ScriptSyntaxException fromReader = assertThrows(ScriptSyntaxException.class,
+                () -> chunkedScriptParser.parseScript(trickle(script), Integer.MAX_VALUE, new RecordingListener(new ArrayList<>())));
+
+        assertEquals(sequential.getMessage(), fromText.getMessage());
+        assertEquals(sequential.getMessage(), fromReader.getMessage());
+        assertTrue(sequential.getLine() > 1000);
+    }
+
+    @Test
+    void parseScript_MoreLinesThanAllowed_StopsAtTheSameLineAsSequentialParser() {
+        String script = script(1000, "").replace("Node N700:", "Node N700;");
+        List<String> sequential = new ArrayList<>();
+        List<String> chunked = new ArrayList<>();
+
+        IllegalArgumentException sequentialError = assertThrows(IllegalArgumentException.class,
+                () -> scriptParser.parseScript(script, 1200, new RecordingListener(sequential)));
+        IllegalArgumentException chunkedError = assertThrows(IllegalArgumentException.class,
+                () -> chunkedScriptParser.parseScript(script, 1200, new RecordingListener(chunked)));
+
+        assertEquals("Script has more than 1200 lines", sequentialError.getMessage());
+        assertEquals(sequentialError.getMessage(), chunkedError.getMessage());
+        assertEquals(sequential, chunked);
+    }
+
+    /**
+     * Nodes with links, a super node with two nodes every hundred nodes, blank and CRLF lines between them
+     */
+    private static String script(int nodeCount, String end) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 1; i <= nodeCount; i++) {
+            script.append("Node N").append(i).append(": Position(").append(i * 1.5f).append(", ").append(i % 17).append("), Size(80, 40), Label(\"Node ").append(i).append("\")\n");
+            if (i > 1) {
+                script.append("N").append(i - 1).append(" ---[").append(i % 100).append(",").append(i % 7).append("]--> N").append(i).append("\r\n");
+            }
+            if (i % 100 == 0) {
+                script.append("\nSuperNode SN").append(i).append(": Position(").append(i).append(", 10), Label(\"Rack\")\n");
+                script.append("N").append(i).append(" --^--> SN").append(i).append("\nN").append(i - 1).append(" ----> SN").append(i).append('\n');
+            }
+        }
+        return script.append(end).toString();
+    }
+
+    private static Reader trickle(String script) {
+        return new FilterReader(new StringReader(script)) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 61));
+            }
+        };
+    }
+
+    private record RecordingListener(List<String> statements) implements ScriptListener {
+
+        @Override
+        public void node(NetworkNode node, int lineNumber) {
+            statements.add(lineNumber + " " + node.getId() + node.getX() + node.getY() + node.getName());
+        }
+
+        @Override
+        public void superNode(SuperNode superNode, int lineNumber) {
+            statements.add(lineNumber + " " + superNode.getId() + superNode.getX() + superNode.getName());
+        }
+
+        @Override
+        public void link(NetworkLink link, int lineNumber) {
+            statements.add(lineNumber + " " + link.getSourceNodeId() + link.getTargetNodeId() + link.getIncomingTraffic() + link.getOutgoingTraffic());
+        }
+
+        @Override
+        public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+            statements.add(lineNumber + " " + nodeId + position + superNodeId);
+        }
+    }
+}
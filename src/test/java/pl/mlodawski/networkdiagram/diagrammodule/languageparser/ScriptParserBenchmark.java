@@ -0,0 +1,102 @@
+package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing of a script with one node per four lines, the rest links and super nodes, by the single-pass parser
+ * and by the former cascade compiling and trying one regex per statement type on every line.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScriptParserBenchmark {
+
+    @Param({"1000000"})
+    public int lineCount;
+
+    private final ScriptParser scriptParser = new ScriptParser();
+    private String script;
+
+    @Setup
+    public void setUp() {
+        script = TestTopologies.script(lineCount);
+    }
+
+    @Benchmark
+    public long singlePass() {
+        StatementCounter counter = new StatementCounter();
+        scriptParser.parseScript(script, counter);
+        return counter.count;
+    }
+
+    @Benchmark
+    public long regexCascade() {
+        long count = 0;
+        for (String line : script.split("\\n")) {
+            String trimmed = line.trim();
+            if (matches(trimmed, "Node N(\\d+): Position\\(([^,]+), ([^)]+)\\), Size\\(([^,]+), ([^)]+)\\), Label\\(\"([^\"]+)\"\\)", 2, 5)
+                    || matches(trimmed, "N(\\d+) ---\\[([^,]+),([^]]+)]--> N(\\d+)", 2, 3)
+                    || matches(trimmed, "SuperNode SN(\\d+): Position\\(([^,]+), ([^)]+)\\), Label\\(\"([^\"]+)\"\\)", 2, 3)
+                    || matches(trimmed, "N(\\d+) --([<>^v]?)--> SN(\\d+)", 0, -1)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean matches(String line, String regex, int firstNumber, int lastNumber) {
+        Matcher matcher = Pattern.compile(regex).matcher(line);
+        if (!matcher.find()) {
+            return false;
+        }
+        for (int group = firstNumber; group <= lastNumber; group++) {
+            Float.parseFloat(matcher.group(group));
+        }
+        return true;
+    }
+
+    private static final class StatementCounter implements ScriptListener {
+
+        private long count;
+
+        @Override
+        public void node(NetworkNode node, int lineNumber) {
+            count++;
+        }
+
+        @Override
+        public void superNode(SuperNode superNode, int lineNumber) {
+            count++;
+        }
+
+        @Override
+        public void link(NetworkLink link, int lineNumber) {
+            count++;
+        }
+
+        @Override
+        public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+            count++;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ScriptParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
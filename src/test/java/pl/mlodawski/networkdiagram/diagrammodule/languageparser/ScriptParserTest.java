@@ -3,10 +3,16 @@ package pl.mlodawski.networkdiagram.diagrammodule.languageparser;
 import org.junit.jupiter.api.Test;
 
 import org.springframework.boot.test.context.SpringBootTest;
-import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkNodeUtilsService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNodeRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
 import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,8 +21,7 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 class ScriptParserTest {
 
-  private NetworkNodeUtilsService networkNodeUtilsService = new NetworkNodeUtilsService();
-  private ScriptParser scriptParser = new ScriptParser(networkNodeUtilsService);
+  private ScriptParser scriptParser = new ScriptParser();
 
   @Test
   void parseNetworkNode_validInput_returnsNetworkNode() {
@@ -33,6 +38,19 @@ class ScriptParserTest {
     assertEquals("Node1", networkNode.getName());
   }
 
+  @Test
+  void parseNetworkNode_withoutPosition_returnsNodeWithoutCoordinates() {
+    String line = "Node N2: Size(100.0, 200.0), Label(\"Node2\")";
+
+    NetworkNode networkNode = scriptParser.parseNetworkNode(line);
+
+    assertNotNull(networkNode);
+    assertEquals("2", networkNode.getId());
+    assertTrue(Float.isNaN(networkNode.getX()));
+    assertTrue(Float.isNaN(networkNode.getY()));
+    assertEquals(100.0, networkNode.getWidth(), 0.01);
+  }
+
   @Test
   void parseNetworkNode_invalidInput_returnsNull() {
     String line = "Invalid line";
@@ -73,7 +91,7 @@ class ScriptParserTest {
     SuperNode superNode = new SuperNode("1", 30, 40, "SuperNode1");
     allSuperNodes.add(superNode);
 
-    SuperNode parsedSuperNode = scriptParser.parseNodePositionInSuperNode(line, allNodes, allSuperNodes);
+    SuperNode parsedSuperNode = scriptParser.parseNodePositionInSuperNode(line, NetworkNodeRegistry.of(allNodes), allSuperNodes);
     assertNotNull(parsedSuperNode, "Parsed SuperNode should not be null");
     assertEquals("1", parsedSuperNode.getId());
     assertEquals(30, parsedSuperNode.getX());
@@ -81,4 +99,151 @@ class ScriptParserTest {
     assertEquals("SuperNode1", parsedSuperNode.getName());
   }
 
+  @Test
+  void parseScript_everyStatement_reportsStatementsInLineOrder() {
+    String script = "Node N1: Position(10, -2.5e1), Size(80, 40), Label(\"A\")\r\n"
+        + "\n"
+        + "  SuperNode SN1: Position(300.9, 200), Label(\"Rack\")\n"
+        + "Node N2: Size(80, 40), Label(\"B\")\n"
+        + "N1 ---[30, 70.5]--> N2\n"
+        + "N2 --<--> SN1\n"
+        + "N1 ----> SN1";
+    List<String> statements = new ArrayList<>();
+
+    int lineCount = scriptParser.parseScript(script, new ScriptListener() {
+      @Override
+      public void node(NetworkNode node, int lineNumber) {
+        statements.add(lineNumber + " node " + node.getId() + " " + node.getX() + " " + node.getY());
+      }
+
+      @Override
+      public void superNode(SuperNode superNode, int lineNumber) {
+        statements.add(lineNumber + " superNode " + superNode.getId() + " " + superNode.getX() + " " + superNode.getName());
+      }
+
+      @Override
+      public void link(NetworkLink link, int lineNumber) {
+        statements.add(lineNumber + " link " + link.getSourceNodeId() + " " + link.getTargetNodeId() + " " + link.getOutgoingTraffic() + " " + link.getIncomingTraffic());
+      }
+
+      @Override
+      public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+        statements.add(lineNumber + " member " + nodeId + " " + position + " " + superNodeId);
+      }
+    });
+
+    assertEquals(7, lineCount);
+    assertEquals(List.of("1 node 1 10.0 -25.0", "3 superNode 1 300 Rack", "4 node 2 NaN NaN",
+        "5 link 1 2 30.0 70.5", "6 member 2 LEFT 1", "7 member 1 null 1"), statements);
+  }
+
+  @Test
+  void parseScript_invalidLine_reportsLineAndColumn() {
+    String script = "Node N1: Position(10, 20), Size(80, 40), Label(\"A\")\n"
+        + "Node N2: Position(10; 20), Size(80, 40), Label(\"B\")";
+
+    ScriptSyntaxException exception = assertThrows(ScriptSyntaxException.class,
+        () -> scriptParser.parseScript(script, new IgnoringListener()));
+
+    assertEquals(2, exception.getLine());
+    assertEquals(21, exception.getColumn());
+    assertEquals("Line 2, column 21: expected ',' but found ';'", exception.getMessage());
+  }
+
+  @Test
+  void parseScript_unknownStatementOrTrailingText_isRejected() {
+    ScriptSyntaxException unknown = assertThrows(ScriptSyntaxException.class,
+        () -> scriptParser.parseScript("Edge E1", new IgnoringListener()));
+    ScriptSyntaxException trailing = assertThrows(ScriptSyntaxException.class,
+        () -> scriptParser.parseScript("N1 --^--> SN1 extra", new IgnoringListener()));
+
+    assertEquals(1, unknown.getColumn());
+    assertEquals(15, trailing.getColumn());
+  }
+
+  @Test
+  void parseNetworkNode_numbersOutsideFastPath_matchParseFloat() {
+    String line = "Node N1: Position(0.1234567890123456789, 16777217), Size(1e-30, 3.4e38), Label(\"A\")";
+
+    NetworkNode networkNode = scriptParser.parseNetworkNode(line);
+
+    assertEquals(Float.parseFloat("0.1234567890123456789"), networkNode.getX());
+    assertEquals(Float.parseFloat("16777217"), networkNode.getY());
+    assertEquals(Float.parseFloat("1e-30"), networkNode.getWidth());
+    assertEquals(Float.parseFloat("3.4e38"), networkNode.getHeight());
+  }
+
+  @Test
+  void parseScript_readerWithLinesAcrossReads_reportsSameStatementsAsText() throws IOException {
+    StringBuilder script = new StringBuilder();
+    for (int i = 1; i <= 5000; i++) {
+      script.append("Node N").append(i).append(": Position(").append(i).append(".5, 20), Size(80, 40), Label(\"").append("x".repeat(i % 50 + 1)).append("\")\n");
+    }
+    script.append("N1 ---[1,2]--> N2");
+    List<String> fromText = new ArrayList<>();
+    List<String> fromReader = new ArrayList<>();
+    Reader trickle = new FilterReader(new StringReader(script.toString())) {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        return super.read(buffer, offset, Math.min(length, 997));
+      }
+    };
+
+    int textLines = scriptParser.parseScript(script, new RecordingListener(fromText));
+    int readerLines = scriptParser.parseScript(trickle, Integer.MAX_VALUE, new RecordingListener(fromReader));
+
+    assertEquals(5001, textLines);
+    assertEquals(textLines, readerLines);
+    assertEquals(fromText, fromReader);
+  }
+
+  @Test
+  void parseScript_moreLinesThanAllowed_isRejected() {
+    String script = "Node N1: Size(80, 40), Label(\"A\")\nNode N2: Size(80, 40), Label(\"B\")\nNode N3: Size(80, 40), Label(\"C\")";
+
+    assertEquals(3, scriptParser.parseScript(script, 3, new IgnoringListener()));
+    assertThrows(IllegalArgumentException.class, () -> scriptParser.parseScript(new StringReader(script), 2, new IgnoringListener()));
+  }
+
+  private record RecordingListener(List<String> statements) implements ScriptListener {
+
+    @Override
+    public void node(NetworkNode node, int lineNumber) {
+      statements.add(lineNumber + " " + node.getId() + node.getX() + node.getY() + node.getWidth() + node.getHeight() + node.getName());
+    }
+
+    @Override
+    public void superNode(SuperNode superNode, int lineNumber) {
+      statements.add(lineNumber + " " + superNode.getId() + superNode.getX() + superNode.getY() + superNode.getName());
+    }
+
+    @Override
+    public void link(NetworkLink link, int lineNumber) {
+      statements.add(lineNumber + " " + link.getSourceNodeId() + link.getTargetNodeId() + link.getIncomingTraffic() + link.getOutgoingTraffic());
+    }
+
+    @Override
+    public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+      statements.add(lineNumber + " " + nodeId + position + superNodeId);
+    }
+  }
+
+  private static final class IgnoringListener implements ScriptListener {
+
+    @Override
+    public void node(NetworkNode node, int lineNumber) {
+    }
+
+    @Override
+    public void superNode(SuperNode superNode, int lineNumber) {
+    }
+
+    @Override
+    public void link(NetworkLink link, int lineNumber) {
+    }
+
+    @Override
+    public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+    }
+  }
 }
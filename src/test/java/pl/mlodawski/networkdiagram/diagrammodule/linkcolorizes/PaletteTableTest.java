@@ -0,0 +1,51 @@
+package pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteTableTest {
+
+    @Test
+    void getColor_MatchesStrategyAtBucketBoundaries() {
+        for (ColorStrategy strategy : ColorStrategy.values()) {
+            PaletteTable table = strategy.getTable();
+
+            assertEquals(strategy.getStrategy().getLinkColor(0.0f), table.getColor(0.0f), strategy.name());
+            assertEquals(strategy.getStrategy().getLinkColor(100.0f), table.getColor(100.0f), strategy.name());
+        }
+    }
+
+    @Test
+    void getColor_OutOfRangeOrNaN_IsClamped() {
+        PaletteTable table = ColorStrategy.RED_GREEN.getTable();
+
+        assertSame(table.getColor(0.0f), table.getColor(-5.0f));
+        assertSame(table.getColor(0.0f), table.getColor(Float.NaN));
+        assertSame(table.getColor(100.0f), table.getColor(250.0f));
+    }
+
+    @Test
+    void getHexColor_IsLowercaseRgbOfTheColor() {
+        PaletteTable table = PaletteTable.compile(new GradientPalette(List.of(Color.decode("#FF0000"), Color.decode("#0000FF"))));
+
+        assertEquals("#ff0000", table.getHexColor(0.0f));
+        assertEquals("#0000ff", table.getHexColor(100.0f));
+        assertEquals(Color.decode(table.getHexColor(42.5f)), table.getColor(42.5f));
+    }
+
+    @Test
+    void resolve_SameGradient_ReturnsCachedTable() {
+        LinkPaletteCache cache = new LinkPaletteCache(16);
+
+        PaletteTable first = cache.resolve(ColorStrategy.RED_GREEN, List.of("#00FF00", "#FF0000"));
+        PaletteTable second = cache.resolve(ColorStrategy.COLD, List.of("#00ff00", "#ff0000"));
+
+        assertSame(first, second);
+        assertSame(ColorStrategy.COLD.getTable(), cache.resolve(ColorStrategy.COLD, null));
+        assertThrows(IllegalArgumentException.class, () -> cache.resolve(ColorStrategy.COLD, List.of("#00ff00", "green")));
+    }
+}
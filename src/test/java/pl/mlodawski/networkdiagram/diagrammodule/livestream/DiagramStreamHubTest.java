@@ -0,0 +1,156 @@
+package pl.mlodawski.networkdiagram.diagrammodule.livestream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.LinkDelta;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+import pl.mlodawski.networkdiagram.diagrammodule.session.UnknownSessionException;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramStreamHubTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void trafficUpdated_SendsTheSameEventDataToAllSubscribers() throws Exception {
+        DiagramStreamHub hub = new DiagramStreamHub(objectMapper, new SimpleMeterRegistry(), 8, 100, 60_000);
+        hub.sessionCreated("s", 3);
+        List<RecordingSink> sinks = List.of(new RecordingSink(), new RecordingSink(), new RecordingSink());
+        for (RecordingSink sink : sinks) {
+            hub.subscribe("s", sink);
+            assertEquals(new Event(DiagramStreamHub.DOCUMENT_EVENT, 3, "{\"version\":3}"), sink.next());
+        }
+
+        hub.trafficUpdated("s", new DiagramSession.TrafficDelta(4, List.of(delta("l-1-2", "#ff0000"))));
+
+        Event first = sinks.getFirst().next();
+        assertEquals(DiagramStreamHub.DELTA_EVENT, first.event());
+        assertEquals(4, first.version());
+        assertEquals("#ff0000", objectMapper.readTree(first.data()).get("links").get(0).get("out").asText());
+        for (RecordingSink sink : sinks.subList(1, sinks.size())) {
+            assertSame(first.data(), sink.next().data());
+        }
+    }
+
+    @Test
+    void slowSubscriber_GetsMissedUpdatesCoalescedLatestWins() throws Exception {
+        DiagramStreamHub hub = new DiagramStreamHub(objectMapper, new SimpleMeterRegistry(), 8, 100, 60_000);
+        hub.sessionCreated("s", 0);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe("s", sink);
+        sink.next();
+        sink.block();
+
+        hub.trafficUpdated("s", new DiagramSession.TrafficDelta(1, List.of(delta("a", "#000001"))));
+        assertEquals(1, sink.next().version());
+        hub.trafficUpdated("s", new DiagramSession.TrafficDelta(2, List.of(delta("a", "#000002"), delta("b", "#000002"))));
+        hub.trafficUpdated("s", new DiagramSession.TrafficDelta(3, List.of(delta("b", "#000003"))));
+        sink.release();
+
+        Event coalesced = sink.next();
+        assertEquals(DiagramStreamHub.DELTA_EVENT, coalesced.event());
+        assertEquals(3, coalesced.version());
+        JsonNode links = objectMapper.readTree(coalesced.data()).get("links");
+        assertEquals(2, links.size());
+        assertEquals("#000002", links.get(0).get("out").asText());
+        assertEquals("#000003", links.get(1).get("out").asText());
+        assertNull(sink.poll());
+    }
+
+    @Test
+    void subscriberBehindTheHistory_IsToldToFetchTheDocument() throws Exception {
+        DiagramStreamHub hub = new DiagramStreamHub(objectMapper, new SimpleMeterRegistry(), 2, 100, 60_000);
+        hub.sessionCreated("s", 0);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe("s", sink);
+        sink.next();
+        sink.block();
+
+        hub.trafficUpdated("s", new DiagramSession.TrafficDelta(1, List.of(delta("a", "#000001"))));
+        assertEquals(1, sink.next().version());
+        for (int version = 2; version <= 5; version++) {
+            hub.trafficUpdated("s", new DiagramSession.TrafficDelta(version, List.of(delta("a", "#00000" + version))));
+        }
+        sink.release();
+
+        assertEquals(new Event(DiagramStreamHub.DOCUMENT_EVENT, 5, "{\"version\":5}"), sink.next());
+    }
+
+    @Test
+    void sessionClosed_EndsTheStreams() throws Exception {
+        DiagramStreamHub hub = new DiagramStreamHub(objectMapper, new SimpleMeterRegistry(), 8, 1, 60_000);
+        hub.sessionCreated("s", 0);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe("s", sink);
+        assertThrows(IllegalStateException.class, () -> hub.subscribe("s", new RecordingSink()));
+        assertThrows(UnknownSessionException.class, () -> hub.subscribe("missing", new RecordingSink()));
+
+        hub.sessionClosed("s");
+
+        assertTrue(sink.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, hub.getSubscriberCount());
+    }
+
+    private static LinkDelta delta(String id, String fill) {
+        return new LinkDelta(id, fill, fill, "1%", "1%");
+    }
+
+    record Event(String event, long version, String data) {
+    }
+
+    /**
+     * Sink keeping the events, blocked sends stand for a slow client
+     */
+    static final class RecordingSink implements StreamSink {
+
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+
+        void block() {
+            blocked = new CountDownLatch(1);
+        }
+
+        void release() {
+            blocked.countDown();
+        }
+
+        Event next() throws InterruptedException {
+            Event event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "No event");
+            return event;
+        }
+
+        Event poll() throws InterruptedException {
+            return events.poll(200, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void send(String event, long version, String data) {
+            events.add(new Event(event, version, data));
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package pl.mlodawski.networkdiagram.diagrammodule.livestream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.LinkDelta;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Local load benchmark of the stream fan-out: thousands of subscribers of one session, a tenth of them slow.
+ * Prints the latency from publishing an update to its arrival at the subscribers, and the heap taken per subscriber.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.livestream.DiagramStreamLoadBenchmark -Dexec.args="10000 200"
+ */
+public class DiagramStreamLoadBenchmark {
+
+    private static final long SLOW_CLIENT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    public static void main(String[] args) throws Exception {
+        int subscriberCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int updateCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        DiagramStreamHub hub = new DiagramStreamHub(new ObjectMapper(), new SimpleMeterRegistry(), 32, subscriberCount, 60_000);
+        hub.sessionCreated("load", 0);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        List<TimingSink> sinks = new ArrayList<>(subscriberCount);
+        CountDownLatch connected = new CountDownLatch(subscriberCount);
+        for (int i = 0; i < subscriberCount; i++) {
+            sinks.add(new TimingSink(i % 10 == 0, connected, updateCount));
+        }
+        long heapBefore = usedHeap(memory);
+        for (TimingSink sink : sinks) {
+            hub.subscribe("load", sink);
+        }
+        connected.await();
+        long heapPerSubscriber = (usedHeap(memory) - heapBefore) / subscriberCount;
+
+        List<LinkDelta> links = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            links.add(new LinkDelta("l-" + i + "-" + (i + 1), "#00ff00", "#ff0000", "10%", "90%"));
+        }
+        long[] publishedNanos = new long[updateCount + 1];
+        for (int version = 1; version <= updateCount; version++) {
+            publishedNanos[version] = System.nanoTime();
+            hub.trafficUpdated("load", new DiagramSession.TrafficDelta(version, links));
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        for (TimingSink sink : sinks) {
+            sink.done.await(30, TimeUnit.SECONDS);
+        }
+
+        long[] latencies = sinks.stream().filter(sink -> !sink.slow)
+                .flatMapToLong(sink -> Arrays.stream(sink.latencies(publishedNanos))).sorted().toArray();
+        long events = sinks.stream().mapToLong(sink -> sink.events.get()).sum();
+        System.out.printf("subscribers=%d updates=%d events=%d (%.1f%% coalesced away)%n", subscriberCount, updateCount, events,
+                100.0 - 100.0 * events / ((long) subscriberCount * (updateCount + 1)));
+        System.out.printf("fan-out latency of fast subscribers: p50=%.2fms p99=%.2fms max=%.2fms%n",
+                millis(latencies, 0.50), millis(latencies, 0.99), millis(latencies, 1.0));
+        System.out.printf("heap per subscriber: %d bytes%n", heapPerSubscriber);
+        hub.sessionClosed("load");
+    }
+
+    private static long usedHeap(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static double millis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class TimingSink implements StreamSink {
+
+        private final boolean slow;
+        private final CountDownLatch connected;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long[] receivedNanos;
+        private final AtomicLong events = new AtomicLong();
+        private final int lastVersion;
+
+        TimingSink(boolean slow, CountDownLatch connected, int lastVersion) {
+            this.slow = slow;
+            this.connected = connected;
+            this.receivedNanos = new long[lastVersion + 1];
+            this.lastVersion = lastVersion;
+        }
+
+        @Override
+        public void send(String event, long version, String data) {
+            receivedNanos[(int) version] = System.nanoTime();
+            events.incrementAndGet();
+            if (version == 0) {
+                connected.countDown();
+            } else if (slow) {
+                LockSupport.parkNanos(SLOW_CLIENT_NANOS);
+            }
+            if (version == lastVersion) {
+                done.countDown();
+            }
+        }
+
+        long[] latencies(long[] publishedNanos) {
+            return IntStream.rangeClosed(1, lastVersion)
+                    .filter(version -> receivedNanos[version] != 0)
+                    .mapToLong(version -> receivedNanos[version] - publishedNanos[version])
+                    .toArray();
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
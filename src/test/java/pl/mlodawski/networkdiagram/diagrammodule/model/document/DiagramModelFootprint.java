@@ -0,0 +1,67 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.document;
+
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptListener;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap retained per element by the nodes and links of a parsed script, as the lists of objects built by the interpreters
+ * and as the columnar model they are frozen into for drawing.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.model.document.DiagramModelFootprint
+ */
+public class DiagramModelFootprint {
+
+    public static void main(String[] args) throws InterruptedException {
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String script = TestTopologies.script(lineCount);
+
+        long empty = usedHeap();
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<NetworkLink> links = new ArrayList<>();
+        new ScriptParser().parseScript(script, new ElementCollector(nodes, links));
+        long elementCount = nodes.size() + links.size();
+        long objects = usedHeap() - empty;
+
+        DiagramModel model = DiagramModel.of(nodes, new ArrayList<>(), links);
+        nodes = null;
+        links = null;
+        long columnar = usedHeap() - empty;
+
+        System.out.printf("%d nodes, %d links%n", model.nodeCount(), model.linkCount());
+        System.out.printf("objects:  %.1f bytes per element%n", (double) objects / elementCount);
+        System.out.printf("columnar: %.1f bytes per element%n", (double) columnar / elementCount);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private record ElementCollector(List<NetworkNode> nodes, List<NetworkLink> links) implements ScriptListener {
+
+        @Override
+        public void node(NetworkNode node, int lineNumber) {
+            nodes.add(node);
+        }
+
+        @Override
+        public void superNode(SuperNode superNode, int lineNumber) {
+        }
+
+        @Override
+        public void link(NetworkLink link, int lineNumber) {
+            links.add(link);
+        }
+
+        @Override
+        public void nodeInSuperNode(String nodeId, NodePosition position, String superNodeId, int lineNumber) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramModelTest {
+
+    @Test
+    void of_KeepsListOrderAndSharesEqualStrings() {
+        NetworkNode node1 = new NetworkNode("1", 10, 20, 80, 40, "Router");
+        NetworkNode node2 = new NetworkNode("2", 200, 20, 80, 40, "Router");
+        NetworkNode node3 = new NetworkNode(null, 400, 20, 80, 40, null);
+        List<NetworkLink> links = List.of(new NetworkLink(new String("2"), new String("1"), 30, 70),
+                new NetworkLink("1", "missing", 5, 6),
+                new NetworkLink(null, "2", 7, 8));
+
+        DiagramModel model = DiagramModel.of(List.of(node1, node2, node3), new ArrayList<>(), links);
+
+        assertEquals(3, model.nodeCount());
+        assertEquals(200f, model.nodeX(1));
+        assertEquals(20f, model.nodeY(1));
+        assertEquals(80f, model.nodeWidth(1));
+        assertEquals(40f, model.nodeHeight(1));
+        assertEquals("2", model.nodeId(1));
+        assertSame(model.nodeLabel(0), model.nodeLabel(1));
+        assertNull(model.nodeId(2));
+        assertNull(model.nodeLabel(2));
+        assertEquals(4, model.stringCount());
+
+        assertEquals(3, model.linkCount());
+        assertEquals(1, model.linkSource(0));
+        assertEquals(0, model.linkTarget(0));
+        assertEquals(30f, model.linkIncomingTraffic(0));
+        assertEquals(70f, model.linkOutgoingTraffic(0));
+        assertEquals(DiagramModel.NO_NODE, model.linkTarget(1));
+        assertEquals("missing", model.linkTargetId(1));
+        assertEquals(DiagramModel.NO_NODE, model.linkSource(2));
+        assertNull(model.linkSourceId(2));
+    }
+
+    @Test
+    void of_DuplicateIdAndSuperNodeMembers_ResolvesFirstNodeAndMarksMembersByIdentity() {
+        NetworkNode first = new NetworkNode("1", 0, 0, 10, 10, "First");
+        NetworkNode duplicate = new NetworkNode("1", 5, 5, 10, 10, "Duplicate");
+        NetworkNode member = new NetworkNode("2", 0, 0, 10, 10, "Member");
+        SuperNode superNode = new SuperNode("S1", 0, 0, "Rack");
+        superNode.getTopNodes().add(member);
+        superNode.getLeftNodes().add(duplicate);
+
+        DiagramModel model = DiagramModel.of(List.of(first, duplicate, member), List.of(superNode), List.of(new NetworkLink("2", "1", 0, 0)));
+
+        assertEquals(0, model.linkTarget(0));
+        assertEquals(2, model.linkSource(0));
+        assertFalse(model.isSuperNodeMember(0));
+        assertTrue(model.isSuperNodeMember(1));
+        assertTrue(model.isSuperNodeMember(2));
+    }
+}
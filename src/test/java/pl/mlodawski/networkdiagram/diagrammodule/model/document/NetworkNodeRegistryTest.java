@@ -0,0 +1,39 @@
+package pl.mlodawski.networkdiagram.diagrammodule.model.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkNodeRegistryTest {
+
+    @Test
+    void of_AssignsDenseIndexesInListOrder() {
+        NetworkNode node1 = new NetworkNode("1", 0, 0, 10, 10, "Node1");
+        NetworkNode node2 = new NetworkNode("7", 0, 0, 10, 10, "Node7");
+
+        NetworkNodeRegistry registry = NetworkNodeRegistry.of(List.of(node1, node2));
+
+        assertEquals(2, registry.size());
+        assertEquals(0, registry.indexOf("1"));
+        assertEquals(1, registry.indexOf("7"));
+        assertSame(node2, registry.findById("7"));
+        assertEquals(NetworkNodeRegistry.NOT_FOUND, registry.indexOf("2"));
+        assertNull(registry.findById("2"));
+    }
+
+    @Test
+    void register_DuplicateId_KeepsFirstNode() {
+        NetworkNode first = new NetworkNode("1", 0, 0, 10, 10, "First");
+        NetworkNode duplicate = new NetworkNode("1", 5, 5, 10, 10, "Duplicate");
+        NetworkNodeRegistry registry = new NetworkNodeRegistry(2);
+
+        registry.register(first);
+        int index = registry.register(duplicate);
+
+        assertEquals(0, index);
+        assertEquals(1, registry.size());
+        assertSame(first, registry.findById("1"));
+    }
+}
@@ -0,0 +1,104 @@
+package pl.mlodawski.networkdiagram.diagrammodule.networkcontroller;
+
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderRejectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedResponseTest {
+
+    @Test
+    void writeTo_DocumentWithinCacheLimit_IsWrittenInOrderAndCached() throws IOException {
+        byte[] document = document(100_000);
+        ChunkedResponse response = new ChunkedResponse(1 << 20);
+        CompletableFuture<byte[]> drawn = new CompletableFuture<>();
+        AtomicInteger firstChunks = new AtomicInteger();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        response.draw("test-draw", () -> writeInPieces(response, document), drawn::complete);
+        long bytesWritten = response.writeTo(outputStream, firstChunks::incrementAndGet);
+
+        assertArrayEquals(document, outputStream.toByteArray());
+        assertEquals(document.length, bytesWritten);
+        assertEquals(1, firstChunks.get());
+        assertArrayEquals(document, drawn.orTimeout(5, TimeUnit.SECONDS).join());
+    }
+
+    @Test
+    void writeTo_DocumentOverCacheLimit_IsWrittenButNotCached() throws Exception {
+        byte[] document = document(100_000);
+        ChunkedResponse response = new ChunkedResponse(50_000);
+        CompletableFuture<byte[]> drawn = new CompletableFuture<>();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        response.draw("test-draw", () -> writeInPieces(response, document), drawn::complete);
+        response.writeTo(outputStream);
+
+        assertArrayEquals(document, outputStream.toByteArray());
+        Thread.sleep(100);
+        assertFalse(drawn.isDone());
+    }
+
+    @Test
+    void writeTo_DrawingRejected_RethrowsTheRejection() {
+        ChunkedResponse response = new ChunkedResponse(1 << 20);
+
+        response.draw("test-draw", () -> {
+            throw new RenderRejectedException("busy");
+        }, document -> fail("Rejected drawing cached"));
+
+        RenderRejectedException error = assertThrows(RenderRejectedException.class, () -> response.writeTo(new ByteArrayOutputStream()));
+        assertEquals("busy", error.getMessage());
+    }
+
+    @Test
+    void writeTo_ClientGone_StopsTheDrawing() {
+        ChunkedResponse response = new ChunkedResponse(1 << 20);
+        CompletableFuture<Throwable> stopped = new CompletableFuture<>();
+        OutputStream closedClient = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        response.draw("test-draw", () -> {
+            try {
+                while (true) {
+                    response.write(new byte[4096]);
+                }
+            } catch (IOException e) {
+                stopped.complete(e);
+            }
+        }, document -> fail("Abandoned drawing cached"));
+
+        assertThrows(IOException.class, () -> response.writeTo(closedClient));
+        assertTrue(stopped.orTimeout(5, TimeUnit.SECONDS).join() instanceof IOException);
+    }
+
+    private static byte[] document(int length) {
+        byte[] document = new byte[length];
+        for (int i = 0; i < length; i++) {
+            document[i] = (byte) (i * 31);
+        }
+        return document;
+    }
+
+    private static void writeInPieces(OutputStream outputStream, byte[] document) {
+        try {
+            for (int offset = 0, piece = 1; offset < document.length; offset += piece, piece = piece * 3 % 7001 + 1) {
+                outputStream.write(document, offset, Math.min(piece, document.length - offset));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.DrawingServices;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void drawDocument_EveryDrawingStage_IsTimedOnce() {
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(meterRegistry, 0);
+        NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512, pipelineMetrics);
+        List<NetworkNode> nodes = TestTopologies.gridNodes(50);
+        RenderTheme theme = TestTopologies.defaultTheme();
+
+        networkDrawingService.drawDocument(nodes, new ArrayList<>(), TestTopologies.gridLinks(nodes), theme, new SvgDocumentWriter(new ByteArrayOutputStream()));
+
+        for (PipelineStage stage : List.of(PipelineStage.SUPER_NODE_LAYOUT, PipelineStage.DOCUMENT, PipelineStage.LINKS, PipelineStage.NODES,
+                PipelineStage.SUPER_NODES, PipelineStage.LEGEND, PipelineStage.SERIALIZE)) {
+            assertEquals(1, meterRegistry.find("diagram.pipeline.stage").tags("stage", stage.getTag()).timer().count(), stage.getTag());
+        }
+        assertEquals(0, meterRegistry.find("diagram.pipeline.stage").tags("stage", PipelineStage.PARSE.getTag()).timer().count());
+    }
+
+    @Test
+    void sampleLog_RateOfThree_SamplesEveryThirdCall() {
+        PipelineMetrics sampled = new PipelineMetrics(meterRegistry, 3);
+        PipelineMetrics silent = new PipelineMetrics(new SimpleMeterRegistry(), 0);
+
+        List<Boolean> samples = IntStream.range(0, 7).mapToObj(i -> sampled.sampleLog()).toList();
+
+        assertEquals(List.of(true, false, false, true, false, false, true), samples);
+        assertFalse(silent.sampleLog());
+        assertThrows(IllegalArgumentException.class, () -> new PipelineMetrics(meterRegistry, -1));
+    }
+}
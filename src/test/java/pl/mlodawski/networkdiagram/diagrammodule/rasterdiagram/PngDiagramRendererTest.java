@@ -0,0 +1,81 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram;
+
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.DrawingServices;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PngDiagramRendererTest {
+
+    private final NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+
+    @Test
+    void render_ManyBands_IsPixelIdenticalToSingleBand() throws IOException {
+        RenderPool singleThread = new RenderPool(1);
+        RenderPool fourThreads = new RenderPool(4);
+        PngDiagramRenderer singleBand = new PngDiagramRenderer(networkDrawingService, singleThread, Long.MAX_VALUE, 100_000_000, 6);
+        PngDiagramRenderer manyBands = new PngDiagramRenderer(networkDrawingService, fourThreads, 4096, 100_000_000, 6);
+
+        BufferedImage expected = render(singleBand, RasterOptions.of(1.5f, null));
+        BufferedImage actual = render(manyBands, RasterOptions.of(1.5f, null));
+
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertArrayEquals(pixels(expected), pixels(actual));
+        assertTrue(Arrays.stream(pixels(actual)).distinct().count() > 2);
+        singleThread.getPool().shutdown();
+        fourThreads.getPool().shutdown();
+    }
+
+    @Test
+    void render_ScaleAndDpi_ScaleTheImage() throws IOException {
+        RenderPool renderPool = new RenderPool(2);
+        PngDiagramRenderer renderer = new PngDiagramRenderer(networkDrawingService, renderPool, 65536, 100_000_000, 1);
+
+        BufferedImage documentSize = render(renderer, RasterOptions.of(null, null));
+        BufferedImage doubled = render(renderer, RasterOptions.of(1f, 192));
+
+        assertEquals(documentSize.getWidth() * 2, doubled.getWidth());
+        assertEquals(documentSize.getHeight() * 2, doubled.getHeight());
+        renderPool.getPool().shutdown();
+    }
+
+    @Test
+    void render_OverPixelLimitOrInvalidOptions_Rejected() {
+        RenderPool renderPool = new RenderPool(1);
+        PngDiagramRenderer renderer = new PngDiagramRenderer(networkDrawingService, renderPool, 65536, 1000, 6);
+
+        assertThrows(IllegalArgumentException.class, () -> render(renderer, RasterOptions.of(null, null)));
+        assertThrows(IllegalArgumentException.class, () -> RasterOptions.of(0f, null));
+        assertThrows(IllegalArgumentException.class, () -> RasterOptions.of(null, 5000));
+        renderPool.getPool().shutdown();
+    }
+
+    private BufferedImage render(PngDiagramRenderer renderer, RasterOptions options) throws IOException {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(60);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        renderer.render(nodes, new ArrayList<>(), TestTopologies.gridLinks(nodes), TestTopologies.defaultTheme(), options, outputStream);
+        return ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,55 @@
+package pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderBulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void execute_AllPermitsTaken_RejectsAfterQueueTimeout() throws InterruptedException {
+        RenderBulkhead bulkhead = new RenderBulkhead(meterRegistry, 1, 50);
+        CountDownLatch drawing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> bulkhead.run(() -> {
+            drawing.countDown();
+            awaitQuietly(release);
+        }));
+        assertTrue(drawing.await(5, TimeUnit.SECONDS));
+
+        assertThrows(RenderRejectedException.class, () -> bulkhead.execute(() -> "late"));
+        assertEquals(1.0, meterRegistry.find("diagram.render.bulkhead.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.find("diagram.render.bulkhead.active").gauge().value());
+
+        release.countDown();
+        holder.join();
+        assertEquals("next", bulkhead.execute(() -> "next"));
+        assertEquals(0, bulkhead.getQueued());
+    }
+
+    @Test
+    void execute_DrawingFails_ReleasesThePermit() {
+        RenderBulkhead bulkhead = new RenderBulkhead(meterRegistry, 1, 0);
+
+        assertThrows(IllegalStateException.class, () -> bulkhead.run(() -> {
+            throw new IllegalStateException("broken");
+        }));
+
+        assertEquals(2, bulkhead.execute(() -> 2));
+        assertEquals(0.0, meterRegistry.find("diagram.render.bulkhead.active").gauge().value());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.DrawingServices;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+import pl.mlodawski.networkdiagram.diagrammodule.theme.RenderTheme;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the request execution models under a closed-loop load of many clients.
+ * A request reads its body, draws the document and writes the response, the reads and writes are simulated with sleeps.
+ * The platform model runs requests on a pool of 200 platform threads like the default Tomcat connector,
+ * the virtual model runs every request on a virtual thread and draws behind a {@link RenderBulkhead} sized to the cores.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderExecutionBenchmark -Dexec.args="1000 10 400 20"
+ */
+public class RenderExecutionBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nodeCount = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        long ioMillis = args.length > 3 ? Long.parseLong(args[3]) : 20;
+
+        NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+        List<NetworkNode> nodes = TestTopologies.gridNodes(nodeCount);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        RenderTheme theme = TestTopologies.defaultTheme();
+        Runnable drawing = () -> networkDrawingService.drawDocument(nodes, new ArrayList<>(), links, theme, new SvgDocumentWriter(OutputStream.nullOutputStream()));
+        for (int i = 0; i < 200; i++) {
+            drawing.run();
+        }
+
+        RenderBulkhead bulkhead = new RenderBulkhead(new SimpleMeterRegistry(), 0, TimeUnit.SECONDS.toMillis(seconds));
+        System.out.printf("clients=%d nodes=%d io=%dms cores=%d%n", clients, nodeCount, ioMillis, Runtime.getRuntime().availableProcessors());
+        try (ExecutorService platform = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS)) {
+            report("platform pool of " + TOMCAT_MAX_THREADS, run(platform, clients, seconds, () -> request(ioMillis, drawing)));
+        }
+        try (ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+            report("virtual threads, bulkhead of " + bulkhead.getMaxConcurrent(), run(virtual, clients, seconds, () -> request(ioMillis, () -> bulkhead.run(drawing))));
+        }
+    }
+
+    private static void request(long ioMillis, Runnable drawing) {
+        sleep(ioMillis / 2);
+        drawing.run();
+        sleep(ioMillis - ioMillis / 2);
+    }
+
+    private static Result run(ExecutorService server, int clients, int seconds, Runnable request) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<long[]> latencies = new ArrayList<>(clients);
+        List<Thread> clientThreads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            long[] clientLatencies = new long[1 << 16];
+            latencies.add(clientLatencies);
+            clientThreads.add(Thread.ofVirtual().start(() -> {
+                int count = 0;
+                while (System.nanoTime() < deadline && count < clientLatencies.length - 1) {
+                    long start = System.nanoTime();
+                    Future<?> response = server.submit(request);
+                    try {
+                        response.get();
+                    } catch (Exception e) {
+                        return;
+                    }
+                    clientLatencies[++count] = System.nanoTime() - start;
+                }
+                clientLatencies[0] = count;
+            }));
+        }
+        for (Thread clientThread : clientThreads) {
+            clientThread.join();
+        }
+        long total = latencies.stream().mapToLong(clientLatencies -> clientLatencies[0]).sum();
+        long[] all = new long[(int) total];
+        int position = 0;
+        for (long[] clientLatencies : latencies) {
+            System.arraycopy(clientLatencies, 1, all, position, (int) clientLatencies[0]);
+            position += (int) clientLatencies[0];
+        }
+        Arrays.sort(all);
+        return new Result(total / (double) seconds, all);
+    }
+
+    private static void report(String model, Result result) {
+        System.out.printf("%-32s throughput=%8.1f req/s p50=%8.2fms p99=%8.2fms%n", model, result.throughput(),
+                millis(result.sortedLatencies(), 0.50), millis(result.sortedLatencies(), 0.99));
+    }
+
+    private static double millis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Result(double throughput, long[] sortedLatencies) {
+    }
+}
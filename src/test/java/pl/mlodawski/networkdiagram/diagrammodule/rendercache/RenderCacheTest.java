@@ -0,0 +1,50 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rendercache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void put_OverMaxBytes_EvictsLeastRecentlyUsed() {
+        RenderCache renderCache = new RenderCache(meterRegistry, 3 * 1200, 1000);
+        renderCache.put("a", new byte[1000]);
+        renderCache.put("b", new byte[1000]);
+        renderCache.put("c", new byte[1000]);
+        renderCache.get("a");
+
+        renderCache.put("d", new byte[1000]);
+
+        assertNotNull(renderCache.get("a"));
+        assertNull(renderCache.get("b"));
+        assertNotNull(renderCache.get("d"));
+        assertTrue(renderCache.getBytes() <= 3 * 1200);
+        assertEquals(1.0, meterRegistry.find("diagram.render.cache.evictions").counter().count());
+        assertEquals(0.75, meterRegistry.find("diagram.render.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void put_DocumentOverEntryLimit_IsNotCached() {
+        RenderCache renderCache = new RenderCache(meterRegistry, 1 << 20, 16);
+
+        renderCache.put("small", new byte[16]);
+        renderCache.put("large", new byte[17]);
+
+        assertNotNull(renderCache.get("small"));
+        assertNull(renderCache.get("large"));
+        assertEquals(1, renderCache.size());
+    }
+
+    @Test
+    void matches_IfNoneMatchHeader_ComparesEntityTags() {
+        assertTrue(RenderCache.matches("\"abc\"", "abc"));
+        assertTrue(RenderCache.matches("\"x\", W/\"abc\"", "abc"));
+        assertTrue(RenderCache.matches("*", "abc"));
+        assertFalse(RenderCache.matches("\"abcd\"", "abc"));
+        assertFalse(RenderCache.matches(null, "abc"));
+    }
+}
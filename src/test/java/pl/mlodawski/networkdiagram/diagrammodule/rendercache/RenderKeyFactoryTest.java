@@ -0,0 +1,50 @@
+package pl.mlodawski.networkdiagram.diagrammodule.rendercache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkDiagramCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.FontStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgCanvasFactory;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class RenderKeyFactoryTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RenderKeyFactory renderKeyFactory = new RenderKeyFactory(new SvgCanvasFactory(SvgRenderMode.STREAMING));
+
+    @Test
+    void forCommand_SameContentInOtherOrder_ReturnsSameKey() throws Exception {
+        NetworkDiagramCommand first = objectMapper.readValue("""
+                {"nodes": [{"id": "1", "label": "A", "position": {"x": 10, "y": 20}}], "links": []}""", NetworkDiagramCommand.class);
+        NetworkDiagramCommand second = objectMapper.readValue("""
+                {"links": [], "nodes": [{"position": {"y": 20, "x": 10}, "label": "A", "id": "1"}]}""", NetworkDiagramCommand.class);
+
+        assertEquals(renderKeyFactory.forCommand(first, TestTopologies.defaultTheme()), renderKeyFactory.forCommand(second, TestTopologies.defaultTheme()));
+    }
+
+    @Test
+    void forScript_OtherThemeOrRenderMode_ReturnsOtherKey() {
+        String script = "node 1 at 10,20 label A";
+        String key = renderKeyFactory.forScript(script, TestTopologies.defaultTheme());
+        DocumentStyle otherStyle = new DocumentStyle("Arial", 12, "#000000", FontStyle.PLAIN, "#ffffff", "#000000", "#ffffff", ColorStrategy.RED_GREEN, true, "Other", true);
+
+        assertNotEquals(key, renderKeyFactory.forScript(script, TestTopologies.theme(otherStyle)));
+        assertNotEquals(key, new RenderKeyFactory(new SvgCanvasFactory(SvgRenderMode.INSTANCED)).forScript(script, TestTopologies.defaultTheme()));
+        assertNotEquals(key, renderKeyFactory.forScript(script + " ", TestTopologies.defaultTheme()));
+        MessageDigest utf8Digest = renderKeyFactory.scriptDigest(StandardCharsets.UTF_8, TestTopologies.defaultTheme());
+        utf8Digest.update(script.getBytes(StandardCharsets.UTF_8));
+        assertEquals(key, renderKeyFactory.forScript(utf8Digest));
+        MessageDigest latin1Digest = renderKeyFactory.scriptDigest(StandardCharsets.ISO_8859_1, TestTopologies.defaultTheme());
+        latin1Digest.update(script.getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(key, renderKeyFactory.forScript(latin1Digest));
+    }
+}
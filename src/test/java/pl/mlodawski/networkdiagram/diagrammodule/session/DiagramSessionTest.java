@@ -0,0 +1,183 @@
+package pl.mlodawski.networkdiagram.diagrammodule.session;
+
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.DrawingServices;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.ElementIds;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.LinkDelta;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramPatchCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkNodeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.PositionJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.SizeJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgDocumentWriter;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramSessionTest {
+
+    private final NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+    private final DiagramSessionService diagramSessionService = new DiagramSessionService(networkDrawingService, new DiagramSessionListener() { }, 4);
+
+    @Test
+    void apply_TrafficUpdate_RedrawsOnlyChangedLinks() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(300);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+
+        float outgoingTraffic = links.get(0).getOutgoingTraffic() + 50;
+        DiagramPatchCommand patch = new DiagramPatchCommand();
+        patch.setNetworkLinks(List.of(
+                link(links.get(0), outgoingTraffic, links.get(0).getIncomingTraffic()),
+                link(links.get(1), links.get(1).getOutgoingTraffic(), links.get(1).getIncomingTraffic())));
+        int redrawn = session.apply(patch);
+
+        assertEquals(1, redrawn);
+        assertEquals(1, session.getVersion());
+        links.get(0).setOutgoingTraffic(outgoingTraffic);
+        assertArrayEquals(render(nodes, links), session.document().svg());
+    }
+
+    @Test
+    void apply_TrafficWithinSameColorAndLabel_KeepsVersion() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(4);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        links.get(0).setOutgoingTraffic(40.0f);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+        byte[] document = session.document().svg();
+
+        DiagramPatchCommand patch = new DiagramPatchCommand();
+        patch.setNetworkLinks(List.of(link(links.get(0), 40.01f, links.get(0).getIncomingTraffic())));
+
+        assertEquals(0, session.apply(patch));
+        assertEquals(0, session.getVersion());
+        assertSame(document, session.document().svg());
+    }
+
+    @Test
+    void apply_TopologyEdit_MatchesFullRender() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(20);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+
+        NetworkNodeJson newNode = new NetworkNodeJson();
+        newNode.setId("new");
+        newNode.setPosition(position(20, 300));
+        newNode.setSize(size(80, 40));
+        newNode.setLabel("New");
+        NetworkNodeJson movedNode = new NetworkNodeJson();
+        movedNode.setId("2");
+        movedNode.setPosition(position(170, 200));
+        DiagramPatchCommand patch = new DiagramPatchCommand();
+        patch.setNetworkNodes(List.of(newNode, movedNode));
+        patch.setNetworkLinks(List.of(link("new", "1", 10, 90)));
+        patch.setRemovedNodeIds(List.of("20"));
+        patch.setRemovedLinks(List.of(link(links.get(0).getSourceNodeId(), links.get(0).getTargetNodeId(), 0, 0)));
+        session.apply(patch);
+
+        List<NetworkNode> expectedNodes = TestTopologies.gridNodes(19);
+        expectedNodes.get(1).setY(200);
+        expectedNodes.add(new NetworkNode("new", 20, 300, 80, 40, "New"));
+        List<NetworkLink> expectedLinks = new ArrayList<>(links.subList(1, links.size()));
+        expectedLinks.removeIf(link -> link.getSourceNodeId().equals("20") || link.getTargetNodeId().equals("20"));
+        expectedLinks.add(new NetworkLink("new", "1", 90, 10));
+        assertArrayEquals(render(expectedNodes, expectedLinks), session.document().svg());
+    }
+
+    @Test
+    void updateTraffic_DescribesOnlyChangedLinksAndMatchesFullRender() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(300);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+
+        float incomingTraffic = links.get(5).getIncomingTraffic() < 50 ? 100 : 0;
+        DiagramSession.TrafficDelta delta = session.updateTraffic(List.of(
+                link(links.get(5), links.get(5).getOutgoingTraffic(), incomingTraffic),
+                link(links.get(6), links.get(6).getOutgoingTraffic(), links.get(6).getIncomingTraffic())));
+
+        assertEquals(1, delta.version());
+        assertEquals(1, delta.links().size());
+        LinkDelta linkDelta = delta.links().getFirst();
+        assertEquals(ElementIds.links(links)[5], linkDelta.id());
+        assertEquals(TestTopologies.defaultTheme().getLinkPalette().getHexColor(incomingTraffic), linkDelta.incomingFill());
+        assertEquals((int) incomingTraffic + "%", linkDelta.incomingLabel());
+        links.get(5).setIncomingTraffic(incomingTraffic);
+        assertArrayEquals(render(nodes, links), session.document().svg());
+        assertThrows(IllegalArgumentException.class, () -> session.updateTraffic(List.of(link("1", "300", 1, 1))));
+    }
+
+    @Test
+    void updateTraffic_ParallelLinks_UpdatesOnlyTheLinkWithTheId() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(4);
+        List<NetworkLink> links = new ArrayList<>(TestTopologies.gridLinks(nodes));
+        links.add(new NetworkLink(links.get(0).getSourceNodeId(), links.get(0).getTargetNodeId(), 10, 10));
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+        String parallelId = ElementIds.links(links)[links.size() - 1];
+        NetworkLinkJson parallel = link(links.getLast(), 95, 10);
+        parallel.setLinkId(parallelId);
+
+        assertThrows(IllegalArgumentException.class, () -> session.updateTraffic(List.of(link(links.getFirst(), 95, 10))));
+        DiagramSession.TrafficDelta delta = session.updateTraffic(List.of(parallel));
+
+        assertEquals(List.of(parallelId), delta.links().stream().map(LinkDelta::id).toList());
+        links.getLast().setOutgoingTraffic(95);
+        assertArrayEquals(render(nodes, links), session.document().svg());
+    }
+
+    @Test
+    void apply_InvalidPatch_ThrowsAndKeepsSession() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(4);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+        byte[] document = session.document().svg();
+
+        DiagramPatchCommand patch = new DiagramPatchCommand();
+        patch.setRemovedNodeIds(List.of("1"));
+        patch.setNetworkLinks(List.of(link("1", "2", 100, 100)));
+
+        assertThrows(IllegalArgumentException.class, () -> session.apply(patch));
+        assertSame(document, session.document().svg());
+        assertThrows(UnknownSessionException.class, () -> diagramSessionService.get("missing"));
+    }
+
+    private byte[] render(List<NetworkNode> nodes, List<NetworkLink> links) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        networkDrawingService.drawDocument(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme(), new SvgDocumentWriter(outputStream));
+        return outputStream.toByteArray();
+    }
+
+    private PositionJson position(float x, float y) {
+        PositionJson position = new PositionJson();
+        position.setX(x);
+        position.setY(y);
+        return position;
+    }
+
+    private SizeJson size(float width, float height) {
+        SizeJson size = new SizeJson();
+        size.setWidth(width);
+        size.setHeight(height);
+        return size;
+    }
+
+    private NetworkLinkJson link(NetworkLink link, float txTraffic, float rxTraffic) {
+        return link(link.getSourceNodeId(), link.getTargetNodeId(), txTraffic, rxTraffic);
+    }
+
+    private NetworkLinkJson link(String sourceNodeId, String targetNodeId, float txTraffic, float rxTraffic) {
+        NetworkLinkJson linkJson = new NetworkLinkJson();
+        linkJson.setSourceNodeId(sourceNodeId);
+        linkJson.setTargetNodeId(targetNodeId);
+        linkJson.setTxTraffic(txTraffic);
+        linkJson.setRxTraffic(rxTraffic);
+        return linkJson;
+    }
+}
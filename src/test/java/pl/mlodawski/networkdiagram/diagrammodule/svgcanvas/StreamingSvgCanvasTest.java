@@ -0,0 +1,83 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingSvgCanvasTest {
+
+    @Test
+    void fillRect_WritesRectWithFillColor() {
+        // Arrange
+        StringBuilder target = new StringBuilder();
+        SvgCanvas svgCanvas = new StreamingSvgCanvas(target);
+
+        // Act
+        svgCanvas.begin(100, 100);
+        svgCanvas.setPaint(new Color(255, 0, 16));
+        svgCanvas.fillRect(1, 2, 30, 40);
+        svgCanvas.end();
+
+        // Assert
+        assertEquals("<rect x=\"1\" y=\"2\" width=\"30\" height=\"40\" fill=\"#ff0010\"/>", target.toString());
+    }
+
+    @Test
+    void draw_WritesPathWithStroke() {
+        // Arrange
+        StringBuilder target = new StringBuilder();
+        SvgCanvas svgCanvas = new StreamingSvgCanvas(target);
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(0.5f, 1.25f);
+        path.lineTo(10.0f, 20.0f);
+        path.closePath();
+
+        // Act
+        svgCanvas.begin(100, 100);
+        svgCanvas.setStroke(new BasicStroke(3));
+        svgCanvas.draw(path);
+        svgCanvas.end();
+
+        // Assert
+        assertEquals("<path d=\"M0.5 1.25L10 20Z\" fill=\"none\" stroke=\"#000000\" stroke-width=\"3\"/>", target.toString());
+    }
+
+    @Test
+    void drawString_EscapesText() {
+        // Arrange
+        StringBuilder target = new StringBuilder();
+        SvgCanvas svgCanvas = new StreamingSvgCanvas(target);
+
+        // Act
+        svgCanvas.begin(100, 100);
+        svgCanvas.setFont(new Font("Arial", Font.BOLD, 12));
+        svgCanvas.drawString("a<b & \"c\"", 5, 6);
+        svgCanvas.end();
+
+        // Assert
+        assertTrue(target.toString().contains(">a&lt;b &amp; &quot;c&quot;</text>"));
+        assertTrue(target.toString().contains("font-weight=\"bold\""));
+    }
+
+    @Test
+    void begin_ResetsStateOfPreviousElement() {
+        // Arrange
+        StringBuilder target = new StringBuilder();
+        SvgCanvas svgCanvas = new StreamingSvgCanvas(target);
+        svgCanvas.begin(100, 100);
+        svgCanvas.setPaint(Color.RED);
+        svgCanvas.end();
+
+        // Act
+        svgCanvas.begin(100, 100);
+        svgCanvas.fillRect(0, 0, 1, 1);
+        svgCanvas.end();
+
+        // Assert
+        assertTrue(target.toString().contains("fill=\"#000000\""));
+    }
+}
@@ -0,0 +1,43 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SvgDocumentWriterTest {
+
+    @Test
+    void flushIfFull_KeepsSmallContentBuffered() {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        SvgDocumentWriter documentWriter = new SvgDocumentWriter(outputStream);
+        documentWriter.buffer().append("<svg>");
+
+        // Act
+        documentWriter.flushIfFull();
+
+        // Assert
+        assertEquals(0, outputStream.size());
+        assertEquals(0, documentWriter.getFirstByteNanos());
+    }
+
+    @Test
+    void flush_WritesUtf8AndCountsBytes() {
+        // Arrange
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        SvgDocumentWriter documentWriter = new SvgDocumentWriter(outputStream);
+        documentWriter.buffer().append("<text>Łódź</text>");
+
+        // Act
+        documentWriter.flush();
+
+        // Assert
+        assertEquals("<text>Łódź</text>", outputStream.toString(StandardCharsets.UTF_8));
+        assertEquals(outputStream.size(), documentWriter.getBytesWritten());
+        assertTrue(documentWriter.getFirstByteNanos() > 0);
+    }
+}
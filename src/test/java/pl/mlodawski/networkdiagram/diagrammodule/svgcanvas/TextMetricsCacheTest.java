@@ -0,0 +1,57 @@
+package pl.mlodawski.networkdiagram.diagrammodule.svgcanvas;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextMetricsCacheTest {
+
+    private final FontMetrics referenceMetrics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics()
+            .getFontMetrics(new Font("Arial", Font.BOLD, 14));
+
+    @Test
+    void metrics_SameFont_ReturnsSharedInstance() {
+        TextMetricsCache cache = new TextMetricsCache(16);
+
+        assertSame(cache.metrics("Arial", Font.BOLD, 14), cache.metrics("Arial", Font.BOLD, 14));
+        assertNotSame(cache.metrics("Arial", Font.BOLD, 14), cache.metrics("Arial", Font.PLAIN, 14));
+    }
+
+    @Test
+    void metrics_UnknownStyle_FallsBackToPlain() {
+        TextMetricsCache cache = new TextMetricsCache(16);
+
+        assertSame(cache.metrics("Arial", Font.PLAIN, 12), cache.metrics("Arial", 8, 12));
+    }
+
+    @Test
+    void stringWidth_MatchesFontMetrics() {
+        TextMetricsCache.FontTextMetrics metrics = new TextMetricsCache(1).metrics("Arial", Font.BOLD, 14);
+
+        assertEquals(referenceMetrics.stringWidth("Router"), metrics.stringWidth("Router"));
+        assertEquals(referenceMetrics.stringWidth("Switch"), metrics.stringWidth("Switch"));
+        assertEquals(referenceMetrics.stringWidth("42%"), metrics.percentLabelWidth(42));
+        assertEquals(referenceMetrics.stringWidth("150%"), metrics.percentLabelWidth(150));
+        assertEquals(referenceMetrics.getAscent() - referenceMetrics.getDescent(), metrics.getTextHeight());
+    }
+
+    @Test
+    void fontMetrics_MeasuredFromManyThreads_MatchesFontMetrics() {
+        int expected = referenceMetrics.stringWidth("Router");
+
+        assertTrue(IntStream.range(0, 10_000).parallel()
+                .allMatch(i -> TextMetricsCache.fontMetrics(new Font("Arial", Font.BOLD, 14)).stringWidth("Router") == expected));
+        assertSame(TextMetricsCache.fontMetrics(new Font("Arial", Font.BOLD, 14)), TextMetricsCache.fontMetrics(new Font("Arial", Font.BOLD, 14)));
+    }
+
+    @Test
+    void percentLabel_InRange_IsShared() {
+        assertSame(TextMetricsCache.percentLabel(42), TextMetricsCache.percentLabel(42));
+        assertEquals("42%", TextMetricsCache.percentLabel(42));
+        assertEquals("-3%", TextMetricsCache.percentLabel(-3));
+    }
+}
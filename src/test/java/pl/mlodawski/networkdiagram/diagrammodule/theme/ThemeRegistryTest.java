@@ -0,0 +1,88 @@
+package pl.mlodawski.networkdiagram.diagrammodule.theme;
+
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.ColorStrategy;
+import pl.mlodawski.networkdiagram.diagrammodule.linkcolorizes.LinkPaletteCache;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.DocumentStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.FontStyle;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.TextMetricsCache;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeRegistryTest {
+
+    private final ThemeRegistry themeRegistry = new ThemeRegistry(new TextMetricsCache(1024), new LinkPaletteCache(16), 4, 2);
+
+    @Test
+    void compile_SameContent_ReturnsSharedTheme() {
+        RenderTheme first = themeRegistry.compile(style("#FFFFFF"));
+        RenderTheme second = themeRegistry.compile(style("#ffffff"));
+
+        assertSame(first, second);
+        assertEquals(Color.WHITE, first.getNodeColor());
+        assertEquals("#ffffff", first.getBackgroundHex());
+    }
+
+    @Test
+    void resolve_ByNameOrHash_ReturnsRegisteredTheme() {
+        RenderTheme theme = themeRegistry.register("dark", style("#202020"));
+
+        assertSame(theme, themeRegistry.resolve("dark"));
+        assertSame(theme, themeRegistry.resolve(theme.getHash()));
+        assertNotSame(theme, themeRegistry.compile(style("#303030")));
+    }
+
+    @Test
+    void register_BuiltInOrHashName_IsRejected() {
+        RenderTheme defaultTheme = themeRegistry.defaultTheme();
+
+        assertThrows(IllegalArgumentException.class, () -> themeRegistry.register(ThemeRegistry.DEFAULT_THEME, style("#202020")));
+        assertThrows(IllegalArgumentException.class, () -> themeRegistry.register(defaultTheme.getHash(), style("#202020")));
+        assertSame(defaultTheme, themeRegistry.resolve(ThemeRegistry.DEFAULT_THEME));
+        assertSame(defaultTheme, themeRegistry.resolve(defaultTheme.getHash()));
+    }
+
+    @Test
+    void compile_FullCache_DropsLeastRecentlyUsedAndKeepsTheNewHash() {
+        RenderTheme first = themeRegistry.compile(style("#000001"));
+        RenderTheme second = themeRegistry.compile(style("#000002"));
+        themeRegistry.compile(style("#000003"));
+        themeRegistry.compile(style("#000004"));
+        themeRegistry.resolve(first.getHash());
+
+        RenderTheme fifth = themeRegistry.compile(style("#000005"));
+
+        assertSame(fifth, themeRegistry.resolve(fifth.getHash()));
+        assertSame(first, themeRegistry.resolve(first.getHash()));
+        assertThrows(IllegalArgumentException.class, () -> themeRegistry.resolve(second.getHash()));
+    }
+
+    @Test
+    void register_MoreNamesThanAllowed_DropsLeastRecentlyUsedName() {
+        themeRegistry.register("first", style("#000001"));
+        themeRegistry.register("second", style("#000002"));
+        themeRegistry.resolve("first");
+
+        themeRegistry.register("third", style("#000003"));
+
+        themeRegistry.resolve("first");
+        themeRegistry.resolve("third");
+        assertThrows(IllegalArgumentException.class, () -> themeRegistry.resolve("second"));
+    }
+
+    @Test
+    void resolve_UnknownReference_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> themeRegistry.resolve("missing"));
+    }
+
+    @Test
+    void compile_InvalidColor_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> themeRegistry.compile(style("white")));
+    }
+
+    private DocumentStyle style(String nodeColor) {
+        return new DocumentStyle("Arial", 12, "#000000", FontStyle.PLAIN, "#FFFFFF", "#000000", nodeColor, ColorStrategy.COLD, true, "Title", true);
+    }
+}
@@ -0,0 +1,47 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpatialIndexTest {
+
+    @Test
+    void search_RandomBoxes_FindsTheSameItemsAsFullScan() {
+        Random random = new Random(7);
+        float[] boxes = new float[5000 * 4];
+        for (int i = 0; i < 5000; i++) {
+            float x = random.nextFloat() * 10_000;
+            float y = random.nextFloat() * 10_000;
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + random.nextFloat() * (i % 10 == 0 ? 3000 : 100);
+            boxes[i * 4 + 3] = y + random.nextFloat() * 100;
+        }
+        SpatialIndex index = SpatialIndex.of(boxes);
+
+        for (int query = 0; query < 200; query++) {
+            Rectangle2D area = new Rectangle2D.Float(random.nextFloat() * 10_000, random.nextFloat() * 10_000, random.nextFloat() * 2000, random.nextFloat() * 2000);
+            int[] expected = IntStream.range(0, 5000)
+                    .filter(i -> boxes[i * 4] <= area.getMaxX() && boxes[i * 4 + 2] >= area.getMinX()
+                            && boxes[i * 4 + 1] <= area.getMaxY() && boxes[i * 4 + 3] >= area.getMinY())
+                    .toArray();
+            assertArrayEquals(expected, index.search(area));
+        }
+    }
+
+    @Test
+    void search_EmptyOrSingleItem() {
+        assertEquals(0, SpatialIndex.of(new float[0]).search(new Rectangle2D.Float(0, 0, 100, 100)).length);
+
+        SpatialIndex single = SpatialIndex.of(new float[]{10, 10, 20, 20});
+
+        assertArrayEquals(new int[]{0}, single.search(new Rectangle2D.Float(15, 15, 100, 100)));
+        assertEquals(0, single.search(new Rectangle2D.Float(30, 30, 100, 100)).length);
+    }
+}
@@ -0,0 +1,120 @@
+package pl.mlodawski.networkdiagram.diagrammodule.tilepyramid;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.TestTopologies;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.DrawingServices;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.ElementIds;
+import pl.mlodawski.networkdiagram.diagrammodule.drawingdiagram.NetworkDrawingService;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.DiagramPatchCommand;
+import pl.mlodawski.networkdiagram.diagrammodule.model.command.NetworkLinkJson;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NodePosition;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.rasterdiagram.PngDiagramRenderer;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.rendercache.RenderCache;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSession;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSessionListener;
+import pl.mlodawski.networkdiagram.diagrammodule.session.DiagramSessionService;
+import pl.mlodawski.networkdiagram.diagrammodule.svgcanvas.SvgRenderMode;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileRenderServiceTest {
+
+    private final NetworkDrawingService networkDrawingService = DrawingServices.networkDrawingService(SvgRenderMode.STREAMING, 0, 1, 512);
+    private final DiagramSessionService diagramSessionService = new DiagramSessionService(networkDrawingService, new DiagramSessionListener() { }, 4);
+    private final TileRenderService tileRenderService = new TileRenderService(networkDrawingService,
+            new PngDiagramRenderer(networkDrawingService, new RenderPool(1), 1 << 20, 1 << 20, 6),
+            new RenderCache(new SimpleMeterRegistry(), 1 << 24, 1 << 20), 0.5, 4);
+
+    @Test
+    void render_MaxZoom_DrawsOnlyElementsOfTheTile() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(2000);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), TestTopologies.gridLinks(nodes), TestTopologies.defaultTheme());
+        int maxZoom = tileRenderService.scene(session).getMaxZoom();
+
+        String tile = new String(tileRenderService.render(session, maxZoom, 0, 0, TileFormat.SVG).content(), StandardCharsets.UTF_8);
+
+        assertTrue(tile.contains("viewBox=\"0.0 0.0 256.0 256.0\""));
+        assertTrue(tile.contains("id=\"" + ElementIds.node("1") + "\""));
+        assertTrue(tile.contains("id=\"" + ElementIds.node("2") + "\""));
+        assertFalse(tile.contains("id=\"" + ElementIds.node("5") + "\""));
+        assertFalse(tile.contains("id=\"" + ElementIds.node("2000") + "\""));
+    }
+
+    @Test
+    void render_AfterUpdate_DrawsTheNewVersion() throws IOException {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(200);
+        List<NetworkLink> links = TestTopologies.gridLinks(nodes);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), links, TestTopologies.defaultTheme());
+        RenderedTile first = tileRenderService.render(session, 1, 0, 0, TileFormat.PNG);
+
+        NetworkLinkJson traffic = new NetworkLinkJson();
+        traffic.setSourceNodeId(links.get(0).getSourceNodeId());
+        traffic.setTargetNodeId(links.get(0).getTargetNodeId());
+        traffic.setTxTraffic(links.get(0).getOutgoingTraffic() + 60);
+        traffic.setRxTraffic(links.get(0).getIncomingTraffic());
+        DiagramPatchCommand patch = new DiagramPatchCommand();
+        patch.setNetworkLinks(List.of(traffic));
+        session.apply(patch);
+        RenderedTile second = tileRenderService.render(session, 1, 0, 0, TileFormat.PNG);
+
+        assertNotEquals(first.renderKey(), second.renderKey());
+        assertEquals(second.renderKey(), tileRenderService.render(session, 1, 0, 0, TileFormat.PNG).renderKey());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(second.content()));
+        assertEquals(TileScene.TILE_SIZE, image.getWidth());
+        assertEquals(TileScene.TILE_SIZE, image.getHeight());
+    }
+
+    @Test
+    void render_OutsideOfThePyramid_Rejected() {
+        List<NetworkNode> nodes = TestTopologies.gridNodes(10);
+        DiagramSession session = diagramSessionService.create(nodes, new ArrayList<>(), TestTopologies.gridLinks(nodes), TestTopologies.defaultTheme());
+
+        assertThrows(IllegalArgumentException.class, () -> tileRenderService.render(session, 0, 1, 0, TileFormat.SVG));
+        assertThrows(IllegalArgumentException.class, () -> tileRenderService.render(session, 30, 0, 0, TileFormat.SVG));
+    }
+
+    @Test
+    void collapsed_LinksBetweenSuperNodes_MergedWithAverageTraffic() {
+        List<NetworkNode> nodes = new ArrayList<>();
+        List<SuperNode> superNodes = new ArrayList<>();
+        for (int group = 0; group < 2; group++) {
+            SuperNode superNode = new SuperNode("s" + group, 100 + group * 1000, 100, "Site " + group);
+            for (int i = 0; i < 3; i++) {
+                NetworkNode node = new NetworkNode(group + "-" + i, 0, 0, 80, 40, "Node " + i);
+                nodes.add(node);
+                superNode.addNode(node, NodePosition.TOP);
+            }
+            superNodes.add(superNode);
+        }
+        nodes.add(new NetworkNode("standalone", 500, 800, 80, 40, "Standalone"));
+        List<NetworkLink> links = new ArrayList<>();
+        links.add(new NetworkLink("0-0", "1-0", 10, 20));
+        links.add(new NetworkLink("0-1", "1-1", 30, 40));
+        links.add(new NetworkLink("1-2", "0-2", 60, 90));
+        links.add(new NetworkLink("0-0", "0-1", 50, 50));
+        links.add(new NetworkLink("standalone", "1-0", 5, 5));
+        DiagramSession session = diagramSessionService.create(nodes, superNodes, links, TestTopologies.defaultTheme());
+
+        List<NetworkLink> collapsedLinks = TileLayer.collapsed(session.snapshot()).links();
+
+        assertEquals(2, collapsedLinks.size());
+        NetworkLink merged = collapsedLinks.get(0);
+        assertEquals((10 + 30 + 90) / 3f, merged.getIncomingTraffic(), 0.001);
+        assertEquals((20 + 40 + 60) / 3f, merged.getOutgoingTraffic(), 0.001);
+        assertEquals("standalone", collapsedLinks.get(1).getSourceNodeId());
+        assertEquals(merged.getTargetNodeId(), collapsedLinks.get(1).getTargetNodeId());
+    }
+}
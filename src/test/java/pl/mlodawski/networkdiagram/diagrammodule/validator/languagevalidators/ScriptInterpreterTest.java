@@ -0,0 +1,147 @@
+package pl.mlodawski.networkdiagram.diagrammodule.validator.languagevalidators;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.mlodawski.networkdiagram.diagrammodule.autolayout.ForceDirectedLayout;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ChunkedScriptParser;
+import pl.mlodawski.networkdiagram.diagrammodule.languageparser.ScriptParser;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkLink;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.NetworkNode;
+import pl.mlodawski.networkdiagram.diagrammodule.model.document.SuperNode;
+import pl.mlodawski.networkdiagram.diagrammodule.pipelinemetrics.PipelineMetrics;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderBulkhead;
+import pl.mlodawski.networkdiagram.diagrammodule.renderbulkhead.RenderPool;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.DiagramError;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.DiagramValidationException;
+import pl.mlodawski.networkdiagram.diagrammodule.validator.diagramvalidators.ValidationMode;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptInterpreterTest {
+
+    private static final String SCRIPT = """
+            Node N1: Position(10, 10), Size(80, 40), Label("Zażółć")
+            Node N2: Position(200, 10), Size(80, 40), Label("B")
+            SuperNode SN1: Position(400, 400), Label("Rack")
+            N1 ---[30,70]--> N2
+            N2 --v--> SN1
+            """;
+
+    private final ForceDirectedLayout forceDirectedLayout = new ForceDirectedLayout(new RenderPool(1), new RenderBulkhead(new SimpleMeterRegistry(), 1, 10_000), true, 300, 200, 0.8f, 0.5f);
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry(), 0);
+
+    @Test
+    void interpretScript_Stream_BuildsSameModelAsText() {
+        ScriptInterpreter interpreter = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, 1 << 20, 100);
+        List<NetworkNode> textNodes = new ArrayList<>();
+        List<SuperNode> textSuperNodes = new ArrayList<>();
+        List<NetworkLink> textLinks = new ArrayList<>();
+        List<NetworkNode> streamNodes = new ArrayList<>();
+        List<SuperNode> streamSuperNodes = new ArrayList<>();
+        List<NetworkLink> streamLinks = new ArrayList<>();
+
+        interpreter.interpretScript(SCRIPT, textNodes, textSuperNodes, textLinks);
+        interpreter.interpretScript(new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                streamNodes, streamSuperNodes, streamLinks);
+
+        assertEquals(describe(textNodes, textSuperNodes, textLinks), describe(streamNodes, streamSuperNodes, streamLinks));
+        assertEquals("Zażółć", streamNodes.getFirst().getName());
+        assertEquals(1, streamSuperNodes.getFirst().getBottomNodes().size());
+    }
+
+    @Test
+    void interpretScript_StreamOverLimits_IsRejectedBeforeTheEnd() {
+        byte[] script = SCRIPT.getBytes(StandardCharsets.UTF_8);
+        ScriptInterpreter bytesLimited = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, script.length - 1, 100);
+        ScriptInterpreter linesLimited = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, 1 << 20, 4);
+
+        IllegalArgumentException tooLarge = assertThrows(IllegalArgumentException.class, () -> bytesLimited.interpretScript(
+                new ByteArrayInputStream(script), StandardCharsets.UTF_8, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        IllegalArgumentException tooLong = assertThrows(IllegalArgumentException.class, () -> linesLimited.interpretScript(
+                new ByteArrayInputStream(script), StandardCharsets.UTF_8, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+
+        assertEquals("Script is larger than " + (script.length - 1) + " bytes", tooLarge.getMessage());
+        assertEquals("Script has more than 4 lines", tooLong.getMessage());
+    }
+
+    @Test
+    void interpretScript_TextOverByteLimit_IsRejectedLikeTheStream() {
+        String script = "Węzeł ".repeat(100);
+        int bytes = script.getBytes(StandardCharsets.UTF_8).length;
+        ScriptInterpreter bytesLimited = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, bytes - 1, 100);
+
+        IllegalArgumentException fromText = assertThrows(IllegalArgumentException.class,
+                () -> bytesLimited.interpretScript(script, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        IllegalArgumentException fromStream = assertThrows(IllegalArgumentException.class, () -> bytesLimited.interpretScript(
+                new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+
+        assertTrue(script.length() < bytes - 1);
+        assertEquals("Script is larger than " + (bytes - 1) + " bytes", fromText.getMessage());
+        assertEquals(fromStream.getMessage(), fromText.getMessage());
+    }
+
+    @Test
+    void interpretScript_AllErrors_ReportsEveryErrorWithItsLine() {
+        ScriptInterpreter interpreter = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, 1 << 20, 100);
+        String script = """
+                Node N1: Position(10, 10), Size(80, 40), Label("A")
+                Node N1: Position(200, 10), Size(80, 40), Label("B")
+                SuperNode SN1: Position(400, 400), Label("Rack")
+                SuperNode SN2: Position(600, 400), Label("Rack")
+                N1 ---[30,70]--> N3
+                N1 --v--> SN1
+                N1 --^--> SN1
+                N2 --^--> SN1
+                """;
+
+        DiagramValidationException error = assertThrows(DiagramValidationException.class, () -> interpreter.interpretScript(
+                script, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), ValidationMode.ALL_ERRORS));
+        DiagramValidationException firstError = assertThrows(DiagramValidationException.class, () -> interpreter.interpretScript(
+                script, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+
+        assertEquals(List.of(
+                "Line 2: Duplicate Node ID: 1",
+                "Line 4: Empty SuperNode: SuperNode ID 2",
+                "Line 5: Invalid link between non-existing nodes: 1 --> 3",
+                "Line 7: Duplicate node in SuperNode: Node ID 1 in SuperNode 1",
+                "Line 8: NetworkNode with ID 2 not found"), error.getErrors().stream().map(ScriptInterpreterTest::describe).toList());
+        assertEquals(List.of(new DiagramError("Line 2", "Duplicate Node ID: 1")), firstError.getErrors());
+    }
+
+    @Test
+    void interpretScript_SuperNodesWithNodes_AreOrderedByTheirLastNode() {
+        ScriptInterpreter interpreter = new ScriptInterpreter(new ChunkedScriptParser(new ScriptParser(), new RenderPool(1), 1 << 20), forceDirectedLayout, pipelineMetrics, 1 << 20, 100);
+        String script = """
+                Node N1: Position(10, 10), Size(80, 40), Label("A")
+                Node N2: Position(200, 10), Size(80, 40), Label("B")
+                Node N3: Position(400, 10), Size(80, 40), Label("C")
+                SuperNode SN1: Position(400, 400), Label("Rack")
+                SuperNode SN2: Position(600, 400), Label("Rack")
+                N1 --v--> SN1
+                N2 --v--> SN2
+                N3 --^--> SN1
+                """;
+        List<SuperNode> superNodes = new ArrayList<>();
+
+        interpreter.interpretScript(script, new ArrayList<>(), superNodes, new ArrayList<>());
+
+        assertEquals(List.of("2", "1"), superNodes.stream().map(SuperNode::getId).toList());
+    }
+
+    private static String describe(DiagramError error) {
+        return error.location() + ": " + error.message();
+    }
+
+    private static List<String> describe(List<NetworkNode> nodes, List<SuperNode> superNodes, List<NetworkLink> links) {
+        List<String> elements = new ArrayList<>();
+        nodes.forEach(node -> elements.add(node.getId() + ':' + node.getX() + ':' + node.getY() + ':' + node.getName()));
+        superNodes.forEach(superNode -> elements.add(superNode.getId() + ':' + superNode.getX() + ':' + superNode.getBottomNodes().size()));
+        links.forEach(link -> elements.add(link.getSourceNodeId() + "->" + link.getTargetNodeId() + ':' + link.getOutgoingTraffic()));
+        return elements;
+    }
+}